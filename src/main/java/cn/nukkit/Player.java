@@ -58,6 +58,9 @@ import cn.nukkit.math.*;
 import cn.nukkit.metadata.MetadataValue;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.*;
+import cn.nukkit.network.ChunkBlobCache;
+import cn.nukkit.network.ChunkBlobs;
+import cn.nukkit.network.ChunkSendRateController;
 import cn.nukkit.network.Network;
 import cn.nukkit.network.SourceInterface;
 import cn.nukkit.network.protocol.*;
@@ -72,6 +75,7 @@ import cn.nukkit.positiontracking.PositionTracking;
 import cn.nukkit.positiontracking.PositionTrackingService;
 import cn.nukkit.potion.Effect;
 import cn.nukkit.resourcepacks.ResourcePack;
+import cn.nukkit.resourcepacks.ZippedResourcePack;
 import cn.nukkit.scheduler.AsyncTask;
 import cn.nukkit.scheduler.Task;
 import cn.nukkit.scheduler.TaskHandler;
@@ -89,9 +93,11 @@ import com.google.common.collect.HashBiMap;
 import io.netty.util.internal.EmptyArrays;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import lombok.SneakyThrows;
@@ -251,6 +257,26 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
     protected final Long2ObjectLinkedOpenHashMap<Boolean> loadQueue = new Long2ObjectLinkedOpenHashMap<>();
     protected int nextChunkOrderRun = 1;
 
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected boolean clientBlobCacheEnabled = false;
+    /**
+     * 已发送但客户端尚未确认的数据块，最多保存{@link #MAX_PENDING_BLOBS}个
+     * <p>
+     * Blobs sent to the client that it has not acknowledged yet, at most {@link #MAX_PENDING_BLOBS} are kept
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected final Long2ObjectOpenHashMap<byte[]> pendingBlobs = new Long2ObjectOpenHashMap<>();
+    /**
+     * 未确认的数据块达到这个数量时，区块不再通过客户端缓存发送，而是发送完整的区块
+     * <p>
+     * Once this many blobs are unacknowledged, chunks are sent in full instead of through the client blob cache
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static final int MAX_PENDING_BLOBS = 4096;
+
     protected final Map<UUID, Player> hiddenPlayers = new HashMap<>();
 
     protected Vector3 newPosition = null;
@@ -258,6 +284,10 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
     protected int chunkRadius;
     protected int viewDistance;
     protected final int chunksPerTick;
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    protected final ChunkSendRateController chunkSendRateController;
     protected final int spawnThreshold;
 
     protected Position spawnPosition = null;
@@ -725,6 +755,8 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         this.clientID = clientID;
         this.loaderId = Level.generateChunkLoaderId(this);
         this.chunksPerTick = this.server.getConfig("chunk-sending.per-tick", 4);
+        this.chunkSendRateController = this.server.getConfig("chunk-sending.adaptive-rate", false) ?
+                new ChunkSendRateController(this.chunksPerTick, 1, this.server.getConfig("chunk-sending.max-per-tick", 16)) : null;
         this.spawnThreshold = this.server.getConfig("chunk-sending.spawn-threshold", 56);
         this.spawnPosition = null;
         this.gamemode = this.server.getGamemode();
@@ -961,6 +993,63 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         }
     }
 
+    /**
+     * 使用客户端缓存发送区块，只发送数据块的哈希，客户端会通过{@link ClientCacheBlobStatusPacket}请求缺失的数据块
+     * <p>
+     * Sends a chunk through the client blob cache. Only the blob hashes are sent, the client asks for the missing
+     * blobs with a {@link ClientCacheBlobStatusPacket}.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void sendChunk(int x, int z, ChunkBlobs blobs) {
+        if (!this.connected) {
+            return;
+        }
+
+        this.usedChunks.put(Level.chunkHash(x, z), Boolean.TRUE);
+        this.chunkLoadCount++;
+
+        for (int i = 0; i < blobs.blobIds.length; i++) {
+            this.pendingBlobs.put(blobs.blobIds[i], blobs.blobs[i]);
+        }
+
+        LevelChunkPacket pk = new LevelChunkPacket();
+        pk.chunkX = x;
+        pk.chunkZ = z;
+        pk.subChunkCount = blobs.subChunkCount;
+        pk.cacheEnabled = true;
+        pk.blobIds = blobs.blobIds;
+        pk.data = blobs.extraData;
+
+        this.dataPacket(pk);
+
+        if (this.spawned) {
+            for (Entity entity : this.level.getChunkEntities(x, z).values()) {
+                if (this != entity && !entity.closed && entity.isAlive()) {
+                    entity.spawnTo(this);
+                }
+            }
+        }
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isClientBlobCacheEnabled() {
+        return this.clientBlobCacheEnabled;
+    }
+
+    /**
+     * 检查下一个区块能否通过客户端缓存发送。客户端一直不确认数据块时返回false，此时应发送完整的区块。
+     * <p>
+     * Checks if the next chunk can be sent through the client blob cache. Returns false when the client keeps not
+     * acknowledging the blobs, the full chunk should be sent then.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean canSendChunkBlobs(ChunkBlobs blobs) {
+        return this.clientBlobCacheEnabled && this.pendingBlobs.size() + blobs.blobIds.length <= MAX_PENDING_BLOBS;
+    }
+
     protected void sendNextChunk() {
         if (!this.connected) {
             return;
@@ -968,14 +1057,20 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
         Timings.playerChunkSendTimer.startTiming();
 
+        int chunksPerTick = this.chunksPerTick;
+        if (this.chunkSendRateController != null) {
+            this.chunkSendRateController.tick(this.getPing());
+            chunksPerTick = this.chunkSendRateController.getBudget();
+        }
+
+        int count = 0;
         if (!loadQueue.isEmpty()) {
-            int count = 0;
             ObjectIterator<Long2ObjectMap.Entry<Boolean>> iter = loadQueue.long2ObjectEntrySet().fastIterator();
             while (iter.hasNext()) {
                 Long2ObjectMap.Entry<Boolean> entry = iter.next();
                 long index = entry.getLongKey();
 
-                if (count >= this.chunksPerTick) {
+                if (count >= chunksPerTick) {
                     break;
                 }
                 int chunkX = Level.getHashX(index);
@@ -986,6 +1081,16 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 this.usedChunks.put(index, false);
                 this.level.registerChunkLoader(this, chunkX, chunkZ, false);
 
+                if (this.level.isAsyncChunkLoadingEnabled() && !this.level.isChunkLoaded(chunkX, chunkZ)) {
+                    // 区块在I/O线程上读取，加载完成后的下一次调用再发送
+                    this.level.loadChunkAsync(chunkX, chunkZ);
+                    if (this.spawned && this.teleportPosition == null) {
+                        continue;
+                    } else {
+                        break;
+                    }
+                }
+
                 if (!this.level.populateChunk(chunkX, chunkZ)) {
                     if (this.spawned && this.teleportPosition == null) {
                         continue;
@@ -1003,6 +1108,9 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 }
             }
         }
+        if (this.chunkSendRateController != null) {
+            this.chunkSendRateController.onChunksSent(count);
+        }
         if (this.chunkLoadCount >= this.spawnThreshold && !this.spawned && this.teleportPosition == null) {
             this.doFirstSpawn();
         }
@@ -1213,6 +1321,10 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             this.unloadChunk(Level.getHashX(index), Level.getHashZ(index));
         }
 
+        if (this.chunkSendRateController != null && loadQueue.size() > 1) {
+            this.sortLoadQueue(centerX, centerZ);
+        }
+
         if (!loadQueue.isEmpty()) {
             NetworkChunkPublisherUpdatePacket packet = new NetworkChunkPublisherUpdatePacket();
             packet.position = this.asBlockVector3();
@@ -1224,6 +1336,30 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         return true;
     }
 
+    /**
+     * 按距离排列待发送的区块，玩家面前的区块优先
+     * <p>
+     * Orders the queued chunks by distance, the chunks in front of the player come first.
+     */
+    private void sortLoadQueue(int centerX, int centerZ) {
+        double dirX = -Math.sin(Math.toRadians(this.yaw));
+        double dirZ = Math.cos(Math.toRadians(this.yaw));
+        long[] indexes = loadQueue.keySet().toLongArray();
+        Long2DoubleOpenHashMap scoreMap = new Long2DoubleOpenHashMap(indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            int dx = Level.getHashX(indexes[i]) - centerX;
+            int dz = Level.getHashZ(indexes[i]) - centerZ;
+            double distance = Math.sqrt(dx * dx + dz * dz);
+            double facing = distance == 0 ? 0 : (dx * dirX + dz * dirZ) / distance;
+            scoreMap.put(indexes[i], distance * (1 - 0.25 * facing));
+        }
+        LongArrays.quickSort(indexes, (a, b) -> Double.compare(scoreMap.get(a), scoreMap.get(b)));
+        loadQueue.clear();
+        for (long index : indexes) {
+            loadQueue.put(index, Boolean.TRUE);
+        }
+    }
+
     @DeprecationDetails(by = "Cloudburst Nukkit", since = "1.4.0.0-PN", replaceWith = "dataPacket(DataPacket)",
             reason = "Batching packet is now handled near the RakNet layer")
     @Deprecated
@@ -1243,12 +1379,18 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         if (!this.connected) {
             return false;
         }
+        // 并行世界刻线程上的数据包由主线程发送，和广播保持顺序
+        if (this.server.deferLevelTickPacket(() -> this.dataPacket(packet))) {
+            return true;
+        }
 
         try (Timing ignored = Timings.getSendDataPacketTiming(packet)) {
-            DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
-            this.server.getPluginManager().callEvent(ev);
-            if (ev.isCancelled()) {
-                return false;
+            if (this.server.getPluginManager().hasListeners(DataPacketSendEvent.class)) {
+                DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
+                this.server.getPluginManager().callEvent(ev);
+                if (ev.isCancelled()) {
+                    return false;
+                }
             }
 
             if (log.isTraceEnabled() && !server.isIgnoredPacket(packet.getClass())) {
@@ -2779,6 +2921,10 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                     }
 
                     int maxChunkSize = server.getResourcePackManager().getMaxChunkSize();
+                    if (server.getResourcePackManager().isCacheChunkPackets() && resourcePack instanceof ZippedResourcePack zippedPack) {
+                        this.dataResourcePacket(zippedPack.getCompressedChunkPacket(requestPacket.chunkIndex, maxChunkSize));
+                        break;
+                    }
                     ResourcePackChunkDataPacket dataPacket = new ResourcePackChunkDataPacket();
                     dataPacket.setPackId(resourcePack.getPackId());
                     dataPacket.setPackVersion(new Version(resourcePack.getPackVersion()));
@@ -4594,6 +4740,34 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                         }
                     }
                     break;
+                case ProtocolInfo.CLIENT_CACHE_STATUS_PACKET:
+                    this.clientBlobCacheEnabled = this.server.getChunkBlobCache() != null && ((ClientCacheStatusPacket) packet).supported;
+                    break;
+                case ProtocolInfo.CLIENT_CACHE_BLOB_STATUS_PACKET: {
+                    ClientCacheBlobStatusPacket blobStatusPacket = (ClientCacheBlobStatusPacket) packet;
+                    ChunkBlobCache blobCache = this.server.getChunkBlobCache();
+                    for (long hit : blobStatusPacket.hitHashes) {
+                        this.pendingBlobs.remove(hit);
+                    }
+                    if (blobStatusPacket.missHashes.length == 0) {
+                        break;
+                    }
+                    ClientCacheMissResponsePacket missResponsePacket = new ClientCacheMissResponsePacket();
+                    for (long miss : blobStatusPacket.missHashes) {
+                        byte[] blob = this.pendingBlobs.remove(miss);
+                        if (blob == null && blobCache != null) {
+                            blob = blobCache.get(miss);
+                        }
+                        if (blob != null) {
+                            missResponsePacket.blobs.put(miss, blob);
+                        }
+                    }
+                    this.dataPacket(missResponsePacket);
+                    break;
+                }
+                case ProtocolInfo.SUB_CHUNK_REQUEST_PACKET:
+                    this.level.processSubChunkRequest(this, (SubChunkRequestPacket) packet);
+                    break;
                 case ProtocolInfo.TICK_SYNC_PACKET:
                     TickSyncPacket tickSyncPacket = (TickSyncPacket) packet;
 
@@ -4985,6 +5159,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             this.windows.clear();
             this.usedChunks.clear();
             this.loadQueue.clear();
+            this.pendingBlobs.clear();
             this.hasSpawned.clear();
             this.spawnPosition = null;
 
@@ -5682,6 +5857,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
     @Override
     protected void checkChunks() {
+        this.updateSpatialIndex();
         if (this.chunk == null || (this.chunk.getX() != ((int) this.x >> 4) || this.chunk.getZ() != ((int) this.z >> 4))) {
             if (this.chunk != null) {
                 this.chunk.removeEntity(this);
@@ -5758,6 +5934,9 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         if (!this.isOnline()) {
             return false;
         }
+        if (this.deferCrossLevelTeleport(location, cause)) {
+            return false;
+        }
 
         Location from = this.getLocation();
         Location to = location;
@@ -6238,6 +6417,8 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         pk.encode();
 
         BatchPacket batch = new BatchPacket();
+        // 压缩好的区块和其他区块使用同一个发送通道
+        batch.setChannel(Network.CHANNEL_WORLD_CHUNKS);
         byte[][] batchPayload = new byte[2][];
         byte[] buf = pk.getBuffer();
         batchPayload[0] = Binary.writeUnsignedVarInt(buf.length);
@@ -6791,12 +6972,18 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         if (!this.connected) {
             return false;
         }
+        // 并行世界刻线程上的数据包由主线程发送
+        if (this.server.deferLevelTickPacket(() -> this.dataPacketImmediately(packet))) {
+            return true;
+        }
 
         try (Timing ignored = Timings.getSendDataPacketTiming(packet)) {
-            DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
-            this.server.getPluginManager().callEvent(ev);
-            if (ev.isCancelled()) {
-                return false;
+            if (this.server.getPluginManager().hasListeners(DataPacketSendEvent.class)) {
+                DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
+                this.server.getPluginManager().callEvent(ev);
+                if (ev.isCancelled()) {
+                    return false;
+                }
             }
 
             if (log.isTraceEnabled() && !server.isIgnoredPacket(packet.getClass())) {
@@ -6817,10 +7004,12 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         }
 
         try (Timing ignored = Timings.getSendDataPacketTiming(packet)) {
-            DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
-            this.server.getPluginManager().callEvent(ev);
-            if (ev.isCancelled()) {
-                return false;
+            if (this.server.getPluginManager().hasListeners(DataPacketSendEvent.class)) {
+                DataPacketSendEvent ev = new DataPacketSendEvent(this, packet);
+                this.server.getPluginManager().callEvent(ev);
+                if (ev.isCancelled()) {
+                    return false;
+                }
             }
 
             if (log.isTraceEnabled() && !server.isIgnoredPacket(packet.getClass())) {
@@ -13,6 +13,7 @@ import cn.nukkit.dispenser.DispenseBehaviorRegister;
 import cn.nukkit.entity.Attribute;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.entity.EntityHuman;
+import cn.nukkit.entity.ai.route.RouteFindingManager;
 import cn.nukkit.entity.data.Skin;
 import cn.nukkit.entity.item.*;
 import cn.nukkit.entity.mob.*;
@@ -36,6 +37,7 @@ import cn.nukkit.level.biome.EnumBiome;
 import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.format.LevelProviderManager;
 import cn.nukkit.level.format.anvil.Anvil;
+import cn.nukkit.level.format.leveldb.LevelDBProvider;
 import cn.nukkit.level.generator.*;
 import cn.nukkit.level.terra.PNXPlatform;
 import cn.nukkit.level.tickingarea.manager.SimpleTickingAreaManager;
@@ -51,6 +53,7 @@ import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.nbt.tag.DoubleTag;
 import cn.nukkit.nbt.tag.FloatTag;
 import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.network.ChunkBlobCache;
 import cn.nukkit.network.CompressBatchedTask;
 import cn.nukkit.network.Network;
 import cn.nukkit.network.RakNetInterface;
@@ -80,6 +83,7 @@ import cn.nukkit.scoreboard.ScoreboardManager;
 import cn.nukkit.scoreboard.storage.JSONScoreboardStorage;
 import cn.nukkit.utils.*;
 import cn.nukkit.utils.bugreport.ExceptionHandler;
+import co.aikar.timings.Timing;
 import co.aikar.timings.Timings;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
@@ -96,6 +100,7 @@ import org.iq80.leveldb.Options;
 import org.iq80.leveldb.impl.Iq80DBFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -104,9 +109,16 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -124,6 +136,23 @@ public class Server {
 
     private static Server instance = null;
 
+    /**
+     * 玩家类是否使用{@link Player}的{@link Player#dataPacket(DataPacket)}，覆盖了这个方法的玩家不能合并广播
+     * <p>
+     * If the player class uses the {@link Player#dataPacket(DataPacket)} of {@link Player}, players overriding it
+     * can not take part in grouped broadcasts
+     */
+    private static final ClassValue<Boolean> BASE_DATA_PACKET = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("dataPacket", DataPacket.class).getDeclaringClass() == Player.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
     private BanList banByName;
 
     private BanList banByIP;
@@ -199,12 +228,29 @@ public class Server {
 
     private boolean networkCompressionAsync = true;
     public int networkCompressionLevel = 7;
+    private int networkCompressionThreshold = 256;
+    private int smallBatchCompressionLevel = 0;
     private int networkZlibProvider = 0;
 
     private boolean autoTickRate = true;
     private int autoTickRateLimit = 20;
     private boolean alwaysTickPlayers = false;
     private int baseTickRate = 1;
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private ExecutorService levelTickExecutor = null;
+    /**
+     * 并行世界刻线程发送的数据包，所有世界刻结束后由主线程按顺序发送
+     * <p>
+     * Packets sent from the parallel level tick threads, sent in order by the primary thread after all level ticks
+     */
+    private final Queue<Runnable> levelTickPackets = new ConcurrentLinkedQueue<>();
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private ExecutorService chunkIOExecutor = null;
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private ChunkBlobCache chunkBlobCache = null;
     private Boolean getAllowFlight = null;
     private int difficulty = Integer.MAX_VALUE;
     private int defaultGamemode = Integer.MAX_VALUE;
@@ -658,13 +704,34 @@ public class Server {
         Zlib.setProvider(this.networkZlibProvider);
 
         this.networkCompressionLevel = this.getConfig("network.compression-level", 7);
+        this.networkCompressionThreshold = this.getConfig("network.batch-threshold", 256);
+        this.smallBatchCompressionLevel = this.getConfig("network.small-batch-compression-level", 0);
+        Network.setCompressionProvider(Network.findCompressionProvider(this.getConfig("network.compression-provider", "jdk")));
         this.networkCompressionAsync = this.getConfig("network.async-compression", true);
+        if (this.getConfig("network.client-blob-cache", false)) {
+            this.chunkBlobCache = new ChunkBlobCache(Math.max(1, this.getConfig("network.client-blob-cache-size", 128)) * 1024L * 1024L);
+        }
 
         this.autoTickRate = this.getConfig("level-settings.auto-tick-rate", true);
         this.autoTickRateLimit = this.getConfig("level-settings.auto-tick-rate-limit", 20);
         this.alwaysTickPlayers = this.getConfig("level-settings.always-tick-players", false);
         this.baseTickRate = this.getConfig("level-settings.base-tick-rate", 1);
         this.redstoneEnabled = this.getConfig("level-settings.tick-redstone", true);
+        if (this.getConfig("level-settings.parallel-level-tick", false)) {
+            Object tickThreads = this.getConfig("level-settings.parallel-level-tick-threads", (Object) "auto");
+            if (!(tickThreads instanceof Integer)) {
+                try {
+                    tickThreads = Integer.valueOf((String) tickThreads);
+                } catch (Exception e) {
+                    tickThreads = Runtime.getRuntime().availableProcessors();
+                }
+            }
+            this.levelTickExecutor = Executors.newFixedThreadPool(Math.max(1, (int) tickThreads), LevelTickThread::new);
+        }
+        if (this.getConfig("level-settings.async-chunk-loading", false)) {
+            int ioThreads = this.getConfig("level-settings.chunk-io-threads", 2);
+            this.chunkIOExecutor = Executors.newFixedThreadPool(Math.max(1, ioThreads), ChunkIOThread::new);
+        }
         this.safeSpawn = this.getConfig().getBoolean("settings.safe-spawn", true);
         this.forceSkinTrusted = this.getConfig().getBoolean("player.force-skin-trusted", false);
         this.checkMovement = this.getConfig().getBoolean("player.check-movement", true);
@@ -758,6 +825,8 @@ public class Server {
 
         this.craftingManager = new CraftingManager();
         this.resourcePackManager = new ResourcePackManager(new File(Nukkit.DATA_PATH, "resource_packs"));
+        this.resourcePackManager.setCacheChunkPackets(this.getConfig("network.resource-pack-chunk-cache", false));
+        RouteFindingManager.getInstance().setShareRoutes(this.getConfig("level-settings.share-routes", false));
 
         this.pluginManager = new PluginManager(this, this.commandMap);
         this.pluginManager.subscribeToPermission(Server.BROADCAST_CHANNEL_ADMINISTRATIVE, this.consoleSender);
@@ -783,6 +852,7 @@ public class Server {
         this.enablePlugins(PluginLoadOrder.STARTUP);
 
         LevelProviderManager.addProvider(this, Anvil.class);
+        LevelProviderManager.addProvider(this, LevelDBProvider.class);
 
         Generator.addGenerator(Flat.class, "flat", Generator.TYPE_FLAT);
         Generator.addGenerator(Normal.class, "normal", Generator.TYPE_INFINITE);
@@ -946,21 +1016,69 @@ public class Server {
     }
 
     public static void broadcastPacket(Collection<Player> players, DataPacket packet) {
+        if (instance != null && instance.isLevelTickThread()) {
+            Player[] recipients = players.toArray(Player.EMPTY_ARRAY);
+            instance.deferLevelTickPacket(() -> broadcastPacket(recipients, packet));
+            return;
+        }
         packet.tryEncode();
 
+        if (putBroadcastPacket(players, packet)) {
+            return;
+        }
         for (Player player : players) {
             player.dataPacket(packet);
         }
     }
 
     public static void broadcastPacket(Player[] players, DataPacket packet) {
+        if (instance != null && instance.isLevelTickThread()) {
+            Player[] recipients = players.clone();
+            instance.deferLevelTickPacket(() -> broadcastPacket(recipients, packet));
+            return;
+        }
         packet.tryEncode();
 
+        if (putBroadcastPacket(Arrays.asList(players), packet)) {
+            return;
+        }
         for (Player player : players) {
             player.dataPacket(packet);
         }
     }
 
+    /**
+     * 所有玩家使用同一个网络接口、都没有覆盖{@link Player#dataPacket(DataPacket)}、没有插件监听{@link DataPacketSendEvent}
+     * 且没有开启数据包跟踪日志时，把数据包作为广播交给网络接口，这样数据包只需要为所有玩家压缩一次
+     * <p>
+     * Hands the packet to the network interface as a broadcast when all the players use the same interface, none of
+     * them overrides {@link Player#dataPacket(DataPacket)}, no plugin listens to {@link DataPacketSendEvent} and
+     * packet tracing is off, so the packet is compressed once for all the players.
+     *
+     * @return 是否已经作为广播发送<br>if the packet was sent as a broadcast
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private static boolean putBroadcastPacket(Collection<Player> players, DataPacket packet) {
+        if (players.size() < 2 || instance == null || instance.getPluginManager().hasListeners(DataPacketSendEvent.class)
+                || log.isTraceEnabled()) {
+            return false;
+        }
+        SourceInterface interfaz = players.iterator().next().interfaz;
+        if (interfaz == null) {
+            return false;
+        }
+        for (Player player : players) {
+            if (player.interfaz != interfaz || !BASE_DATA_PACKET.get(player.getClass())) {
+                return false;
+            }
+        }
+        try (Timing ignored = Timings.getSendDataPacketTiming(packet)) {
+            interfaz.putBroadcastPacket(players, packet);
+        }
+        return true;
+    }
+
     @DeprecationDetails(since = "1.4.0.0-PN", by = "Cloudburst Nukkit",
             reason = "Packet management was refactored, batching is done automatically near the RakNet layer")
     @Deprecated
@@ -975,6 +1093,9 @@ public class Server {
         if (players == null || packets == null || players.length == 0 || packets.length == 0) {
             return;
         }
+        if (this.deferLevelTickPacket(() -> this.batchPackets(players, packets, forceSync))) {
+            return;
+        }
 
         BatchPacketsEvent ev = new BatchPacketsEvent(players, packets, forceSync);
         getPluginManager().callEvent(ev);
@@ -1155,10 +1276,24 @@ public class Server {
             log.debug("Removing event handlers");
             HandlerList.unregisterAll();
 
+            if (this.levelTickExecutor != null) {
+                log.debug("Stopping level tick threads");
+                this.levelTickExecutor.shutdownNow();
+            }
+
             log.debug("Stopping all tasks");
             this.scheduler.cancelAllTasks();
             this.scheduler.mainThreadHeartbeat(Integer.MAX_VALUE);
 
+            if (this.chunkIOExecutor != null) {
+                log.debug("Stopping chunk I/O threads");
+                // 不能中断，中断会关闭正在读取的区域文件通道
+                this.chunkIOExecutor.shutdown();
+                if (!this.chunkIOExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Chunk I/O threads didn't stop in time");
+                }
+            }
+
             log.debug("Unloading all levels");
             for (Level level : this.levelArray) {
                 this.unloadLevel(level, true);
@@ -1392,43 +1527,80 @@ public class Server {
         }
 
         //Do level ticks
+        if (this.levelTickExecutor != null && this.levelArray.length > 1 && !Timings.isTimingsEnabled()) {
+            // Timings are not thread safe, so the levels are ticked sequentially while they are enabled
+            List<Future<?>> levelTicks = new ArrayList<>(this.levelArray.length);
+            for (Level level : this.levelArray) {
+                if (level.getTickRate() > this.baseTickRate && --level.tickRateCounter > 0) {
+                    continue;
+                }
+                levelTicks.add(this.levelTickExecutor.submit(() -> this.tickLevel(level, currentTick)));
+            }
+
+            // Barrier: every level must finish its tick before the players' network is processed
+            try {
+                for (Future<?> levelTick : levelTicks) {
+                    try {
+                        levelTick.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.debug("The thread {} got interrupted while waiting for the level ticks", Thread.currentThread().getName(), e);
+                        return;
+                    } catch (ExecutionException e) {
+                        log.error("Unexpected error while ticking a level in parallel", e.getCause());
+                    }
+                }
+            } finally {
+                // 数据包事件和插件监听器只在主线程上触发，被中断时也发送已经推迟的数据包
+                Runnable send;
+                while ((send = this.levelTickPackets.poll()) != null) {
+                    send.run();
+                }
+            }
+            return;
+        }
+
         for (Level level : this.levelArray) {
             if (level.getTickRate() > this.baseTickRate && --level.tickRateCounter > 0) {
                 continue;
             }
 
-            try {
-                long levelTime = System.currentTimeMillis();
-                level.doTick(currentTick);
-                int tickMs = (int) (System.currentTimeMillis() - levelTime);
-                level.tickRateTime = tickMs;
-                if ((currentTick & 511) == 0) { // % 511
-                    level.tickRateOptDelay = level.recalcTickOptDelay();
-                }
+            this.tickLevel(level, currentTick);
+        }
+    }
 
-                if (this.autoTickRate) {
-                    if (tickMs < 50 && level.getTickRate() > this.baseTickRate) {
-                        int r;
-                        level.setTickRate(r = level.getTickRate() - 1);
-                        if (r > this.baseTickRate) {
-                            level.tickRateCounter = level.getTickRate();
-                        }
-                        log.debug("Raising level \"{}\" tick rate to {} ticks", level.getName(), level.getTickRate());
-                    } else if (tickMs >= 50) {
-                        if (level.getTickRate() == this.baseTickRate) {
-                            level.setTickRate(Math.max(this.baseTickRate + 1, Math.min(this.autoTickRateLimit, tickMs / 50)));
-                            log.debug("Level \"{}\" took {}ms, setting tick rate to {} ticks", level.getName(), NukkitMath.round(tickMs, 2), level.getTickRate());
-                        } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < this.autoTickRateLimit) {
-                            level.setTickRate(level.getTickRate() + 1);
-                            log.debug("Level \"{}\" took {}ms, setting tick rate to {} ticks", level.getName(), NukkitMath.round(tickMs, 2), level.getTickRate());
-                        }
+    private void tickLevel(Level level, int currentTick) {
+        try {
+            long levelTime = System.currentTimeMillis();
+            level.doTick(currentTick);
+            int tickMs = (int) (System.currentTimeMillis() - levelTime);
+            level.tickRateTime = tickMs;
+            if ((currentTick & 511) == 0) { // % 511
+                level.tickRateOptDelay = level.recalcTickOptDelay();
+            }
+
+            if (this.autoTickRate) {
+                if (tickMs < 50 && level.getTickRate() > this.baseTickRate) {
+                    int r;
+                    level.setTickRate(r = level.getTickRate() - 1);
+                    if (r > this.baseTickRate) {
                         level.tickRateCounter = level.getTickRate();
                     }
+                    log.debug("Raising level \"{}\" tick rate to {} ticks", level.getName(), level.getTickRate());
+                } else if (tickMs >= 50) {
+                    if (level.getTickRate() == this.baseTickRate) {
+                        level.setTickRate(Math.max(this.baseTickRate + 1, Math.min(this.autoTickRateLimit, tickMs / 50)));
+                        log.debug("Level \"{}\" took {}ms, setting tick rate to {} ticks", level.getName(), NukkitMath.round(tickMs, 2), level.getTickRate());
+                    } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < this.autoTickRateLimit) {
+                        level.setTickRate(level.getTickRate() + 1);
+                        log.debug("Level \"{}\" took {}ms, setting tick rate to {} ticks", level.getName(), NukkitMath.round(tickMs, 2), level.getTickRate());
+                    }
+                    level.tickRateCounter = level.getTickRate();
                 }
-            } catch (Exception e) {
-                log.error(this.getLanguage().translateString("nukkit.level.tickError",
-                        level.getFolderName(), Utils.getExceptionMessage(e)), e);
             }
+        } catch (Exception e) {
+            log.error(this.getLanguage().translateString("nukkit.level.tickError",
+                    level.getFolderName(), Utils.getExceptionMessage(e)), e);
         }
     }
 
@@ -2656,6 +2828,69 @@ public class Server {
         return currentThread;
     }
 
+    /**
+     * 检查当前线程是否为并行世界刻线程。仅在 {@code level-settings.parallel-level-tick} 启用时才会出现此类线程。
+     * <p>
+     * 在并行世界刻期间，每个线程只允许修改它正在运行的那个{@link Level}。涉及多个世界的操作（如跨世界传送）
+     * 必须通过{@link #getScheduler()}交回主线程执行。
+     * <p>
+     * 在这些线程上通过{@link #broadcastPacket(Collection, DataPacket)}、{@link #batchPackets(Player[], DataPacket[], boolean)}、
+     * {@link Player#dataPacket(DataPacket)}（以及委托给它的{@code directDataPacket}和{@code batchDataPacket}）和
+     * {@link Player#dataPacketImmediately(DataPacket)}发送的数据包不会立即发送，而是在所有世界刻结束后由主线程按顺序发送，
+     * 因此{@link DataPacketSendEvent}和{@link BatchPacketsEvent}只在主线程上触发。
+     * <p>
+     * 世界刻本身触发的其他事件不会交回主线程，它们在运行该世界的线程上同时触发，例如
+     * {@link cn.nukkit.event.block.BlockUpdateEvent}、{@link cn.nukkit.event.entity.EntityDamageEvent}
+     * 和其他方块、实体、世界事件。这些事件的监听器必须是线程安全的，或者只访问事件所在的世界，
+     * 可以用这个方法判断是否在并行世界刻线程上。
+     * <p>
+     * Checks if the current thread is one of the parallel level tick threads. These threads only exist when
+     * {@code level-settings.parallel-level-tick} is enabled.
+     * <p>
+     * While levels are ticked in parallel each thread may only mutate the {@link Level} it is ticking.
+     * Operations that touch more than one level, like cross-level teleports, must be handed back to the primary
+     * thread through the {@link #getScheduler() scheduler}.
+     * <p>
+     * Packets sent on these threads with {@link #broadcastPacket(Collection, DataPacket)},
+     * {@link #batchPackets(Player[], DataPacket[], boolean)}, {@link Player#dataPacket(DataPacket)} (and the
+     * {@code directDataPacket} and {@code batchDataPacket} methods delegating to it) or
+     * {@link Player#dataPacketImmediately(DataPacket)} are not sent right away. The primary thread sends them in order
+     * after all level ticks finished, so {@link DataPacketSendEvent} and
+     * {@link BatchPacketsEvent} only fire on the primary thread.
+     * <p>
+     * Other events raised by the level tick itself are not handed back to the primary thread. They fire on the thread
+     * ticking that level, at the same time as the events of other levels. Examples are
+     * {@link cn.nukkit.event.block.BlockUpdateEvent}, {@link cn.nukkit.event.entity.EntityDamageEvent} and the other
+     * block, entity and level events. Their listeners must be thread safe or only touch the level of the event, and
+     * can use this method to tell whether they run on a parallel level tick thread.
+     *
+     * @return true if the current thread is a parallel level tick thread
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isLevelTickThread() {
+        return Thread.currentThread() instanceof LevelTickThread;
+    }
+
+    /**
+     * 在并行世界刻线程上调用时，把发送数据包的操作推迟到所有世界刻结束后由主线程执行
+     * <p>
+     * When called on a parallel level tick thread, defers sending the packet to the primary thread after all level
+     * ticks finished.
+     *
+     * @param send 在主线程上发送数据包的操作<br>sends the packet on the primary thread
+     * @return 是否已推迟，不在并行世界刻线程上时为false<br>if it was deferred, false if not on a parallel level tick thread
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean deferLevelTickPacket(Runnable send) {
+        if (!this.isLevelTickThread()) {
+            return false;
+        }
+        this.levelTickPackets.offer(send);
+        return true;
+    }
+
     private void registerEntities() {
         Entity.registerEntity("Lightning", EntityLightning.class);
         Entity.registerEntity("Arrow", EntityArrow.class);
@@ -2835,6 +3070,22 @@ public class Server {
         return safeSpawn;
     }
 
+    /**
+     * @return 小于这个字节数的批次使用{@link #getSmallBatchCompressionLevel()}压缩<br>batches smaller than this
+     * number of bytes are compressed with {@link #getSmallBatchCompressionLevel()}
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public int getNetworkCompressionThreshold() {
+        return networkCompressionThreshold;
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public int getSmallBatchCompressionLevel() {
+        return smallBatchCompressionLevel;
+    }
+
     public static Server getInstance() {
         return instance;
     }
@@ -2876,6 +3127,30 @@ public class Server {
         return this.enableExperimentMode;
     }
 
+    /**
+     * @return 客户端缓存数据块的服务端缓存，未启用客户端缓存时为null
+     * <p>
+     * the server side store of the client cache blobs, or null if the client blob cache is disabled
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public ChunkBlobCache getChunkBlobCache() {
+        return this.chunkBlobCache;
+    }
+
+    /**
+     * @return 异步加载区块使用的I/O线程池，未启用异步区块加载时为null
+     * <p>
+     * the I/O pool used to load chunks asynchronously, or null if async chunk loading is disabled
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public ExecutorService getChunkIOExecutor() {
+        return this.chunkIOExecutor;
+    }
+
     @PowerNukkitXOnly
     @Since("1.19.21-r4")
     public boolean isWaterdogCapable() {
@@ -2889,4 +3164,22 @@ public class Server {
             console.start();
         }
     }
+
+    private static final class ChunkIOThread extends Thread implements InterruptibleThread {
+        private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+        ChunkIOThread(Runnable runnable) {
+            super(runnable, "Chunk I/O Thread #" + threadCount.getAndIncrement());
+            this.setDaemon(true);
+        }
+    }
+
+    private static final class LevelTickThread extends Thread implements InterruptibleThread {
+        private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+        LevelTickThread(Runnable runnable) {
+            super(runnable, "Level Tick Thread #" + threadCount.getAndIncrement());
+            this.setDaemon(true);
+        }
+    }
 }
@@ -3,6 +3,7 @@ package cn.nukkit.block;
 import cn.nukkit.Player;
 import cn.nukkit.api.PowerNukkitDifference;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.blockproperty.BlockProperties;
 import cn.nukkit.blockproperty.CommonBlockProperties;
@@ -12,6 +13,7 @@ import cn.nukkit.item.Item;
 import cn.nukkit.item.ItemRedstone;
 import cn.nukkit.level.Level;
 import cn.nukkit.level.Position;
+import cn.nukkit.level.redstone.RedstoneWireEngine;
 import cn.nukkit.math.BlockFace;
 import cn.nukkit.math.BlockFace.Plane;
 import cn.nukkit.math.Vector3;
@@ -109,7 +111,12 @@ public class BlockRedstoneWire extends BlockFlowable implements RedstoneComponen
     }
 
     private void updateSurroundingRedstone(boolean force) {
-        this.calculateCurrentChanges(force);
+        RedstoneWireEngine engine = this.level.getRedstoneWireEngine();
+        if (engine != null) {
+            engine.update(this.getFloorX(), this.getFloorY(), this.getFloorZ(), force);
+        } else {
+            this.calculateCurrentChanges(force);
+        }
     }
 
     @PowerNukkitDifference(info = "Let redstone go down transparent blocks.", since = "1.4.0.0-PN")
@@ -191,8 +198,14 @@ public class BlockRedstoneWire extends BlockFlowable implements RedstoneComponen
         Position pos = getLocation();
 
         if (this.level.getServer().isRedstoneEnabled()) {
-            this.updateSurroundingRedstone(false);
-            this.getLevel().setBlock(this, air, true, true);
+            RedstoneWireEngine engine = this.level.getRedstoneWireEngine();
+            if (engine != null) {
+                // 线已经被移除，计算和这个位置相连的网络
+                engine.update(this.getFloorX(), this.getFloorY(), this.getFloorZ(), false);
+            } else {
+                this.updateSurroundingRedstone(false);
+                this.getLevel().setBlock(this, air, true, true);
+            }
 
             for (BlockFace blockFace : BlockFace.values()) {
                 RedstoneComponent.updateAroundRedstone(pos.getSide(blockFace));
@@ -324,11 +337,21 @@ public class BlockRedstoneWire extends BlockFlowable implements RedstoneComponen
     }
 
     private int getIndirectPower() {
+        return getReceivedPower(this.level, this.getFloorX(), this.getFloorY(), this.getFloorZ());
+    }
+
+    /**
+     * 获取这个位置的红石线从周围方块（不包括其他红石线）接收到的能量
+     * <p>
+     * Gets the power a wire at the position receives from the blocks around it, not counting other wires.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static int getReceivedPower(Level level, int x, int y, int z) {
         int power = 0;
-        Vector3 pos = getLocation();
 
         for (BlockFace face : BlockFace.values()) {
-            int blockPower = this.getIndirectPower(pos.getSide(face), face);
+            int blockPower = getIndirectPower(level, x + face.getXOffset(), y + face.getYOffset(), z + face.getZOffset(), face);
 
             if (blockPower >= 15) {
                 return 15;
@@ -342,18 +365,18 @@ public class BlockRedstoneWire extends BlockFlowable implements RedstoneComponen
         return power;
     }
 
-    private int getIndirectPower(Vector3 pos, BlockFace face) {
-        Block block = this.level.getBlock(pos);
+    private static int getIndirectPower(Level level, int x, int y, int z, BlockFace face) {
+        Block block = level.getBlock(x, y, z);
         if (block.getId() == Block.REDSTONE_WIRE) {
             return 0;
         }
-        return block.isNormalBlock() ? getStrongPower(pos) : block.getWeakPower(face);
+        return block.isNormalBlock() ? getStrongPower(level, x, y, z) : block.getWeakPower(face);
     }
 
-    private int getStrongPower(Vector3 pos) {
+    private static int getStrongPower(Level level, int x, int y, int z) {
         int i = 0;
         for (BlockFace face : BlockFace.values()) {
-            i = Math.max(i, getStrongPower(pos.getSide(face), face));
+            i = Math.max(i, getStrongPower(level, x + face.getXOffset(), y + face.getYOffset(), z + face.getZOffset(), face));
 
             if (i >= 15) {
                 return i;
@@ -362,8 +385,8 @@ public class BlockRedstoneWire extends BlockFlowable implements RedstoneComponen
         return i;
     }
 
-    private int getStrongPower(Vector3 pos, BlockFace direction) {
-        Block block = this.level.getBlock(pos);
+    private static int getStrongPower(Level level, int x, int y, int z, BlockFace direction) {
+        Block block = level.getBlock(x, y, z);
 
         if (block.getId() == Block.REDSTONE_WIRE) {
             return 0;
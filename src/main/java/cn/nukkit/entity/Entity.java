@@ -29,12 +29,14 @@ import cn.nukkit.event.player.PlayerFreezeEvent;
 import cn.nukkit.event.player.PlayerInteractEvent;
 import cn.nukkit.event.player.PlayerInteractEvent.Action;
 import cn.nukkit.event.player.PlayerTeleportEvent;
+import cn.nukkit.event.server.DataPacketSendEvent;
 import cn.nukkit.item.Item;
 import cn.nukkit.item.ItemID;
 import cn.nukkit.item.enchantment.Enchantment;
 import cn.nukkit.item.enchantment.sideeffect.SideEffect;
 import cn.nukkit.level.*;
 import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.tracker.EntitySpatialIndex;
 import cn.nukkit.level.vibration.VibrationEvent;
 import cn.nukkit.level.vibration.VibrationType;
 import cn.nukkit.math.*;
@@ -60,6 +62,7 @@ import lombok.extern.log4j.Log4j2;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BiPredicate;
@@ -533,6 +536,8 @@ public abstract class Entity extends Location implements Metadatable {
     protected boolean inEndPortal;
     protected boolean isStatic = false;
     protected Server server;
+    @Nullable
+    private volatile CompletableFuture<Boolean> pendingTeleport;
     protected Timing timing;
     protected boolean isPlayer = false;
     private int maxHealth = 20;
@@ -1396,18 +1401,38 @@ public abstract class Entity extends Location implements Metadatable {
         SetEntityDataPacket pk = new SetEntityDataPacket();
         pk.eid = this.getId();
         pk.metadata = data == null ? this.dataProperties : data;
+        // 合并发送时只编码一次，所有玩家共享编码后的数据。插件监听发送事件时可能修改数据包，每个玩家仍然使用自己的副本
+        boolean shared = this.level != null && this.level.isEntityDataBatchingEnabled()
+                && !this.server.getPluginManager().hasListeners(DataPacketSendEvent.class);
+        if (shared) {
+            pk.tryEncode();
+        }
 
         for (Player player : players) {
             if (player == this) {
                 continue;
             }
-            player.dataPacket(pk.clone());
+            player.dataPacket(shared ? pk : pk.clone());
         }
         if (this instanceof Player) {
             ((Player) this).dataPacket(pk);
         }
     }
 
+    /**
+     * 把这一刻中修改过的元数据一次性发送给所有观察者
+     * <p>
+     * Sends the metadata changed during this tick to all the viewers at once.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void sendDirtyData() {
+        EntityMetadata changed = this.dataProperties.pollDirty();
+        if (changed != null) {
+            this.sendData(this.hasSpawned.values().toArray(Player.EMPTY_ARRAY), changed);
+        }
+    }
+
     public void despawnFrom(Player player) {
         if (this.hasSpawned.containsKey(player.getLoaderId())) {
             RemoveEntityPacket pk = new RemoveEntityPacket();
@@ -1893,6 +1918,19 @@ public abstract class Entity extends Location implements Metadatable {
         this.level.addEntityMovement(this, x, y, z, yaw, pitch, headYaw);
     }
 
+    /**
+     * 启用实体追踪时，距离超过这个范围的观察者不会收到这个实体的移动
+     * <p>
+     * When the entity tracker is enabled, viewers farther than this range receive no movement of this entity.
+     *
+     * @return 以方块为单位的追踪范围<br>the tracking range in blocks
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public double getTrackingRange() {
+        return 80;
+    }
+
     /*
      * 请注意此方法仅向客户端发motion包，并不会真正的将motion数值加到实体的motion(x|y|z)上
      * 如果你想在实体的motion基础上增加，请直接将要添加的motion数值加到实体的motion(x|y|z)上，像这样：
@@ -2821,7 +2859,23 @@ public abstract class Entity extends Location implements Metadatable {
         return true;
     }
 
+    /**
+     * 位置改变后更新实体在世界空间索引中的扇区
+     * <p>
+     * Updates the sector of the entity in the spatial index of the level after its position changed.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected void updateSpatialIndex() {
+        EntitySpatialIndex index = this.level == null ? null : this.level.getEntitySpatialIndex();
+        // 还没加入世界或已经移除的实体不进入索引
+        if (index != null && !this.closed && this.level.getEntity(this.id) == this) {
+            index.update(this);
+        }
+    }
+
     protected void checkChunks() {
+        this.updateSpatialIndex();
         if (this.chunk == null || (this.chunk.getX() != ((int) this.x >> 4)) || this.chunk.getZ() != ((int) this.z >> 4)) {
             if (this.chunk != null) {
                 this.chunk.removeEntity(this);
@@ -2931,6 +2985,10 @@ public abstract class Entity extends Location implements Metadatable {
     }
 
     public boolean teleport(Location location, PlayerTeleportEvent.TeleportCause cause) {
+        if (this.deferCrossLevelTeleport(location, cause)) {
+            return false;
+        }
+
         double yaw = location.yaw;
         double pitch = location.pitch;
 
@@ -2966,6 +3024,50 @@ public abstract class Entity extends Location implements Metadatable {
         return false;
     }
 
+    /**
+     * 在并行世界刻线程上发起的跨世界传送会被推迟到主线程执行，因为它同时修改两个世界。
+     * 此时{@link #teleport(Location, PlayerTeleportEvent.TeleportCause)}返回false，因为传送事件还没有触发，
+     * 传送的结果由{@link #getPendingTeleport()}给出。
+     * <p>
+     * Cross-level teleports started from a parallel level tick thread are deferred to the primary thread,
+     * as they mutate both levels. {@link #teleport(Location, PlayerTeleportEvent.TeleportCause)} then returns false
+     * because the teleport event has not run yet, the outcome is given by {@link #getPendingTeleport()}.
+     *
+     * @return true if the teleport was scheduled on the primary thread
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected boolean deferCrossLevelTeleport(Location location, PlayerTeleportEvent.TeleportCause cause) {
+        if (location.level == null || location.level == this.level || !this.server.isLevelTickThread()) {
+            return false;
+        }
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        this.pendingTeleport = pending;
+        this.server.getScheduler().scheduleTask(null, () -> {
+            boolean teleported = false;
+            try {
+                teleported = this.teleport(location, cause);
+            } finally {
+                if (this.pendingTeleport == pending) {
+                    this.pendingTeleport = null;
+                }
+                pending.complete(teleported);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return 推迟到主线程执行的跨世界传送，完成时给出是否传送成功，没有时为null<br>the cross-level teleport deferred to
+     * the primary thread, completed with whether the entity was teleported, or null if there is none
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public CompletableFuture<Boolean> getPendingTeleport() {
+        return pendingTeleport;
+    }
+
     //return runtime id (changed after restart the server)
     public long getId() {
         return this.id;
@@ -3072,7 +3174,13 @@ public abstract class Entity extends Location implements Metadatable {
         }
 
         this.getDataProperties().put(data);
-        if (send) {
+        if (send && this.level != null && this.level.isEntityDataBatchingEnabled()) {
+            this.dataProperties.markDirty(data.getId());
+            if (data.getId() == DATA_FLAGS_EXTENDED) {
+                this.dataProperties.markDirty(DATA_FLAGS);
+            }
+            this.level.markEntityDataDirty(this);
+        } else if (send) {
             EntityMetadata metadata = new EntityMetadata();
             metadata.put(this.dataProperties.get(data.getId()));
             if (data.getId() == DATA_FLAGS_EXTENDED) {
@@ -2,6 +2,7 @@ package cn.nukkit.entity;
 
 import cn.nukkit.Player;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.PowerNukkitXDifference;
 import cn.nukkit.api.Since;
 import cn.nukkit.entity.data.IntPositionEntityData;
@@ -44,6 +45,13 @@ public class EntityHuman extends EntityHumanType {
         super(chunk, nbt);
     }
 
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public double getTrackingRange() {
+        return 128;
+    }
+
     @Override
     public float getWidth() {
         return 0.6f;
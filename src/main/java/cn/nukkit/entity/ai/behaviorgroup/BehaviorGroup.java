@@ -1,6 +1,7 @@
 package cn.nukkit.entity.ai.behaviorgroup;
 
 import cn.nukkit.Server;
+import cn.nukkit.api.DeprecationDetails;
 import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.entity.EntityIntelligent;
@@ -13,10 +14,14 @@ import cn.nukkit.entity.ai.route.RouteFindingManager;
 import cn.nukkit.entity.ai.route.SimpleRouteFinder;
 import cn.nukkit.entity.ai.sensor.ISensor;
 import cn.nukkit.math.Vector3;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -59,18 +64,41 @@ public class BehaviorGroup implements IBehaviorGroup {
      * 正在运行的行为
      */
     protected final Set<IBehavior> runningBehaviors = new HashSet<>();
+    /**
+     * 核心行为，下标即为其在计时数组中的位置
+     */
+    @Getter(AccessLevel.NONE)
+    protected final IBehavior[] coreBehaviorSlots;
+    /**
+     * 行为，下标即为其在计时数组中的位置
+     */
+    @Getter(AccessLevel.NONE)
+    protected final IBehavior[] behaviorSlots;
+    /**
+     * 传感器，下标即为其在计时数组中的位置
+     */
+    @Getter(AccessLevel.NONE)
+    protected final ISensor[] sensorSlots;
     /**
      * 用于存储核心行为距离上次评估逝去的gt数
      */
-    protected final Map<IBehavior, Integer> coreBehaviorPeriodTimer = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    protected final int[] coreBehaviorPeriodTimer;
     /**
      * 用于存储行为距离上次评估逝去的gt数
      */
-    protected final Map<IBehavior, Integer> behaviorPeriodTimer = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    protected final int[] behaviorPeriodTimer;
     /**
      * 用于存储传感器距离上次刷新逝去的gt数
      */
-    protected final Map<ISensor, Integer> sensorPeriodTimer = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    protected final int[] sensorPeriodTimer;
+    /**
+     * 评估成功的行为，每次评估时复用
+     */
+    @Getter(AccessLevel.NONE)
+    protected final ArrayList<IBehavior> evalSucceed = new ArrayList<>();
     /**
      * 记忆存储器
      */
@@ -100,6 +128,12 @@ public class BehaviorGroup implements IBehaviorGroup {
         this.sensors = sensors;
         this.controllers = controllers;
         this.routeFinder = routeFinder;
+        this.coreBehaviorSlots = coreBehaviors.toArray(new IBehavior[0]);
+        this.behaviorSlots = behaviors.toArray(new IBehavior[0]);
+        this.sensorSlots = sensors.toArray(new ISensor[0]);
+        this.coreBehaviorPeriodTimer = new int[coreBehaviorSlots.length];
+        this.behaviorPeriodTimer = new int[behaviorSlots.length];
+        this.sensorPeriodTimer = new int[sensorSlots.length];
         this.initPeriodTimer();
     }
 
@@ -131,32 +165,29 @@ public class BehaviorGroup implements IBehaviorGroup {
     }
 
     public void collectSensorData(EntityIntelligent entity) {
-        sensorPeriodTimer.forEach((sensor, tick) -> {
-            //刷新gt数
-            sensorPeriodTimer.put(sensor, ++tick);
-            //没到周期就不评估
-            if (sensorPeriodTimer.get(sensor) < sensor.getPeriod()) return;
-            sensorPeriodTimer.put(sensor, 0);
+        for (int i = 0; i < sensorSlots.length; i++) {
+            ISensor sensor = sensorSlots[i];
+            //刷新gt数，没到周期就不评估
+            if (++sensorPeriodTimer[i] < sensor.getPeriod()) continue;
+            sensorPeriodTimer[i] = 0;
             sensor.sense(entity);
-        });
+        }
     }
 
     public void evaluateCoreBehaviors(EntityIntelligent entity) {
-        coreBehaviorPeriodTimer.forEach((coreBehavior, tick) -> {
+        for (int i = 0; i < coreBehaviorSlots.length; i++) {
+            IBehavior coreBehavior = coreBehaviorSlots[i];
             //若已经在运行了，就不需要评估了
-            if (runningCoreBehaviors.contains(coreBehavior)) return;
-            int nextTick = ++tick;
-            //刷新gt数
-            coreBehaviorPeriodTimer.put(coreBehavior, nextTick);
-            //没到周期就不评估
-            if (nextTick < coreBehavior.getPeriod()) return;
-            coreBehaviorPeriodTimer.put(coreBehavior, 0);
+            if (runningCoreBehaviors.contains(coreBehavior)) continue;
+            //刷新gt数，没到周期就不评估
+            if (++coreBehaviorPeriodTimer[i] < coreBehavior.getPeriod()) continue;
+            coreBehaviorPeriodTimer[i] = 0;
             if (coreBehavior.evaluate(entity)) {
                 coreBehavior.onStart(entity);
                 coreBehavior.setBehaviorState(BehaviorState.ACTIVE);
                 runningCoreBehaviors.add(coreBehavior);
             }
-        });
+        }
     }
 
     /**
@@ -166,19 +197,16 @@ public class BehaviorGroup implements IBehaviorGroup {
      */
     public void evaluateBehaviors(EntityIntelligent entity) {
         //存储评估成功的行为（未过滤优先级）
-        var evalSucceed = new HashSet<IBehavior>(behaviors.size());
+        var evalSucceed = this.evalSucceed;
+        evalSucceed.clear();
         int highestPriority = Integer.MIN_VALUE;
-        for (Map.Entry<IBehavior, Integer> entry : behaviorPeriodTimer.entrySet()) {
-            IBehavior behavior = entry.getKey();
+        for (int i = 0; i < behaviorSlots.length; i++) {
+            IBehavior behavior = behaviorSlots[i];
             //若已经在运行了，就不需要评估了
             if (runningBehaviors.contains(behavior)) continue;
-            int tick = entry.getValue();
-            int nextTick = ++tick;
-            //刷新gt数
-            behaviorPeriodTimer.put(behavior, nextTick);
-            //没到周期就不评估
-            if (nextTick < behavior.getPeriod()) continue;
-            behaviorPeriodTimer.put(behavior, 0);
+            //刷新gt数，没到周期就不评估
+            if (++behaviorPeriodTimer[i] < behavior.getPeriod()) continue;
+            behaviorPeriodTimer[i] = 0;
             if (behavior.evaluate(entity)) {
                 if (behavior.getPriority() > highestPriority) {
                     evalSucceed.clear();
@@ -191,8 +219,7 @@ public class BehaviorGroup implements IBehaviorGroup {
         }
         //如果没有评估结果，则返回空
         if (evalSucceed.isEmpty()) return;
-        var first = runningBehaviors.isEmpty() ? null : runningBehaviors.iterator().next();
-        var runningBehaviorPriority = first != null ? first.getPriority() : Integer.MIN_VALUE;
+        var runningBehaviorPriority = runningBehaviors.isEmpty() ? Integer.MIN_VALUE : runningBehaviors.iterator().next().getPriority();
         //如果result的优先级低于当前运行的行为，则不执行
         if (highestPriority < runningBehaviorPriority) {
             //do nothing
@@ -204,6 +231,7 @@ public class BehaviorGroup implements IBehaviorGroup {
             //如果result的优先级和当前运行的行为的优先级一样，则添加result的行为
             addToRunningBehaviors(entity, evalSucceed);
         }
+        evalSucceed.clear();
     }
 
     @Override
@@ -240,7 +268,8 @@ public class BehaviorGroup implements IBehaviorGroup {
         }
         //若不能再移动了，则清除路径信息
         var reachableTarget = routeFinder.getReachableTarget();
-        if (reachableTarget != null && entity.floor().equals(reachableTarget.floor())) {
+        if (reachableTarget != null && entity.getFloorX() == reachableTarget.getFloorX()
+                && entity.getFloorY() == reachableTarget.getFloorY() && entity.getFloorZ() == reachableTarget.getFloorZ()) {
             entity.setMoveTarget(null);
             entity.setMoveDirectionStart(null);
             entity.setMoveDirectionEnd(null);
@@ -268,10 +297,54 @@ public class BehaviorGroup implements IBehaviorGroup {
         return originalDelay;
     }
 
+    /**
+     * 初始化计时，传感器的计时按实体的错开值和传感器的下标错开，避免同一刻评估大量传感器
+     */
     protected void initPeriodTimer() {
-        coreBehaviors.forEach(coreBehavior -> coreBehaviorPeriodTimer.put(coreBehavior, 0));
-        behaviors.forEach(behavior -> behaviorPeriodTimer.put(behavior, 0));
-        sensors.forEach(sensor -> sensorPeriodTimer.put(sensor, 0));
+        Arrays.fill(coreBehaviorPeriodTimer, 0);
+        Arrays.fill(behaviorPeriodTimer, 0);
+        for (int i = 0; i < sensorSlots.length; i++) {
+            int period = sensorSlots[i].getPeriod();
+            sensorPeriodTimer[i] = period > 1 ? Math.floorMod(currentRouteUpdateTick + i, period) : 0;
+        }
+    }
+
+    /**
+     * @return 核心行为计时的副本，修改它不会影响计时<br>a copy of the core behavior timers, changing it does not affect them
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The timers are kept in an array indexed by the behavior slot, this only returns a copy")
+    public Map<IBehavior, Integer> getCoreBehaviorPeriodTimer() {
+        return toTimerMap(coreBehaviorSlots, coreBehaviorPeriodTimer);
+    }
+
+    /**
+     * @return 行为计时的副本，修改它不会影响计时<br>a copy of the behavior timers, changing it does not affect them
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The timers are kept in an array indexed by the behavior slot, this only returns a copy")
+    public Map<IBehavior, Integer> getBehaviorPeriodTimer() {
+        return toTimerMap(behaviorSlots, behaviorPeriodTimer);
+    }
+
+    /**
+     * @return 传感器计时的副本，修改它不会影响计时<br>a copy of the sensor timers, changing it does not affect them
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The timers are kept in an array indexed by the sensor slot, this only returns a copy")
+    public Map<ISensor, Integer> getSensorPeriodTimer() {
+        return toTimerMap(sensorSlots, sensorPeriodTimer);
+    }
+
+    private static <T> Map<T, Integer> toTimerMap(T[] slots, int[] timers) {
+        Map<T, Integer> map = new HashMap<>(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            map.put(slots[i], timers[i]);
+        }
+        return map;
     }
 
 //    protected void clearMemory(Class<? extends IMemory<?>> clazz) {
@@ -300,12 +373,20 @@ public class BehaviorGroup implements IBehaviorGroup {
      * @param entity    评估的实体
      * @param behaviors 要添加的行为
      */
-    protected void addToRunningBehaviors(EntityIntelligent entity, @NotNull Set<IBehavior> behaviors) {
-        behaviors.forEach((behavior) -> {
+    protected void addToRunningBehaviors(EntityIntelligent entity, @NotNull Collection<IBehavior> behaviors) {
+        for (IBehavior behavior : behaviors) {
             behavior.onStart(entity);
             behavior.setBehaviorState(BehaviorState.ACTIVE);
             runningBehaviors.add(behavior);
-        });
+        }
+    }
+
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The evaluated behaviors are no longer collected into a Set",
+            replaceWith = "addToRunningBehaviors(EntityIntelligent, Collection)")
+    protected void addToRunningBehaviors(EntityIntelligent entity, @NotNull Set<IBehavior> behaviors) {
+        this.addToRunningBehaviors(entity, (Collection<IBehavior>) behaviors);
     }
 
     /**
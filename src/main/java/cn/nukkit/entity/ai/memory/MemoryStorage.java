@@ -1,26 +1,62 @@
 package cn.nukkit.entity.ai.memory;
 
+import cn.nukkit.api.DeprecationDetails;
 import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
-import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 记忆存储器的标准实现
+ * <p>
+ * 每种记忆类型在第一次使用时分配一个全局唯一的下标，记忆按下标保存在数组中，读取时不需要哈希查找
  */
 @PowerNukkitXOnly
 @Since("1.6.0.0-PNX")
-@Getter
 @Log4j2
 public class MemoryStorage implements IMemoryStorage {
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+    private static final ClassValue<MemorySlot> SLOTS = new ClassValue<>() {
+        @Override
+        protected MemorySlot computeValue(Class<?> type) {
+            MethodHandle constructor = null;
+            try {
+                constructor = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class));
+            } catch (NoSuchMethodException | IllegalAccessException ignore) {
+                //创建实例时再报告错误
+            }
+            return new MemorySlot(NEXT_SLOT.getAndIncrement(), constructor);
+        }
+    };
+
+    private record MemorySlot(int index, @Nullable MethodHandle constructor) {
+    }
+
+    protected volatile AtomicReferenceArray<IMemory<?>> memories = new AtomicReferenceArray<>(Math.max(16, NEXT_SLOT.get()));
 
-    protected ConcurrentHashMap<Class<? extends IMemory<?>>, IMemory<?>> memoryMap = new ConcurrentHashMap<>();
+    /**
+     * 获取记忆类型的下标，第一次调用时分配
+     *
+     * @param memoryClazz 记忆类型
+     * @return 下标
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static int getSlot(Class<? extends IMemory<?>> memoryClazz) {
+        return SLOTS.get(memoryClazz).index();
+    }
 
     @Override
-    public void put(IMemory<?> memory) {
-        this.memoryMap.put((Class<? extends IMemory<?>>) memory.getClass(), memory);
+    public synchronized void put(IMemory<?> memory) {
+        int index = SLOTS.get(memory.getClass()).index();
+        ensureCapacity(index).set(index, memory);
     }
 
     @Override
@@ -30,16 +66,15 @@ public class MemoryStorage implements IMemoryStorage {
 
     @Override
     public <T extends IMemory<?>, R extends Class<T>> T get(R memoryClazz) {
-        T memory = (T) memoryMap.get(memoryClazz);
-        if (memory == null) {
-            try {
-                memory = memoryClazz.getDeclaredConstructor().newInstance();
-            } catch (Throwable e) {
-                log.error("Failed to create memory instance, declared constructor not found!", e);
+        MemorySlot slot = SLOTS.get(memoryClazz);
+        AtomicReferenceArray<IMemory<?>> memories = this.memories;
+        if (slot.index() < memories.length()) {
+            IMemory<?> memory = memories.get(slot.index());
+            if (memory != null) {
+                return (T) memory;
             }
-            put(memory);
         }
-        return memory;
+        return (T) create(slot);
     }
 
     @Override
@@ -66,4 +101,51 @@ public class MemoryStorage implements IMemoryStorage {
     public <R, T extends IMemory<R>> R getData(Class<T> memoryClazz) {
         return get(memoryClazz).getData();
     }
+
+    /**
+     * @return 所有记忆的副本，修改它不会影响存储器<br>a copy of all memories, changing it does not affect the storage
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "Memories are kept in an array indexed by the memory slot, this only returns a copy",
+            replaceWith = "get(Class)")
+    @SuppressWarnings("unchecked")
+    public ConcurrentHashMap<Class<? extends IMemory<?>>, IMemory<?>> getMemoryMap() {
+        AtomicReferenceArray<IMemory<?>> memories = this.memories;
+        ConcurrentHashMap<Class<? extends IMemory<?>>, IMemory<?>> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < memories.length(); i++) {
+            IMemory<?> memory = memories.get(i);
+            if (memory != null) {
+                map.put((Class<? extends IMemory<?>>) memory.getClass(), memory);
+            }
+        }
+        return map;
+    }
+
+    private synchronized IMemory<?> create(MemorySlot slot) {
+        AtomicReferenceArray<IMemory<?>> memories = ensureCapacity(slot.index());
+        IMemory<?> memory = memories.get(slot.index());
+        if (memory == null) {
+            try {
+                memory = (IMemory<?>) slot.constructor().invoke();
+            } catch (Throwable e) {
+                log.error("Failed to create memory instance, declared constructor not found!", e);
+                return null;
+            }
+            memories.set(slot.index(), memory);
+        }
+        return memory;
+    }
+
+    private AtomicReferenceArray<IMemory<?>> ensureCapacity(int index) {
+        AtomicReferenceArray<IMemory<?>> memories = this.memories;
+        if (index < memories.length()) {
+            return memories;
+        }
+        AtomicReferenceArray<IMemory<?>> grown = new AtomicReferenceArray<>(Math.max(index + 1, memories.length() << 1));
+        for (int i = 0; i < memories.length(); i++) {
+            grown.set(i, memories.get(i));
+        }
+        return this.memories = grown;
+    }
 }
@@ -3,10 +3,17 @@ package cn.nukkit.entity.ai.route;
 import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
+import cn.nukkit.entity.ai.route.data.Node;
+import cn.nukkit.entity.ai.route.data.RouteSearchArena;
+import cn.nukkit.level.Level;
 import cn.nukkit.math.Vector3;
 import org.jetbrains.annotations.NotNull;
 
+import javax.annotation.Nullable;
 import java.security.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
@@ -14,6 +21,7 @@ import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 寻路管理器，所有的寻路任务都应该提交到这个管理器中，管理器负责调度寻路任务，实现资源利用最大化
@@ -23,8 +31,55 @@ import java.util.concurrent.atomic.AtomicLong;
 public class RouteFindingManager {
     private static final AtomicInteger threadCount = new AtomicInteger(0);
     protected static RouteFindingManager INSTANCE = new RouteFindingManager();
+    private static final ThreadLocal<RouteSearchArena> SEARCH_ARENAS = ThreadLocal.withInitial(RouteSearchArena::new);
+    /**
+     * 共享的寻路结果的有效刻数
+     */
+    private static final int SHARED_ROUTE_TICKS = 10;
+    /**
+     * 超过这个数量时清理过期的共享结果
+     */
+    private static final int SHARED_ROUTE_PURGE_SIZE = 256;
     protected final ExecutorService pool;
 
+    private volatile boolean shareRoutes;
+    private final HashMap<RouteKey, SharedRoute> sharedRoutes = new HashMap<>();
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder sharedTasks = new LongAdder();
+    private final AtomicLong averageLatency = new AtomicLong();
+
+    /**
+     * 同一区域出发、使用相同评估器前往同一方块的寻路请求
+     */
+    private record RouteKey(Object evaluator, Level level, int regionX, int y, int regionZ, int targetX, int targetY,
+                            int targetZ) {
+        @Nullable
+        static RouteKey of(RouteFindingTask task) {
+            if (!(task.routeFinder instanceof SimpleFlatAStarRouteFinder finder) || task.start == null || task.target == null) {
+                return null;
+            }
+            Object evaluator = finder.getEvaluatorKey();
+            if (evaluator == null) {
+                return null;
+            }
+            return new RouteKey(evaluator, finder.getLevel(), task.start.getFloorX() >> 2, task.start.getFloorY(),
+                    task.start.getFloorZ() >> 2, task.target.getFloorX(), task.target.getFloorY(), task.target.getFloorZ());
+        }
+    }
+
+    /**
+     * 一次共享的寻路，完成前到达的相同请求会等待它的结果
+     */
+    private static final class SharedRoute {
+        private final List<RouteFindingTask> followers = new ArrayList<>(0);
+        private boolean done;
+        private int tick;
+        private List<Node> route;
+        private boolean reachable;
+        private Vector3 reachableTarget;
+    }
+
     protected RouteFindingManager() {
         pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), new RouteFindingPoolThreadFactory(), null, true);
     }
@@ -33,12 +88,186 @@ public class RouteFindingManager {
         return INSTANCE;
     }
 
+    /**
+     * 获取当前线程复用的寻路存储，寻路线程之外的线程使用ThreadLocal中的存储
+     * <p>
+     * Gets the search storage reused by the current thread, threads other than the route finding threads use one kept
+     * in a ThreadLocal.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static RouteSearchArena getSearchArena() {
+        return Thread.currentThread() instanceof RouteFindingThread thread ? thread.searchArena : SEARCH_ARENAS.get();
+    }
+
     public void submit(@NotNull RouteFindingTask task) {
         task.setStartTime(Server.getInstance().getNextTick()).setFinished(false);
+        task.manager = this;
+        task.submitTime = System.nanoTime();
+        pendingTasks.incrementAndGet();
         ((ForkJoinPool) pool).submit(task);
     }
 
+    /**
+     * 设置是否共享寻路结果。开启后，从同一个4x4区域出发、使用相同评估器前往同一方块的请求只会寻路一次，
+     * 其他实体从自己的位置接上这条路径
+     * <p>
+     * Sets whether route results are shared. When enabled, requests starting in the same 4x4 region and going to the
+     * same block with the same evaluator are searched once, the other entities join that path from their own position.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void setShareRoutes(boolean shareRoutes) {
+        this.shareRoutes = shareRoutes;
+        if (!shareRoutes) {
+            synchronized (sharedRoutes) {
+                sharedRoutes.values().removeIf(route -> route.done);
+            }
+        }
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isShareRoutes() {
+        return shareRoutes;
+    }
+
+    /**
+     * @return 已提交但还没有完成的寻路任务数量<br>the number of submitted route tasks that are not finished yet
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public int getPendingTaskCount() {
+        return pendingTasks.get();
+    }
+
+    /**
+     * @return 完成的寻路任务数量<br>the number of finished route tasks
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public long getCompletedTaskCount() {
+        return completedTasks.sum();
+    }
+
+    /**
+     * @return 使用共享结果完成的寻路任务数量<br>the number of route tasks finished with a shared result
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public long getSharedTaskCount() {
+        return sharedTasks.sum();
+    }
+
+    /**
+     * @return 从提交到完成的平均毫秒数（指数移动平均）<br>the average milliseconds from submitting to finishing, as an
+     * exponential moving average
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public double getAverageLatency() {
+        return averageLatency.get() / 1_000_000d;
+    }
+
+    /**
+     * 在寻路线程中执行任务，开启共享时合并相同的请求
+     * <p>
+     * Runs the task on a route finding thread, merging identical requests when sharing is enabled.
+     */
+    protected void execute(RouteFindingTask task) {
+        RouteKey key = shareRoutes ? RouteKey.of(task) : null;
+        if (key == null) {
+            searchAlone(task);
+            return;
+        }
+
+        int tick = Server.getInstance().getTick();
+        SharedRoute shared;
+        synchronized (sharedRoutes) {
+            shared = sharedRoutes.get(key);
+            if (shared != null && !shared.done) {
+                // 相同的请求正在寻路，完成后由它处理
+                shared.followers.add(task);
+                return;
+            }
+            if (shared == null || tick - shared.tick > SHARED_ROUTE_TICKS) {
+                shared = new SharedRoute();
+                sharedRoutes.put(key, shared);
+            }
+        }
+        if (shared.done) {
+            if (!joinSharedRoute(shared, task)) {
+                searchAlone(task);
+            }
+            return;
+        }
+
+        boolean found = false;
+        try {
+            found = task.routeFinder.search();
+        } finally {
+            synchronized (sharedRoutes) {
+                if (found) {
+                    shared.route = task.routeFinder.getRoute();
+                    shared.reachable = task.routeFinder.isReachable();
+                    shared.reachableTarget = task.routeFinder.getReachableTarget();
+                    shared.tick = Server.getInstance().getTick();
+                    shared.done = true;
+                } else {
+                    sharedRoutes.remove(key);
+                }
+                if (sharedRoutes.size() > SHARED_ROUTE_PURGE_SIZE) {
+                    int now = Server.getInstance().getTick();
+                    sharedRoutes.values().removeIf(route -> route.done && now - route.tick > SHARED_ROUTE_TICKS);
+                }
+            }
+            complete(task, false);
+            // 寻路结束后不会再有新的等待者
+            for (RouteFindingTask follower : shared.followers) {
+                if (!found || !joinSharedRoute(shared, follower)) {
+                    // 重新提交需要自己寻路的等待者，而不是在这个线程上依次寻路
+                    pool.execute(() -> searchAlone(follower));
+                }
+            }
+            shared.followers.clear();
+        }
+    }
+
+    /**
+     * @return 是否接上了共享的路径，失败时任务还没有完成<br>whether the shared route was joined, the task is not
+     * finished yet on failure
+     */
+    private boolean joinSharedRoute(SharedRoute shared, RouteFindingTask task) {
+        boolean applied = ((SimpleFlatAStarRouteFinder) task.routeFinder).applySharedRoute(shared.route, shared.reachable, shared.reachableTarget);
+        if (applied) {
+            complete(task, true);
+        }
+        return applied;
+    }
+
+    private void searchAlone(RouteFindingTask task) {
+        try {
+            task.routeFinder.search();
+        } finally {
+            complete(task, false);
+        }
+    }
+
+    private void complete(RouteFindingTask task, boolean shared) {
+        long latency = System.nanoTime() - task.submitTime;
+        averageLatency.accumulateAndGet(latency, (average, sample) -> average == 0 ? sample : average + (sample - average) / 16);
+        pendingTasks.decrementAndGet();
+        completedTasks.increment();
+        if (shared) {
+            sharedTasks.increment();
+        }
+        task.setFinished(true);
+        task.onFinish.onFinish(task);
+    }
+
     public static final class RouteFindingThread extends ForkJoinWorkerThread {
+        private final RouteSearchArena searchArena = new RouteSearchArena();
+
         /**
          * Creates a ForkJoinWorkerThread operating in the given pool.
          *
@@ -77,6 +306,8 @@ public class RouteFindingManager {
         private final AtomicLong startTime;
         private final AtomicBoolean finished;
         private final FinishCallback onFinish;
+        private RouteFindingManager manager;
+        private long submitTime;
         private Vector3 start;
         private Vector3 target;
 
@@ -127,11 +358,15 @@ public class RouteFindingManager {
 
         @Override
         protected void compute() {
+            if (manager == null) {
+                // 没有通过submit提交的任务
+                manager = getInstance();
+                submitTime = System.nanoTime();
+                manager.pendingTasks.incrementAndGet();
+            }
             routeFinder.setStart(start);
             routeFinder.setTarget(target);
-            routeFinder.search();
-            setFinished(true);
-            onFinish.onFinish(this);
+            manager.execute(this);
         }
 
         public interface FinishCallback {
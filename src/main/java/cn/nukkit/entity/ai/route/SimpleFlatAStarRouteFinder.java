@@ -1,22 +1,40 @@
 package cn.nukkit.entity.ai.route;
 
 import cn.nukkit.Player;
+import cn.nukkit.api.DeprecationDetails;
 import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.block.Block;
 import cn.nukkit.entity.EntityIntelligent;
 import cn.nukkit.entity.ai.route.data.Node;
+import cn.nukkit.entity.ai.route.data.RouteSearchArena;
 import cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator;
 import cn.nukkit.level.Level;
+import cn.nukkit.math.NukkitMath;
 import cn.nukkit.math.Vector3;
 import cn.nukkit.math.VectorMath;
 import cn.nukkit.network.protocol.SpawnParticleEffectPacket;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
-import java.util.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * 标准A*寻路实现，性能不佳
@@ -32,11 +50,53 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
     protected final static int DIRECT_MOVE_COST = 10;
     //倾斜移动成本
     protected final static int OBLIQUE_MOVE_COST = 14;
+    //使用共享路径时最多跳过的节点数
+    protected final static int SHARED_ROUTE_LOOKAHEAD = 6;
+
+    /**
+     * {@link #arena}中开放节点的视图，只在寻路期间有效
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The open nodes are kept in the RouteSearchArena, this is only a view of them while searching",
+            replaceWith = "arena")
+    protected final PriorityQueue<Node> openList = new OpenListView();
+
+    /**
+     * {@link #arena}中已关闭节点的视图，按关闭顺序排列，只在寻路期间有效
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The closed nodes are kept in the RouteSearchArena, this is only a view of them while searching",
+            replaceWith = "arena")
+    protected final ArrayList<Node> closeList = new CloseListView();
+
+    /**
+     * {@link #arena}中已关闭坐标的视图，只在寻路期间有效
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The closed nodes are kept in the RouteSearchArena, this is only a view of them while searching",
+            replaceWith = "existInCloseList(Vector3)")
+    protected final HashSet<Vector3> closeHashSet = new CloseHashSetView();
 
-    protected final PriorityQueue<Node> openList = new PriorityQueue<>();
+    /**
+     * 当前寻路使用的存储，只在寻路期间有效
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected RouteSearchArena arena;
+
+    /**
+     * 当前寻路的可站立方块缓存编号，为-1时不使用缓存
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected int walkabilityProfile = -1;
 
-    protected final ArrayList<Node> closeList = new ArrayList<>();
-    protected final HashSet<Vector3> closeHashSet = new HashSet<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final WalkabilityCache.StandingEvaluator standingEvaluator = (x, y, z) -> evalStandingBlock(this.level.getTickCachedBlock(x, y, z, false));
 
     protected EntityIntelligent entity;
 
@@ -94,67 +154,79 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
         var currentReachable = true;
         //若实体未处于active状态，则关闭路径平滑
         this.setEnableFloydSmooth(this.entity.isActive());
-        //清空openList和closeList
-        openList.clear();
-        closeList.clear();
-        closeHashSet.clear();
+        //使用当前线程的存储，清空上次寻路留下的节点
+        RouteSearchArena arena = RouteFindingManager.getSearchArena();
+        arena.reset();
+        this.arena = arena;
+        this.walkabilityProfile = WalkabilityCache.getProfile(evalPos.getCacheKey(this.entity));
         //重置寻路深度
         currentSearchDepth = maxSearchDepth;
 
-        //将起点放置到closeList中，以开始寻路
-        //起点没有父节点，且我们不需要计算他的代价
-        Node currentNode = new Node(start, null, 0, 0);
-        var tmpNode = new Node(start, null, 0, 0);
-        closeList.add(tmpNode);
-        closeHashSet.add(tmpNode.getVector3());
-
-        //若当前寻路点没有到达终点
-        while (!isPositionOverlap(currentNode.getVector3(), target)) {
-            //检查是否被中断了
-            if (this.isInterrupt()) {
-                currentSearchDepth = 0;
-                this.searching = false;
-                this.finished = true;
-                this.reachable = false;
-                return false;
+        try {
+            //将起点放置到closeList中，以开始寻路
+            //起点没有父节点，且我们不需要计算他的代价
+            int currentNode = arena.addNode(start.x, start.y, start.z, -1, 0, 0);
+            arena.close(currentNode);
+
+            //若当前寻路点没有到达终点
+            while (!isPositionOverlap(currentNode, target)) {
+                //检查是否被中断了
+                if (this.isInterrupt()) {
+                    currentSearchDepth = 0;
+                    this.searching = false;
+                    this.finished = true;
+                    this.reachable = false;
+                    return false;
+                }
+                //将当前节点周围的有效节点放入openList中
+                putNeighborNodeIntoOpen(currentNode);
+                //若未超出寻路深度，则获取代价最小的一个node并将其设置为currentNode
+                int next = currentSearchDepth > 0 ? arena.poll() : -1;
+                if (next != -1) {
+                    currentSearchDepth--;
+                    currentNode = next;
+                } else {
+                    this.searching = false;
+                    this.finished = true;
+                    currentReachable = false;
+                    break;
+                }
             }
-            //将当前节点周围的有效节点放入openList中
-            putNeighborNodeIntoOpen(currentNode);
-            //若未超出寻路深度，则获取代价最小的一个node并将其设置为currentNode
-            if (openList.peek() != null && currentSearchDepth-- > 0) {
-                closeList.add(currentNode = openList.poll());
-                closeHashSet.add(currentNode.getVector3());
+
+            //如果无法到达，则取最接近终点的一个Node作为尾节点
+            ArrayList<Node> findingPath;
+            if (currentReachable) {
+                reachableTarget = target;
+                findingPath = getPathRoute(currentNode);
+                //因为在前面是否到达终点的检查中我们只粗略检查了坐标的floor值
+                //所以说这里我们还需要将其精确指向到终点
+                Node last = findingPath.get(findingPath.size() - 1);
+                if (!last.getVector3().equals(target)) {
+                    if (findingPath.size() == 2 && findingPath.get(0) == last) {
+                        findingPath.remove(1);
+                    }
+                    findingPath.add(new Node(target, last, 0, 0));
+                }
             } else {
-                this.searching = false;
-                this.finished = true;
-                currentReachable = false;
-                break;
+                int reachableNode = getNearestClosedNode(target);
+                reachableTarget = new Vector3(arena.getX(reachableNode), arena.getY(reachableNode), arena.getZ(reachableNode));
+                findingPath = getPathRoute(reachableNode);
             }
+            //使用floyd平滑路径
+            if (enableFloydSmooth)
+                findingPath = FloydSmooth(findingPath);
+
+            //清空上次的寻路结果
+            this.resetNodes();
+            //重置Node指针
+            this.setNodeIndex(0);
+
+            //写入结果
+            this.addNode(findingPath);
+        } finally {
+            this.arena = null;
         }
 
-        //因为在前面是否到达终点的检查中我们只粗略检查了坐标的floor值
-        //所以说这里我们还需要将其精确指向到终点
-        Node targetNode = currentNode;
-        if (!currentNode.getVector3().equals(target)) {
-            targetNode = new Node(target, currentNode, 0, 0);
-        }
-
-        //如果无法到达，则取最接近终点的一个Node作为尾节点
-        Node reachableNode = null;
-        reachableTarget = currentReachable ? target : (reachableNode = getNearestNodeFromCloseList(target)).getVector3();
-        ArrayList<Node> findingPath = currentReachable ? getPathRoute(targetNode) : getPathRoute(reachableNode);
-        //使用floyd平滑路径
-        if (enableFloydSmooth)
-            findingPath = FloydSmooth(findingPath);
-
-        //清空上次的寻路结果
-        this.resetNodes();
-        //重置Node指针
-        this.setNodeIndex(0);
-
-        //写入结果
-        this.addNode(findingPath);
-
         //debug only
 //        findingPath.forEach(node -> {
 //            sendParticle("minecraft:balloon_gas_particle", node.getVector3(), Server.getInstance().getOnlinePlayers().values().toArray(Player.EMPTY_ARRAY));
@@ -167,6 +239,63 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
         return true;
     }
 
+    /**
+     * 返回共享寻路结果时区分评估器的键，评估器的结果不能缓存时为null，此时不共享
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public Object getEvaluatorKey() {
+        return evalPos.getCacheKey(this.entity);
+    }
+
+    /**
+     * 使用其他实体的寻路结果作为这次寻路的结果 <br/>
+     * 从起点出发，在共享路径的前几个节点中选择最远的没有障碍的节点，接上之后的路径
+     *
+     * @param route           共享的路径
+     * @param reachable       共享的终点是否可到达
+     * @param reachableTarget 共享的可到达终点
+     * @return 是否成功，失败时需要自己寻路
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected boolean applySharedRoute(List<Node> route, boolean reachable, Vector3 reachableTarget) {
+        if (route.size() < 2) {
+            return false;
+        }
+        int join = -1;
+        for (int i = Math.min(route.size() - 1, SHARED_ROUTE_LOOKAHEAD); i >= 1; i--) {
+            if (!hasBarrier(start, route.get(i).getVector3())) {
+                join = i;
+                break;
+            }
+        }
+        if (join == -1) {
+            return false;
+        }
+
+        ArrayList<Node> path = new ArrayList<>(route.size() - join + 1);
+        Node parent = new Node(start.clone(), null, 0, 0);
+        path.add(parent);
+        for (int i = join; i < route.size(); i++) {
+            Node node = route.get(i);
+            //可到达时路径的终点指向自己的终点
+            Vector3 pos = reachable && i == route.size() - 1 ? target.clone() : node.getVector3().clone();
+            parent = new Node(pos, parent, node.getG(), node.getH());
+            path.add(parent);
+        }
+
+        this.resetNodes();
+        this.setNodeIndex(0);
+        this.addNode(path);
+        this.reachableTarget = reachable ? target : reachableTarget;
+        this.reachable = reachable;
+        this.finished = true;
+        this.searching = false;
+        return true;
+    }
+
     //debug only
     private void sendParticle(String identifier, Vector3 pos, Player[] showPlayers) {
         Arrays.stream(showPlayers).forEach(player -> {
@@ -192,203 +321,168 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
      * @return cost
      */
     protected int getBlockMoveCostAt(@NotNull Level level, Vector3 pos) {
-        return level.getTickCachedBlock(pos).getWalkThroughExtraCost() + level.getTickCachedBlock(pos.add(0, -1, 0)).getWalkThroughExtraCost();
+        return getBlockMoveCostAt(level, pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+    }
+
+    /**
+     * 获取指定方块坐标的移动Cost
+     *
+     * @return cost
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected int getBlockMoveCostAt(@NotNull Level level, int x, int y, int z) {
+        return level.getTickCachedBlock(x, y, z).getWalkThroughExtraCost() + level.getTickCachedBlock(x, y - 1, z).getWalkThroughExtraCost();
     }
 
     /**
      * 将一个节点周围的有效节点放入OpenList中
      *
-     * @param node 节点
+     * @param node 节点在{@link #arena}中的下标
      */
-    protected void putNeighborNodeIntoOpen(@NotNull Node node) {
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected void putNeighborNodeIntoOpen(int node) {
         boolean N, E, S, W;
 
-        Vector3 vector3 = new Vector3(node.getVector3().getFloorX() + 0.5, node.getVector3().getY(), node.getVector3().getFloorZ() + 0.5);
-
-        double offsetY;
-
-        if ((offsetY = getAvailableHorizontalOffset(vector3)) != -384) {
-            if (Math.abs(offsetY) > 0.25) {
-                Vector3 vec = vector3.add(1, offsetY, 0);
-                if (!existInCloseList(vec)) {
-                    Node nodeNear = getOpenNode(vec);
-                    if (nodeNear == null) {
-                        this.openList.offer(new Node(vec, node, node.getG(), calH(vec, target)));
-                    } else {
-                        if (node.getG() < nodeNear.getG()) {
-                            nodeNear.setParent(node);
-                            nodeNear.setG(node.getG());
-                            nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                        }
-                    }
+        double x = NukkitMath.floorDouble(arena.getX(node)) + 0.5;
+        double y = arena.getY(node);
+        double z = NukkitMath.floorDouble(arena.getZ(node)) + 0.5;
+
+        int offsetY;
+
+        if ((offsetY = getAvailableHorizontalOffset(x, y, z)) != -384) {
+            if (offsetY != 0) {
+                int near = arena.getNode(x + 1, y + offsetY, z);
+                if (near == -1 || !arena.isClosed(near)) {
+                    offerNode(node, near, x + 1, y + offsetY, z, arena.getG(node));
                 }
             }
         }
 
-        if (E = ((offsetY = getAvailableHorizontalOffset(vector3.add(1, 0, 0))) != -384)) {
-            Vector3 vec = vector3.add(1, offsetY, 0);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + DIRECT_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (E = ((offsetY = getAvailableHorizontalOffset(x + 1, y, z)) != -384)) {
+            openNeighbor(node, x + 1, y + offsetY, z, DIRECT_MOVE_COST);
         }
 
-        if (S = ((offsetY = getAvailableHorizontalOffset(vector3.add(0, 0, 1))) != -384)) {
-            Vector3 vec = vector3.add(0, offsetY, 1);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + DIRECT_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (S = ((offsetY = getAvailableHorizontalOffset(x, y, z + 1)) != -384)) {
+            openNeighbor(node, x, y + offsetY, z + 1, DIRECT_MOVE_COST);
         }
 
-        if (W = ((offsetY = getAvailableHorizontalOffset(vector3.add(-1, 0, 0))) != -384)) {
-            Vector3 vec = vector3.add(-1, offsetY, 0);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + DIRECT_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (W = ((offsetY = getAvailableHorizontalOffset(x - 1, y, z)) != -384)) {
+            openNeighbor(node, x - 1, y + offsetY, z, DIRECT_MOVE_COST);
         }
 
-        if (N = ((offsetY = getAvailableHorizontalOffset(vector3.add(0, 0, -1))) != -384)) {
-            Vector3 vec = vector3.add(0, offsetY, -1);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + DIRECT_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (N = ((offsetY = getAvailableHorizontalOffset(x, y, z - 1)) != -384)) {
+            openNeighbor(node, x, y + offsetY, z - 1, DIRECT_MOVE_COST);
         }
 
         //我们不允许实体在上下坡的时候斜着走，因为这容易导致实体卡脚（原版也是这个逻辑）
         //接触水的时候就不需要这么判断了
-        if (N && E && (((offsetY = getAvailableHorizontalOffset(vector3.add(1, 0, -1))) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
-            Vector3 vec = vector3.add(1, offsetY, -1);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + OBLIQUE_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (N && E && (((offsetY = getAvailableHorizontalOffset(x + 1, y, z - 1)) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
+            openNeighbor(node, x + 1, y + offsetY, z - 1, OBLIQUE_MOVE_COST);
         }
 
-        if (E && S && (((offsetY = getAvailableHorizontalOffset(vector3.add(1, 0, 1))) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
-            Vector3 vec = vector3.add(1, offsetY, 1);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + OBLIQUE_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (E && S && (((offsetY = getAvailableHorizontalOffset(x + 1, y, z + 1)) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
+            openNeighbor(node, x + 1, y + offsetY, z + 1, OBLIQUE_MOVE_COST);
         }
 
-        if (W && S && (((offsetY = getAvailableHorizontalOffset(vector3.add(-1, 0, 1))) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
-            Vector3 vec = vector3.add(-1, offsetY, 1);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + OBLIQUE_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (W && S && (((offsetY = getAvailableHorizontalOffset(x - 1, y, z + 1)) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
+            openNeighbor(node, x - 1, y + offsetY, z + 1, OBLIQUE_MOVE_COST);
         }
 
-        if (W && N && (((offsetY = getAvailableHorizontalOffset(vector3.add(-1, 0, -1))) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
-            Vector3 vec = vector3.add(-1, offsetY, -1);
-            if (!existInCloseList(vec)) {
-                var cost = getBlockMoveCostAt(level, vec) + OBLIQUE_MOVE_COST + node.getG();
-                Node nodeNear = getOpenNode(vec);
-                if (nodeNear == null) {
-                    this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                } else {
-                    if (cost < nodeNear.getG()) {
-                        nodeNear.setParent(node);
-                        nodeNear.setG(cost);
-                        nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                    }
-                }
-            }
+        if (W && N && (((offsetY = getAvailableHorizontalOffset(x - 1, y, z - 1)) == 0) || (offsetY != -384 && entity.isTouchingWater()))) {
+            openNeighbor(node, x - 1, y + offsetY, z - 1, OBLIQUE_MOVE_COST);
         }
     }
 
-    protected Node getOpenNode(Vector3 vector2) {
-        for (Node node : this.openList) {
-            if (vector2.equals(node.getVector3())) {
-                return node;
-            }
+    /**
+     * 将一个节点周围的有效节点放入OpenList中
+     *
+     * @param node 节点，不在{@link #arena}中时先加入
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The nodes are kept in the RouteSearchArena and referenced by index",
+            replaceWith = "putNeighborNodeIntoOpen(int)")
+    protected void putNeighborNodeIntoOpen(@NotNull Node node) {
+        putNeighborNodeIntoOpen(addToArena(node));
+    }
+
+    /**
+     * 如果相邻坐标没有关闭，计算移动到它的代价并放入OpenList
+     *
+     * @param parent   父节点下标
+     * @param moveCost 不含方块代价的移动代价
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected void openNeighbor(int parent, double x, double y, double z, int moveCost) {
+        int near = arena.getNode(x, y, z);
+        if (near != -1 && arena.isClosed(near)) {
+            return;
         }
+        int cost = getBlockMoveCostAt(level, NukkitMath.floorDouble(x), NukkitMath.floorDouble(y), NukkitMath.floorDouble(z)) + moveCost + arena.getG(parent);
+        offerNode(parent, near, x, y, z, cost);
+    }
 
-        return null;
+    /**
+     * 将坐标放入OpenList，已经在OpenList中时如果代价更低则更新其父节点
+     *
+     * @param parent 父节点下标
+     * @param near   坐标已有的节点下标，没有时为-1
+     * @param cost   从起点到这个坐标的代价G
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected void offerNode(int parent, int near, double x, double y, double z, int cost) {
+        if (near == -1) {
+            arena.push(arena.addNode(x, y, z, parent, cost, calH(x, y, z, target)));
+        } else if (cost < arena.getG(near)) {
+            arena.update(near, parent, cost);
+            arena.push(near);
+        }
+    }
+
+    /**
+     * @return 坐标所在方块的开放节点的副本，修改它不会影响寻路，没有时为null
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The nodes are kept in the RouteSearchArena, this only returns a copy",
+            replaceWith = "existInOpenList(Vector3)")
+    protected Node getOpenNode(Vector3 vector2) {
+        if (arena == null) {
+            return null;
+        }
+        int node = arena.getNode(vector2.x, vector2.y, vector2.z);
+        return node == -1 || arena.isClosed(node) ? null : toNode(node);
     }
 
     protected boolean existInOpenList(Vector3 vector2) {
-        return getOpenNode(vector2) != null;
+        if (arena == null) {
+            return false;
+        }
+        int node = arena.getNode(vector2.x, vector2.y, vector2.z);
+        return node != -1 && !arena.isClosed(node);
     }
 
+    /**
+     * @return 坐标所在方块的已关闭节点的副本，没有时为null
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The nodes are kept in the RouteSearchArena, this only returns a copy",
+            replaceWith = "existInCloseList(Vector3)")
     protected Node getCloseNode(Vector3 vector2) {
-        for (Node node : this.closeList) {
-            if (vector2.equals(node.getVector3())) {
-                return node;
-            }
+        if (arena == null) {
+            return null;
         }
-        return null;
+        int node = arena.getNode(vector2.x, vector2.y, vector2.z);
+        return node == -1 || !arena.isClosed(node) ? null : toNode(node);
     }
 
     protected boolean existInCloseList(Vector3 vector2) {
-        return closeHashSet.contains(vector2);
+        return arena != null && arena.isClosed(vector2.x, vector2.y, vector2.z);
     }
 
 
@@ -397,12 +491,18 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
      * 默认使用对角线+直线距离
      */
     protected int calH(Vector3 start, Vector3 target) {
+        return calH(start.x, start.y, start.z, target);
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected int calH(double x, double y, double z, Vector3 target) {
         //使用DIRECT_MOVE_COST和OBLIQUE_MOVE_COST计算代价
         //计算对角线距离
-        int obliqueCost = (int) (Math.abs(Math.min(target.x - start.x, target.z - start.z)) * OBLIQUE_MOVE_COST);
+        int obliqueCost = (int) (Math.abs(Math.min(target.x - x, target.z - z)) * OBLIQUE_MOVE_COST);
         //计算剩余直线距离
-        int directCost = (int) ((Math.abs(Math.max(target.x - start.x, target.z - start.z)) - Math.abs(Math.min(target.x - start.x, target.z - start.z))) * DIRECT_MOVE_COST);
-        return obliqueCost + directCost + (int) (Math.abs(target.y - start.y) * DIRECT_MOVE_COST);
+        int directCost = (int) ((Math.abs(Math.max(target.x - x, target.z - z)) - Math.abs(Math.min(target.x - x, target.z - z))) * DIRECT_MOVE_COST);
+        return obliqueCost + directCost + (int) (Math.abs(target.y - y) * DIRECT_MOVE_COST);
     }
 
     /**
@@ -444,13 +544,39 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
      * @return 指定坐标可到达的最高点 (limit=4)
      */
     protected int getAvailableHorizontalOffset(Vector3 vector3) {
-        var block = getHighestUnder(vector3, 4);
-        if (block != null) {
-            return block.getFloorY() - vector3.getFloorY() + 1;
+        return getAvailableHorizontalOffset(vector3.x, vector3.y, vector3.z);
+    }
+
+    /**
+     * @return 指定坐标可到达的最高点 (limit=4)，没有时为-384
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected int getAvailableHorizontalOffset(double x, double y, double z) {
+        int blockX = NukkitMath.floorDouble(x);
+        int blockY = NukkitMath.floorDouble(y);
+        int blockZ = NukkitMath.floorDouble(z);
+        for (int standingY = blockY; standingY >= blockY - 4; standingY--) {
+            if (isStandingBlock(blockX, standingY, blockZ)) {
+                return standingY - blockY + 1;
+            }
         }
         return -384;
     }
 
+    /**
+     * 指定方块上面是否可作为一个有效的节点，世界启用了可站立方块缓存且评估器允许时使用缓存
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected boolean isStandingBlock(int x, int y, int z) {
+        WalkabilityCache cache = level.getWalkabilityCache();
+        if (walkabilityProfile == -1 || cache == null) {
+            return standingEvaluator.evalStandingBlock(x, y, z);
+        }
+        return cache.isStandingBlock(walkabilityProfile, x, y, z, standingEvaluator);
+    }
+
     protected boolean hasBarrier(Node node1, Node node2) {
         return hasBarrier(node1.getVector3(), node2.getVector3());
     }
@@ -555,11 +681,40 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
         return array;
     }
 
+    /**
+     * 将节点链转换成List<Node>样式的路径信息
+     *
+     * @param end 尾节点在{@link #arena}中的下标
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected ArrayList<Node> getPathRoute(int end) {
+        IntArrayList chain = new IntArrayList();
+        for (int node = end; node != -1; node = arena.getParent(node)) {
+            chain.add(node);
+        }
+        ArrayList<Node> nodes = new ArrayList<>(chain.size() + 1);
+        Node parent = null;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            int node = chain.getInt(i);
+            parent = new Node(new Vector3(arena.getX(node), arena.getY(node), arena.getZ(node)), parent, arena.getG(node), arena.getH(node));
+            nodes.add(parent);
+        }
+        if (nodes.size() == 1) {
+            nodes.add(parent);
+        }
+        return nodes;
+    }
+
     /**
      * 将Node链转换成List<Node>样式的路径信息
      *
-     * @param end 列表尾节点
+     * @param end 列表尾节点，为null时使用最后关闭的节点
      */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The nodes are kept in the RouteSearchArena and referenced by index",
+            replaceWith = "getPathRoute(int)")
     protected ArrayList<Node> getPathRoute(@Nullable Node end) {
         ArrayList<Node> nodes = new ArrayList<>();
         if (end == null)
@@ -575,23 +730,52 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
         }
         Collections.reverse(nodes);
         return nodes;
-
     }
 
     /**
-     * 获取接近指定坐标的最近的Node
+     * 获取接近指定坐标的最近的已关闭节点
+     *
+     * @return 节点在{@link #arena}中的下标
      */
-    protected Node getNearestNodeFromCloseList(Vector3 vector3) {
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected int getNearestClosedNode(Vector3 vector3) {
         double min = Double.MAX_VALUE;
-        Node node = null;
-        for (Node n : closeList) {
-            double distanceSquared = n.getVector3().floor().distanceSquared(vector3.floor());
+        int nearest = -1;
+        int targetX = vector3.getFloorX();
+        int targetY = vector3.getFloorY();
+        int targetZ = vector3.getFloorZ();
+        for (int node = 0, size = arena.size(); node < size; node++) {
+            if (!arena.isClosed(node)) {
+                continue;
+            }
+            double dx = NukkitMath.floorDouble(arena.getX(node)) - targetX;
+            double dy = NukkitMath.floorDouble(arena.getY(node)) - targetY;
+            double dz = NukkitMath.floorDouble(arena.getZ(node)) - targetZ;
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
             if (distanceSquared < min) {
                 min = distanceSquared;
-                node = n;
+                nearest = node;
             }
         }
-        return node;
+        return nearest;
+    }
+
+    /**
+     * 获取接近指定坐标的最近的Node
+     *
+     * @return 节点的副本，带有到起点的父节点链
+     */
+    @Deprecated
+    @DeprecationDetails(by = "PowerNukkitX", since = "1.19.21-r4",
+            reason = "The nodes are kept in the RouteSearchArena and referenced by index",
+            replaceWith = "getNearestClosedNode(Vector3)")
+    protected Node getNearestNodeFromCloseList(Vector3 vector3) {
+        if (arena == null) {
+            return null;
+        }
+        int node = getNearestClosedNode(vector3);
+        return node == -1 ? null : toNode(node);
     }
 
     /**
@@ -603,4 +787,378 @@ public class SimpleFlatAStarRouteFinder extends SimpleRouteFinder {
                 && vector2.getFloorZ() == vector2_.getFloorZ()
                 && vector2.getFloorY() == vector2_.getFloorY();
     }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected boolean isPositionOverlap(int node, Vector3 vector2) {
+        return NukkitMath.floorDouble(arena.getX(node)) == vector2.getFloorX()
+                && NukkitMath.floorDouble(arena.getZ(node)) == vector2.getFloorZ()
+                && NukkitMath.floorDouble(arena.getY(node)) == vector2.getFloorY();
+    }
+    /**
+     * @return 节点的副本，带有到起点的父节点链
+     */
+    private Node toNode(int node) {
+        ArrayList<Node> path = getPathRoute(node);
+        return path.get(path.size() - 1);
+    }
+
+    /**
+     * @return 节点所在方块在{@link #arena}中的下标，没有时为-1
+     */
+    private int indexOf(@Nullable Node node) {
+        if (node == null || arena == null) {
+            return -1;
+        }
+        Vector3 pos = node.getVector3();
+        return arena.getNode(pos.x, pos.y, pos.z);
+    }
+
+    /**
+     * 把节点加入{@link #arena}，不会放入开放列表，节点所在方块已经有节点时返回已有的节点
+     *
+     * @return 节点下标
+     */
+    private int addToArena(Node node) {
+        int index = indexOf(node);
+        if (index != -1) {
+            return index;
+        }
+        RouteSearchArena arena = requireArena();
+        Vector3 pos = node.getVector3();
+        return arena.addNode(pos.x, pos.y, pos.z, indexOf(node.getParent()), node.getG(), node.getH());
+    }
+
+    private RouteSearchArena requireArena() {
+        if (arena == null) {
+            throw new IllegalStateException("The nodes are only available while searching");
+        }
+        return arena;
+    }
+
+    private List<Node> openNodes() {
+        ArrayList<Node> nodes = new ArrayList<>();
+        if (arena != null) {
+            for (int node = 0, size = arena.size(); node < size; node++) {
+                if (!arena.isClosed(node)) {
+                    nodes.add(toNode(node));
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private List<Node> closedNodes() {
+        ArrayList<Node> nodes = new ArrayList<>();
+        if (arena != null) {
+            for (int i = 0, count = arena.getClosedCount(); i < count; i++) {
+                nodes.add(toNode(arena.getClosed(i)));
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * {@link #openList}的实现。放入的节点加入{@link #arena}，取出的节点会被关闭，清空时清空整个arena，其他修改不受支持。
+     * 读取到的节点都是副本，修改它们不会影响寻路。
+     */
+    private final class OpenListView extends PriorityQueue<Node> {
+        @Override
+        public boolean offer(Node node) {
+            RouteSearchArena arena = requireArena();
+            Vector3 pos = node.getVector3();
+            int parent = indexOf(node.getParent());
+            int near = arena.getNode(pos.x, pos.y, pos.z);
+            if (near == -1) {
+                arena.push(arena.addNode(pos.x, pos.y, pos.z, parent, node.getG(), node.getH()));
+            } else if (!arena.isClosed(near) && node.getG() < arena.getG(near)) {
+                arena.update(near, parent, node.getG());
+                arena.push(near);
+            }
+            return true;
+        }
+
+        @Override
+        public Node poll() {
+            int node = arena == null ? -1 : arena.poll();
+            return node == -1 ? null : toNode(node);
+        }
+
+        @Override
+        public Node peek() {
+            int node = arena == null ? -1 : arena.peek();
+            return node == -1 ? null : toNode(node);
+        }
+
+        @Override
+        public int size() {
+            return arena == null ? 0 : arena.size() - arena.getClosedCount();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Node node && existInOpenList(node.getVector3());
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return Collections.unmodifiableList(openNodes()).iterator();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return openNodes().toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return openNodes().toArray(a);
+        }
+
+        @Override
+        public Spliterator<Node> spliterator() {
+            return openNodes().spliterator();
+        }
+
+        @Override
+        public void forEach(Consumer<? super Node> action) {
+            openNodes().forEach(action);
+        }
+
+        @Override
+        public void clear() {
+            if (arena != null) {
+                arena.reset();
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Node> filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * {@link #closeList}的实现。加入的节点在{@link #arena}中关闭，清空时清空整个arena，其他修改不受支持。
+     * 读取到的节点都是副本。
+     */
+    private final class CloseListView extends ArrayList<Node> {
+        @Override
+        public boolean add(Node node) {
+            requireArena().close(addToArena(node));
+            return true;
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Node> c) {
+            for (Node node : c) {
+                add(node);
+            }
+            return !c.isEmpty();
+        }
+
+        @Override
+        public Node get(int index) {
+            Objects.checkIndex(index, size());
+            return toNode(arena.getClosed(index));
+        }
+
+        @Override
+        public int size() {
+            return arena == null ? 0 : arena.getClosedCount();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Node node && existInCloseList(node.getVector3());
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return Collections.unmodifiableList(closedNodes()).iterator();
+        }
+
+        @Override
+        public ListIterator<Node> listIterator() {
+            return Collections.unmodifiableList(closedNodes()).listIterator();
+        }
+
+        @Override
+        public ListIterator<Node> listIterator(int index) {
+            return Collections.unmodifiableList(closedNodes()).listIterator(index);
+        }
+
+        @Override
+        public List<Node> subList(int fromIndex, int toIndex) {
+            return Collections.unmodifiableList(closedNodes()).subList(fromIndex, toIndex);
+        }
+
+        @Override
+        public Object[] toArray() {
+            return closedNodes().toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return closedNodes().toArray(a);
+        }
+
+        @Override
+        public Spliterator<Node> spliterator() {
+            return closedNodes().spliterator();
+        }
+
+        @Override
+        public void forEach(Consumer<? super Node> action) {
+            closedNodes().forEach(action);
+        }
+
+        @Override
+        public void clear() {
+            if (arena != null) {
+                arena.reset();
+            }
+        }
+
+        @Override
+        public void add(int index, Node element) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Node set(int index, Node element) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Node remove(int index) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Node> filter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * {@link #closeHashSet}的实现。加入的坐标在{@link #arena}中关闭，清空时清空整个arena，其他修改不受支持。
+     */
+    private final class CloseHashSetView extends HashSet<Vector3> {
+        @Override
+        public boolean add(Vector3 pos) {
+            RouteSearchArena arena = requireArena();
+            int node = arena.getNode(pos.x, pos.y, pos.z);
+            if (node == -1) {
+                node = arena.addNode(pos.x, pos.y, pos.z, -1, 0, 0);
+            } else if (arena.isClosed(node)) {
+                return false;
+            }
+            arena.close(node);
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Vector3 pos && existInCloseList(pos);
+        }
+
+        @Override
+        public int size() {
+            return arena == null ? 0 : arena.getClosedCount();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public Iterator<Vector3> iterator() {
+            return Collections.unmodifiableList(positions()).iterator();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return positions().toArray();
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return positions().toArray(a);
+        }
+
+        @Override
+        public Spliterator<Vector3> spliterator() {
+            return positions().spliterator();
+        }
+
+        @Override
+        public void clear() {
+            if (arena != null) {
+                arena.reset();
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<Vector3> positions() {
+            ArrayList<Vector3> positions = new ArrayList<>();
+            if (arena != null) {
+                for (int i = 0, count = arena.getClosedCount(); i < count; i++) {
+                    int node = arena.getClosed(i);
+                    positions.add(new Vector3(arena.getX(node), arena.getY(node), arena.getZ(node)));
+                }
+            }
+            return positions;
+        }
+    }
 }
@@ -3,7 +3,6 @@ package cn.nukkit.entity.ai.route;
 import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.entity.EntityIntelligent;
-import cn.nukkit.entity.ai.route.data.Node;
 import cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator;
 import cn.nukkit.level.Level;
 import cn.nukkit.math.Vector3;
@@ -22,40 +21,39 @@ public class SimpleSpaceAStarRouteFinder extends SimpleFlatAStarRouteFinder {
     protected final static int OBLIQUE_2D_MOVE_COST = 14;
     protected final static int OBLIQUE_3D_MOVE_COST = 17;
 
+    /**
+     * 评估相邻坐标时复用的向量
+     */
+    private final Vector3 scratch = new Vector3();
+
     public SimpleSpaceAStarRouteFinder(IPosEvaluator blockEvaluator, EntityIntelligent entity) {
         super(blockEvaluator, entity);
     }
 
     @Override
-    protected int getBlockMoveCostAt(@NotNull Level level, Vector3 pos) {
-        return level.getTickCachedBlock(pos.add(0, -1, 0)).getWalkThroughExtraCost();
+    protected int getBlockMoveCostAt(@NotNull Level level, int x, int y, int z) {
+        return level.getTickCachedBlock(x, y - 1, z).getWalkThroughExtraCost();
     }
 
     @Override
-    protected void putNeighborNodeIntoOpen(@NotNull Node node) {
+    protected void putNeighborNodeIntoOpen(int node) {
+        double x = arena.getX(node);
+        double y = arena.getY(node);
+        double z = arena.getZ(node);
         for (int dx = -1; dx <= 1; dx++) {
             for (int dz = -1; dz <= 1; dz++) {
                 for (int dy = -1; dy <= 1; dy++) {
-                    var vec = node.getVector3().add(dx, dy, dz);
-                    if (!existInCloseList(vec) && evalPos(vec)) {
+                    int near = arena.getNode(x + dx, y + dy, z + dz);
+                    if ((near == -1 || !arena.isClosed(near)) && evalPos(scratch.setComponents(x + dx, y + dy, z + dz))) {
                         // 计算移动1格的开销
                         var cost = switch (Math.abs(dx) + Math.abs(dy) + Math.abs(dz)) {
                             case 1 -> DIRECT_MOVE_COST;
                             case 2 -> OBLIQUE_2D_MOVE_COST;
                             case 3 -> OBLIQUE_3D_MOVE_COST;
                             default -> Integer.MIN_VALUE;
-                        } + getBlockMoveCostAt(level, vec) + node.getG() - dy; // -dy是为了倾向于从空中飞而不是贴地飞
+                        } + getBlockMoveCostAt(level, scratch.getFloorX(), scratch.getFloorY(), scratch.getFloorZ()) + arena.getG(node) - dy; // -dy是为了倾向于从空中飞而不是贴地飞
                         if (cost < 0) continue;
-                        var nodeNear = getOpenNode(vec);
-                        if (nodeNear == null) {
-                            this.openList.offer(new Node(vec, node, cost, calH(vec, target)));
-                        } else {
-                            if (cost < nodeNear.getG()) {
-                                nodeNear.setParent(node);
-                                nodeNear.setG(cost);
-                                nodeNear.setF(nodeNear.getG() + nodeNear.getH());
-                            }
-                        }
+                        offerNode(node, near, x + dx, y + dy, z + dz, cost);
                     }
                 }
             }
@@ -0,0 +1,186 @@
+package cn.nukkit.entity.ai.route;
+
+import cn.nukkit.Server;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.level.Level;
+import it.unimi.dsi.fastutil.ints.Int2ByteOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 世界中每个区块的可站立方块缓存，保存坐标评估器{@link cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator#evalStandingBlock}
+ * 的结果，方块改变时清空所在区块（以及相邻区块）的缓存。
+ * <p>
+ * The per-chunk cache of standing blocks of a level. It keeps the results of
+ * {@link cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator#evalStandingBlock} and drops the cache of a chunk (and of
+ * the adjacent chunks) when a block in it changes.
+ * <p>
+ * 评估的结果取决于评估器和实体的大小，由{@link cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator#getCacheKey}给出的键区分。
+ * <p>
+ * The result of an evaluation depends on the evaluator and the size of the entity, they are told apart by the key
+ * returned from {@link cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator#getCacheKey}.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public final class WalkabilityCache {
+    private static final byte UNKNOWN = 0;
+    private static final byte STANDABLE = 1;
+    private static final byte NOT_STANDABLE = 2;
+    private static final int MAX_PROFILES = 256;
+    private static final ConcurrentHashMap<Object, Integer> PROFILES = new ConcurrentHashMap<>();
+
+    private final Level level;
+    private final ConcurrentHashMap<Long, ChunkCache> chunks = new ConcurrentHashMap<>();
+
+    public WalkabilityCache(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * 计算一个方块能否站立，由寻路器实现
+     * <p>
+     * Evaluates whether a block can be stood on, implemented by the route finder.
+     */
+    @FunctionalInterface
+    public interface StandingEvaluator {
+        boolean evalStandingBlock(int x, int y, int z);
+    }
+
+    private static final class ChunkCache {
+        /**
+         * 在这一刻之前开始的计算可能读到了旧的方块，不能写入缓存
+         * <p>
+         * Evaluations started before this tick may have read the old blocks and are not stored
+         */
+        private final int validFromTick;
+        private final Int2ByteOpenHashMap states = new Int2ByteOpenHashMap();
+
+        private ChunkCache(int validFromTick) {
+            this.validFromTick = validFromTick;
+        }
+    }
+
+    /**
+     * @param cacheKey 评估器给出的键，可以为null<br>the key given by the evaluator, may be null
+     * @return 缓存使用的编号，不能缓存时为-1<br>the number used by the cache, or -1 if the results can't be cached
+     */
+    public static int getProfile(@Nullable Object cacheKey) {
+        if (cacheKey == null) {
+            return -1;
+        }
+        Integer profile = PROFILES.get(cacheKey);
+        if (profile != null) {
+            return profile;
+        }
+        synchronized (PROFILES) {
+            if (PROFILES.size() >= MAX_PROFILES) {
+                return PROFILES.getOrDefault(cacheKey, -1);
+            }
+            return PROFILES.computeIfAbsent(cacheKey, key -> PROFILES.size());
+        }
+    }
+
+    /**
+     * 从缓存中获取方块能否站立，没有缓存时使用evaluator计算并写入缓存
+     * <p>
+     * Gets whether the block can be stood on from the cache, evaluating and storing it with the evaluator on a miss.
+     *
+     * @param profile {@link #getProfile}返回的编号<br>the number returned by {@link #getProfile}
+     */
+    public boolean isStandingBlock(int profile, int x, int y, int z, StandingEvaluator evaluator) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        long hash = Level.chunkHash(chunkX, chunkZ);
+        ChunkCache chunk = chunks.get(hash);
+        if (chunk == null) {
+            // 未加载的区块读不到方块，也不会在卸载时清理，不缓存
+            if (!level.isChunkLoaded(chunkX, chunkZ)) {
+                return evaluator.evalStandingBlock(x, y, z);
+            }
+            // 缓存不存在时方块改变不会留下记录，这一刻开始的计算可能读到了旧的方块
+            int nextTick = Server.getInstance().getTick() + 1;
+            chunk = chunks.computeIfAbsent(hash, k -> new ChunkCache(nextTick));
+            if (!level.isChunkLoaded(chunkX, chunkZ)) {
+                chunks.remove(hash, chunk);
+            }
+        }
+        int key = (profile << 24) | ((x & 0xf) << 20) | ((z & 0xf) << 16) | (y & 0xffff);
+        byte state;
+        synchronized (chunk) {
+            state = chunk.states.get(key);
+        }
+        if (state != UNKNOWN) {
+            return state == STANDABLE;
+        }
+
+        int tick = Server.getInstance().getTick();
+        boolean standable = evaluator.evalStandingBlock(x, y, z);
+        if (tick >= chunk.validFromTick) {
+            synchronized (chunk) {
+                chunk.states.put(key, standable ? STANDABLE : NOT_STANDABLE);
+            }
+        }
+        return standable;
+    }
+
+    /**
+     * 方块改变后调用，清空所在区块的缓存，方块在区块边缘时也清空相邻区块的缓存
+     * <p>
+     * Called after a block changed, drops the cache of its chunk and of the adjacent chunks if it is on the border.
+     */
+    public void invalidate(int x, int z) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        int nextTick = Server.getInstance().getTick() + 1;
+        invalidateChunk(chunkX, chunkZ, nextTick);
+        int localX = x & 0xf;
+        int localZ = z & 0xf;
+        if (localX == 0) {
+            invalidateChunk(chunkX - 1, chunkZ, nextTick);
+        } else if (localX == 15) {
+            invalidateChunk(chunkX + 1, chunkZ, nextTick);
+        }
+        if (localZ == 0) {
+            invalidateChunk(chunkX, chunkZ - 1, nextTick);
+        } else if (localZ == 15) {
+            invalidateChunk(chunkX, chunkZ + 1, nextTick);
+        }
+    }
+
+    /**
+     * 区块被替换（生成、填充或设置）后调用，清空这个区块和相邻区块的缓存
+     * <p>
+     * Called after a chunk was replaced (generated, populated or set), drops the cache of it and of the adjacent chunks.
+     */
+    public void invalidateChunk(int chunkX, int chunkZ) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        int nextTick = Server.getInstance().getTick() + 1;
+        invalidateChunk(chunkX, chunkZ, nextTick);
+        invalidateChunk(chunkX - 1, chunkZ, nextTick);
+        invalidateChunk(chunkX + 1, chunkZ, nextTick);
+        invalidateChunk(chunkX, chunkZ - 1, nextTick);
+        invalidateChunk(chunkX, chunkZ + 1, nextTick);
+    }
+
+    /**
+     * 区块卸载时调用
+     * <p>
+     * Called when a chunk is unloaded.
+     */
+    public void remove(int chunkX, int chunkZ) {
+        chunks.remove(Level.chunkHash(chunkX, chunkZ));
+    }
+
+    private void invalidateChunk(int chunkX, int chunkZ, int nextTick) {
+        // 替换而不是删除，这一刻读到旧方块的计算结果不会写入新的缓存；这一刻已经替换过的缓存不需要再次替换
+        chunks.computeIfPresent(Level.chunkHash(chunkX, chunkZ),
+                (hash, chunk) -> chunk.validFromTick >= nextTick ? chunk : new ChunkCache(nextTick));
+    }
+}
@@ -0,0 +1,288 @@
+package cn.nukkit.entity.ai.route.data;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.math.NukkitMath;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * A*寻路使用的可复用存储。节点保存在基本类型数组中并用下标引用，开放列表是一个打包为long的二叉堆，
+ * 方块坐标到节点的映射同时充当关闭列表，一次寻路不需要创建任何对象。
+ * <p>
+ * The reusable storage of an A* search. Nodes live in primitive arrays and are referenced by index, the open set is a
+ * binary heap of packed longs and the map from block position to node doubles as the closed set, so a search does not
+ * allocate any objects.
+ * <p>
+ * 堆中的元素为{@code F << 40 | G << 20 | index}，节点代价更新后会再次入堆，出堆时跳过过期的元素。
+ * <p>
+ * The heap entries are {@code F << 40 | G << 20 | index}. A node whose cost got lower is pushed again and the stale
+ * entries are skipped when polled.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public final class RouteSearchArena {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int INDEX_BITS = 20;
+    private static final int COST_BITS = 20;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final int MAX_COST = (1 << COST_BITS) - 1;
+
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] z = new double[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] g = new int[INITIAL_CAPACITY];
+    private int[] h = new int[INITIAL_CAPACITY];
+    private boolean[] closed = new boolean[INITIAL_CAPACITY];
+    private int size;
+    /**
+     * 按关闭顺序排列的节点下标
+     * <p>
+     * the indexes of the closed nodes in the order they were closed
+     */
+    private int[] closedOrder = new int[INITIAL_CAPACITY];
+    private int closedCount;
+
+    private long[] heap = new long[INITIAL_CAPACITY];
+    private int heapSize;
+
+    private final Long2IntOpenHashMap nodeOfBlock = new Long2IntOpenHashMap(INITIAL_CAPACITY);
+
+    public RouteSearchArena() {
+        this.nodeOfBlock.defaultReturnValue(-1);
+    }
+
+    /**
+     * 开始新的寻路前清空存储，数组会保留以便复用
+     * <p>
+     * Clears the storage before a new search, the arrays are kept for reuse.
+     */
+    public void reset() {
+        this.size = 0;
+        this.closedCount = 0;
+        this.heapSize = 0;
+        this.nodeOfBlock.clear();
+    }
+
+    /**
+     * @return 节点数量<br>the number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 坐标所在方块的节点下标，不存在时为-1<br>the index of the node in the block of the position, or -1 if there is none
+     */
+    public int getNode(double x, double y, double z) {
+        return nodeOfBlock.get(blockKey(NukkitMath.floorDouble(x), NukkitMath.floorDouble(y), NukkitMath.floorDouble(z)));
+    }
+
+    /**
+     * 添加一个节点，不会放入开放列表
+     * <p>
+     * Adds a node, it is not put into the open set.
+     *
+     * @param parent 父节点下标，没有时为-1<br>the index of the parent node, -1 if there is none
+     * @return 新节点的下标<br>the index of the new node
+     */
+    public int addNode(double x, double y, double z, int parent, int g, int h) {
+        if (size == this.x.length) {
+            grow();
+        }
+        int index = size++;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.z[index] = z;
+        this.parent[index] = parent;
+        this.g[index] = g;
+        this.h[index] = h;
+        this.closed[index] = false;
+        nodeOfBlock.put(blockKey(NukkitMath.floorDouble(x), NukkitMath.floorDouble(y), NukkitMath.floorDouble(z)), index);
+        return index;
+    }
+
+    /**
+     * 更新节点的父节点和代价G
+     * <p>
+     * Updates the parent and the G cost of a node.
+     */
+    public void update(int node, int parent, int g) {
+        this.parent[node] = parent;
+        this.g[node] = g;
+    }
+
+    /**
+     * 将节点按当前代价放入开放列表
+     * <p>
+     * Puts the node into the open set with its current cost.
+     */
+    public void push(int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize << 1);
+        }
+        long entry = pack(node);
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            long upEntry = heap[up];
+            if (upEntry <= entry) {
+                break;
+            }
+            heap[i] = upEntry;
+            i = up;
+        }
+        heap[i] = entry;
+    }
+
+    /**
+     * 取出代价最小的开放节点并将其关闭
+     * <p>
+     * Takes the open node with the lowest cost and closes it.
+     *
+     * @return 节点下标，开放列表为空时为-1<br>the index of the node, or -1 if the open set is empty
+     */
+    public int poll() {
+        while (heapSize > 0) {
+            long entry = heap[0];
+            long last = heap[--heapSize];
+            if (heapSize > 0) {
+                siftDown(last);
+            }
+            int node = (int) (entry & INDEX_MASK);
+            // 关闭的节点和代价已经更新的旧元素
+            if (closed[node] || entry != pack(node)) {
+                continue;
+            }
+            close(node);
+            return node;
+        }
+        return -1;
+    }
+
+    /**
+     * 查看代价最小的开放节点，不会取出或关闭它
+     * <p>
+     * Looks at the open node with the lowest cost without taking or closing it.
+     *
+     * @return 节点下标，开放列表为空时为-1<br>the index of the node, or -1 if the open set is empty
+     */
+    public int peek() {
+        while (heapSize > 0) {
+            long entry = heap[0];
+            int node = (int) (entry & INDEX_MASK);
+            if (!closed[node] && entry == pack(node)) {
+                return node;
+            }
+            long last = heap[--heapSize];
+            if (heapSize > 0) {
+                siftDown(last);
+            }
+        }
+        return -1;
+    }
+
+    public boolean isClosed(int node) {
+        return closed[node];
+    }
+
+    /**
+     * @return 坐标所在方块是否已经关闭<br>whether the block of the position is closed
+     */
+    public boolean isClosed(double x, double y, double z) {
+        int node = getNode(x, y, z);
+        return node != -1 && closed[node];
+    }
+
+    public void close(int node) {
+        if (!closed[node]) {
+            closed[node] = true;
+            closedOrder[closedCount++] = node;
+        }
+    }
+
+    /**
+     * @return 已关闭的节点数量<br>the number of closed nodes
+     */
+    public int getClosedCount() {
+        return closedCount;
+    }
+
+    /**
+     * @param i 关闭的顺序，从0开始<br>the order the node was closed in, starting from 0
+     * @return 第i个关闭的节点下标<br>the index of the i-th closed node
+     */
+    public int getClosed(int i) {
+        return closedOrder[i];
+    }
+
+    public double getX(int node) {
+        return x[node];
+    }
+
+    public double getY(int node) {
+        return y[node];
+    }
+
+    public double getZ(int node) {
+        return z[node];
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public int getG(int node) {
+        return g[node];
+    }
+
+    public int getH(int node) {
+        return h[node];
+    }
+
+    private long pack(int node) {
+        long f = Math.min(MAX_COST << 3, Math.max(0, g[node] + h[node]));
+        long cost = Math.min(MAX_COST, Math.max(0, g[node]));
+        return (f << (COST_BITS + INDEX_BITS)) | (cost << INDEX_BITS) | node;
+    }
+
+    private void siftDown(long entry) {
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            long childEntry = heap[child];
+            int right = child + 1;
+            if (right < heapSize && heap[right] < childEntry) {
+                childEntry = heap[child = right];
+            }
+            if (entry <= childEntry) {
+                break;
+            }
+            heap[i] = childEntry;
+            i = child;
+        }
+        heap[i] = entry;
+    }
+
+    private void grow() {
+        int capacity = x.length << 1;
+        if (capacity > INDEX_MASK + 1) {
+            throw new IllegalStateException("Too many route nodes");
+        }
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        g = Arrays.copyOf(g, capacity);
+        h = Arrays.copyOf(h, capacity);
+        closed = Arrays.copyOf(closed, capacity);
+        closedOrder = Arrays.copyOf(closedOrder, capacity);
+    }
+
+    private static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3ffffff) << 38) | ((long) (z & 0x3ffffff) << 12) | (y & 0xfff);
+    }
+}
@@ -7,6 +7,8 @@ import cn.nukkit.entity.EntityIntelligent;
 import cn.nukkit.math.Vector3;
 import org.jetbrains.annotations.NotNull;
 
+import javax.annotation.Nullable;
+
 /**
  * 坐标评估器用于寻路器评估坐标 <br/>
  * 通过编写特定的坐标评估器，可以自定义寻路器的寻路策略
@@ -37,4 +39,18 @@ public interface IPosEvaluator {
     default boolean evalStandingBlock(@NotNull EntityIntelligent entity, @NotNull Block block) {
         return true;
     }
+
+    /**
+     * 返回{@link #evalStandingBlock}结果的缓存键，结果相同的评估器和实体应该返回相等的键 <br>
+     * 只有结果仅取决于方块和键中的信息时才能缓存，默认返回null表示不缓存
+     *
+     * @param entity 目标实体
+     * @return 缓存键，为null时不缓存
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    default Object getCacheKey(@NotNull EntityIntelligent entity) {
+        return null;
+    }
 }
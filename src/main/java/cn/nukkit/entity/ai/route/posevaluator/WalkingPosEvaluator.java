@@ -61,6 +61,30 @@ public class WalkingPosEvaluator implements IPosEvaluator {
         return !block.canPassThrough();
     }
 
+    /**
+     * 结果只取决于方块和实体的大小。子类可能读取了其他状态，只有{@link #isSizeCacheable()}返回true时才缓存
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public Object getCacheKey(@NotNull EntityIntelligent entity) {
+        if (getClass() != WalkingPosEvaluator.class && !isSizeCacheable()) {
+            return null;
+        }
+        return new SizeCacheKey(getClass(), entity.getWidth() * entity.getScale(), entity.getHeight() * entity.getScale());
+    }
+
+    /**
+     * 子类的{@link #evalStandingBlock}结果是否也只取决于方块和实体的大小，返回true时按大小缓存
+     *
+     * @return 是否按大小缓存，默认为false
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected boolean isSizeCacheable() {
+        return false;
+    }
+
     /**
      * 指定实体在指定坐标上能否不发生碰撞
      */
@@ -70,4 +94,7 @@ public class WalkingPosEvaluator implements IPosEvaluator {
         AxisAlignedBB bb = new SimpleAxisAlignedBB(vector3.getX() - radius, vector3.getY(), vector3.getZ() - radius, vector3.getX() + radius, vector3.getY() + height, vector3.getZ() + radius);
         return !Utils.hasCollisionTickCachedBlocks(entity.level, bb);
     }
+
+    private record SizeCacheKey(Class<?> evaluator, float width, float height) {
+    }
 }
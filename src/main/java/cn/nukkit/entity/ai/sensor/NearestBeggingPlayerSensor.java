@@ -6,6 +6,7 @@ import cn.nukkit.api.Since;
 import cn.nukkit.entity.EntityIntelligent;
 import cn.nukkit.entity.ai.memory.NearestBeggingPlayerMemory;
 import cn.nukkit.entity.passive.EntityAnimal;
+import cn.nukkit.level.tracker.EntitySpatialIndex;
 
 @PowerNukkitXOnly
 @Since("1.6.0.0-PNX")
@@ -31,18 +32,22 @@ public class NearestBeggingPlayerSensor implements ISensor {
     public void sense(EntityIntelligent entity) {
         NearestBeggingPlayerMemory currentMemory = entity.getMemoryStorage().get(NearestBeggingPlayerMemory.class);
         if (entity instanceof EntityAnimal entityAnimal) {
+            EntitySpatialIndex index = entity.getLevel().getEntitySpatialIndex();
             Player player = null;
-            double rangeSquared = this.range * this.range;
-            double minRangeSquared = this.minRange * this.minRange;
-            //寻找范围内最近满足乞食要求的玩家
-            for (Player p : entity.getLevel().getPlayers().values()) {
-                if (entity.distanceSquared(p) <= rangeSquared && entity.distanceSquared(p) >= minRangeSquared && entityAnimal.isBreedingItem(p.getInventory().getItemInHand())) {
-                    if (player == null) {
+            if (index != null) {
+                player = index.getNearest(entity, this.minRange, this.range, Player.class,
+                        p -> entityAnimal.isBreedingItem(p.getInventory().getItemInHand()));
+            } else {
+                double rangeSquared = this.range * this.range;
+                double minRangeSquared = this.minRange * this.minRange;
+                double nearestSquared = Double.MAX_VALUE;
+                //寻找范围内最近满足乞食要求的玩家
+                for (Player p : entity.getLevel().getPlayers().values()) {
+                    double distanceSquared = entity.distanceSquared(p);
+                    if (distanceSquared <= rangeSquared && distanceSquared >= minRangeSquared && distanceSquared < nearestSquared
+                            && entityAnimal.isBreedingItem(p.getInventory().getItemInHand())) {
                         player = p;
-                    } else {
-                        if (entity.distanceSquared(p) < entity.distanceSquared(player)) {
-                            player = p;
-                        }
+                        nearestSquared = distanceSquared;
                     }
                 }
             }
@@ -5,6 +5,7 @@ import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.entity.EntityIntelligent;
 import cn.nukkit.entity.ai.memory.NearestPlayerMemory;
+import cn.nukkit.level.tracker.EntitySpatialIndex;
 import lombok.Getter;
 
 //存储最近的玩家的Memory
@@ -32,18 +33,20 @@ public class NearestPlayerSensor implements ISensor {
     @Override
     public void sense(EntityIntelligent entity) {
         NearestPlayerMemory currentMemory = entity.getMemoryStorage().get(NearestPlayerMemory.class);
+        EntitySpatialIndex index = entity.getLevel().getEntitySpatialIndex();
         Player player = null;
-        double rangeSquared = this.range * this.range;
-        double minRangeSquared = this.minRange * this.minRange;
-        //寻找范围内最近的玩家
-        for (Player p : entity.getLevel().getPlayers().values()) {
-            if (entity.distanceSquared(p) <= rangeSquared && entity.distanceSquared(p) >= minRangeSquared) {
-                if (player == null) {
+        if (index != null) {
+            player = index.getNearest(entity, this.minRange, this.range, Player.class, null);
+        } else {
+            double rangeSquared = this.range * this.range;
+            double minRangeSquared = this.minRange * this.minRange;
+            double nearestSquared = Double.MAX_VALUE;
+            //寻找范围内最近的玩家
+            for (Player p : entity.getLevel().getPlayers().values()) {
+                double distanceSquared = entity.distanceSquared(p);
+                if (distanceSquared <= rangeSquared && distanceSquared >= minRangeSquared && distanceSquared < nearestSquared) {
                     player = p;
-                } else {
-                    if (entity.distanceSquared(p) < entity.distanceSquared(player)) {
-                        player = p;
-                    }
+                    nearestSquared = distanceSquared;
                 }
             }
         }
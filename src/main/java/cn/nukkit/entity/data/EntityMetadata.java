@@ -1,12 +1,19 @@
 package cn.nukkit.entity.data;
 
 import cn.nukkit.api.PowerNukkitDifference;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
 import cn.nukkit.item.Item;
 import cn.nukkit.math.Vector3;
 import cn.nukkit.math.Vector3f;
 import cn.nukkit.nbt.tag.CompoundTag;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import lombok.extern.log4j.Log4j2;
 
+import javax.annotation.Nullable;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,6 +25,14 @@ public class EntityMetadata {
 
     private final Map<Integer, EntityData> map = new HashMap<>();
 
+    /**
+     * 修改后还没有发送的键，第一次使用时才创建。只在同步方法中访问，所以异步任务也可以标记键。
+     * <p>
+     * The keys changed but not sent yet, created on first use. Only accessed in synchronized methods, so async tasks
+     * can mark keys too.
+     */
+    private IntSet dirtyKeys;
+
     public EntityData get(int id) {
         return this.getOrDefault(id, null);
     }
@@ -119,6 +134,53 @@ public class EntityMetadata {
         return this.put(new StringEntityData(id, value));
     }
 
+    /**
+     * 标记一个键需要在下次{@link #pollDirty()}时发送
+     * <p>
+     * Marks a key to be sent on the next {@link #pollDirty()}.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public synchronized void markDirty(int id) {
+        if (this.dirtyKeys == null) {
+            this.dirtyKeys = new IntOpenHashSet();
+        }
+        this.dirtyKeys.add(id);
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public synchronized boolean isDirty() {
+        return this.dirtyKeys != null && !this.dirtyKeys.isEmpty();
+    }
+
+    /**
+     * 取出所有被标记的键对应的数据，并清除标记
+     * <p>
+     * Takes the data of all the marked keys and clears the marks. The data itself is read without locking, like every
+     * other getter of this class, so it must be called on the thread owning the entity.
+     *
+     * @return 只包含修改过的数据的元数据，没有修改时为null<br>metadata with only the changed data, or null if nothing changed
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public synchronized EntityMetadata pollDirty() {
+        if (!this.isDirty()) {
+            return null;
+        }
+        EntityMetadata changed = new EntityMetadata();
+        IntIterator iterator = this.dirtyKeys.iterator();
+        while (iterator.hasNext()) {
+            EntityData data = this.get(iterator.nextInt());
+            if (data != null) {
+                changed.put(data);
+            }
+        }
+        this.dirtyKeys.clear();
+        return changed;
+    }
+
     public Map<Integer, EntityData> getMap() {
         return new HashMap<>(map);
     }
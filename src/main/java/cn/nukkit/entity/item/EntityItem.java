@@ -3,6 +3,7 @@ package cn.nukkit.entity.item;
 import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitDifference;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.block.BlockID;
 import cn.nukkit.entity.Entity;
@@ -38,6 +39,13 @@ public class EntityItem extends Entity {
         return NETWORK_ID;
     }
 
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public double getTrackingRange() {
+        return 48;
+    }
+
     @Override
     public float getWidth() {
         return 0.25f;
@@ -2,6 +2,7 @@ package cn.nukkit.entity.item;
 
 import cn.nukkit.Player;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.event.entity.EntityDamageEvent;
@@ -67,6 +68,13 @@ public class EntityXPOrb extends Entity {
         return NETWORK_ID;
     }
 
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public double getTrackingRange() {
+        return 48;
+    }
+
     @Override
     public float getWidth() {
         return 0.25f;
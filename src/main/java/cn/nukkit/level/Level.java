@@ -10,6 +10,7 @@ import cn.nukkit.blockstate.BlockStateRegistry;
 import cn.nukkit.blockstate.exception.InvalidBlockStateException;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.entity.EntityAsyncPrepare;
+import cn.nukkit.entity.ai.route.WalkabilityCache;
 import cn.nukkit.entity.item.EntityItem;
 import cn.nukkit.entity.item.EntityXPOrb;
 import cn.nukkit.entity.projectile.EntityArrow;
@@ -27,14 +28,22 @@ import cn.nukkit.item.ItemBucket;
 import cn.nukkit.item.enchantment.Enchantment;
 import cn.nukkit.level.biome.Biome;
 import cn.nukkit.level.format.*;
+import cn.nukkit.level.format.anvil.Anvil;
+import cn.nukkit.level.format.generic.BaseChunk;
 import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.format.generic.BaseLevelProvider;
+import cn.nukkit.level.format.generic.ChunkLoadTask;
 import cn.nukkit.level.format.generic.EmptyChunkSection;
+import cn.nukkit.level.format.leveldb.LevelDBProvider;
 import cn.nukkit.level.generator.Generator;
 import cn.nukkit.level.generator.PopChunkManager;
 import cn.nukkit.level.generator.task.GenerationTask;
 import cn.nukkit.level.generator.task.LightPopulationTask;
 import cn.nukkit.level.generator.task.PopulationTask;
+import cn.nukkit.level.light.BlockLightEngine;
+import cn.nukkit.level.redstone.RedstoneWireEngine;
+import cn.nukkit.level.tracker.EntitySpatialIndex;
+import cn.nukkit.level.tracker.EntityTracker;
 import cn.nukkit.level.particle.DestroyBlockParticle;
 import cn.nukkit.level.particle.Particle;
 import cn.nukkit.level.tickingarea.TickingArea;
@@ -51,7 +60,11 @@ import cn.nukkit.metadata.MetadataValue;
 import cn.nukkit.metadata.Metadatable;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.*;
+import cn.nukkit.network.ChunkBlobs;
 import cn.nukkit.network.protocol.*;
+import cn.nukkit.network.protocol.types.BlockChangeEntry;
+import cn.nukkit.network.protocol.types.HeightMapDataType;
+import cn.nukkit.network.protocol.types.SubChunkRequestResult;
 import cn.nukkit.plugin.Plugin;
 import cn.nukkit.scheduler.AsyncTask;
 import cn.nukkit.scheduler.BlockUpdateScheduler;
@@ -216,6 +229,42 @@ public class Level implements ChunkManager, Metadatable {
 
     private boolean cacheChunks = false;
 
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private int asyncChunkSerializationLimit = 0;
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private int asyncChunkSerializationCount = 0;
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private boolean subChunkRequest = false;
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private BlockLightEngine blockLightEngine;
+
+    @Nullable
+    private EntityTracker entityTracker;
+
+    @Nullable
+    private EntitySpatialIndex entitySpatialIndex;
+
+    @Nullable
+    private WalkabilityCache walkabilityCache;
+
+    @Nullable
+    private RedstoneWireEngine redstoneWireEngine;
+
+    private boolean entityDataBatching;
+
+    private boolean subChunkBlockUpdates;
+
+    /**
+     * 这一刻中元数据被修改过的实体
+     * <p>
+     * The entities whose metadata changed during this tick
+     */
+    private final Set<Entity> dirtyEntityData = ConcurrentHashMap.newKeySet();
+
     private final Server server;
 
     private final int levelId;
@@ -274,6 +323,15 @@ public class Level implements ChunkManager, Metadatable {
     private final ConcurrentMap<Long, Int2ObjectMap<Player>> chunkSendQueue = new ConcurrentHashMap<>();
     private final LongSet chunkSendTasks = new LongOpenHashSet();
 
+    /**
+     * 正在I/O线程上读取的区块，同一个区块的多次请求共享一个future
+     * <p>
+     * the chunks being read on the I/O threads, the requests for the same chunk share one future
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private final ConcurrentMap<Long, CompletableFuture<BaseFullChunk>> chunkLoadFutures = new ConcurrentHashMap<>();
+
     private final Long2ObjectOpenHashMap<Boolean> chunkPopulationQueue = new Long2ObjectOpenHashMap<>();
     private final Long2ObjectOpenHashMap<Boolean> chunkPopulationLock = new Long2ObjectOpenHashMap<>();
     private final Long2ObjectOpenHashMap<Boolean> chunkGenerationQueue = new Long2ObjectOpenHashMap<>();
@@ -457,6 +515,31 @@ public class Level implements ChunkManager, Metadatable {
         this.chunkTickList.clear();
         this.clearChunksOnTick = this.server.getConfig("chunk-ticking.clear-tick-list", true);
         this.cacheChunks = this.server.getConfig("chunk-sending.cache-chunks", false);
+        this.blockLightEngine = new BlockLightEngine(this,
+                this.server.getConfig("level-settings.async-light-calculation", false) ? this.server.computeThreadPool : null);
+        this.entityDataBatching = this.server.getConfig("level-settings.batch-entity-data", false);
+        this.subChunkBlockUpdates = this.server.getConfig("level-settings.sub-chunk-block-updates", false);
+        if (this.server.getConfig("level-settings.entity-spatial-index", false)) {
+            this.entitySpatialIndex = new EntitySpatialIndex();
+        }
+        if (this.server.getConfig("level-settings.walkability-cache", false)) {
+            this.walkabilityCache = new WalkabilityCache(this);
+        }
+        if ("graph".equalsIgnoreCase(this.server.getConfig("worlds." + this.folderName + ".redstone-wire-engine",
+                this.server.getConfig("level-settings.redstone-wire-engine", "legacy")))) {
+            this.redstoneWireEngine = new RedstoneWireEngine(this);
+        }
+        if (this.server.getConfig("entity-tracker.enabled", false)) {
+            this.entityTracker = new EntityTracker(this,
+                    this.server.getConfig("entity-tracker.near-distance", 24),
+                    this.server.getConfig("entity-tracker.far-interval", 4));
+        }
+        if (this.server.getConfig("chunk-sending.async-serialization", true)) {
+            this.asyncChunkSerializationLimit = Math.max(1, this.server.getConfig("chunk-sending.async-serialization-queue-size", 64));
+        }
+        // LevelDB世界只借用Anvil的区块表示，Anvil专有的功能不对它开启
+        this.subChunkRequest = this.server.getConfig("chunk-sending.sub-chunk-request", false)
+                && this.requireProvider() instanceof Anvil && !(this.requireProvider() instanceof LevelDBProvider);
         this.temporalPosition = new Position(0, 0, 0, this);
         this.temporalVector = new Vector3(0, 0, 0);
         this.tickRate = 1;
@@ -1157,7 +1240,7 @@ public class Level implements ChunkManager, Metadatable {
 
         requireProvider();
 
-        updateBlockLight(lightQueue);
+        this.blockLightEngine.onTickStart();
         this.checkTime();
         if (currentTick >= nextTimeSendTick) { // Send time to client every 30 seconds to make sure it
             this.sendTime();
@@ -1236,10 +1319,14 @@ public class Level implements ChunkManager, Metadatable {
         while (!this.normalUpdateQueue.isEmpty()) {
             QueuedUpdate queuedUpdate = this.normalUpdateQueue.poll();
             Block block = getBlock(queuedUpdate.block, queuedUpdate.block.layer);
-            BlockUpdateEvent event = new BlockUpdateEvent(block);
-            this.server.getPluginManager().callEvent(event);
+            boolean cancelled = false;
+            if (this.server.getPluginManager().hasListeners(BlockUpdateEvent.class)) {
+                BlockUpdateEvent event = new BlockUpdateEvent(block);
+                this.server.getPluginManager().callEvent(event);
+                cancelled = event.isCancelled();
+            }
 
-            if (!event.isCancelled()) {
+            if (!cancelled) {
                 block.onUpdate(BLOCK_UPDATE_NORMAL);
                 if (queuedUpdate.neighbor != null) {
                     block.onNeighborChange(queuedUpdate.neighbor.getOpposite());
@@ -1305,7 +1392,9 @@ public class Level implements ChunkManager, Metadatable {
                             Collection<Player> toSend = this.getChunkPlayers(chunkX, chunkZ).values();
                             Player[] playerArray = toSend.toArray(Player.EMPTY_ARRAY);
                             var size = blocks.size();
-                            if (antiXrayEnabled) {
+                            if (subChunkBlockUpdates) {
+                                this.sendChangedBlocks(playerArray, index, blocks.keySet());
+                            } else if (antiXrayEnabled) {
                                 var vectorSet = new IntOpenHashSet(size * 6);
                                 var vRidList = new ArrayList<Vector3WithRuntimeId>(size * 7);
                                 Vector3WithRuntimeId tmpV3Rid;
@@ -1434,6 +1523,24 @@ public class Level implements ChunkManager, Metadatable {
             gameRules.refresh();
         }
 
+        if (!this.dirtyEntityData.isEmpty()) {
+            Iterator<Entity> iterator = this.dirtyEntityData.iterator();
+            while (iterator.hasNext()) {
+                Entity entity = iterator.next();
+                iterator.remove();
+                if (!entity.closed) {
+                    entity.sendDirtyData();
+                }
+            }
+        }
+
+        if (this.entityTracker != null) {
+            this.entityTracker.flush(currentTick);
+        }
+
+        // 异步计算的光照在刻结束时写回区块
+        this.blockLightEngine.onTickEnd();
+
         // 清除所有tick缓存的方块
         releaseTickCachedBlocks();
 
@@ -1547,15 +1654,116 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void sendBlocks(Player[] target, Vector3[] blocks) {
-        this.sendBlocks(target, blocks, UpdateBlockPacket.FLAG_NONE, 0);
-        this.sendBlocks(target, blocks, UpdateBlockPacket.FLAG_NONE, 1);
+        this.sendBlocks(target, blocks, UpdateBlockPacket.FLAG_NONE);
     }
 
     public void sendBlocks(Player[] target, Vector3[] blocks, int flags) {
+        if (this.subChunkBlockUpdates) {
+            this.sendSubChunkBlocks(target, blocks, flags);
+            return;
+        }
         this.sendBlocks(target, blocks, flags, 0);
         this.sendBlocks(target, blocks, flags, 1);
     }
 
+    /**
+     * 按子区块分组发送方块的两层，每个子区块只发送一个{@link UpdateSubChunkBlocksPacket}
+     * <p>
+     * Sends both layers of the blocks grouped by sub-chunk, with a single {@link UpdateSubChunkBlocksPacket} per sub-chunk.
+     *
+     * @param blocks 要发送的方块，和{@link #sendBlocks(Player[], Vector3[], int, int)}一样，{@link Block}实例的两层都使用自己的运行时ID<br>
+     *               the blocks to send. Like {@link #sendBlocks(Player[], Vector3[], int, int)}, {@link Block} instances
+     *               send their own runtime id on both layers
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void sendSubChunkBlocks(Player[] target, Vector3[] blocks, int flags) {
+        if (target.length == 0) {
+            return;
+        }
+        Long2ObjectOpenHashMap<UpdateSubChunkBlocksPacket> packets = new Long2ObjectOpenHashMap<>();
+        for (Vector3 b : blocks) {
+            if (b == null) {
+                continue;
+            }
+            int x = b.getFloorX();
+            int y = b.getFloorY();
+            int z = b.getFloorZ();
+            int runtimeId0;
+            int runtimeId1;
+            if (b instanceof Vector3WithRuntimeId vRid) {
+                runtimeId0 = vRid.getRuntimeIdLayer0();
+                runtimeId1 = vRid.getRuntimeIdLayer1();
+            } else if (b instanceof Block block) {
+                runtimeId0 = block.getRuntimeId();
+                runtimeId1 = runtimeId0;
+            } else {
+                runtimeId0 = getBlockRuntimeId(x, y, z, 0);
+                runtimeId1 = getBlockRuntimeId(x, y, z, 1);
+            }
+            putBlockChange(packets, x, y, z, runtimeId0, runtimeId1, flags);
+        }
+        for (UpdateSubChunkBlocksPacket packet : packets.values()) {
+            Server.broadcastPacket(target, packet);
+        }
+    }
+
+    /**
+     * 发送一个区块在这一刻中改变的方块。开启反矿透时，透明方块周围的方块也在同一次遍历中加入
+     * <p>
+     * Sends the blocks of a chunk changed during this tick. With anti-xray enabled the neighbours of transparent blocks
+     * are added in the same pass.
+     */
+    private void sendChangedBlocks(Player[] target, long chunkIndex, IntSet blockHashes) {
+        if (target.length == 0) {
+            return;
+        }
+        Long2ObjectOpenHashMap<UpdateSubChunkBlocksPacket> packets = new Long2ObjectOpenHashMap<>();
+        LongOpenHashSet visited = new LongOpenHashSet(antiXrayEnabled ? blockHashes.size() * 7 : blockHashes.size());
+        for (int blockHash : blockHashes) {
+            Vector3 pos = getBlockXYZ(chunkIndex, blockHash, this);
+            int x = pos.getFloorX();
+            int y = pos.getFloorY();
+            int z = pos.getFloorZ();
+            int runtimeId = this.putChangedBlock(packets, visited, x, y, z);
+            if (antiXrayEnabled && transparentBlockRuntimeIds.contains(runtimeId)) {
+                for (BlockFace face : BlockFace.values()) {
+                    this.putChangedBlock(packets, visited, x + face.getXOffset(), y + face.getYOffset(), z + face.getZOffset());
+                }
+            }
+        }
+        for (UpdateSubChunkBlocksPacket packet : packets.values()) {
+            Server.broadcastPacket(target, packet);
+        }
+    }
+
+    /**
+     * @return 第0层的运行时ID，如果位置不可用则为-1<br>the runtime id of layer 0, or -1 if the position is not available
+     */
+    private int putChangedBlock(Long2ObjectOpenHashMap<UpdateSubChunkBlocksPacket> packets, LongSet visited, int x, int y, int z) {
+        if (!isYInRange(y) || !isChunkLoaded(x >> 4, z >> 4)) {
+            return -1;
+        }
+        int runtimeId0 = getBlockRuntimeId(x, y, z, 0);
+        if (visited.add(blockHash(x, y, z, this))) {
+            putBlockChange(packets, x, y, z, runtimeId0, getBlockRuntimeId(x, y, z, 1), UpdateBlockPacket.FLAG_ALL);
+        }
+        return runtimeId0;
+    }
+
+    private void putBlockChange(Long2ObjectOpenHashMap<UpdateSubChunkBlocksPacket> packets, int x, int y, int z,
+                                int runtimeId0, int runtimeId1, int flags) {
+        long key = blockHash(x & ~15, y & ~15, z & ~15, this);
+        UpdateSubChunkBlocksPacket packet = packets.get(key);
+        if (packet == null) {
+            packet = new UpdateSubChunkBlocksPacket(x >> 4, y >> 4, z >> 4);
+            packets.put(key, packet);
+        }
+        BlockVector3 position = new BlockVector3(x, y, z);
+        packet.standardBlocks.add(new BlockChangeEntry(position, runtimeId0, flags, 0, BlockChangeEntry.MessageType.NONE));
+        packet.extraBlocks.add(new BlockChangeEntry(position, runtimeId1, flags, 0, BlockChangeEntry.MessageType.NONE));
+    }
+
     public void sendBlocks(Player[] target, Vector3[] blocks, int flags, boolean optimizeRebuilds) {
         this.sendBlocks(target, blocks, flags, 0, optimizeRebuilds);
         this.sendBlocks(target, blocks, flags, 1, optimizeRebuilds);
@@ -2412,143 +2620,39 @@ public class Level implements ChunkManager, Metadatable {
         return maxValue;
     }
 
+    /**
+     * @deprecated 光照更新现在由{@link BlockLightEngine}分批处理，请使用{@link #addLightUpdate(int, int, int)}
+     * <p>
+     * the light updates are now batched by the {@link BlockLightEngine}, use {@link #addLightUpdate(int, int, int)}
+     */
+    @Deprecated
+    @DeprecationDetails(reason = "Light updates are batched by the BlockLightEngine", since = "1.19.21-r4",
+            replaceWith = "addLightUpdate(int, int, int)")
     public void updateBlockLight(Map<Long, Map<Integer, Object>> map) {
-        int size = map.size();
-        if (size == 0) {
-            return;
-        }
-        Queue<Long> lightPropagationQueue = new ConcurrentLinkedQueue<>();
-        Queue<Object[]> lightRemovalQueue = new ConcurrentLinkedQueue<>();
-        Long2ObjectOpenHashMap<Object> visited = new Long2ObjectOpenHashMap<>();
-        Long2ObjectOpenHashMap<Object> removalVisited = new Long2ObjectOpenHashMap<>();
-
-        var iter = map.entrySet().iterator();
-        while (iter.hasNext() && size-- > 0) {
-            var entry = iter.next();
-            iter.remove();
-            long index = entry.getKey();
-            var blocks = entry.getValue();
-            int chunkX = Level.getHashX(index);
-            int chunkZ = Level.getHashZ(index);
-            int bx = chunkX << 4;
-            int bz = chunkZ << 4;
-            for (int blockHash : blocks.keySet()) {
+        for (var entry : map.entrySet()) {
+            int bx = Level.getHashX(entry.getKey()) << 4;
+            int bz = Level.getHashZ(entry.getKey()) << 4;
+            for (int blockHash : entry.getValue().keySet()) {
                 int hi = (byte) (blockHash >>> 16);
                 int lo = (short) blockHash;
-                int y = ensureY(lo - 64);
-                int x = (hi & 0xF) + bx;
-                int z = ((hi >> 4) & 0xF) + bz;
-                BaseFullChunk chunk = getChunk(x >> 4, z >> 4, false);
-                if (chunk != null) {
-                    int lcx = x & 0xF;
-                    int lcz = z & 0xF;
-                    int oldLevel = chunk.getBlockLight(lcx, y, lcz);
-                    int newLevel = chunk.getBlockState(lcx, y, lcz).getBlock(this, x, y, z, 0, true).getLightLevel();
-                    if (oldLevel != newLevel) {
-                        this.setBlockLightAt(x, y, z, newLevel);
-                        if (newLevel < oldLevel) {
-                            removalVisited.put(Hash.hashBlock(x, y, z), changeBlocksPresent);
-                            lightRemovalQueue.add(new Object[]{Hash.hashBlock(x, y, z), oldLevel});
-                        } else {
-                            visited.put(Hash.hashBlock(x, y, z), changeBlocksPresent);
-                            lightPropagationQueue.add(Hash.hashBlock(x, y, z));
-                        }
-                    }
-                }
-            }
-        }
-
-        while (!lightRemovalQueue.isEmpty()) {
-            Object[] val = lightRemovalQueue.poll();
-            long node = (long) val[0];
-            int x = Hash.hashBlockX(node);
-            int y = Hash.hashBlockY(node);
-            int z = Hash.hashBlockZ(node);
-
-            int lightLevel = (int) val[1];
-
-            this.computeRemoveBlockLight(x - 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x + 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y - 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y + 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y, z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y, z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-        }
-
-        while (!lightPropagationQueue.isEmpty()) {
-            long node = lightPropagationQueue.poll();
-
-            int x = Hash.hashBlockX(node);
-            int y = Hash.hashBlockY(node);
-            int z = Hash.hashBlockZ(node);
-
-            int lightLevel = this.getBlockLightAt(x, y, z)
-                    - Block.getLightFilter(this.getBlockIdAt(x, y, z));
-
-            if (lightLevel >= 1) {
-                this.computeSpreadBlockLight(x - 1, y, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x + 1, y, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y - 1, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y + 1, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y, z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y, z + 1, lightLevel, lightPropagationQueue, visited);
-            }
-        }
-    }
-
-    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue,
-                                         Queue<Long> spreadQueue, Map<Long, Object> visited, Map<Long, Object> spreadVisited) {
-        int current = this.getBlockLightAt(x, y, z);
-        long index = Hash.hashBlock(x, y, z);
-        if (current != 0 && current < currentLight) {
-            this.setBlockLightAt(x, y, z, 0);
-            if (current > 1) {
-                if (!visited.containsKey(index)) {
-                    visited.put(index, changeBlocksPresent);
-                    queue.add(new Object[]{Hash.hashBlock(x, y, z), current});
-                }
-            }
-        } else if (current >= currentLight) {
-            if (!spreadVisited.containsKey(index)) {
-                spreadVisited.put(index, changeBlocksPresent);
-                spreadQueue.add(Hash.hashBlock(x, y, z));
+                this.blockLightEngine.addUpdate((hi & 0xF) + bx, lo - 64, ((hi >> 4) & 0xF) + bz);
             }
         }
+        map.clear();
+        this.blockLightEngine.processNow();
     }
 
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<Long> queue,
-                                         Map<Long, Object> visited) {
-        int current = this.getBlockLightAt(x, y, z);
-        long index = Hash.hashBlock(x, y, z);
-
-        if (current < currentLight - 1) {
-            this.setBlockLightAt(x, y, z, currentLight);
-
-            if (!visited.containsKey(index)) {
-                visited.put(index, changeBlocksPresent);
-                if (currentLight > 1) {
-                    queue.add(Hash.hashBlock(x, y, z));
-                }
-            }
-        }
+    public void addLightUpdate(int x, int y, int z) {
+        this.blockLightEngine.addUpdate(x, y, z);
     }
 
-    private Map<Long, Map<Integer, Object>> lightQueue = new ConcurrentHashMap<>(8, 0.9f, 1);
-
-    public void addLightUpdate(int x, int y, int z) {
-        long index = chunkHash(x >> 4, z >> 4);
-        var currentMap = lightQueue.get(index);
-        if (currentMap == null) {
-            currentMap = new ConcurrentHashMap<>(8, 0.9f, 1);
-            this.lightQueue.put(index, currentMap);
-        }
-        currentMap.put(Level.localBlockHash(x, y, z, this), changeBlocksPresent);
+    /**
+     * @return 此世界的方块光照引擎<br>the block light engine of this level
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public BlockLightEngine getBlockLightEngine() {
+        return this.blockLightEngine;
     }
 
     @Deprecated
@@ -2608,6 +2712,9 @@ public class Level implements ChunkManager, Metadatable {
         if (state.equals(statePrevious)) {
             return false;
         }
+        if (this.walkabilityCache != null) {
+            this.walkabilityCache.invalidate(x, z);
+        }
         block.x = x;
         block.y = y;
         block.z = z;
@@ -2661,6 +2768,9 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     private void addBlockChange(int x, int y, int z) {
+        if (this.walkabilityCache != null) {
+            this.walkabilityCache.invalidate(x, z);
+        }
         long index = Level.chunkHash(x >> 4, z >> 4);
         addBlockChange(index, x, y, z);
     }
@@ -3246,6 +3356,14 @@ public class Level implements ChunkManager, Metadatable {
         ArrayList<Entity> overflow = null;
 
         if (entity == null || entity.canCollide()) {
+            if (this.entitySpatialIndex != null) {
+                List<Entity> colliding = this.entitySpatialIndex.getEntities(bb, entity);
+                if (entity != null) {
+                    colliding.removeIf(ent -> !entity.canCollideWith(ent));
+                }
+                return colliding.toArray(Entity.EMPTY_ARRAY);
+            }
+
             int minX = NukkitMath.floorDouble((bb.getMinX() - 2) / 16);
             int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) / 16);
             int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) / 16);
@@ -3275,6 +3393,14 @@ public class Level implements ChunkManager, Metadatable {
         var result = new ArrayList<Entity>();
 
         if (entity == null || entity.canCollide()) {
+            if (this.entitySpatialIndex != null) {
+                List<Entity> colliding = this.entitySpatialIndex.getEntities(bb, entity);
+                if (entity != null) {
+                    colliding.removeIf(each -> !entity.canCollideWith(each));
+                }
+                return colliding;
+            }
+
             int minX = NukkitMath.floorDouble((bb.getMinX() - 2) / 16);
             int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) / 16);
             int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) / 16);
@@ -3330,6 +3456,10 @@ public class Level implements ChunkManager, Metadatable {
     public Entity[] getNearbyEntities(AxisAlignedBB bb, Entity entity, boolean loadChunks) {
         int index = 0;
 
+        if (!loadChunks && this.entitySpatialIndex != null) {
+            return this.entitySpatialIndex.getEntities(bb, entity).toArray(Entity.EMPTY_ARRAY);
+        }
+
         int minX = NukkitMath.floorDouble((bb.getMinX() - 2) * 0.0625);
         int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) * 0.0625);
         int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) * 0.0625);
@@ -3360,6 +3490,10 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public List<Entity> fastNearbyEntities(AxisAlignedBB bb, Entity entity, boolean loadChunks) {
+        if (!loadChunks && this.entitySpatialIndex != null) {
+            return this.entitySpatialIndex.getEntities(bb, entity);
+        }
+
         int minX = NukkitMath.floorDouble((bb.getMinX() - 2) * 0.0625);
         int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) * 0.0625);
         int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) * 0.0625);
@@ -3735,6 +3869,9 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         chunk.setChanged();
+        if (this.walkabilityCache != null) {
+            this.walkabilityCache.invalidateChunk(chunkX, chunkZ);
+        }
 
         if (!this.isChunkInUse(index)) {
             this.unloadChunkRequest(chunkX, chunkZ);
@@ -3842,17 +3979,43 @@ public class Level implements ChunkManager, Metadatable {
         }
     }
 
+    private void sendChunk(int x, int z, long index, DataPacket packet, ChunkBlobs blobs) {
+        if (this.chunkSendTasks.contains(index)) {
+            for (Player player : this.chunkSendQueue.get(index).values()) {
+                if (player.isConnected() && player.usedChunks.containsKey(index)) {
+                    if (blobs != null && player.canSendChunkBlobs(blobs)) {
+                        player.sendChunk(x, z, blobs);
+                    } else {
+                        player.sendChunk(x, z, packet);
+                    }
+                }
+            }
+
+            this.chunkSendQueue.remove(index);
+            this.chunkSendTasks.remove(index);
+        }
+    }
+
     private void processChunkRequest() {
         this.timings.syncChunkSendTimer.startTiming();
         for (long index : this.chunkSendQueue.keySet()) {
             if (this.chunkSendTasks.contains(index)) {
                 continue;
             }
+            if (this.asyncChunkSerializationLimit > 0 && this.asyncChunkSerializationCount >= this.asyncChunkSerializationLimit) {
+                break;
+            }
             int x = getHashX(index);
             int z = getHashZ(index);
             this.chunkSendTasks.add(index);
             BaseFullChunk chunk = getChunk(x, z);
-            if (chunk != null) {
+            if (this.subChunkRequest && chunk instanceof BaseChunk baseChunk) {
+                // 只发送生物群系，方块数据由客户端按需请求
+                this.sendChunk(x, z, index, this.createSubChunkRequestChunkPacket(baseChunk));
+                continue;
+            }
+            // 缓存的区块数据包不包含客户端缓存所需的数据块
+            if (chunk != null && this.server.getChunkBlobCache() == null) {
                 BatchPacket packet = chunk.getChunkPacket();
                 if (packet != null) {
                     this.sendChunk(x, z, index, packet);
@@ -3897,6 +4060,206 @@ public class Level implements ChunkManager, Metadatable {
         this.timings.syncChunkSendTimer.stopTiming();
     }
 
+    /**
+     * @return 是否在异步线程上序列化并压缩发送给玩家的区块
+     * <p>
+     * whether the chunks sent to the players are serialized and compressed on async workers
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isAsyncChunkSerialization() {
+        return this.asyncChunkSerializationLimit > 0;
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void onAsyncChunkSerializationStart() {
+        this.asyncChunkSerializationCount++;
+    }
+
+    /**
+     * 异步区块序列化完成后在主线程上调用
+     * <p>
+     * Called on the main thread when an async chunk serialization finishes.
+     *
+     * @param packet the compressed chunk packet, or null if the serialization failed
+     * @param blobs  the chunk split for the client blob cache, or null if the blob cache is disabled
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void asyncChunkRequestCallback(long timestamp, int x, int z, @Nullable BatchPacket packet, @Nullable ChunkBlobs blobs) {
+        this.asyncChunkSerializationCount--;
+        long index = Level.chunkHash(x, z);
+        if (packet == null) {
+            // 让下一次processChunkRequest重新尝试
+            this.chunkSendTasks.remove(index);
+            return;
+        }
+
+        this.timings.syncChunkSendTimer.startTiming();
+        if (this.cacheChunks) {
+            BaseFullChunk chunk = getChunk(x, z, false);
+            if (chunk != null && chunk.getChanges() <= timestamp) {
+                chunk.setChunkPacket(packet);
+            }
+        }
+        if (blobs != null) {
+            this.sendChunk(x, z, index, packet, blobs);
+        } else {
+            this.sendChunk(x, z, index, packet);
+        }
+        this.timings.syncChunkSendTimer.stopTiming();
+    }
+
+    /**
+     * @return 是否让客户端通过{@link SubChunkRequestPacket}按需请求子区块
+     * <p>
+     * whether the clients request the sub-chunks on demand with {@link SubChunkRequestPacket}
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isSubChunkRequestEnabled() {
+        return this.subChunkRequest;
+    }
+
+    private LevelChunkPacket createSubChunkRequestChunkPacket(BaseChunk chunk) {
+        ChunkSection[] sections = chunk.getSections();
+        int limit = Math.min(sections.length, this.dimensionData.getHeight() >> 4);
+        int subChunkLimit = 0;
+        for (int i = limit - 1; i >= 0; i--) {
+            if (!sections[i].isEmpty()) {
+                subChunkLimit = i + 1;
+                break;
+            }
+        }
+        LevelChunkPacket pk = new LevelChunkPacket();
+        pk.chunkX = chunk.getX();
+        pk.chunkZ = chunk.getZ();
+        pk.requestSubChunks = true;
+        pk.subChunkLimit = subChunkLimit;
+        pk.data = ((Anvil) this.requireProvider()).serializeSubChunkRequestPayload(chunk, this.dimensionData);
+        return pk;
+    }
+
+    /**
+     * 处理玩家的子区块请求，只会返回玩家已经收到{@link LevelChunkPacket}的区块中的子区块
+     * <p>
+     * Answers the sub-chunk request of a player. Only the sub-chunks of chunks whose {@link LevelChunkPacket}
+     * was already sent to the player are served.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void processSubChunkRequest(Player player, SubChunkRequestPacket request) {
+        SubChunkPacket response = new SubChunkPacket();
+        response.dimension = request.dimension;
+        response.centerPosition = request.subChunkPosition;
+
+        int minSectionY = this.dimensionData.getMinHeight() >> 4;
+        int sectionCount = this.dimensionData.getHeight() >> 4;
+        boolean validDimension = this.subChunkRequest && request.dimension == this.getDimension();
+        Long2ObjectMap<int[]> columnHeights = new Long2ObjectOpenHashMap<>();
+        byte[] offsets = request.positionOffsets;
+        for (int i = 0; i + 2 < offsets.length; i += 3) {
+            SubChunkPacket.Entry entry = new SubChunkPacket.Entry();
+            entry.offsetX = offsets[i];
+            entry.offsetY = offsets[i + 1];
+            entry.offsetZ = offsets[i + 2];
+            response.entries.add(entry);
+            if (!validDimension) {
+                entry.result = SubChunkRequestResult.INVALID_DIMENSION;
+                continue;
+            }
+
+            int chunkX = request.subChunkPosition.x + entry.offsetX;
+            int sectionY = request.subChunkPosition.y + entry.offsetY;
+            int chunkZ = request.subChunkPosition.z + entry.offsetZ;
+            int sectionIndex = sectionY - minSectionY;
+            long index = Level.chunkHash(chunkX, chunkZ);
+            BaseFullChunk chunk = player.usedChunks.containsKey(index) ? this.getChunk(chunkX, chunkZ, false) : null;
+            if (!(chunk instanceof BaseChunk baseChunk)) {
+                entry.result = SubChunkRequestResult.CHUNK_NOT_FOUND;
+                continue;
+            }
+            ChunkSection[] sections = baseChunk.getSections();
+            if (sectionIndex < 0 || sectionIndex >= sectionCount || sectionIndex >= sections.length) {
+                entry.result = SubChunkRequestResult.INDEX_OUT_OF_BOUNDS;
+                continue;
+            }
+
+            int[] heights = columnHeights.computeIfAbsent(index, k -> computeColumnHeights(sections, minSectionY));
+            this.writeHeightMap(entry, heights, sectionY);
+            ChunkSection section = sections[sectionIndex];
+            if (section.isEmpty()) {
+                entry.result = SubChunkRequestResult.SUCCESS_ALL_AIR;
+                continue;
+            }
+            entry.result = SubChunkRequestResult.SUCCESS;
+            entry.data = ((Anvil) this.requireProvider()).serializeSubChunk(baseChunk, section, sectionY);
+        }
+        player.dataPacket(response);
+    }
+
+    /**
+     * 计算每一列最高的非空气方块的Y坐标，没有方块的列为{@link Integer#MIN_VALUE}
+     */
+    private static int[] computeColumnHeights(ChunkSection[] sections, int minSectionY) {
+        int[] heights = new int[256];
+        Arrays.fill(heights, Integer.MIN_VALUE);
+        int remaining = 256;
+        for (int i = sections.length - 1; i >= 0 && remaining > 0; i--) {
+            ChunkSection section = sections[i];
+            if (section.isEmpty()) {
+                continue;
+            }
+            int baseY = (i + minSectionY) << 4;
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    int column = (z << 4) | x;
+                    if (heights[column] != Integer.MIN_VALUE) {
+                        continue;
+                    }
+                    for (int y = 15; y >= 0; y--) {
+                        if (section.getBlockId(x, y, z) != BlockID.AIR) {
+                            heights[column] = baseY + y;
+                            remaining--;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return heights;
+    }
+
+    private void writeHeightMap(SubChunkPacket.Entry entry, int[] heights, int sectionY) {
+        int minY = sectionY << 4;
+        boolean allAbove = true;
+        boolean allBelow = true;
+        byte[] heightMap = new byte[256];
+        for (int column = 0; column < 256; column++) {
+            int relative = heights[column] == Integer.MIN_VALUE ? -1 : heights[column] - minY;
+            if (relative > 15) {
+                heightMap[column] = 16;
+                allBelow = false;
+            } else if (relative < 0) {
+                heightMap[column] = -1;
+                allAbove = false;
+            } else {
+                heightMap[column] = (byte) relative;
+                allAbove = false;
+                allBelow = false;
+            }
+        }
+        if (allAbove) {
+            entry.heightMapType = HeightMapDataType.TOO_HIGH;
+        } else if (allBelow) {
+            entry.heightMapType = HeightMapDataType.TOO_LOW;
+        } else {
+            entry.heightMapType = HeightMapDataType.HAS_DATA;
+            entry.heightMap = heightMap;
+        }
+    }
+
     public void removeEntity(Entity entity) {
         if (entity.getLevel() != this) {
             throw new LevelException("Invalid Entity level");
@@ -3911,6 +4274,12 @@ public class Level implements ChunkManager, Metadatable {
 
         this.entities.remove(entity.getId());
         this.updateEntities.remove(entity.getId());
+        if (this.entityTracker != null) {
+            this.entityTracker.remove(entity);
+        }
+        if (this.entitySpatialIndex != null) {
+            this.entitySpatialIndex.remove(entity);
+        }
     }
 
     public void addEntity(Entity entity) {
@@ -3922,6 +4291,9 @@ public class Level implements ChunkManager, Metadatable {
             this.players.put(entity.getId(), (Player) entity);
         }
         this.entities.put(entity.getId(), entity);
+        if (this.entitySpatialIndex != null) {
+            this.entitySpatialIndex.update(entity);
+        }
     }
 
     public void addBlockEntity(BlockEntity blockEntity) {
@@ -3958,6 +4330,110 @@ public class Level implements ChunkManager, Metadatable {
         return this.loadChunk(x, z, true);
     }
 
+    /**
+     * @see #loadChunkAsync(int, int, boolean)
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int x, int z) {
+        return this.loadChunkAsync(x, z, true);
+    }
+
+    /**
+     * 在I/O线程上从存储中读取区块，之后在主线程上完成加载，返回的future也在主线程上完成。
+     * 同一个区块同时只会读取一次。未启用异步区块加载时会直接同步加载。
+     * <p>
+     * Reads the chunk from the storage on an I/O thread and finishes loading it on the main thread, the returned
+     * future is also completed on the main thread. A chunk is only read once at a time. When async chunk loading is
+     * disabled the chunk is loaded synchronously.
+     *
+     * @param generate 存储中没有这个区块时是否创建一个空区块<br>whether to create an empty chunk if the storage doesn't have it
+     * @return 加载的区块，如果区块不存在且generate为false则为null<br>the loaded chunk, or null if it doesn't exist and generate is false
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int x, int z, boolean generate) {
+        long index = Level.chunkHash(x, z);
+        LevelProvider levelProvider = this.requireProvider();
+        BaseFullChunk chunk = levelProvider.getLoadedChunk(index);
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(chunk);
+        }
+        if (!this.isAsyncChunkLoadingEnabled()) {
+            return CompletableFuture.completedFuture(this.getChunk(x, z, generate));
+        }
+
+        BaseLevelProvider provider = (BaseLevelProvider) levelProvider;
+        CompletableFuture<BaseFullChunk> future = this.chunkLoadFutures.computeIfAbsent(index, i -> {
+            CompletableFuture<BaseFullChunk> read = new CompletableFuture<>();
+            try {
+                this.server.getChunkIOExecutor().execute(new ChunkLoadTask(this, provider, x, z));
+            } catch (RejectedExecutionException e) {
+                read.completeExceptionally(e);
+            }
+            return read;
+        });
+        if (future.isCompletedExceptionally()) {
+            this.chunkLoadFutures.remove(index, future);
+        }
+        if (!generate) {
+            return future;
+        }
+        // 共享的读取不会创建区块，需要时在主线程上补上
+        return future.thenApply(loaded -> loaded != null ? loaded : this.getChunk(x, z, true));
+    }
+
+    /**
+     * @return 当前存储是否可以在I/O线程上读取区块<br>whether the chunks of this level can be read on the I/O threads
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isAsyncChunkLoadingEnabled() {
+        return this.server.getChunkIOExecutor() != null
+                && this.provider instanceof BaseLevelProvider baseLevelProvider
+                && baseLevelProvider.isAsyncChunkReadSupported();
+    }
+
+    /**
+     * 区块在I/O线程上读取完成后在主线程上调用
+     * <p>
+     * Called on the main thread when a chunk has been read on an I/O thread.
+     *
+     * @param chunk 读取的区块，如果存储中没有这个区块则为null<br>the read chunk, or null if the storage doesn't have it
+     * @param error 读取时发生的错误<br>the error thrown while reading
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void asyncChunkLoadCallback(int x, int z, @Nullable BaseFullChunk chunk, @Nullable Throwable error) {
+        long index = Level.chunkHash(x, z);
+        CompletableFuture<BaseFullChunk> future = this.chunkLoadFutures.remove(index);
+        if (future == null) {
+            return;
+        }
+        LevelProvider levelProvider = this.getProvider();
+        if (error == null && levelProvider == null) {
+            error = new LevelException("The level " + this.getName() + " was unloaded while loading the chunk " + x + ", " + z);
+        }
+        if (error != null) {
+            log.error("Failed to load the chunk {}, {} of the level {}", x, z, this.getName(), error);
+            future.completeExceptionally(error);
+            return;
+        }
+
+        try {
+            // 读取期间区块可能已经被同步加载了，以已加载的为准
+            BaseFullChunk loaded = levelProvider.getLoadedChunk(index);
+            if (loaded == null && chunk != null) {
+                ((BaseLevelProvider) levelProvider).putChunk(index, chunk);
+                loaded = this.forceLoadChunk(index, x, z, false);
+            }
+            future.complete(loaded);
+        } catch (Exception e) {
+            log.error("Failed to load the chunk {}, {} of the level {}", x, z, this.getName(), e);
+            future.completeExceptionally(e);
+        }
+    }
+
     public boolean loadChunk(int x, int z, boolean generate) {
         long index = Level.chunkHash(x, z);
         if (this.requireProvider().isChunkLoaded(index)) {
@@ -4085,6 +4561,9 @@ public class Level implements ChunkManager, Metadatable {
                 }
             }
             levelProvider.unloadChunk(x, z, safe);
+            if (this.walkabilityCache != null) {
+                this.walkabilityCache.remove(x, z);
+            }
         } catch (Exception e) {
             log.error(this.server.getLanguage().translateString("nukkit.level.chunkUnloadError", e.toString()), e);
         }
@@ -4459,6 +4938,10 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void addPlayerMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        if (this.entityTracker != null) {
+            this.entityTracker.addPlayerMovement(entity, x, y, z, yaw, pitch, headYaw);
+            return;
+        }
         MovePlayerPacket pk = new MovePlayerPacket();
         pk.eid = entity.getId();
         pk.x = (float) x;
@@ -4475,8 +4958,85 @@ public class Level implements ChunkManager, Metadatable {
         Server.broadcastPacket(entity.getViewers().values(), pk);
     }
 
+    /**
+     * @return 实体元数据的修改是否在刻结束时合并发送<br>if entity metadata changes are merged and sent when the tick ends
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isEntityDataBatchingEnabled() {
+        return entityDataBatching;
+    }
+
+    /**
+     * 记录实体的元数据被修改，修改会在刻结束时通过{@link Entity#sendDirtyData()}发送
+     * <p>
+     * Records that the metadata of the entity changed, the changes are sent with {@link Entity#sendDirtyData()} when
+     * the tick ends.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void markEntityDataDirty(Entity entity) {
+        this.dirtyEntityData.add(entity);
+    }
+
+    /**
+     * @return 实体追踪器，没有启用时为null<br>the entity tracker, or null if it is not enabled
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public EntityTracker getEntityTracker() {
+        return entityTracker;
+    }
+
+    /**
+     * @return 实体的空间索引，没有启用时为null<br>the spatial index of the entities, or null if it is not enabled
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public EntitySpatialIndex getEntitySpatialIndex() {
+        return entitySpatialIndex;
+    }
+
+    /**
+     * @return 寻路使用的可站立方块缓存，没有启用时为null<br>the cache of standing blocks used by route finding, or null if
+     * it is not enabled
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public WalkabilityCache getWalkabilityCache() {
+        return walkabilityCache;
+    }
+
+    /**
+     * @return 红石线使用的图计算引擎，使用原有的逐根计算时为null<br>the graph engine used by redstone wires, or null if they
+     * use the legacy per-wire calculation
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public RedstoneWireEngine getRedstoneWireEngine() {
+        return redstoneWireEngine;
+    }
+
+    /**
+     * @param redstoneWireEngine 红石线使用的图计算引擎，为null时使用原有的逐根计算<br>the graph engine used by redstone
+     *                           wires, null to use the legacy per-wire calculation
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void setRedstoneWireEngine(@Nullable RedstoneWireEngine redstoneWireEngine) {
+        this.redstoneWireEngine = redstoneWireEngine;
+    }
+
     @PowerNukkitDifference(since = "1.6.0.0-PNX", info = "use MoveEntityDeltaPacket instead of MoveEntityAbsolutePacket to implement headYaw")
     public void addEntityMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        if (this.entityTracker != null) {
+            this.entityTracker.addEntityMovement(entity, x, y, z, yaw, pitch, headYaw);
+            return;
+        }
 //        MoveEntityAbsolutePacket pk = new MoveEntityAbsolutePacket();
 //        pk.eid = entity.getId();
 //        pk.x = (float) x;
@@ -162,6 +162,12 @@ public interface ChunkSection {
     @Nonnull
     CompoundTag toNBT();
 
+    /**
+     * 复制子区块。子区块只能在拥有者线程上写入，其他线程可以读取单个方块，但需要整个子区块一致的内容时必须使用副本。
+     * <p>
+     * Copies the section. Sections are only written on the owner thread. Other threads may read single blocks, but
+     * must use a copy when they need the whole section to be consistent.
+     */
     @Nonnull
     ChunkSection copy();
     
@@ -1,5 +1,6 @@
 package cn.nukkit.level.format.anvil;
 
+import cn.nukkit.Server;
 import cn.nukkit.api.*;
 import cn.nukkit.blockentity.BlockEntity;
 import cn.nukkit.blockentity.BlockEntitySpawnable;
@@ -18,6 +19,8 @@ import cn.nukkit.level.util.PalettedBlockStorage;
 import cn.nukkit.math.Vector3;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.network.ChunkBlobCache;
+import cn.nukkit.network.ChunkBlobs;
 import cn.nukkit.scheduler.AsyncTask;
 import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.ChunkException;
@@ -31,7 +34,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
@@ -56,16 +61,52 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
     @PowerNukkitXOnly
     @Since("1.19.20-r3")
     private DimensionData dimensionData;
+    /**
+     * 是否使用{@link MappedRegionLoader}，此时不同线程可以同时读取区块
+     * <p>
+     * Whether the regions are loaded with {@link MappedRegionLoader}, chunks can then be read by several threads at once
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private final boolean mappedRegionIO;
+    /**
+     * 打开区域文件时使用的锁，每个区域一个，同一个区域不会被打开两次
+     * <p>
+     * The locks used while opening region files, one per region, so the same region is never opened twice
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private final Map<Long, Object> regionOpenLocks = new ConcurrentHashMap<>();
 
     public Anvil(Level level, String path) throws IOException {
         super(level, path);
+        Server server = Server.getInstance();
+        mappedRegionIO = server != null && server.getConfig("level-settings.mapped-region-io", false);
         isOldAnvil = getLevelData().getInt("version") == OLD_VERSION;
+        loadDimensionData();
+        getLevelData().putInt("version", VERSION);
+    }
+
+    /**
+     * 给使用其他存储格式的子类使用，level.dat由子类自己读取
+     * <p>
+     * Used by the subclasses storing the chunks in another format, the level.dat is read by the subclass itself.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected Anvil(Level level, String path, CompoundTag levelData) {
+        super(level, path, levelData, new Vector3(levelData.getInt("SpawnX"), levelData.getInt("SpawnY"), levelData.getInt("SpawnZ")));
+        mappedRegionIO = false;
+        isOldAnvil = false;
+        loadDimensionData();
+    }
+
+    private void loadDimensionData() {
         if (getLevelData().contains("dimensionData")) {
             var dimNBT = getLevelData().getCompound("dimensionData");
             int chunkSectionCount;
             dimensionData = new DimensionData(dimNBT.getString("dimensionName"), dimNBT.getInt("dimensionId"), dimNBT.getInt("minHeight"), dimNBT.getInt("maxHeight"), (chunkSectionCount = dimNBT.getInt("chunkSectionCount")) != 0 ? chunkSectionCount : null);
         }
-        getLevelData().putInt("version", VERSION);
     }
 
     public static String getProviderName() {
@@ -158,6 +199,19 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
 
         long timestamp = chunk.getChanges();
 
+        if (this.level.isAsyncChunkSerialization()) {
+            // 在主线程上创建区块快照，序列化与压缩交给异步线程完成
+            return new ChunkSerializationTask(this, chunk, x, z, timestamp);
+        }
+
+        if (this.level.getServer().getChunkBlobCache() != null) {
+            // 客户端缓存需要按子区块拆分的数据，同步执行同一个任务
+            ChunkSerializationTask task = new ChunkSerializationTask(this, chunk, x, z, timestamp);
+            task.onRun();
+            task.onCompletion(this.level.getServer());
+            return null;
+        }
+
         BiConsumer<BinaryStream, Integer> callback = (stream, subchunks) ->
                 this.getLevel().chunkRequestCallback(timestamp, x, z, subchunks, stream.getBuffer());
         serialize(chunk, callback, this.level.getDimensionData());
@@ -174,23 +228,13 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
             blockEntities = serializeEntities(chunk);
         }
 
-        int subChunkCount = 0;
         cn.nukkit.level.format.ChunkSection[] sections = chunk.getSections();
-        for (int i = sections.length - 1; i >= 0; i--) {
-            if (!sections[i].isEmpty()) {
-                subChunkCount = i + 1;
-                break;
-            }
-        }
-
+        int subChunkCount = getSubChunkCount(sections, dimensionData);
         int maxDimensionSections = dimensionData.getHeight() >> 4;
-        subChunkCount = Math.min(maxDimensionSections, subChunkCount);
 
         byte[] biomePalettes = serializeBiomes(chunk, maxDimensionSections);
         BinaryStream stream = ThreadCache.binaryStream.get().reset();
 
-        int writtenSections = subChunkCount;
-
         final var tmpSubChunkStreams = new BinaryStream[subChunkCount];
         for (int i = 0; i < subChunkCount; i++) { // 确保全部在主线程上分配
             tmpSubChunkStreams[i] = new BinaryStream(new byte[8192]).reset(); // 8KB
@@ -207,10 +251,157 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
         stream.put(biomePalettes);
         stream.putByte((byte) 0); // Border blocks
         stream.put(blockEntities);
-        callback.accept(stream, writtenSections);
+        callback.accept(stream, subChunkCount);
+    }
+
+    /**
+     * 序列化区块快照，与{@link #serialize(BaseChunk, BiConsumer, DimensionData)}结果相同，但不访问区块本身，
+     * 因此可以在异步线程上调用。
+     * <p>
+     * Serializes a chunk snapshot. The result is the same as {@link #serialize(BaseChunk, BiConsumer, DimensionData)},
+     * but the live chunk is never touched, so it is safe to call from an async worker.
+     *
+     * @param sections      copies of the chunk sections
+     * @param blockEntities the already serialized block entities
+     * @param defaultBiome  the biome at 0, 0 used as the default biome palette state
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public final void serializeSnapshot(cn.nukkit.level.format.ChunkSection[] sections, byte[] blockEntities, int defaultBiome,
+                                        BiConsumer<BinaryStream, Integer> callback, DimensionData dimensionData) {
+        int subChunkCount = getSubChunkCount(sections, dimensionData);
+        int maxDimensionSections = dimensionData.getHeight() >> 4;
+
+        BinaryStream stream = new BinaryStream(new byte[8192 * Math.max(1, subChunkCount)]).reset();
+        boolean antiXray = level != null && level.isAntiXrayEnabled();
+        for (int i = 0; i < subChunkCount; i++) {
+            if (antiXray) {
+                sections[i].writeObfuscatedTo(stream, level);
+            } else {
+                sections[i].writeTo(stream);
+            }
+        }
+
+        int len = Math.min(sections.length, maxDimensionSections);
+        for (int i = 0; i < len; i++) {
+            write3DBiomes(sections[i], defaultBiome, stream);
+        }
+        stream.putByte((byte) 0); // Border blocks
+        stream.put(blockEntities);
+        callback.accept(stream, subChunkCount);
+    }
+
+    /**
+     * 按客户端缓存格式序列化区块快照，每个子区块与生物群系数据都会被放入{@link ChunkBlobCache}。
+     * <p>
+     * Serializes a chunk snapshot in the client blob cache format, every sub-chunk and the biome data are put
+     * into the {@link ChunkBlobCache}.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public final ChunkBlobs serializeSnapshotBlobs(cn.nukkit.level.format.ChunkSection[] sections, byte[] blockEntities, int defaultBiome,
+                                                   DimensionData dimensionData, ChunkBlobCache blobCache) {
+        int subChunkCount = getSubChunkCount(sections, dimensionData);
+        int maxDimensionSections = dimensionData.getHeight() >> 4;
+
+        long[] blobIds = new long[subChunkCount + 1];
+        byte[][] blobs = new byte[subChunkCount + 1][];
+        BinaryStream stream = new BinaryStream(new byte[8192]).reset();
+        boolean antiXray = level != null && level.isAntiXrayEnabled();
+        for (int i = 0; i < subChunkCount; i++) {
+            stream.reset();
+            if (antiXray) {
+                sections[i].writeObfuscatedTo(stream, level);
+            } else {
+                sections[i].writeTo(stream);
+            }
+            blobs[i] = stream.getBuffer();
+            blobIds[i] = blobCache.put(blobs[i]);
+        }
+
+        stream.reset();
+        int len = Math.min(sections.length, maxDimensionSections);
+        for (int i = 0; i < len; i++) {
+            write3DBiomes(sections[i], defaultBiome, stream);
+        }
+        blobs[subChunkCount] = stream.getBuffer();
+        blobIds[subChunkCount] = blobCache.put(blobs[subChunkCount]);
+
+        stream.reset();
+        stream.putByte((byte) 0); // Border blocks
+        stream.put(blockEntities);
+        return new ChunkBlobs(subChunkCount, blobIds, blobs, stream.getBuffer());
+    }
+
+    /**
+     * 序列化子区块请求模式下{@link cn.nukkit.network.protocol.LevelChunkPacket}携带的数据，只包含生物群系与边界方块，
+     * 方块数据由客户端之后通过{@link cn.nukkit.network.protocol.SubChunkRequestPacket}按需请求。
+     * <p>
+     * Serializes the payload of a {@link cn.nukkit.network.protocol.LevelChunkPacket} in sub-chunk request mode. It only
+     * holds the biomes and the border blocks, the client requests the blocks later with
+     * {@link cn.nukkit.network.protocol.SubChunkRequestPacket}.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public final byte[] serializeSubChunkRequestPayload(BaseFullChunk chunk, DimensionData dimensionData) {
+        byte[] biomePalettes = serializeBiomes(chunk, dimensionData.getHeight() >> 4);
+        BinaryStream stream = new BinaryStream(new byte[biomePalettes.length + 1]).reset();
+        stream.put(biomePalettes);
+        stream.putByte((byte) 0); // Border blocks
+        return stream.getBuffer();
+    }
+
+    /**
+     * 序列化单个子区块及其中的方块实体，作为{@link cn.nukkit.network.protocol.SubChunkPacket}的一项数据。
+     * <p>
+     * Serializes a single sub-chunk and the block entities inside of it as an entry of a
+     * {@link cn.nukkit.network.protocol.SubChunkPacket}.
+     *
+     * @param sectionY the section Y coordinate in blocks divided by 16, negative below zero
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public final byte[] serializeSubChunk(BaseChunk chunk, cn.nukkit.level.format.ChunkSection section, int sectionY) {
+        BinaryStream stream = new BinaryStream(new byte[8192]).reset();
+        if (level != null && level.isAntiXrayEnabled()) {
+            section.writeObfuscatedTo(stream, level);
+        } else {
+            section.writeTo(stream);
+        }
+
+        int minY = sectionY << 4;
+        List<CompoundTag> tagList = null;
+        for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+            int y = blockEntity.getFloorY();
+            if (blockEntity instanceof BlockEntitySpawnable spawnable && y >= minY && y < minY + 16) {
+                if (tagList == null) {
+                    tagList = new ObjectArrayList<>();
+                }
+                tagList.add(spawnable.getSpawnCompound());
+            }
+        }
+        if (tagList != null) {
+            try {
+                stream.put(NBTIO.write(tagList, ByteOrder.LITTLE_ENDIAN, true));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return stream.getBuffer();
     }
 
-    private static byte[] serializeEntities(BaseChunk chunk) {
+    private static int getSubChunkCount(cn.nukkit.level.format.ChunkSection[] sections, DimensionData dimensionData) {
+        int subChunkCount = 0;
+        for (int i = sections.length - 1; i >= 0; i--) {
+            if (!sections[i].isEmpty()) {
+                subChunkCount = i + 1;
+                break;
+            }
+        }
+        return Math.min(dimensionData.getHeight() >> 4, subChunkCount);
+    }
+
+    static byte[] serializeEntities(BaseChunk chunk) {
         List<CompoundTag> tagList = new ObjectArrayList<>();
         for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
             if (blockEntity instanceof BlockEntitySpawnable) {
@@ -234,17 +425,8 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
                 tmpSectionBiomeStream[i] = new BinaryStream(new byte[4096 + 1024]).reset(); // 5KB
             }
             IntStream.range(0, len).parallel().forEach(i -> {
-                if (sections[i] instanceof ChunkSection3DBiome each) {
-                    var palette = PalettedBlockStorage.createWithDefaultState(Biome.getBiomeIdOrCorrect(chunk.getBiomeId(0, 0) & 0xFF));
-                    for (int x = 0; x < 16; x++) {
-                        for (int z = 0; z < 16; z++) {
-                            for (int y = 0; y < 16; y++) {
-                                var tmpBiome = Biome.getBiomeIdOrCorrect(each.getBiomeId(x, y, z) & 0xFF);
-                                palette.setBlock(x, y, z, tmpBiome);
-                            }
-                        }
-                    }
-                    palette.writeTo(tmpSectionBiomeStream[i]);
+                if (sections[i] instanceof ChunkSection3DBiome) {
+                    write3DBiomes(sections[i], chunk.getBiomeId(0, 0), tmpSectionBiomeStream[i]);
                 } else {
                     var palette = PalettedBlockStorage.createWithDefaultState(Biome.getBiomeIdOrCorrect(chunk.getBiomeId(0, 0) & 0xFF));
                     for (int x = 0; x < 16; x++) {
@@ -283,6 +465,23 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
         return stream.getBuffer();
     }
 
+    private static void write3DBiomes(cn.nukkit.level.format.ChunkSection section, int defaultBiome, BinaryStream stream) {
+        var palette = PalettedBlockStorage.createWithDefaultState(Biome.getBiomeIdOrCorrect(defaultBiome & 0xFF));
+        if (!(section instanceof ChunkSection3DBiome each)) {
+            palette.writeTo(stream);
+            return;
+        }
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 16; y++) {
+                    var tmpBiome = Biome.getBiomeIdOrCorrect(each.getBiomeId(x, y, z) & 0xFF);
+                    palette.setBlock(x, y, z, tmpBiome);
+                }
+            }
+        }
+        palette.writeTo(stream);
+    }
+
     private int lastPosition = 0;
 
     @Override
@@ -314,35 +513,150 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
     }
 
     @Override
-    public synchronized BaseFullChunk loadChunk(long index, int chunkX, int chunkZ, boolean create) {
+    public BaseFullChunk loadChunk(long index, int chunkX, int chunkZ, boolean create) {
+        if (this.mappedRegionIO) {
+            return this.loadMappedChunk(index, chunkX, chunkZ, create);
+        }
         int regionX = getRegionIndexX(chunkX);
         int regionZ = getRegionIndexZ(chunkZ);
-        BaseRegionLoader region = this.loadRegion(regionX, regionZ);
         this.level.timings.syncChunkLoadDataTimer.startTiming();
         BaseFullChunk chunk;
         try {
-            chunk = region.readChunk(chunkX - regionX * 32, chunkZ - regionZ * 32);
+            // 只锁住这个区域，读取时不会阻塞其他区域的读写
+            chunk = this.lockRegion(regionX, regionZ, region -> region.readChunk(chunkX - regionX * 32, chunkZ - regionZ * 32));
         } catch (IOException e) {
+            this.level.timings.syncChunkLoadDataTimer.stopTiming();
             throw new RuntimeException(e);
         }
-        if (chunk == null) {
-            if (create) {
+        synchronized (this) {
+            BaseFullChunk loaded = this.chunks.get(index);
+            if (loaded != null) {
+                chunk = loaded;
+            } else if (chunk != null) {
+                putChunk(index, chunk);
+            } else if (create) {
                 chunk = this.getEmptyChunk(chunkX, chunkZ);
                 putChunk(index, chunk);
             }
-        } else {
-            putChunk(index, chunk);
         }
         this.level.timings.syncChunkLoadDataTimer.stopTiming();
         return chunk;
     }
 
+    /**
+     * 不持有提供者的锁读取区块，只在放入已加载区块时同步，因此多个线程可以同时加载同一区域中的不同区块
+     * <p>
+     * Reads the chunk without holding the provider lock and only synchronizes to publish it, so several threads can
+     * load different chunks of the same region at once.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private BaseFullChunk loadMappedChunk(long index, int chunkX, int chunkZ, boolean create) {
+        this.level.timings.syncChunkLoadDataTimer.startTiming();
+        BaseFullChunk chunk;
+        try {
+            chunk = this.readChunk(chunkX, chunkZ);
+        } catch (IOException e) {
+            this.level.timings.syncChunkLoadDataTimer.stopTiming();
+            throw new RuntimeException(e);
+        }
+        synchronized (this) {
+            // 其他线程可能已经加载了同一个区块，以先放入的为准
+            BaseFullChunk loaded = this.chunks.get(index);
+            if (loaded != null) {
+                chunk = loaded;
+            } else if (chunk != null) {
+                putChunk(index, chunk);
+            } else if (create) {
+                chunk = this.getEmptyChunk(chunkX, chunkZ);
+                putChunk(index, chunk);
+            }
+        }
+        this.level.timings.syncChunkLoadDataTimer.stopTiming();
+        return chunk;
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public BaseFullChunk readChunk(int chunkX, int chunkZ) throws IOException {
+        int regionX = getRegionIndexX(chunkX);
+        int regionZ = getRegionIndexZ(chunkZ);
+        int localX = chunkX - regionX * 32;
+        int localZ = chunkZ - regionZ * 32;
+        if (!this.mappedRegionIO) {
+            // 普通的区域文件不能同时读写，只锁住这个区域，不阻塞主线程读写其他区域
+            return this.lockRegion(regionX, regionZ, region -> region.readChunk(localX, localZ));
+        }
+        BaseRegionLoader region = this.loadRegion(regionX, regionZ);
+        try {
+            return region.readChunk(localX, localZ);
+        } catch (ClosedChannelException e) {
+            // 区域在读取时被垃圾回收关闭了，移除关闭的区域后重新打开再试一次
+            this.removeClosedRegion(region);
+            return this.loadRegion(regionX, regionZ).readChunk(localX, localZ);
+        }
+    }
+
+    /**
+     * 持有区域的锁执行操作。垃圾回收可能在取得锁之前关闭了区域，这时移除关闭的区域，重新打开后再执行。
+     * <p>
+     * Runs the action holding the lock of the region. The garbage collection may close the region before the lock is
+     * taken, the closed region is then removed and opened again before running the action.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private <T, E extends Exception> T lockRegion(int regionX, int regionZ, RegionAction<T, E> action) throws E {
+        while (true) {
+            BaseRegionLoader region = this.loadRegion(regionX, regionZ);
+            synchronized (region) {
+                if (!region.isClosed()) {
+                    return action.apply(region);
+                }
+            }
+            this.removeClosedRegion(region);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RegionAction<T, E extends Exception> {
+        T apply(BaseRegionLoader region) throws E;
+    }
+
+    /**
+     * 从区域表中移除已经关闭的区域，之后的{@link #loadRegion(int, int)}会重新打开它
+     * <p>
+     * Removes a closed region from the region map, the next {@link #loadRegion(int, int)} opens it again.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private void removeClosedRegion(BaseRegionLoader region) {
+        long index = Level.chunkHash(region.getX(), region.getZ());
+        synchronized (regions) {
+            if (this.regions.get(index) == region) {
+                this.regions.remove(index);
+            }
+            lastRegion.compareAndSet(region, null);
+        }
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public boolean isAsyncChunkReadSupported() {
+        return true;
+    }
+
     @Override
-    public synchronized void saveChunk(int X, int Z) {
+    public void saveChunk(int X, int Z) {
         BaseFullChunk chunk = this.getChunk(X, Z);
         if (chunk != null) {
             try {
-                this.loadRegion(X >> 5, Z >> 5).writeChunk(chunk);
+                // 只锁住这个区域，保存时不会阻塞其他区域的读写
+                this.lockRegion(X >> 5, Z >> 5, region -> {
+                    region.writeChunk(chunk);
+                    return null;
+                });
             } catch (Exception e) {
                 throw new ChunkException("Error saving chunk (" + X + ", " + Z + ")", e);
             }
@@ -351,17 +665,17 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
 
 
     @Override
-    public synchronized void saveChunk(int x, int z, FullChunk chunk) {
+    public void saveChunk(int x, int z, FullChunk chunk) {
         if (!(chunk instanceof Chunk)) {
             throw new ChunkException("Invalid Chunk class");
         }
-        int regionX = x >> 5;
-        int regionZ = z >> 5;
-        this.loadRegion(regionX, regionZ);
         chunk.setX(x);
         chunk.setZ(z);
         try {
-            this.getRegion(regionX, regionZ).writeChunk(chunk);
+            this.lockRegion(x >> 5, z >> 5, region -> {
+                region.writeChunk(chunk);
+                return null;
+            });
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -374,23 +688,43 @@ public class Anvil extends BaseLevelProvider implements DimensionDataProvider {
         return cs;
     }
 
-    protected synchronized BaseRegionLoader loadRegion(int x, int z) {
+    protected BaseRegionLoader loadRegion(int x, int z) {
         BaseRegionLoader tmp = lastRegion.get();
         if (tmp != null && x == tmp.getX() && z == tmp.getZ()) {
             return tmp;
         }
         long index = Level.chunkHash(x, z);
+        BaseRegionLoader region = this.getLoadedRegion(index);
+        if (region != null) {
+            return region;
+        }
+        // 打开区域文件时只锁住这个区域，不阻塞其他区域的加载和读写
+        synchronized (this.regionOpenLocks.computeIfAbsent(index, k -> new Object())) {
+            region = this.getLoadedRegion(index);
+            if (region != null) {
+                return region;
+            }
+            try {
+                region = this.mappedRegionIO ? new MappedRegionLoader(this, x, z) : new RegionLoader(this, x, z);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            synchronized (regions) {
+                this.regions.put(index, region);
+                lastRegion.set(region);
+            }
+            return region;
+        }
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private BaseRegionLoader getLoadedRegion(long index) {
         synchronized (regions) {
             BaseRegionLoader region = this.regions.get(index);
-            if (region == null) {
-                try {
-                    region = new RegionLoader(this, x, z);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                this.regions.put(index, region);
+            if (region != null) {
+                lastRegion.set(region);
             }
-            lastRegion.set(region);
             return region;
         }
     }
@@ -0,0 +1,81 @@
+package cn.nukkit.level.format.anvil;
+
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.level.DimensionData;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.format.ChunkSection;
+import cn.nukkit.network.ChunkBlobCache;
+import cn.nukkit.network.ChunkBlobs;
+import cn.nukkit.network.protocol.BatchPacket;
+import cn.nukkit.scheduler.AsyncTask;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * 异步区块序列化任务。构造时在主线程上复制区块的所有子区块并序列化方块实体，
+ * 之后在异步线程上完成序列化和压缩，最终在主线程上把{@link BatchPacket}交给{@link Level}发送。
+ * <p>
+ * Asynchronous chunk serialization task. The chunk sections are copied and the block entities are serialized on the
+ * main thread when the task is created, the serialization and compression happen on an async worker and the
+ * finished {@link BatchPacket} is handed back to the {@link Level} on the main thread. When the client blob cache is
+ * enabled the chunk is also split into {@link ChunkBlobs} for the players supporting it.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@Log4j2
+public class ChunkSerializationTask extends AsyncTask {
+    private final Anvil provider;
+    private final Level level;
+    private final DimensionData dimensionData;
+    private final int chunkX;
+    private final int chunkZ;
+    private final long timestamp;
+    private final int defaultBiome;
+    private ChunkSection[] sections;
+    private byte[] blockEntities;
+    private BatchPacket packet;
+    private ChunkBlobs blobs;
+
+    public ChunkSerializationTask(Anvil provider, Chunk chunk, int chunkX, int chunkZ, long timestamp) {
+        this.provider = provider;
+        this.level = provider.getLevel();
+        this.dimensionData = this.level.getDimensionData();
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.timestamp = timestamp;
+        this.defaultBiome = chunk.getBiomeId(0, 0);
+        ChunkSection[] chunkSections = chunk.getSections();
+        this.sections = new ChunkSection[chunkSections.length];
+        for (int i = 0; i < chunkSections.length; i++) {
+            this.sections[i] = chunkSections[i].copy();
+        }
+        this.blockEntities = chunk.getBlockEntities().isEmpty() ? new byte[0] : Anvil.serializeEntities(chunk);
+        this.level.onAsyncChunkSerializationStart();
+    }
+
+    @Override
+    public void onRun() {
+        try {
+            ChunkBlobCache blobCache = Server.getInstance().getChunkBlobCache();
+            if (blobCache != null) {
+                this.blobs = this.provider.serializeSnapshotBlobs(this.sections, this.blockEntities, this.defaultBiome, this.dimensionData, blobCache);
+                this.packet = Player.getChunkCacheFromData(this.chunkX, this.chunkZ, this.blobs.subChunkCount, this.blobs.toPayload());
+            } else {
+                this.provider.serializeSnapshot(this.sections, this.blockEntities, this.defaultBiome, (stream, subChunkCount) ->
+                        this.packet = Player.getChunkCacheFromData(this.chunkX, this.chunkZ, subChunkCount, stream.getBuffer()), this.dimensionData);
+            }
+        } catch (Exception e) {
+            log.error("Failed to serialize the chunk {}, {} of the level {}", this.chunkX, this.chunkZ, this.level.getName(), e);
+        } finally {
+            this.sections = null;
+            this.blockEntities = null;
+        }
+    }
+
+    @Override
+    public void onCompletion(Server server) {
+        this.level.asyncChunkRequestCallback(this.timestamp, this.chunkX, this.chunkZ, this.packet, this.blobs);
+    }
+}
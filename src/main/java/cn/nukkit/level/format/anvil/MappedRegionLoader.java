@@ -0,0 +1,269 @@
+package cn.nukkit.level.format.anvil;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.level.format.LevelProvider;
+import cn.nukkit.utils.ChunkException;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 使用内存映射的区域文件加载器。区域文件头部的位置表被映射到内存中，区块数据通过{@link FileChannel}按位置读写，
+ * 因此多个线程可以同时读取同一个区域文件中的不同区块，只有写入时才需要独占。
+ * <p>
+ * A region loader that memory-maps the location table of the region file and reads and writes the chunk data with
+ * positional {@link FileChannel} operations, so several threads can read different chunks of the same region at the
+ * same time. Only writes take the region exclusively.
+ * <p>
+ * 当区域在读取时被关闭，{@link #readChunk(int, int)}会抛出{@link ClosedChannelException}，调用者应该重新加载区域后重试。
+ * <p>
+ * When the region gets closed while reading, {@link #readChunk(int, int)} throws a {@link ClosedChannelException},
+ * the caller should load the region again and retry.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@Log4j2
+public class MappedRegionLoader extends RegionLoader {
+    private static final int HEADER_SIZE = 8192;
+    /**
+     * {@code sun.misc.Unsafe.invokeCleaner}，用于关闭时立即释放映射，不可用时为null，映射等到垃圾回收时才释放
+     * <p>
+     * {@code sun.misc.Unsafe.invokeCleaner}, used to release the mapping right away on close. It is null when not
+     * available, the mapping is then released by the garbage collector.
+     */
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 由父类构造方法通过loadLocationTable或createBlank赋值，不能有初始值
+    private MappedByteBuffer header;
+
+    private volatile boolean closed;
+
+    public MappedRegionLoader(LevelProvider level, int regionX, int regionZ) throws IOException {
+        super(level, regionX, regionZ);
+    }
+
+    @Override
+    public Chunk readChunk(int x, int z) throws IOException {
+        int index = getChunkOffset(x, z);
+        if (index < 0 || index >= 4096) {
+            return null;
+        }
+
+        this.lastUsed = System.currentTimeMillis();
+
+        byte[] data;
+        this.lock.readLock().lock();
+        try {
+            if (this.closed) {
+                throw new ClosedChannelException();
+            }
+            if (!this.isChunkGenerated(index)) {
+                return null;
+            }
+
+            int[] table = this.primitiveLocationTable.get(index);
+            FileChannel channel = this.getRandomAccessFile().getChannel();
+            long position = (long) table[0] << 12L;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(5);
+            readFully(channel, chunkHeader, position);
+            int length = chunkHeader.getInt(0);
+            byte compression = chunkHeader.get(4);
+            // 读取时不修改位置表，损坏的区块交给下一次保存覆盖
+            if (length <= 0 || length >= MAX_SECTOR_LENGTH) {
+                if (length >= MAX_SECTOR_LENGTH) {
+                    log.error("Corrupted chunk header detected");
+                }
+                return null;
+            }
+            if (length > (table[1] << 12)) {
+                log.error("Corrupted bigger chunk detected");
+            } else if (compression != COMPRESSION_ZLIB && compression != COMPRESSION_GZIP) {
+                log.error("Invalid compression type");
+                return null;
+            }
+
+            data = new byte[length - 1];
+            readFully(channel, ByteBuffer.wrap(data), position + 5);
+        } catch (EOFException e) {
+            log.error("Your world is corrupt, because some code is bad and corrupted it. oops. ");
+            return null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return this.onChunkRead(this.unserializeChunk(data), x, z);
+    }
+
+    @Override
+    protected void saveChunk(int x, int z, byte[] chunkData) throws IOException {
+        int length = chunkData.length + 1;
+        if (length + 4 > MAX_SECTOR_LENGTH) {
+            throw new ChunkException("Chunk is too big! " + (length + 4) + " > " + MAX_SECTOR_LENGTH);
+        }
+        int sectors = (length + 4 + 4095) >> 12;
+        ByteBuffer buffer = ByteBuffer.allocate(sectors << 12);
+        buffer.putInt(length);
+        buffer.put(COMPRESSION_ZLIB);
+        buffer.put(chunkData);
+        buffer.clear();
+
+        int index = getChunkOffset(x, z);
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                throw new ClosedChannelException();
+            }
+            int[] table = this.primitiveLocationTable.get(index);
+            if (table[1] < sectors) {
+                table[0] = this.lastSector + 1;
+                this.lastSector += sectors;
+            }
+            table[1] = sectors;
+            table[2] = (int) (System.currentTimeMillis() / 1000d);
+            this.primitiveLocationTable.put(index, table);
+
+            FileChannel channel = this.getRandomAccessFile().getChannel();
+            long position = (long) table[0] << 12L;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            this.writeLocationIndex(index);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeChunk(int x, int z) {
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                throw new ChunkException("The region is closed");
+            }
+            super.removeChunk(x, z);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int doSlowCleanUp() throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                throw new ClosedChannelException();
+            }
+            return super.doSlowCleanUp();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.writeLocationTable();
+            this.header.force();
+            super.close();
+            // 文件关闭后映射仍然有效，需要手动释放，否则要等到垃圾回收，在Windows上此前无法删除这个文件
+            MappedByteBuffer header = this.header;
+            this.header = null;
+            unmap(header);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void loadLocationTable() throws IOException {
+        this.header = this.mapHeader();
+        this.lastSector = 1;
+        for (int i = 0; i < 1024; ++i) {
+            int index = this.header.getInt(i << 2);
+            int[] table = new int[]{index >> 8, index & 0xff, this.header.getInt(4096 + (i << 2))};
+            this.primitiveLocationTable.put(i, table);
+            int value = table[0] + table[1] - 1;
+            if (value > this.lastSector) {
+                this.lastSector = value;
+            }
+        }
+    }
+
+    @Override
+    protected void writeLocationTable() {
+        for (int i = 0; i < 1024; ++i) {
+            int[] array = this.primitiveLocationTable.get(i);
+            this.header.putInt(i << 2, (array[0] << 8) | array[1]);
+            this.header.putInt(4096 + (i << 2), array[2]);
+        }
+    }
+
+    @Override
+    protected void writeLocationIndex(int index) {
+        int[] array = this.primitiveLocationTable.get(index);
+        this.header.putInt(index << 2, (array[0] << 8) | array[1]);
+        this.header.putInt(4096 + (index << 2), array[2]);
+    }
+
+    @Override
+    protected void createBlank() throws IOException {
+        super.createBlank();
+        this.header = this.mapHeader();
+    }
+
+    private MappedByteBuffer mapHeader() throws IOException {
+        return this.getRandomAccessFile().getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.debug("Unable to unmap a region header", e);
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Unable to find Unsafe.invokeCleaner, the region headers are unmapped by the garbage collector", e);
+            return null;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+}
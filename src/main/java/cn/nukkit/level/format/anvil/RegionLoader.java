@@ -8,6 +8,7 @@ import cn.nukkit.level.Level;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.format.generic.BaseRegionLoader;
+import cn.nukkit.level.format.leveldb.LevelDBProvider;
 import cn.nukkit.utils.Binary;
 import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.ChunkException;
@@ -89,40 +90,52 @@ public class RegionLoader extends BaseRegionLoader {
 
             byte[] data = new byte[length - 1];
             raf.readFully(data);
-            Chunk chunk = this.unserializeChunk(data);
-            if (chunk != null) {
-                //更新256世界到384世界
-                if (levelProvider != null && !chunk.isNew384World && levelProvider.isOverWorld() && levelProvider instanceof Anvil) {
-                    //检查重复更新情况
-                    if (chunkUpdated == null) {
-                        chunkUpdated = LongSets.synchronize(new LongArraySet());
-                    }
-                    final long chunkHash = Level.chunkHash(chunk.getX(), chunk.getZ());
-                    if (!chunkUpdated.contains(chunkHash)) {
-                        chunkUpdated.add(chunkHash);
-                        chunk.isNew384World = true; //这可以在大部分情况下避免区块重复更新，但是对多线程造成的重复更新仍然无效，所以需要一个set来检查
-                        var bid = Server.getInstance().addBusying(System.currentTimeMillis());
-                        log.info(Server.getInstance().getLanguage().translateString("nukkit.anvil.converter.update-chunk", levelProvider.getLevel().getName(), chunk.getX() << 4, chunk.getZ() << 4));
-                        for (int dx = 0; dx < 16; dx++) {
-                            for (int dz = 0; dz < 16; dz++) {
-                                for (int dy = 255; dy >= -64; --dy) {
-                                    chunk.setBlockState(dx, dy + 64, dz, chunk.getBlockState(dx, dy, dz));
-                                    chunk.setBlockStateAtLayer(dx, dy + 64, dz, 1, chunk.getBlockState(dx, dy, dz, 1));
-                                    chunk.setBlockState(dx, dy, dz, BlockState.AIR);
-                                    chunk.setBlockStateAtLayer(dx, dy, dz, 1, BlockState.AIR);
-                                }
+            return this.onChunkRead(this.unserializeChunk(data), x, z);
+        } catch (EOFException e) {
+            log.error("Your world is corrupt, because some code is bad and corrupted it. oops. ");
+            return null;
+        }
+    }
+
+    /**
+     * 处理从区域文件中读出的区块，必要时把256高度的旧区块升级为384高度
+     * <p>
+     * Handles a chunk read from the region file, upgrading old 256 high chunks to 384 high when needed.
+     *
+     * @return 处理后的区块，如果区块损坏则为null<br>the handled chunk, or null if the chunk is corrupted
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    protected Chunk onChunkRead(Chunk chunk, int x, int z) {
+        if (chunk != null) {
+            //更新256世界到384世界
+            if (levelProvider != null && !chunk.isNew384World && levelProvider.isOverWorld() && levelProvider instanceof Anvil && !(levelProvider instanceof LevelDBProvider)) {
+                //检查重复更新情况
+                if (chunkUpdated == null) {
+                    chunkUpdated = LongSets.synchronize(new LongArraySet());
+                }
+                final long chunkHash = Level.chunkHash(chunk.getX(), chunk.getZ());
+                if (!chunkUpdated.contains(chunkHash)) {
+                    chunkUpdated.add(chunkHash);
+                    chunk.isNew384World = true; //这可以在大部分情况下避免区块重复更新，但是对多线程造成的重复更新仍然无效，所以需要一个set来检查
+                    var bid = Server.getInstance().addBusying(System.currentTimeMillis());
+                    log.info(Server.getInstance().getLanguage().translateString("nukkit.anvil.converter.update-chunk", levelProvider.getLevel().getName(), chunk.getX() << 4, chunk.getZ() << 4));
+                    for (int dx = 0; dx < 16; dx++) {
+                        for (int dz = 0; dz < 16; dz++) {
+                            for (int dy = 255; dy >= -64; --dy) {
+                                chunk.setBlockState(dx, dy + 64, dz, chunk.getBlockState(dx, dy, dz));
+                                chunk.setBlockStateAtLayer(dx, dy + 64, dz, 1, chunk.getBlockState(dx, dy, dz, 1));
+                                chunk.setBlockState(dx, dy, dz, BlockState.AIR);
+                                chunk.setBlockStateAtLayer(dx, dy, dz, 1, BlockState.AIR);
                             }
                         }
-                        Server.getInstance().removeBusying(bid);
                     }
+                    Server.getInstance().removeBusying(bid);
                 }
-                return chunk;
-            } else {
-                log.error("Corrupted chunk detected at ({}, {}) in {}", x, z, levelProvider.getName());
-                return null;
             }
-        } catch (EOFException e) {
-            log.error("Your world is corrupt, because some code is bad and corrupted it. oops. ");
+            return chunk;
+        } else {
+            log.error("Corrupted chunk detected at ({}, {}) in {}", x, z, levelProvider.getName());
             return null;
         }
     }
@@ -273,7 +286,7 @@ public class RegionLoader extends BaseRegionLoader {
         }
     }
 
-    private void writeLocationTable() throws IOException {
+    protected void writeLocationTable() throws IOException {
         RandomAccessFile raf = this.getRandomAccessFile();
         raf.seek(0);
         for (int i = 0; i < 1024; ++i) {
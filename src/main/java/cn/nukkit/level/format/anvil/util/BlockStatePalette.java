@@ -0,0 +1,223 @@
+package cn.nukkit.level.format.anvil.util;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.blockstate.BlockState;
+import cn.nukkit.level.util.BitArray;
+import cn.nukkit.level.util.BitArrayVersion;
+import cn.nukkit.utils.BinaryStream;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * 子区块一层方块的调色板存储，只保存不重复的{@link BlockState}列表和一个按位压缩的索引数组，
+ * 调色板增长时自动扩大索引位数，扩大前会先回收不再使用的调色板项。
+ * <p>
+ * The palette storage of a section layer. It only keeps the distinct {@link BlockState}s and a packed
+ * {@link BitArray} of indexes into them. The bits per index grow with the palette, entries that are no longer
+ * used are reclaimed before growing.
+ * <p>
+ * 调色板项数组和索引数组作为一对通过volatile字段发布。调色板项数组发布后不再修改，索引数组只会原地写入已有调色板项的编号，
+ * 新增或回收调色板项、扩大索引位数时会构建新的一对再整体替换。所以{@link #get}可以在任意线程调用，
+ * 例如寻路线程池读取已加载的区块时，总是读到一致的一对；写入仍然只能在拥有这个子区块的线程上进行（已加载的区块为世界线程）。
+ * <p>
+ * The palette entries and the index array are published as one pair through a volatile field. The entries array is
+ * never modified once published and the index array is only written in place with the ids of existing entries.
+ * Adding or reclaiming entries and growing the bits per index build a new pair and swap it in as a whole. So
+ * {@link #get} may be called from any thread, like the route finding pool reading loaded chunks, and always reads a
+ * consistent pair. Writes must still happen on the thread owning the section (the level thread for loaded chunks).
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+final class BlockStatePalette {
+    private static final int SIZE = BlockStorage.SECTION_SIZE;
+
+    /**
+     * 超过这个数量的调色板项时使用哈希表查找
+     * <p>
+     * palettes bigger than this use a hash map for the lookups
+     */
+    private static final int LINEAR_LOOKUP_LIMIT = 16;
+
+    private volatile Data data;
+    /**
+     * 只在拥有者线程上使用
+     * <p>
+     * only used on the owner thread
+     */
+    @Nullable
+    private Object2IntOpenHashMap<BlockState> lookup;
+
+    BlockStatePalette() {
+        this(new BlockState[]{BlockState.AIR}, BitArrayVersion.V1.createPalette(SIZE));
+    }
+
+    private BlockStatePalette(BlockState[] entries, BitArray bitArray) {
+        this.data = new Data(entries, bitArray);
+        if (entries.length > LINEAR_LOOKUP_LIMIT) {
+            this.rebuildLookup(entries);
+        }
+    }
+
+    BlockState get(int index) {
+        Data data = this.data;
+        return data.entries()[data.bitArray().get(index)];
+    }
+
+    void set(int index, BlockState state) {
+        Data data = this.data;
+        int id = this.indexOf(data.entries(), state);
+        if (id != -1) {
+            data.bitArray().set(index, id);
+        } else {
+            this.add(data, index, state);
+        }
+    }
+
+    /**
+     * @return 调色板项的数量，包括可能已经不再使用的项<br>the number of palette entries, including the ones that may be unused
+     */
+    int getPaletteSize() {
+        return this.data.entries().length;
+    }
+
+    BitArrayVersion getVersion() {
+        return this.data.bitArray().getVersion();
+    }
+
+    /**
+     * 复制调色板，可以在任意线程调用。和拥有者线程同时写入的方块可能复制到写入前或写入后的值。
+     * <p>
+     * Copies the palette. It may be called from any thread, a block written by the owner thread at the same time is
+     * copied either before or after the write.
+     */
+    BlockStatePalette copy() {
+        Data data = this.data;
+        // 调色板项数组不会再被修改，可以共用
+        return new BlockStatePalette(data.entries(), data.bitArray().copy());
+    }
+
+    /**
+     * 以网络格式写入，调色板项在写入时转换为运行时ID
+     * <p>
+     * Writes the network format, the palette entries are converted to runtime ids while writing.
+     */
+    void writeTo(BinaryStream stream) {
+        Data data = this.data;
+        stream.putByte((byte) ((data.bitArray().getVersion().getId() << 1) | 1));
+        for (int word : data.bitArray().getWords()) {
+            stream.putLInt(word);
+        }
+        BlockState[] entries = data.entries();
+        stream.putVarInt(entries.length);
+        for (BlockState entry : entries) {
+            stream.putVarInt(entry.getRuntimeId());
+        }
+    }
+
+    private int indexOf(BlockState[] entries, BlockState state) {
+        if (this.lookup != null) {
+            return this.lookup.getInt(state);
+        }
+        for (int i = 0; i < entries.length; i++) {
+            BlockState entry = entries[i];
+            if (entry == state || entry.equals(state)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 新增一个调色板项并写入方块。调色板已满时先回收不再被任何方块使用的项，回收后仍然接近满时扩大索引位数，
+     * 避免每次新增方块都重新回收。新的一对构建完成后才发布。
+     * <p>
+     * Adds a palette entry and writes the block. When the palette is full the entries no longer used by any block are
+     * reclaimed first, and the bits per index grow if it is still nearly full, so not every new block reclaims again.
+     * The new pair is only published once it is complete.
+     */
+    private void add(Data data, int index, BlockState state) {
+        BlockState[] entries = data.entries();
+        BitArray bitArray = data.bitArray();
+        BitArrayVersion version = bitArray.getVersion();
+        int[] remap = null;
+        int used = entries.length;
+        if (entries.length > version.getMaxEntryValue()) {
+            remap = new int[entries.length];
+            used = this.markUsed(bitArray, remap);
+            if (used == entries.length) {
+                remap = null;
+            }
+            if (remap == null || used > (version.getMaxEntryValue() + 1) * 3 / 4) {
+                version = version.next();
+            }
+        }
+
+        BlockState[] newEntries = new BlockState[used + 1];
+        if (remap == null) {
+            System.arraycopy(entries, 0, newEntries, 0, used);
+        } else {
+            for (int i = 0; i < entries.length; i++) {
+                if (remap[i] != -1) {
+                    newEntries[remap[i]] = entries[i];
+                }
+            }
+        }
+        newEntries[used] = state;
+
+        BitArray newBitArray;
+        if (remap == null && version == bitArray.getVersion()) {
+            newBitArray = bitArray.copy();
+        } else {
+            newBitArray = version.createPalette(SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                int id = bitArray.get(i);
+                newBitArray.set(i, remap == null ? id : remap[id]);
+            }
+        }
+        newBitArray.set(index, used);
+
+        if (this.lookup != null && remap == null) {
+            this.lookup.put(state, used);
+        } else if (this.lookup != null || newEntries.length > LINEAR_LOOKUP_LIMIT) {
+            this.rebuildLookup(newEntries);
+        }
+        this.data = new Data(newEntries, newBitArray);
+    }
+
+    /**
+     * 计算仍在使用的调色板项回收后的编号
+     * <p>
+     * Works out the ids of the entries still in use after reclaiming the others
+     *
+     * @param remap 每个调色板项的新编号，不再使用的项为-1<br>the new id of every entry, -1 for the unused ones
+     * @return 仍在使用的调色板项数量<br>the number of entries still in use
+     */
+    private int markUsed(BitArray bitArray, int[] remap) {
+        Arrays.fill(remap, -1);
+        for (int i = 0; i < SIZE; i++) {
+            remap[bitArray.get(i)] = 0;
+        }
+        int used = 0;
+        for (int i = 0; i < remap.length; i++) {
+            if (remap[i] == 0) {
+                remap[i] = used++;
+            }
+        }
+        return used;
+    }
+
+    private void rebuildLookup(BlockState[] entries) {
+        Object2IntOpenHashMap<BlockState> map = new Object2IntOpenHashMap<>(entries.length * 2);
+        map.defaultReturnValue(-1);
+        for (int i = 0; i < entries.length; i++) {
+            map.put(entries[i], i);
+        }
+        this.lookup = map;
+    }
+
+    private record Data(BlockState[] entries, BitArray bitArray) {
+    }
+}
@@ -19,12 +19,19 @@ import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.util.Arrays;
 import java.util.BitSet;
 
 import static cn.nukkit.api.API.Definition.INTERNAL;
 import static cn.nukkit.api.API.Usage.BLEEDING;
 
+/**
+ * 子区块的方块存储。写入只能在拥有者线程上进行；单个方块状态可以在任意线程读取，调色板保证读到有效的方块状态，
+ * 但同时写入的方块可能读到写入前或写入后的值。需要整个子区块一致的内容时请使用{@link #copy()}的副本。
+ * <p>
+ * The block storage of a section. Writes must happen on the owner thread. Single block states may be read from any
+ * thread, the palette makes sure a valid state is read, but a block written at the same time may be read before or
+ * after the write. Use a {@link #copy()} when the whole section must be consistent.
+ */
 @ParametersAreNonnullByDefault
 @Log4j2
 public class BlockStorage {
@@ -53,14 +60,19 @@ public class BlockStorage {
     @PowerNukkitOnly
     public static final int SECTION_SIZE = 4096;
 
-    private static final BlockState[] EMPTY = new BlockState[SECTION_SIZE];
-
-    static {
-        Arrays.fill(EMPTY, BlockState.AIR);
-    }
-
-    private final PalettedBlockStorage palette;
-    private final BlockState[] states;
+    /**
+     * 方块状态只保存在调色板和按位压缩的索引中，不再为每个方块保存一个引用
+     * <p>
+     * The block states are only kept as a palette and packed indexes, there is no reference per block anymore
+     */
+    private final BlockStatePalette states;
+    /**
+     * 反矿透模式下发送给客户端的调色板，只在需要时创建
+     * <p>
+     * The palette sent to the clients when anti-xray is enabled, only created when needed
+     */
+    @Nullable
+    private PalettedBlockStorage obfuscatedPalette;
     private byte flags = FLAG_PALETTE_UPDATED;
     @Nullable
     private BitSet denyStates = null;
@@ -69,16 +81,15 @@ public class BlockStorage {
     private boolean needReObfuscate = true;
 
     public BlockStorage() {
-        states = EMPTY.clone();
-        palette = new PalettedBlockStorage();
+        states = new BlockStatePalette();
     }
 
-    @Since("1.4.0.0-PN")
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
     @API(definition = INTERNAL, usage = BLEEDING)
-    BlockStorage(BlockState[] states, byte flags, PalettedBlockStorage palette, @Nullable BitSet denyStates) {
+    BlockStorage(BlockStatePalette states, byte flags, @Nullable BitSet denyStates) {
         this.states = states;
         this.flags = flags;
-        this.palette = palette;
         this.denyStates = denyStates;
     }
 
@@ -103,24 +114,24 @@ public class BlockStorage {
     @DeprecationDetails(reason = "The meta is limited to 32 bits", since = "1.4.0.0-PN")
     @Nonnegative
     public int getBlockData(int x, int y, int z) {
-        return states[getIndex(x, y, z)].getSignedBigDamage();
+        return states.get(getIndex(x, y, z)).getSignedBigDamage();
     }
 
     @Nonnegative
     public int getBlockId(int x, int y, int z) {
-        return states[getIndex(x, y, z)].getBlockId();
+        return states.get(getIndex(x, y, z)).getBlockId();
     }
 
     public void setBlockId(int x, int y, int z, @Nonnegative int id) {
         int index = getIndex(x, y, z);
-        setBlockState(index, states[index].withBlockId(id));
+        setBlockState(index, states.get(index).withBlockId(id));
     }
 
     @Deprecated
     @DeprecationDetails(reason = "The meta is limited to 32 bits", since = "1.4.0.0-PN")
     public void setBlockData(int x, int y, int z, @Nonnegative int data) {
         int index = getIndex(x, y, z);
-        setBlockState(index, states[index].withData(data));
+        setBlockState(index, states.get(index).withData(data));
     }
 
     @Deprecated
@@ -176,7 +187,7 @@ public class BlockStorage {
         int blockId = value >> Block.DATA_BITS & BLOCK_ID_FULL;
         int data = value & Block.DATA_MASK;
         BlockState newState = BlockState.of(blockId, data);
-        BlockState oldState = states[index];
+        BlockState oldState = states.get(index);
         if (oldState.equals(newState)) {
             return value;
         }
@@ -187,7 +198,7 @@ public class BlockStorage {
     @Deprecated
     @DeprecationDetails(reason = "The meta is limited to 32 bits", since = "1.3.0.0-PN")
     private int getFullBlock(int index) {
-        return states[index].getFullId();
+        return states.get(index).getFullId();
     }
 
     @Deprecated
@@ -214,19 +225,19 @@ public class BlockStorage {
             }
         }
 
-        BlockState previous = states[index];
+        BlockState previous = states.get(index);
         if (previous.equals(state)) {
             return previous;
         }
 
-        states[index] = state;
+        states.set(index, state);
         updateFlags(index, previous, state);
-        if (getFlag(FLAG_PALETTE_UPDATED)) {
+        if (obfuscatedPalette != null && getFlag(FLAG_PALETTE_UPDATED)) {
             int runtimeId = state.getRuntimeId();
             if (runtimeId == BlockStateRegistry.getFallbackRuntimeId() && !state.equals(BlockStateRegistry.getFallbackBlockState())) {
                 delayPaletteUpdates();
             } else {
-                palette.setBlock(index, runtimeId);
+                obfuscatedPalette.setBlock(index, runtimeId);
             }
         }
 
@@ -248,13 +259,17 @@ public class BlockStorage {
     @PowerNukkitOnly
     @Since("1.4.0.0-PN")
     public BlockState getBlockState(int x, int y, int z) {
-        return states[getIndex(x, y, z)];
+        return states.get(getIndex(x, y, z));
     }
 
     @Since("1.4.0.0-PN")
     @PowerNukkitOnly
     public void recheckBlocks() {
-        flags = computeFlags((byte) (flags & FLAG_PALETTE_UPDATED), states);
+        byte newFlags = (byte) (flags & FLAG_PALETTE_UPDATED);
+        for (int i = 0; i < SECTION_SIZE && newFlags != FLAG_EVERYTHING_ENABLED; i++) {
+            newFlags = computeFlags(newFlags, states.get(i));
+        }
+        flags = newFlags;
     }
 
     private void updateFlags(int index, BlockState previous, BlockState state) {
@@ -317,7 +332,7 @@ public class BlockStorage {
                         return;
                     }
                     denyStates.clear(index + 1);
-                } else if (states[index >> 1].getBlockId() == BlockID.ALLOW) {
+                } else if (states.get(index >> 1).getBlockId() == BlockID.ALLOW) {
                     // Check if the allow state is actually from a allow block or from a previous removal
                     return;
                 } else {
@@ -343,7 +358,7 @@ public class BlockStorage {
                         return;
                     }
                     denyStates.clear(index);
-                } else if (states[index >> 1].getBlockId() == BlockID.DENY) {
+                } else if (states.get(index >> 1).getBlockId() == BlockID.DENY) {
                     // Check if the deny state is actually from a deny block or from a previous removal
                     return;
                 } else {
@@ -388,7 +403,7 @@ public class BlockStorage {
         final int bottomIndex = index & ~0xF;
         final int topIndex = index | 0xF;
         for (int blockIndex = bottomIndex; blockIndex < topIndex; blockIndex++) {
-            if (states[blockIndex].getBlockId() == BlockID.BORDER_BLOCK) {
+            if (states.get(blockIndex).getBlockId() == BlockID.BORDER_BLOCK) {
                 return;
             }
         }
@@ -397,7 +412,7 @@ public class BlockStorage {
         boolean removeDeny = true;
         boolean removeAllow = true;
         for (int blockIndex = bottomIndex, flagIndex = blockIndex << 1; blockIndex < topIndex; blockIndex++, flagIndex += 2) {
-            switch (states[blockIndex].getBlockId()) {
+            switch (states.get(blockIndex).getBlockId()) {
                 case BlockID.ALLOW:
                     removeDeny = true;
                     removeAllow = false;
@@ -417,29 +432,23 @@ public class BlockStorage {
         }
     }
 
-    private byte computeFlags(byte newFlags, BlockState... states) {
-        for (BlockState state : states) {
-            int blockId = state.getBlockId();
-            if ((blockId & BLOCK_ID_EXTRA_MASK) != 0) {
-                newFlags |= FLAG_ENABLE_ID_EXTRA;
-            } else if (blockId != 0) {
-                newFlags |= FLAG_HAS_ID;
-            }
-
-            int bitSize = state.getBitSize();
-            if (bitSize > 16) {
-                newFlags |= FLAG_ENABLE_DATA_HUGE;
-            } else if (bitSize > 8) {
-                newFlags |= FLAG_ENABLE_DATA_BIG;
-            } else if (bitSize > 4) {
-                newFlags |= FLAG_ENABLE_DATA_EXTRA;
-            } else if (bitSize > 1 || blockId != 0) {
-                newFlags |= FLAG_HAS_ID;
-            }
+    private byte computeFlags(byte newFlags, BlockState state) {
+        int blockId = state.getBlockId();
+        if ((blockId & BLOCK_ID_EXTRA_MASK) != 0) {
+            newFlags |= FLAG_ENABLE_ID_EXTRA;
+        } else if (blockId != 0) {
+            newFlags |= FLAG_HAS_ID;
+        }
 
-            if (newFlags == FLAG_EVERYTHING_ENABLED) {
-                return newFlags;
-            }
+        int bitSize = state.getBitSize();
+        if (bitSize > 16) {
+            newFlags |= FLAG_ENABLE_DATA_HUGE;
+        } else if (bitSize > 8) {
+            newFlags |= FLAG_ENABLE_DATA_BIG;
+        } else if (bitSize > 4) {
+            newFlags |= FLAG_ENABLE_DATA_EXTRA;
+        } else if (bitSize > 1 || blockId != 0) {
+            newFlags |= FLAG_HAS_ID;
         }
 
         return newFlags;
@@ -448,14 +457,14 @@ public class BlockStorage {
     @Since("1.4.0.0-PN")
     public BlockStorage copy() {
         BitSet deny = denyStates;
-        return new BlockStorage(states.clone(), flags, palette.copy(), (BitSet) (deny != null ? deny.clone() : null));
+        return new BlockStorage(states.copy(), flags, (BitSet) (deny != null ? deny.clone() : null));
     }
 
     @PowerNukkitOnly
     @Since("1.4.0.0-PN")
     @Nonnull
     public ImmutableBlockStorage immutableCopy() {
-        return new ImmutableBlockStorage(states, flags, palette, denyStates);
+        return new ImmutableBlockStorage(states, flags, denyStates);
     }
 
     private boolean getFlag(byte flag) {
@@ -503,22 +512,17 @@ public class BlockStorage {
 
     @Since("1.4.0.0-PN")
     public void writeTo(BinaryStream stream) {
-        if (!isPaletteUpdated()) {
-            for (int i = 0; i < states.length; i++) {
-                palette.setBlock(i, states[i].getRuntimeId());
-            }
-            setFlag(FLAG_PALETTE_UPDATED, true);
-        }
-        palette.writeTo(stream);
+        // 运行时ID在写入时由调色板计算，因此不需要等待延迟的调色板更新
+        states.writeTo(stream);
     }
 
     protected final boolean canBeObfuscated(IntSet transparentBlockSet, int x, int y, int z) {
-        return !transparentBlockSet.contains(states[getIndex(x + 1, y, z)].getRuntimeId()) &&
-                !transparentBlockSet.contains(states[getIndex(x - 1, y, z)].getRuntimeId()) &&
-                !transparentBlockSet.contains(states[getIndex(x, y + 1, z)].getRuntimeId()) &&
-                !transparentBlockSet.contains(states[getIndex(x, y - 1, z)].getRuntimeId()) &&
-                !transparentBlockSet.contains(states[getIndex(x, y, z + 1)].getRuntimeId()) &&
-                !transparentBlockSet.contains(states[getIndex(x, y, z - 1)].getRuntimeId());
+        return !transparentBlockSet.contains(states.get(getIndex(x + 1, y, z)).getRuntimeId()) &&
+                !transparentBlockSet.contains(states.get(getIndex(x - 1, y, z)).getRuntimeId()) &&
+                !transparentBlockSet.contains(states.get(getIndex(x, y + 1, z)).getRuntimeId()) &&
+                !transparentBlockSet.contains(states.get(getIndex(x, y - 1, z)).getRuntimeId()) &&
+                !transparentBlockSet.contains(states.get(getIndex(x, y, z + 1)).getRuntimeId()) &&
+                !transparentBlockSet.contains(states.get(getIndex(x, y, z - 1)).getRuntimeId());
     }
 
     @PowerNukkitXOnly
@@ -529,12 +533,13 @@ public class BlockStorage {
         var transparentBlockSet = Level.getRawTransparentBlockRuntimeIds();
         var XAndDenominator = level.getFakeOreDenominator() - 1;
         var nukkitRandom = new NukkitRandom(level.getSeed());
-        if (!isPaletteUpdated() || needReObfuscate) {
-            for (int i = 0; i < states.length; i++) {
+        if (obfuscatedPalette == null || !isPaletteUpdated() || needReObfuscate) {
+            PalettedBlockStorage palette = new PalettedBlockStorage();
+            for (int i = 0; i < SECTION_SIZE; i++) {
                 int x = (i >> 8) & 0xF;
                 int z = (i >> 4) & 0xF;
                 int y = i & 0xF;
-                var rid = states[i].getRuntimeId();
+                var rid = states.get(i).getRuntimeId();
                 if (x != 0 && z != 0 && y != 0 && x != 15 && z != 15 && y != 15) {
                     var tmp = realOreToFakeMap.getOrDefault(rid, Integer.MAX_VALUE);
                     if (tmp != Integer.MAX_VALUE  && canBeObfuscated(transparentBlockSet, x, y, z)) {
@@ -548,10 +553,11 @@ public class BlockStorage {
                 }
                 palette.setBlock(i, rid);
             }
+            this.obfuscatedPalette = palette;
             this.needReObfuscate = false;
             setFlag(FLAG_PALETTE_UPDATED, true);
         }
-        palette.writeTo(stream);
+        obfuscatedPalette.writeTo(stream);
     }
 
     @PowerNukkitXOnly
@@ -563,13 +569,13 @@ public class BlockStorage {
     @PowerNukkitOnly
     @Since("1.4.0.0-PN")
     public void iterateStates(BlockPositionDataConsumer<BlockState> consumer) {
-        for (int i = 0; i < states.length; i++) {
+        for (int i = 0; i < SECTION_SIZE; i++) {
             // XZY = Bedrock format
             //int index = (x << 8) + (z << 4) + y; // XZY = Bedrock format
             int x = (i >> 8) & 0xF;
             int z = (i >> 4) & 0xF;
             int y = i & 0xF;
-            consumer.accept(x, y, z, states[i]);
+            consumer.accept(x, y, z, states.get(i));
         }
     }
 
@@ -22,7 +22,6 @@ import cn.nukkit.api.API;
 import cn.nukkit.api.PowerNukkitOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.blockstate.BlockState;
-import cn.nukkit.level.util.PalettedBlockStorage;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -45,8 +44,8 @@ public final class ImmutableBlockStorage extends BlockStorage {
     @PowerNukkitOnly
     @Since("1.4.0.0-PN")
     @API(definition = INTERNAL, usage = BLEEDING)
-    ImmutableBlockStorage(BlockState[] states, byte flags, PalettedBlockStorage palette, @Nullable BitSet denyStates) {
-        super(states.clone(), flags, palette.copy(), denyStates != null? (BitSet)denyStates.clone() : null);
+    ImmutableBlockStorage(BlockStatePalette states, byte flags, @Nullable BitSet denyStates) {
+        super(states.copy(), flags, denyStates != null? (BitSet)denyStates.clone() : null);
     }
 
     @PowerNukkitOnly
@@ -5,6 +5,7 @@ import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitDifference;
 import cn.nukkit.api.PowerNukkitOnly;
 import cn.nukkit.api.PowerNukkitXDifference;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.level.GameRules;
 import cn.nukkit.level.Level;
@@ -128,6 +129,32 @@ public abstract class BaseLevelProvider implements LevelProvider {
 
     public abstract BaseFullChunk loadChunk(long index, int chunkX, int chunkZ, boolean create);
 
+    /**
+     * 从存储中读取区块，但不把它放入已加载的区块中，只有{@link #isAsyncChunkReadSupported()}为true时才能在非主线程调用。
+     * 默认实现使用同步加载，会把区块放入已加载的区块中，只能在主线程调用。
+     * <p>
+     * Reads the chunk from the storage without adding it to the loaded chunks. It can only be called off the main
+     * thread when {@link #isAsyncChunkReadSupported()} is true. The default implementation falls back to the
+     * synchronous load, which adds the chunk to the loaded chunks and may only be called on the main thread.
+     *
+     * @return 读取的区块，如果存储中没有这个区块则为null<br>the read chunk, or null if the storage doesn't have it
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Nullable
+    public BaseFullChunk readChunk(int chunkX, int chunkZ) throws IOException {
+        return this.loadChunk(Level.chunkHash(chunkX, chunkZ), chunkX, chunkZ, false);
+    }
+
+    /**
+     * @return 是否可以在非主线程调用{@link #readChunk(int, int)}<br>whether {@link #readChunk(int, int)} can be called off the main thread
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isAsyncChunkReadSupported() {
+        return false;
+    }
+
     public int size() {
         return this.chunks.size();
     }
@@ -320,7 +347,10 @@ public abstract class BaseLevelProvider implements LevelProvider {
 
                 if (loader.lastUsed <= limit) {
                     try {
-                        loader.close();
+                        // 等待正在这个区域上进行的读写完成
+                        synchronized (loader) {
+                            loader.close();
+                        }
                     } catch (IOException e) {
                         throw new RuntimeException("Unable to close RegionLoader", e);
                     }
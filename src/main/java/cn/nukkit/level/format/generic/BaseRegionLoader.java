@@ -2,6 +2,7 @@ package cn.nukkit.level.format.generic;
 
 import cn.nukkit.api.DeprecationDetails;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.LevelProvider;
@@ -47,6 +48,8 @@ abstract public class BaseRegionLoader {
 
     public long lastUsed;
 
+    private volatile boolean closed;
+
     public BaseRegionLoader(LevelProvider level, int regionX, int regionZ, String ext) {
         try {
             this.x = regionX;
@@ -96,9 +99,19 @@ abstract public class BaseRegionLoader {
     public abstract void writeChunk(FullChunk chunk) throws Exception;
 
     public void close() throws IOException {
+        this.closed = true;
         if (randomAccessFile != null) randomAccessFile.close();
     }
 
+    /**
+     * @return 区域是否已经关闭，例如被垃圾回收关闭<br>whether the region was closed, for example by the garbage collection
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isClosed() {
+        return this.closed;
+    }
+
     protected abstract void loadLocationTable() throws IOException;
 
     public abstract int doSlowCleanUp() throws Exception;
@@ -0,0 +1,45 @@
+package cn.nukkit.level.format.generic;
+
+import cn.nukkit.Server;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.level.Level;
+import cn.nukkit.scheduler.AsyncTask;
+
+/**
+ * 在区块I/O线程上读取区块的任务，读取完成后在主线程上把区块交给{@link Level#asyncChunkLoadCallback}完成加载。
+ * <p>
+ * Reads a chunk on a chunk I/O thread, the read chunk is handed to {@link Level#asyncChunkLoadCallback} on the main
+ * thread to finish loading it.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public class ChunkLoadTask extends AsyncTask {
+    private final Level level;
+    private final BaseLevelProvider provider;
+    private final int chunkX;
+    private final int chunkZ;
+    private BaseFullChunk chunk;
+    private Throwable error;
+
+    public ChunkLoadTask(Level level, BaseLevelProvider provider, int chunkX, int chunkZ) {
+        this.level = level;
+        this.provider = provider;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    @Override
+    public void onRun() {
+        try {
+            this.chunk = this.provider.readChunk(this.chunkX, this.chunkZ);
+        } catch (Throwable e) {
+            this.error = e;
+        }
+    }
+
+    @Override
+    public void onCompletion(Server server) {
+        this.level.asyncChunkLoadCallback(this.chunkX, this.chunkZ, this.chunk, this.error);
+    }
+}
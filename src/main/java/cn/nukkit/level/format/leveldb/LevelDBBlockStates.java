@@ -0,0 +1,124 @@
+package cn.nukkit.level.format.leveldb;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.blockstate.BlockState;
+import cn.nukkit.blockstate.BlockStateRegistry;
+import cn.nukkit.nbt.NBTIO;
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.Tag;
+import cn.nukkit.utils.HumanStringComparator;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方块状态和基岩版存档中调色板NBT之间的转换，转换结果会被缓存
+ * <p>
+ * Converts between {@link BlockState}s and the palette NBT of the Bedrock storage format, the results are cached.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@Log4j2
+final class LevelDBBlockStates {
+    private static final Map<String, BlockState> STATES = new ConcurrentHashMap<>();
+    private static final Map<BlockState, byte[]> TAGS = new ConcurrentHashMap<>();
+
+    private LevelDBBlockStates() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return 调色板NBT对应的方块状态，未知的方块状态会被替换为{@link BlockStateRegistry#getFallbackBlockState()}
+     * <br>the block state of the palette NBT, unknown states are replaced with {@link BlockStateRegistry#getFallbackBlockState()}
+     */
+    static BlockState fromTag(CompoundTag tag) {
+        return STATES.computeIfAbsent(getStateId(tag), LevelDBBlockStates::lookupState);
+    }
+
+    /**
+     * @return 以小端序写入的调色板NBT<br>the palette NBT written in little endian
+     */
+    static byte[] toTagBytes(BlockState state) {
+        return TAGS.computeIfAbsent(state, LevelDBBlockStates::lookupTag);
+    }
+
+    private static BlockState lookupState(String stateId) {
+        int runtimeId = Canonical.RUNTIME_IDS.getInt(stateId);
+        BlockState state = runtimeId != -1 ? BlockStateRegistry.getBlockStateByRuntimeId(runtimeId) : null;
+        if (state == null) {
+            try {
+                state = BlockState.of(stateId);
+            } catch (RuntimeException e) {
+                log.warn("Unknown block state {} found in a LevelDB world, it will be replaced", stateId);
+                state = BlockStateRegistry.getFallbackBlockState();
+            }
+        }
+        return state;
+    }
+
+    private static byte[] lookupTag(BlockState state) {
+        int runtimeId = state.getRuntimeId();
+        CompoundTag tag;
+        if (runtimeId >= 0 && runtimeId < Canonical.TAGS.size()) {
+            tag = Canonical.TAGS.get(runtimeId);
+        } else {
+            tag = new CompoundTag()
+                    .putString("name", BlockStateRegistry.getPersistenceName(state.getBlockId()))
+                    .putCompound("states", new CompoundTag())
+                    .putInt("version", BlockStateRegistry.getBlockPaletteDataVersion());
+        }
+        try {
+            return NBTIO.write(tag, ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String getStateId(CompoundTag tag) {
+        Map<String, String> properties = new TreeMap<>(HumanStringComparator.getInstance());
+        for (Tag property : tag.getCompound("states").getAllTags()) {
+            properties.put(property.getName(), property.parseValue().toString());
+        }
+        StringBuilder stateId = new StringBuilder(tag.getString("name").toLowerCase(Locale.ENGLISH));
+        properties.forEach((name, value) -> stateId.append(';').append(name).append('=').append(value));
+        return stateId.toString();
+    }
+
+    /**
+     * 按运行时ID排列的标准方块状态，第一次使用时才加载
+     * <p>
+     * The canonical block states ordered by runtime id, loaded on first use
+     */
+    private static final class Canonical {
+        private static final List<CompoundTag> TAGS = new ArrayList<>();
+        private static final Object2IntOpenHashMap<String> RUNTIME_IDS = new Object2IntOpenHashMap<>();
+
+        static {
+            RUNTIME_IDS.defaultReturnValue(-1);
+            try (ByteArrayInputStream stream = new ByteArrayInputStream(BlockStateRegistry.getBlockPaletteBytes())) {
+                while (stream.available() > 0) {
+                    CompoundTag entry = NBTIO.read(stream, ByteOrder.LITTLE_ENDIAN, true);
+                    CompoundTag tag = new CompoundTag()
+                            .putString("name", entry.getString("name"))
+                            .putCompound("states", entry.getCompound("states"))
+                            .putInt("version", entry.getInt("version"));
+                    RUNTIME_IDS.putIfAbsent(getStateId(tag), TAGS.size());
+                    TAGS.add(tag);
+                }
+            } catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package cn.nukkit.level.format.leveldb;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.blockstate.BlockState;
+import cn.nukkit.level.format.ChunkSection3DBiome;
+import cn.nukkit.level.format.anvil.ChunkSection;
+import cn.nukkit.level.format.generic.BaseChunk;
+import cn.nukkit.level.util.BitArray;
+import cn.nukkit.level.util.BitArrayVersion;
+import cn.nukkit.nbt.NBTIO;
+import cn.nukkit.utils.BinaryStream;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 基岩版LevelDB存档中区块记录的读写。子区块使用版本9的格式，方块索引按XZY顺序排列，调色板为小端序NBT；
+ * Data3D记录包含高度图和每个子区块的三维生物群系。
+ * <p>
+ * Reads and writes the chunk records of the Bedrock LevelDB format. Sub-chunks use the version 9 format with the
+ * block indexes in XZY order and a little endian NBT palette, the Data3D record holds the height map and the 3D
+ * biomes of every sub-chunk.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+final class LevelDBChunkSerializer {
+    static final int SUB_CHUNK_VERSION = 9;
+    private static final int SIZE = 4096;
+    private static final int COPY_LAST = 0xff;
+
+    private LevelDBChunkSerializer() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return 子区块记录，如果子区块没有方块则为null<br>the sub-chunk record, or null if the section has no blocks
+     */
+    @Nullable
+    static byte[] writeSubChunk(cn.nukkit.level.format.ChunkSection section, int subChunkY) {
+        if (section.isEmpty()) {
+            return null;
+        }
+        BlockState[] layer0 = readLayer(section, 0);
+        BlockState[] layer1 = readLayer(section, 1);
+        if (layer0 == null) {
+            if (layer1 == null) {
+                return null;
+            }
+            layer0 = new BlockState[SIZE];
+            Arrays.fill(layer0, BlockState.AIR);
+        }
+
+        BinaryStream stream = new BinaryStream();
+        stream.putByte((byte) SUB_CHUNK_VERSION);
+        stream.putByte((byte) (layer1 != null ? 2 : 1));
+        stream.putByte((byte) subChunkY);
+        writeBlockStorage(stream, layer0);
+        if (layer1 != null) {
+            writeBlockStorage(stream, layer1);
+        }
+        return stream.getBuffer();
+    }
+
+    /**
+     * @param sectionIndex 子区块在区块中的下标<br>the index of the section in the chunk
+     * @return 读取的子区块，如果格式不支持则为null<br>the read section, or null if the format is not supported
+     */
+    @Nullable
+    static ChunkSection readSubChunk(byte[] data, int sectionIndex) throws IOException {
+        ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        int version = readByte(stream);
+        int layers;
+        switch (version) {
+            case 1:
+                layers = 1;
+                break;
+            case 8:
+                layers = readByte(stream);
+                break;
+            case SUB_CHUNK_VERSION:
+                layers = readByte(stream);
+                readByte(stream); // y
+                break;
+            default:
+                return null;
+        }
+
+        ChunkSection section = new ChunkSection(sectionIndex);
+        for (int layer = 0; layer < layers; layer++) {
+            readBlockStorage(stream, section, layer);
+        }
+        return section;
+    }
+
+    /**
+     * 写入Data3D记录：256个高度值，之后是每个子区块的生物群系
+     * <p>
+     * Writes the Data3D record: 256 height values followed by the biomes of every section.
+     */
+    static byte[] writeData3D(BaseChunk chunk) {
+        BinaryStream stream = new BinaryStream();
+        int minY = chunk.getMinHeight();
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                stream.putLShort(Math.max(0, chunk.getHighestBlockAt(x, z) + 1 - minY));
+            }
+        }
+
+        int[] previous = null;
+        for (cn.nukkit.level.format.ChunkSection section : chunk.getSections()) {
+            int[] biomes = new int[SIZE];
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int y = 0; y < 16; y++) {
+                        biomes[(x << 8) | (z << 4) | y] = section instanceof ChunkSection3DBiome biome3D ?
+                                biome3D.getBiomeId(x, y, z) & 0xff : chunk.getBiomeId(x, z);
+                    }
+                }
+            }
+            if (previous != null && Arrays.equals(previous, biomes)) {
+                stream.putByte((byte) COPY_LAST);
+                continue;
+            }
+            writeBiomeStorage(stream, biomes);
+            previous = biomes;
+        }
+        return stream.getBuffer();
+    }
+
+    /**
+     * 读取Data3D记录中的生物群系，高度图会在加载后重新计算
+     * <p>
+     * Reads the biomes of a Data3D record, the height map is recalculated after loading.
+     */
+    static void readData3D(byte[] data, BaseChunk chunk) throws IOException {
+        ByteArrayInputStream stream = new ByteArrayInputStream(data);
+        if (stream.skip(512) != 512) {
+            throw new EOFException();
+        }
+
+        cn.nukkit.level.format.ChunkSection[] sections = chunk.getSections();
+        int seaLevelSection = chunk.toSectionY(63);
+        int[] biomes = null;
+        for (int i = 0; i < sections.length && stream.available() > 0; i++) {
+            int header = readByte(stream);
+            if (header == COPY_LAST) {
+                if (biomes == null) {
+                    throw new IOException("The first biome storage of a Data3D record can not copy the previous one");
+                }
+            } else {
+                biomes = readBiomeStorage(stream, header >> 1);
+            }
+            if (sections[i] instanceof ChunkSection3DBiome biome3D) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int y = 0; y < 16; y++) {
+                            biome3D.setBiomeId(x, y, z, (byte) biomes[(x << 8) | (z << 4) | y]);
+                        }
+                    }
+                }
+            }
+            if (i == seaLevelSection) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        chunk.setBiomeId(x, z, (byte) biomes[(x << 8) | (z << 4) | 15]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return XZY顺序的一层方块，如果这一层全是空气则为null<br>the blocks of the layer in XZY order, or null if the layer is only air
+     */
+    @Nullable
+    private static BlockState[] readLayer(cn.nukkit.level.format.ChunkSection section, int layer) {
+        BlockState[] states = new BlockState[SIZE];
+        boolean empty = true;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 16; y++) {
+                    BlockState state = section.getBlockState(x, y, z, layer);
+                    states[(x << 8) | (z << 4) | y] = state;
+                    empty &= state.getBlockId() == 0;
+                }
+            }
+        }
+        return empty ? null : states;
+    }
+
+    private static void writeBlockStorage(BinaryStream stream, BlockState[] states) {
+        Object2IntOpenHashMap<BlockState> ids = new Object2IntOpenHashMap<>();
+        ids.defaultReturnValue(-1);
+        ObjectArrayList<BlockState> palette = new ObjectArrayList<>();
+        int[] indexes = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            BlockState state = states[i];
+            int id = ids.getInt(state);
+            if (id == -1) {
+                id = palette.size();
+                ids.put(state, id);
+                palette.add(state);
+            }
+            indexes[i] = id;
+        }
+
+        // 最少使用1位，所有版本的读取器都支持
+        BitArray bitArray = createBitArray(palette.size(), BitArrayVersion.V1);
+        for (int i = 0; i < SIZE; i++) {
+            bitArray.set(i, indexes[i]);
+        }
+        stream.putByte((byte) (bitArray.getVersion().getId() << 1));
+        for (int word : bitArray.getWords()) {
+            stream.putLInt(word);
+        }
+        stream.putLInt(palette.size());
+        for (BlockState state : palette) {
+            stream.put(LevelDBBlockStates.toTagBytes(state));
+        }
+    }
+
+    private static void readBlockStorage(ByteArrayInputStream stream, ChunkSection section, int layer) throws IOException {
+        int bits = readByte(stream) >> 1;
+        BitArray bitArray = bits == 0 ? null : readBitArray(stream, bits);
+        int paletteSize = readLInt(stream);
+        BlockState[] palette = new BlockState[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = LevelDBBlockStates.fromTag(NBTIO.read(stream, ByteOrder.LITTLE_ENDIAN));
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            BlockState state = palette[bitArray == null ? 0 : bitArray.get(i)];
+            if (state.getBlockId() != 0) {
+                section.setBlockStateAtLayer(i >> 8, i & 0xf, (i >> 4) & 0xf, layer, state);
+            }
+        }
+    }
+
+    private static void writeBiomeStorage(BinaryStream stream, int[] biomes) {
+        Int2IntOpenHashMap ids = new Int2IntOpenHashMap();
+        ids.defaultReturnValue(-1);
+        int[] palette = new int[SIZE];
+        int paletteSize = 0;
+        int[] indexes = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int id = ids.get(biomes[i]);
+            if (id == -1) {
+                id = paletteSize;
+                ids.put(biomes[i], id);
+                palette[paletteSize++] = biomes[i];
+            }
+            indexes[i] = id;
+        }
+
+        if (paletteSize == 1) {
+            stream.putByte((byte) 1);
+            stream.putLInt(palette[0]);
+            return;
+        }
+        BitArray bitArray = createBitArray(paletteSize, BitArrayVersion.V1);
+        for (int i = 0; i < SIZE; i++) {
+            bitArray.set(i, indexes[i]);
+        }
+        stream.putByte((byte) ((bitArray.getVersion().getId() << 1) | 1));
+        for (int word : bitArray.getWords()) {
+            stream.putLInt(word);
+        }
+        stream.putLInt(paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            stream.putLInt(palette[i]);
+        }
+    }
+
+    private static int[] readBiomeStorage(ByteArrayInputStream stream, int bits) throws IOException {
+        int[] biomes = new int[SIZE];
+        if (bits == 0) {
+            // 只有一种生物群系时不写调色板长度
+            Arrays.fill(biomes, readLInt(stream));
+            return biomes;
+        }
+        BitArray bitArray = readBitArray(stream, bits);
+        int paletteSize = readLInt(stream);
+        int[] palette = new int[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = readLInt(stream);
+        }
+        for (int i = 0; i < SIZE; i++) {
+            biomes[i] = palette[bitArray.get(i)];
+        }
+        return biomes;
+    }
+
+    private static BitArray createBitArray(int paletteSize, BitArrayVersion version) {
+        while (version.getMaxEntryValue() < paletteSize - 1) {
+            version = version.next();
+        }
+        return version.createPalette(SIZE);
+    }
+
+    private static BitArray readBitArray(ByteArrayInputStream stream, int bits) throws IOException {
+        BitArrayVersion version = BitArrayVersion.get(bits, true);
+        int[] words = new int[version.getWordsForSize(SIZE)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = readLInt(stream);
+        }
+        return version.createPalette(SIZE, words);
+    }
+
+    private static int readByte(ByteArrayInputStream stream) throws IOException {
+        int value = stream.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return value;
+    }
+
+    private static int readLInt(ByteArrayInputStream stream) throws IOException {
+        return readByte(stream) | (readByte(stream) << 8) | (readByte(stream) << 16) | (readByte(stream) << 24);
+    }
+}
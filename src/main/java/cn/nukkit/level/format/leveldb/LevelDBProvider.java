@@ -0,0 +1,419 @@
+package cn.nukkit.level.format.leveldb;
+
+import cn.nukkit.Nukkit;
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.api.UsedByReflection;
+import cn.nukkit.blockentity.BlockEntity;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.format.anvil.Anvil;
+import cn.nukkit.level.format.anvil.Chunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.format.generic.BaseRegionLoader;
+import cn.nukkit.level.generator.Generator;
+import cn.nukkit.nbt.NBTIO;
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.StringTag;
+import cn.nukkit.utils.ChunkException;
+import cn.nukkit.utils.LevelException;
+import cn.nukkit.utils.Utils;
+import lombok.extern.log4j.Log4j2;
+import org.iq80.leveldb.CompressionType;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基岩版原生的LevelDB存档格式，可以直接加载BDS的存档。区块按基岩版的键格式保存，每个子区块是一条单独的记录，
+ * 保存区块时所有记录通过一个{@link WriteBatch}原子写入。
+ * <p>
+ * The native Bedrock LevelDB world format, BDS worlds can be loaded directly. The chunks are stored with the Bedrock
+ * key layout where every sub-chunk is its own record, all the records of a save are written atomically through one
+ * {@link WriteBatch}.
+ * <p>
+ * 区块在内存中和{@link Anvil}使用相同的表示，因此区块发送等逻辑可以直接复用。
+ * <p>
+ * The chunks use the same in-memory representation as {@link Anvil}, so the chunk sending and the other logic is reused.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@Log4j2
+public class LevelDBProvider extends Anvil {
+    private static final byte TAG_DATA_3D = 43;
+    private static final byte TAG_VERSION = 44;
+    private static final byte TAG_SUB_CHUNK_PREFIX = 47;
+    private static final byte TAG_BLOCK_ENTITY = 49;
+    private static final byte TAG_ENTITY = 50;
+    private static final byte TAG_FINALIZED_STATE = 54;
+    private static final byte TAG_LEGACY_VERSION = 118;
+
+    private static final byte CHUNK_VERSION = 40;
+    private static final int FINALIZED_STATE_DONE = 2;
+    private static final int LEVEL_DAT_VERSION = 10;
+
+    private final DB db;
+
+    public LevelDBProvider(Level level, String path) throws IOException {
+        super(level, path, readLevelData(path));
+        Server server = Server.getInstance();
+        int cacheSize = server != null ? server.getConfig("level-settings.leveldb-cache-size", 32) : 32;
+        this.db = Iq80DBFactory.factory.open(new File(path, "db"), new Options()
+                .createIfMissing(true)
+                .compressionType(CompressionType.ZLIB_RAW)
+                .cacheSize(cacheSize * 1024L * 1024L));
+    }
+
+    public static String getProviderName() {
+        return "leveldb";
+    }
+
+    public static boolean isValid(String path) {
+        return new File(path, "level.dat").isFile() && new File(path, "db/CURRENT").isFile();
+    }
+
+    @UsedByReflection
+    public static void generate(String path, String name, long seed, Class<? extends Generator> generator) throws IOException {
+        generate(path, name, seed, generator, new HashMap<>());
+    }
+
+    @UsedByReflection
+    public static void generate(String path, String name, long seed, Class<? extends Generator> generator, Map<String, String> options) throws IOException {
+        File dbDir = new File(path, "db");
+        if (!dbDir.exists() && !dbDir.mkdirs()) {
+            throw new IOException("Could not create the directory " + dbDir);
+        }
+
+        CompoundTag levelData = new CompoundTag("")
+                .putCompound("GameRules", new CompoundTag())
+                .putLong("DayTime", 0)
+                .putInt("GameType", 0)
+                .putInt("Generator", Generator.getGeneratorType(generator) == Generator.TYPE_FLAT ? 2 : 1)
+                .putString("generatorName", Generator.getGeneratorName(generator))
+                .putString("generatorOptions", options.getOrDefault("preset", ""))
+                .putLong("LastPlayed", System.currentTimeMillis() / 1000)
+                .putString("LevelName", name)
+                .putBoolean("raining", false)
+                .putInt("rainTime", 0)
+                .putLong("RandomSeed", seed)
+                .putInt("SpawnX", 128)
+                .putInt("SpawnY", 70)
+                .putInt("SpawnZ", 128)
+                .putInt("StorageVersion", LEVEL_DAT_VERSION)
+                .putBoolean("thundering", false)
+                .putInt("thunderTime", 0)
+                .putLong("Time", 0);
+
+        writeLevelData(new File(path, "level.dat"), levelData);
+        Files.writeString(new File(path, "levelname.txt").toPath(), name);
+    }
+
+    private static CompoundTag readLevelData(String path) {
+        File levelDatFile = new File(path, "level.dat");
+        CompoundTag levelData;
+        try {
+            byte[] data = Files.readAllBytes(levelDatFile.toPath());
+            // 前8字节是存储版本和数据长度
+            levelData = NBTIO.read(Arrays.copyOfRange(data, 8, data.length), ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new LevelException("Could not load the level.dat file at " + levelDatFile.getAbsolutePath(), e);
+        }
+
+        if (!levelData.contains("generatorName")) {
+            levelData.putString("generatorName", Generator.getGeneratorName(
+                    Generator.getGenerator(levelData.getInt("Generator") == 2 ? "FLAT" : "DEFAULT")));
+        }
+        if (!levelData.contains("generatorOptions")) {
+            levelData.putString("generatorOptions", "");
+        }
+        levelData.putList(new ListTag<>("ServerBrand").add(new StringTag("", Nukkit.CODENAME)));
+        return levelData;
+    }
+
+    private static void writeLevelData(File file, CompoundTag levelData) throws IOException {
+        byte[] nbt = NBTIO.write(levelData, ByteOrder.LITTLE_ENDIAN);
+        Utils.safeWrite(file, tmp -> {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(levelData.getInt("StorageVersion") != 0 ? levelData.getInt("StorageVersion") : LEVEL_DAT_VERSION)
+                        .putInt(nbt.length)
+                        .array());
+                out.write(nbt);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void saveLevelData() {
+        File levelDataFile = new File(getPath(), "level.dat");
+        try {
+            writeLevelData(levelDataFile, this.getLevelData());
+        } catch (IOException e) {
+            log.fatal("Failed to save the level.dat file at {}", levelDataFile.getAbsolutePath(), e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public BaseFullChunk loadChunk(long index, int chunkX, int chunkZ, boolean create) {
+        this.level.timings.syncChunkLoadDataTimer.startTiming();
+        BaseFullChunk chunk;
+        try {
+            chunk = this.readChunk(chunkX, chunkZ);
+        } catch (IOException e) {
+            this.level.timings.syncChunkLoadDataTimer.stopTiming();
+            throw new ChunkException("Error loading chunk (" + chunkX + ", " + chunkZ + ")", e);
+        }
+        synchronized (this) {
+            BaseFullChunk loaded = this.chunks.get(index);
+            if (loaded != null) {
+                chunk = loaded;
+            } else if (chunk != null) {
+                putChunk(index, chunk);
+            } else if (create) {
+                chunk = this.getEmptyChunk(chunkX, chunkZ);
+                putChunk(index, chunk);
+            }
+        }
+        this.level.timings.syncChunkLoadDataTimer.stopTiming();
+        return chunk;
+    }
+
+    @Override
+    public Chunk readChunk(int chunkX, int chunkZ) throws IOException {
+        int dimension = this.getDimension();
+        if (this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_VERSION)) == null
+                && this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_LEGACY_VERSION)) == null) {
+            return null;
+        }
+
+        byte[] finalizedState = this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_FINALIZED_STATE));
+        boolean populated = finalizedState == null || finalizedState.length < 4
+                || ByteBuffer.wrap(finalizedState).order(ByteOrder.LITTLE_ENDIAN).getInt() == FINALIZED_STATE_DONE;
+
+        CompoundTag nbt = new CompoundTag()
+                .putInt("xPos", chunkX)
+                .putInt("zPos", chunkZ)
+                .putBoolean("TerrainGenerated", true)
+                .putBoolean("TerrainPopulated", populated)
+                .putBoolean("isNew384World", true);
+        nbt.putList(readTags("Entities", this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_ENTITY))));
+        nbt.putList(readTags("TileEntities", this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_BLOCK_ENTITY))));
+        Chunk chunk = new Chunk(this, nbt);
+
+        cn.nukkit.level.format.ChunkSection[] sections = chunk.getSections();
+        int minSubChunkY = getMinSubChunkY(sections.length);
+        for (int i = 0; i < sections.length; i++) {
+            byte[] data = this.db.get(subChunkKey(chunkX, chunkZ, dimension, i + minSubChunkY));
+            if (data == null) {
+                continue;
+            }
+            cn.nukkit.level.format.ChunkSection section = LevelDBChunkSerializer.readSubChunk(data, i);
+            if (section == null) {
+                log.warn("Unsupported sub-chunk format at ({}, {}, {}) in {}", chunkX, i + minSubChunkY, chunkZ, this.getName());
+            } else if (section.hasBlocks()) {
+                // 直接放入数组，setSection会把空的子区块替换为共享的实例，丢失生物群系
+                sections[i] = section;
+            }
+        }
+
+        byte[] data3D = this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_DATA_3D));
+        if (data3D != null) {
+            LevelDBChunkSerializer.readData3D(data3D, chunk);
+        }
+        chunk.recalculateHeightMap();
+        chunk.setChanged(false);
+        return chunk;
+    }
+
+    @Override
+    public boolean isAsyncChunkReadSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isChunkGenerated(int chunkX, int chunkZ) {
+        BaseFullChunk chunk = this.getLoadedChunk(chunkX, chunkZ);
+        if (chunk != null) {
+            return chunk.isGenerated();
+        }
+        int dimension = this.getDimension();
+        return this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_VERSION)) != null
+                || this.db.get(chunkKey(chunkX, chunkZ, dimension, TAG_LEGACY_VERSION)) != null;
+    }
+
+    @Override
+    public void saveChunk(int chunkX, int chunkZ) {
+        BaseFullChunk chunk = this.getChunk(chunkX, chunkZ);
+        if (chunk != null) {
+            this.saveChunk(chunkX, chunkZ, chunk);
+        }
+    }
+
+    @Override
+    public void saveChunk(int chunkX, int chunkZ, FullChunk chunk) {
+        if (!(chunk instanceof Chunk)) {
+            throw new ChunkException("Invalid Chunk class");
+        }
+        chunk.setX(chunkX);
+        chunk.setZ(chunkZ);
+        try (WriteBatch batch = this.db.createWriteBatch()) {
+            this.writeChunk(batch, (Chunk) chunk);
+            this.db.write(batch);
+            // 写入成功后才清除修改标记，失败时下次保存会重试
+            chunk.setChanged(false);
+        } catch (IOException e) {
+            throw new ChunkException("Error saving chunk (" + chunkX + ", " + chunkZ + ")", e);
+        }
+    }
+
+    /**
+     * 把所有修改过的区块放进一个{@link WriteBatch}中一起写入
+     * <p>
+     * Writes all the changed chunks together in one {@link WriteBatch}. The chunks stay changed until the batch is
+     * written, so a failed write is retried by the next save.
+     */
+    @Override
+    public void saveChunks() {
+        try (WriteBatch batch = this.db.createWriteBatch()) {
+            List<Chunk> written = new ArrayList<>();
+            for (BaseFullChunk chunk : this.chunks.values()) {
+                if (chunk.getChanges() != 0 && chunk instanceof Chunk anvilChunk) {
+                    this.writeChunk(batch, anvilChunk);
+                    written.add(anvilChunk);
+                }
+            }
+            if (!written.isEmpty()) {
+                this.db.write(batch);
+                for (Chunk chunk : written) {
+                    chunk.setChanged(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new ChunkException("Error saving the chunks of " + this.getName(), e);
+        }
+    }
+
+    private void writeChunk(WriteBatch batch, Chunk chunk) throws IOException {
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+        int dimension = this.getDimension();
+        batch.put(chunkKey(chunkX, chunkZ, dimension, TAG_VERSION), new byte[]{CHUNK_VERSION});
+        batch.put(chunkKey(chunkX, chunkZ, dimension, TAG_FINALIZED_STATE), ByteBuffer.allocate(4)
+                .order(ByteOrder.LITTLE_ENDIAN).putInt(chunk.isPopulated() ? FINALIZED_STATE_DONE : 1).array());
+
+        cn.nukkit.level.format.ChunkSection[] sections = chunk.getSections();
+        int minSubChunkY = getMinSubChunkY(sections.length);
+        for (int i = 0; i < sections.length; i++) {
+            byte[] key = subChunkKey(chunkX, chunkZ, dimension, i + minSubChunkY);
+            byte[] data = LevelDBChunkSerializer.writeSubChunk(sections[i], i + minSubChunkY);
+            if (data == null) {
+                batch.delete(key);
+            } else {
+                batch.put(key, data);
+            }
+        }
+        batch.put(chunkKey(chunkX, chunkZ, dimension, TAG_DATA_3D), LevelDBChunkSerializer.writeData3D(chunk));
+
+        List<CompoundTag> entities = new ArrayList<>();
+        for (Entity entity : chunk.getEntities().values()) {
+            if (!(entity instanceof Player) && !entity.closed) {
+                entity.saveNBT();
+                entities.add(entity.namedTag);
+            }
+        }
+        this.putTags(batch, chunkKey(chunkX, chunkZ, dimension, TAG_ENTITY), entities);
+
+        List<CompoundTag> blockEntities = new ArrayList<>();
+        for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+            blockEntity.saveNBT();
+            blockEntities.add(blockEntity.namedTag);
+        }
+        this.putTags(batch, chunkKey(chunkX, chunkZ, dimension, TAG_BLOCK_ENTITY), blockEntities);
+    }
+
+    private void putTags(WriteBatch batch, byte[] key, List<CompoundTag> tags) throws IOException {
+        if (tags.isEmpty()) {
+            batch.delete(key);
+        } else {
+            batch.put(key, NBTIO.write(tags, ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private static ListTag<CompoundTag> readTags(String name, @Nullable byte[] data) throws IOException {
+        ListTag<CompoundTag> list = new ListTag<>(name);
+        if (data != null) {
+            try (ByteArrayInputStream stream = new ByteArrayInputStream(data)) {
+                while (stream.available() > 0) {
+                    list.add(NBTIO.read(stream, ByteOrder.LITTLE_ENDIAN));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * LevelDB世界没有区域文件，所有读写区域的方法都已经被覆盖，调用这个方法说明有代码把它当成了Anvil世界
+     * <p>
+     * LevelDB worlds have no region files. Every method reading or writing regions is overridden, a call to this
+     * method means some code treats the world as an Anvil world.
+     *
+     * @throws UnsupportedOperationException 总是抛出<br>always
+     */
+    @Override
+    protected BaseRegionLoader loadRegion(int x, int z) {
+        throw new UnsupportedOperationException("LevelDB worlds have no region files");
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        try {
+            this.db.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close the LevelDB of " + this.getPath(), e);
+        }
+    }
+
+    private static int getMinSubChunkY(int sectionCount) {
+        return sectionCount == 24 ? -4 : 0;
+    }
+
+    private static byte[] chunkKey(int chunkX, int chunkZ, int dimension, byte tag) {
+        ByteBuffer buffer = ByteBuffer.allocate(dimension == 0 ? 9 : 13).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(chunkX).putInt(chunkZ);
+        if (dimension != 0) {
+            buffer.putInt(dimension);
+        }
+        return buffer.put(tag).array();
+    }
+
+    private static byte[] subChunkKey(int chunkX, int chunkZ, int dimension, int subChunkY) {
+        byte[] key = chunkKey(chunkX, chunkZ, dimension, TAG_SUB_CHUNK_PREFIX);
+        key = Arrays.copyOf(key, key.length + 1);
+        key[key.length - 1] = (byte) subChunkY;
+        return key;
+    }
+}
@@ -0,0 +1,503 @@
+package cn.nukkit.level.light;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.block.Block;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.format.ChunkSection;
+import cn.nukkit.level.format.generic.BaseChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.utils.Hash;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 方块光照引擎。待更新的方块按区块分批保存，传播时使用基于基本类型的环形队列和访问集合，不会为每个方块分配对象。
+ * <p>
+ * 开启异步模式时，每个刻开始时由世界线程计算起点方块，并复制起点附近的子区块，再把批次交给异步线程计算。
+ * 异步线程只读取这些副本，不会读取世界线程正在修改的区块。新的光照值先写入一个覆盖表，在同一个刻结束时由世界线程写回区块。
+ * 如果传播到达了没有复制的子区块，异步结果会被丢弃，在刻结束时由世界线程同步重新计算这一批。
+ * <p>
+ * The block light engine. Pending updates are batched per chunk and the propagation uses primitive ring buffers
+ * and visited sets, so no object is allocated per block.
+ * <p>
+ * In async mode the level thread seeds the batch and copies the sections around the seeds when the tick starts, then
+ * hands the batch to an async worker. The worker only reads those copies, never the chunks the level thread is
+ * mutating. The new light values go to an overlay map first and are written back to the chunks by the level thread
+ * when the same tick ends. If the propagation reaches a section that was not copied, the async result is dropped
+ * and the level thread calculates the batch again synchronously when the tick ends.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@Log4j2
+public class BlockLightEngine {
+    private static final int[][] FACES = {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+
+    private final Level level;
+    private final Executor executor;
+
+    /**
+     * 区块坐标 -> 区块内的方块坐标({@link Level#localBlockHash(double, double, double, Level)})
+     * <p>
+     * chunk hash -> local block hashes ({@link Level#localBlockHash(double, double, double, Level)})
+     */
+    private Long2ObjectOpenHashMap<IntOpenHashSet> pending = new Long2ObjectOpenHashMap<>();
+    private Long2ObjectOpenHashMap<IntOpenHashSet> processing = new Long2ObjectOpenHashMap<>();
+
+    private final LightQueue removalQueue = new LightQueue(256);
+    private final LightQueue spreadQueue = new LightQueue(1024);
+    private final LongOpenHashSet removalVisited = new LongOpenHashSet();
+    private final LongOpenHashSet spreadVisited = new LongOpenHashSet();
+
+    private final Long2ByteOpenHashMap overlay = new Long2ByteOpenHashMap();
+    /**
+     * 异步计算读取的子区块副本，键为{@link Hash#hashBlock(int, int, int)}(区块X, 子区块Y, 区块Z)。
+     * 未加载区块的子区块值为null，和同步计算一样视为不可用。
+     * <p>
+     * The section copies read by the async calculation, keyed by {@link Hash#hashBlock(int, int, int)}(chunk x,
+     * section y, chunk z). The sections of unloaded chunks are null and unavailable, like in the sync calculation.
+     */
+    private final Long2ObjectOpenHashMap<ChunkSection> snapshot = new Long2ObjectOpenHashMap<>();
+    private boolean useOverlay;
+    /**
+     * 异步计算读取了没有复制的子区块，结果不可用
+     * <p>
+     * The async calculation read a section that was not copied, so its result can't be used
+     */
+    private boolean outsideSnapshot;
+    private CompletableFuture<Void> running;
+
+    private long cachedChunkIndex;
+    private BaseFullChunk cachedChunk;
+
+    /**
+     * @param executor 异步计算使用的线程池，为null时在世界线程上同步计算<br>
+     *                 the executor used for the async calculation, or null to calculate on the level thread
+     */
+    public BlockLightEngine(Level level, Executor executor) {
+        this.level = level;
+        this.executor = executor;
+    }
+
+    public boolean isAsync() {
+        return this.executor != null;
+    }
+
+    /**
+     * 将方块加入下一批光照更新，可以在任意线程调用
+     * <p>
+     * Queues a block for the next light update batch. It may be called from any thread.
+     */
+    public void addUpdate(int x, int y, int z) {
+        long index = Level.chunkHash(x >> 4, z >> 4);
+        int blockHash = Level.localBlockHash(x, y, z, this.level);
+        synchronized (this) {
+            IntOpenHashSet blocks = this.pending.get(index);
+            if (blocks == null) {
+                blocks = new IntOpenHashSet();
+                this.pending.put(index, blocks);
+            }
+            blocks.add(blockHash);
+        }
+    }
+
+    public synchronized boolean hasPendingUpdates() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * 在世界刻开始时调用。同步模式下立即计算全部待更新的方块，异步模式下把它们交给异步线程。
+     * <p>
+     * Called when the level tick starts. In sync mode all pending blocks are calculated immediately, in async mode
+     * they are handed to the async worker.
+     */
+    public void onTickStart() {
+        if (this.running != null || !this.swapBatch()) {
+            return;
+        }
+        if (this.executor == null) {
+            this.useOverlay = false;
+            this.processBatch();
+            return;
+        }
+        this.useOverlay = true;
+        try {
+            this.seedBatch();
+            this.snapshotSections();
+        } catch (RuntimeException e) {
+            log.error("Failed to prepare the block light of the level {}, the batch will be retried", this.level.getName(), e);
+            this.requeueBatch();
+            this.clearPass();
+            this.overlay.clear();
+            this.snapshot.clear();
+            this.processing.clear();
+            this.useOverlay = false;
+            return;
+        }
+        this.running = CompletableFuture.runAsync(this::propagateBatch, this.executor);
+    }
+
+    /**
+     * 在世界刻结束时调用，等待异步计算完成并把结果写回区块
+     * <p>
+     * Called when the level tick ends, waits for the async calculation and writes the results back to the chunks.
+     */
+    public void onTickEnd() {
+        if (this.running == null) {
+            return;
+        }
+        try {
+            this.running.join();
+            if (this.outsideSnapshot) {
+                this.overlay.clear();
+                this.useOverlay = false;
+                this.processBatch();
+            } else {
+                this.applyOverlay();
+            }
+        } catch (Exception e) {
+            log.error("Failed to calculate the block light of the level {}, the batch will be retried", this.level.getName(), e);
+            this.requeueBatch();
+        } finally {
+            this.running = null;
+            this.overlay.clear();
+            this.snapshot.clear();
+            this.processing.clear();
+            this.useOverlay = false;
+            this.outsideSnapshot = false;
+        }
+    }
+
+    /**
+     * 在当前线程上立即计算全部待更新的方块
+     * <p>
+     * Calculates all the pending blocks on the current thread right now.
+     */
+    public void processNow() {
+        this.onTickEnd();
+        if (!this.swapBatch()) {
+            return;
+        }
+        this.useOverlay = false;
+        this.processBatch();
+    }
+
+    private synchronized boolean swapBatch() {
+        if (this.pending.isEmpty()) {
+            return false;
+        }
+        Long2ObjectOpenHashMap<IntOpenHashSet> batch = this.pending;
+        this.pending = this.processing;
+        this.processing = batch;
+        return true;
+    }
+
+    private synchronized void requeueBatch() {
+        for (Long2ObjectMap.Entry<IntOpenHashSet> entry : this.processing.long2ObjectEntrySet()) {
+            IntOpenHashSet blocks = this.pending.get(entry.getLongKey());
+            if (blocks == null) {
+                this.pending.put(entry.getLongKey(), entry.getValue());
+            } else {
+                blocks.addAll(entry.getValue());
+            }
+        }
+    }
+
+    private void processBatch() {
+        try {
+            this.seedBatch();
+            this.propagate();
+            this.processing.clear();
+        } finally {
+            this.clearPass();
+        }
+    }
+
+    private void propagateBatch() {
+        try {
+            this.propagate();
+        } finally {
+            this.clearPass();
+        }
+    }
+
+    private void clearPass() {
+        this.removalQueue.clear();
+        this.spreadQueue.clear();
+        this.removalVisited.clear();
+        this.spreadVisited.clear();
+        this.cachedChunk = null;
+    }
+
+    /**
+     * 在世界线程上计算批次中每个方块新的光照值，并放入传播队列
+     * <p>
+     * Works out the new light of every block of the batch on the level thread and puts them into the propagation
+     * queues.
+     */
+    private void seedBatch() {
+        this.cachedChunk = null;
+        ObjectIterator<Long2ObjectMap.Entry<IntOpenHashSet>> iter = this.processing.long2ObjectEntrySet().fastIterator();
+        while (iter.hasNext()) {
+            Long2ObjectMap.Entry<IntOpenHashSet> entry = iter.next();
+            long index = entry.getLongKey();
+            int bx = Level.getHashX(index) << 4;
+            int bz = Level.getHashZ(index) << 4;
+            BaseFullChunk chunk = this.getChunk(index);
+            if (chunk == null) {
+                continue;
+            }
+            IntIterator blocks = entry.getValue().iterator();
+            while (blocks.hasNext()) {
+                this.seed(chunk, bx, bz, blocks.nextInt());
+            }
+        }
+        this.cachedChunk = null;
+    }
+
+    /**
+     * 复制起点所在子区块和周围一圈子区块。一次新增的光照最多传播15格，不会离开这个范围，但移除光照时可能从15格外的方块重新开始传播，
+     * 再传播14格，所以传播仍然可能到达没有复制的子区块，这时由{@link #readLight}标记{@link #outsideSnapshot}。
+     * <p>
+     * Copies the sections of the seeds and one ring of sections around them. Added light travels at most 15 blocks
+     * and stays inside them, but a removal may restart the spreading from a block 15 blocks away, which then travels
+     * another 14 blocks, so the propagation may still reach a section that was not copied. {@link #readLight} flags
+     * {@link #outsideSnapshot} when that happens.
+     */
+    private void snapshotSections() {
+        LongOpenHashSet seedSections = new LongOpenHashSet();
+        this.addSeedSections(this.removalVisited, seedSections);
+        this.addSeedSections(this.spreadVisited, seedSections);
+        int minSection = this.level.getMinHeight() >> 4;
+        int maxSection = (this.level.getMaxHeight() - 1) >> 4;
+        for (long key : seedSections) {
+            int cx = Hash.hashBlockX(key);
+            int sy = Hash.hashBlockY(key);
+            int cz = Hash.hashBlockZ(key);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    BaseFullChunk chunk = this.getChunk(Level.chunkHash(cx + dx, cz + dz));
+                    for (int dy = Math.max(minSection, sy - 1); dy <= Math.min(maxSection, sy + 1); dy++) {
+                        long sectionKey = Hash.hashBlock(cx + dx, dy, cz + dz);
+                        if (this.snapshot.containsKey(sectionKey)) {
+                            continue;
+                        }
+                        if (chunk instanceof BaseChunk) {
+                            this.snapshot.put(sectionKey, ((BaseChunk) chunk).getSections()[((BaseChunk) chunk).toSectionY(dy << 4)].copy());
+                        } else {
+                            this.snapshot.put(sectionKey, null);
+                        }
+                    }
+                }
+            }
+        }
+        this.cachedChunk = null;
+    }
+
+    private void addSeedSections(LongOpenHashSet positions, LongOpenHashSet sections) {
+        for (long position : positions) {
+            sections.add(Hash.hashBlock(Hash.hashBlockX(position) >> 4, Hash.hashBlockY(position) >> 4, Hash.hashBlockZ(position) >> 4));
+        }
+    }
+
+    private void seed(BaseFullChunk chunk, int bx, int bz, int blockHash) {
+        int hi = (byte) (blockHash >>> 16);
+        int lo = (short) blockHash;
+        int y = lo - 64;
+        int lx = hi & 0xF;
+        int lz = (hi >> 4) & 0xF;
+        int x = bx + lx;
+        int z = bz + lz;
+        if (!this.level.isYInRange(y)) {
+            return;
+        }
+        long position = Hash.hashBlock(x, y, z);
+        int oldLevel = this.getLight(chunk, position, lx, y, lz);
+        int newLevel = chunk.getBlockState(lx, y, lz).getBlock(this.level, x, y, z, 0, true).getLightLevel();
+        if (oldLevel == newLevel) {
+            return;
+        }
+        this.setLight(chunk, position, lx, y, lz, newLevel);
+        if (newLevel < oldLevel) {
+            this.removalVisited.add(position);
+            this.removalQueue.add(position, oldLevel);
+        } else {
+            this.spreadVisited.add(position);
+            this.spreadQueue.add(position, 0);
+        }
+    }
+
+    private void propagate() {
+        while (!this.outsideSnapshot && !this.removalQueue.isEmpty()) {
+            long position = this.removalQueue.peekPosition();
+            int lightLevel = this.removalQueue.peekLevel();
+            this.removalQueue.remove();
+            int x = Hash.hashBlockX(position);
+            int y = Hash.hashBlockY(position);
+            int z = Hash.hashBlockZ(position);
+            for (int[] face : FACES) {
+                this.computeRemove(x + face[0], y + face[1], z + face[2], lightLevel);
+            }
+        }
+
+        while (!this.outsideSnapshot && !this.spreadQueue.isEmpty()) {
+            long position = this.spreadQueue.peekPosition();
+            this.spreadQueue.remove();
+            int x = Hash.hashBlockX(position);
+            int y = Hash.hashBlockY(position);
+            int z = Hash.hashBlockZ(position);
+            int current = this.readLight(position, x, y, z);
+            if (current < 0) {
+                continue;
+            }
+            int lightLevel = current - Block.getLightFilter(this.readBlockId(x, y, z));
+            if (lightLevel >= 1) {
+                for (int[] face : FACES) {
+                    this.computeSpread(x + face[0], y + face[1], z + face[2], lightLevel);
+                }
+            }
+        }
+    }
+
+    private void computeRemove(int x, int y, int z, int currentLight) {
+        if (!this.level.isYInRange(y)) {
+            return;
+        }
+        long position = Hash.hashBlock(x, y, z);
+        int current = this.readLight(position, x, y, z);
+        if (current < 0) {
+            return;
+        }
+        if (current != 0 && current < currentLight) {
+            this.writeLight(position, x, y, z, 0);
+            if (current > 1 && this.removalVisited.add(position)) {
+                this.removalQueue.add(position, current);
+            }
+        } else if (current >= currentLight && this.spreadVisited.add(position)) {
+            this.spreadQueue.add(position, 0);
+        }
+    }
+
+    private void computeSpread(int x, int y, int z, int currentLight) {
+        if (!this.level.isYInRange(y)) {
+            return;
+        }
+        long position = Hash.hashBlock(x, y, z);
+        int current = this.readLight(position, x, y, z);
+        if (current < 0) {
+            return;
+        }
+        if (current < currentLight - 1) {
+            this.writeLight(position, x, y, z, currentLight);
+            if (this.spreadVisited.add(position) && currentLight > 1) {
+                this.spreadQueue.add(position, 0);
+            }
+        }
+    }
+
+    private BaseFullChunk getChunk(long index) {
+        if (this.cachedChunk != null && this.cachedChunkIndex == index) {
+            return this.cachedChunk;
+        }
+        BaseFullChunk chunk = this.level.getChunkIfLoaded(Level.getHashX(index), Level.getHashZ(index));
+        if (chunk != null) {
+            this.cachedChunk = chunk;
+            this.cachedChunkIndex = index;
+        }
+        return chunk;
+    }
+
+    /**
+     * 传播时读取光照，异步模式下读取子区块副本
+     * <p>
+     * Reads the light while propagating, from the section copies in async mode. Reading a section that was not copied
+     * flags {@link #outsideSnapshot}.
+     *
+     * @return 光照值，方块不可用时为-1<br>the light level, or -1 if the block is not available
+     */
+    private int readLight(long position, int x, int y, int z) {
+        if (this.useOverlay) {
+            byte value = this.overlay.getOrDefault(position, (byte) -1);
+            if (value >= 0) {
+                return value;
+            }
+            ChunkSection section = this.getSnapshotSection(x, y, z);
+            return section == null ? -1 : section.getBlockLight(x & 0xF, y & 0xF, z & 0xF);
+        }
+        BaseFullChunk chunk = this.getChunk(Level.chunkHash(x >> 4, z >> 4));
+        return chunk == null ? -1 : chunk.getBlockLight(x & 0xF, y, z & 0xF);
+    }
+
+    private int readBlockId(int x, int y, int z) {
+        if (this.useOverlay) {
+            ChunkSection section = this.getSnapshotSection(x, y, z);
+            return section == null ? 0 : section.getBlockId(x & 0xF, y & 0xF, z & 0xF);
+        }
+        BaseFullChunk chunk = this.getChunk(Level.chunkHash(x >> 4, z >> 4));
+        return chunk == null ? 0 : chunk.getBlockId(x & 0xF, y, z & 0xF);
+    }
+
+    private ChunkSection getSnapshotSection(int x, int y, int z) {
+        long sectionKey = Hash.hashBlock(x >> 4, y >> 4, z >> 4);
+        ChunkSection section = this.snapshot.get(sectionKey);
+        if (section == null && !this.snapshot.containsKey(sectionKey)) {
+            this.outsideSnapshot = true;
+        }
+        return section;
+    }
+
+    private void writeLight(long position, int x, int y, int z, int lightLevel) {
+        if (this.useOverlay) {
+            this.overlay.put(position, (byte) (lightLevel & 0xF));
+        } else {
+            BaseFullChunk chunk = this.getChunk(Level.chunkHash(x >> 4, z >> 4));
+            if (chunk != null) {
+                chunk.setBlockLight(x & 0xF, y, z & 0xF, lightLevel & 0xF);
+            }
+        }
+    }
+
+    private int getLight(BaseFullChunk chunk, long position, int lx, int y, int lz) {
+        if (this.useOverlay) {
+            byte value = this.overlay.getOrDefault(position, (byte) -1);
+            if (value >= 0) {
+                return value;
+            }
+        }
+        return chunk.getBlockLight(lx, y, lz);
+    }
+
+    private void setLight(BaseFullChunk chunk, long position, int lx, int y, int lz, int lightLevel) {
+        if (this.useOverlay) {
+            this.overlay.put(position, (byte) (lightLevel & 0xF));
+        } else {
+            chunk.setBlockLight(lx, y, lz, lightLevel & 0xF);
+        }
+    }
+
+    private void applyOverlay() {
+        ObjectIterator<Long2ByteMap.Entry> iter = this.overlay.long2ByteEntrySet().fastIterator();
+        while (iter.hasNext()) {
+            Long2ByteMap.Entry entry = iter.next();
+            long position = entry.getLongKey();
+            int x = Hash.hashBlockX(position);
+            int y = Hash.hashBlockY(position);
+            int z = Hash.hashBlockZ(position);
+            BaseFullChunk chunk = this.getChunk(Level.chunkHash(x >> 4, z >> 4));
+            if (chunk != null) {
+                chunk.setBlockLight(x & 0xF, y, z & 0xF, entry.getByteValue());
+            }
+        }
+        this.cachedChunk = null;
+    }
+}
@@ -0,0 +1,87 @@
+package cn.nukkit.level.light;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+
+/**
+ * 光照传播使用的先进先出环形队列，每一项由一个压缩的方块坐标和一个光照等级组成，入队和出队都不会分配对象。
+ * <p>
+ * A FIFO ring buffer used by the light propagation. Each entry is a packed block position and a light level,
+ * adding and polling never allocate.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+final class LightQueue {
+    private long[] positions;
+    private byte[] levels;
+    private int head;
+    private int size;
+
+    LightQueue(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+        this.positions = new long[capacity];
+        this.levels = new byte[capacity];
+    }
+
+    void add(long position, int level) {
+        if (this.size == this.positions.length) {
+            grow();
+        }
+        int tail = (this.head + this.size) & (this.positions.length - 1);
+        this.positions[tail] = position;
+        this.levels[tail] = (byte) level;
+        this.size++;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return 队首的方块坐标<br>the position at the head of the queue
+     */
+    long peekPosition() {
+        return this.positions[this.head];
+    }
+
+    /**
+     * @return 队首的光照等级<br>the light level at the head of the queue
+     */
+    int peekLevel() {
+        return this.levels[this.head];
+    }
+
+    void remove() {
+        if (this.size == 0) {
+            throw new IllegalStateException("The queue is empty");
+        }
+        this.head = (this.head + 1) & (this.positions.length - 1);
+        this.size--;
+    }
+
+    void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+
+    private void grow() {
+        int capacity = this.positions.length;
+        long[] newPositions = new long[capacity << 1];
+        byte[] newLevels = new byte[capacity << 1];
+        int firstPart = capacity - this.head;
+        System.arraycopy(this.positions, this.head, newPositions, 0, firstPart);
+        System.arraycopy(this.positions, 0, newPositions, firstPart, this.head);
+        System.arraycopy(this.levels, this.head, newLevels, 0, firstPart);
+        System.arraycopy(this.levels, 0, newLevels, firstPart, this.head);
+        this.positions = newPositions;
+        this.levels = newLevels;
+        this.head = 0;
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * 方块光照计算.
+ * <p>
+ * Block light calculation.
+ */
+package cn.nukkit.level.light;
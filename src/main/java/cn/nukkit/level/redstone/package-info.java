@@ -0,0 +1,6 @@
+/**
+ * 红石线能量的计算.
+ * <p>
+ * Redstone wire power calculation.
+ */
+package cn.nukkit.level.redstone;
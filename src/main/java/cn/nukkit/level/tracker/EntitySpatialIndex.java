@@ -0,0 +1,279 @@
+package cn.nukkit.level.tracker;
+
+import cn.nukkit.Player;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.math.AxisAlignedBB;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.math.SimpleAxisAlignedBB;
+import cn.nukkit.math.Vector3;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 世界中实体的空间索引。实体按所在位置放进8x8方块的扇区中，玩家另外放在单独的列表里，
+ * 位置改变时只有跨越扇区才需要更新。查询只访问范围内的扇区，不需要遍历区块的实体表。
+ * <p>
+ * The spatial index of the entities of a level. Entities are put in 8x8 block sectors by position, players are also
+ * kept in a list of their own. Only moves crossing a sector border update the index. Queries visit only the sectors
+ * in range instead of walking the entity maps of the chunks.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public final class EntitySpatialIndex {
+    /**
+     * 扇区边长的位移
+     * <p>
+     * The shift of the sector side length
+     */
+    public static final int SECTOR_SHIFT = 3;
+
+    /**
+     * 实体碰撞箱超出中心所在扇区的最大距离，和{@link cn.nukkit.level.Level#getNearbyEntities(AxisAlignedBB)}相同
+     * <p>
+     * How far the bounding box of an entity can reach outside the sector of its center, the same as
+     * {@link cn.nukkit.level.Level#getNearbyEntities(AxisAlignedBB)}
+     */
+    private static final double MARGIN = 2;
+
+    private final Long2ObjectOpenHashMap<Sector> sectors = new Long2ObjectOpenHashMap<>();
+    private final Long2LongOpenHashMap sectorOfEntity = new Long2LongOpenHashMap();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static final class Sector {
+        private final ObjectArrayList<Entity> entities = new ObjectArrayList<>(4);
+        private final ObjectArrayList<Player> players = new ObjectArrayList<>(0);
+
+        private boolean isEmpty() {
+            return entities.isEmpty();
+        }
+    }
+
+    /**
+     * 实体位置改变后调用，跨越扇区时才会修改索引
+     * <p>
+     * Called after the position of the entity changed, the index is only modified if it crossed a sector border.
+     */
+    public void update(Entity entity) {
+        long key = sectorKey(NukkitMath.floorDouble(entity.x) >> SECTOR_SHIFT, NukkitMath.floorDouble(entity.z) >> SECTOR_SHIFT);
+        long id = entity.getId();
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (sectorOfEntity.containsKey(id) && sectorOfEntity.get(id) == key) {
+                return;
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (sectorOfEntity.containsKey(id)) {
+                long previous = sectorOfEntity.get(id);
+                if (previous == key) {
+                    return;
+                }
+                removeFromSector(entity, previous);
+            }
+            sectorOfEntity.put(id, key);
+            Sector sector = sectors.get(key);
+            if (sector == null) {
+                sector = new Sector();
+                sectors.put(key, sector);
+            }
+            sector.entities.add(entity);
+            if (entity instanceof Player player) {
+                sector.players.add(player);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(Entity entity) {
+        ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long id = entity.getId();
+            if (sectorOfEntity.containsKey(id)) {
+                removeFromSector(entity, sectorOfEntity.remove(id));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return 索引中的实体数量<br>the number of entities in the index
+     */
+    public int size() {
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return sectorOfEntity.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 对碰撞箱可能和给定范围相交的每个实体调用action，调用者需要自己检查碰撞箱。调用action时索引处于读锁定状态，action不能移动实体
+     * <p>
+     * Calls the action for every entity whose bounding box may intersect the given area, the caller has to check the
+     * bounding box itself. The index is read locked while the action runs, so the action must not move entities.
+     *
+     * @param playersOnly 只访问玩家<br>only visit players
+     */
+    public void forEachCandidate(AxisAlignedBB bb, boolean playersOnly, Consumer<? super Entity> action) {
+        int minX = NukkitMath.floorDouble(bb.getMinX() - MARGIN) >> SECTOR_SHIFT;
+        int maxX = NukkitMath.floorDouble(bb.getMaxX() + MARGIN) >> SECTOR_SHIFT;
+        int minZ = NukkitMath.floorDouble(bb.getMinZ() - MARGIN) >> SECTOR_SHIFT;
+        int maxZ = NukkitMath.floorDouble(bb.getMaxZ() + MARGIN) >> SECTOR_SHIFT;
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    Sector sector = sectors.get(sectorKey(x, z));
+                    if (sector == null) {
+                        continue;
+                    }
+                    List<? extends Entity> entities = playersOnly ? sector.players : sector.entities;
+                    for (int i = 0, size = entities.size(); i < size; i++) {
+                        action.accept(entities.get(i));
+                    }
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return 碰撞箱和给定范围相交的实体<br>the entities whose bounding box intersects the given area
+     */
+    public List<Entity> getEntities(AxisAlignedBB bb, @Nullable Entity exclude) {
+        List<Entity> result = new ObjectArrayList<>();
+        forEachCandidate(bb, false, entity -> {
+            if (entity != exclude && entity.boundingBox.intersectsWith(bb)) {
+                result.add(entity);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return 碰撞箱和给定范围相交的指定类型的实体<br>the entities of the given type whose bounding box intersects the given area
+     */
+    public <T extends Entity> List<T> getEntities(AxisAlignedBB bb, Class<T> type) {
+        List<T> result = new ObjectArrayList<>();
+        forEachCandidate(bb, Player.class.isAssignableFrom(type), entity -> {
+            if (type.isInstance(entity) && entity.boundingBox.intersectsWith(bb)) {
+                result.add(type.cast(entity));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 查找距离在{@code [minRange, maxRange]}之间最近的指定类型的实体
+     * <p>
+     * Finds the nearest entity of the given type with a distance within {@code [minRange, maxRange]}.
+     *
+     * @param filter 额外的条件，可以为null<br>an additional condition, may be null
+     */
+    @Nullable
+    public <T extends Entity> T getNearest(Vector3 pos, double minRange, double maxRange, Class<T> type,
+                                           @Nullable Predicate<? super T> filter) {
+        List<T> nearest = getNearest(pos, minRange, maxRange, 1, type, filter);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * 查找距离在{@code [minRange, maxRange]}之间最近的k个指定类型的实体，按距离从近到远排列
+     * <p>
+     * Finds the k nearest entities of the given type with a distance within {@code [minRange, maxRange]}, ordered from
+     * the nearest to the farthest.
+     *
+     * @param k      最多返回的实体数量，不大于0时返回空列表<br>the maximum number of entities, an empty list is returned if it is not positive
+     * @param filter 额外的条件，可以为null<br>an additional condition, may be null
+     */
+    public <T extends Entity> List<T> getNearest(Vector3 pos, double minRange, double maxRange, int k, Class<T> type,
+                                                 @Nullable Predicate<? super T> filter) {
+        if (k <= 0) {
+            return new ObjectArrayList<>();
+        }
+        double minRangeSquared = minRange * minRange;
+        double maxRangeSquared = maxRange * maxRange;
+        // 按距离插入排序，k通常很小
+        ObjectArrayList<T> result = new ObjectArrayList<>(k);
+        double[] distances = new double[k];
+        AxisAlignedBB area = new SimpleAxisAlignedBB(pos.x - maxRange, pos.y - maxRange, pos.z - maxRange,
+                pos.x + maxRange, pos.y + maxRange, pos.z + maxRange);
+        forEachCandidate(area, Player.class.isAssignableFrom(type), entity -> {
+            if (!type.isInstance(entity)) {
+                return;
+            }
+            double distance = entity.distanceSquared(pos);
+            if (distance > maxRangeSquared || distance < minRangeSquared) {
+                return;
+            }
+            int size = result.size();
+            if (size == k && distance >= distances[k - 1]) {
+                return;
+            }
+            T candidate = type.cast(entity);
+            if (filter != null && !filter.test(candidate)) {
+                return;
+            }
+            int index = size == k ? k - 1 : size;
+            while (index > 0 && distances[index - 1] > distance) {
+                distances[index] = distances[index - 1];
+                index--;
+            }
+            distances[index] = distance;
+            if (size == k) {
+                result.remove(k - 1);
+            }
+            result.add(index, candidate);
+        });
+        return result;
+    }
+
+    private void removeFromSector(Entity entity, long key) {
+        Sector sector = sectors.get(key);
+        if (sector == null) {
+            return;
+        }
+        removeIdentity(sector.entities, entity);
+        if (entity instanceof Player) {
+            removeIdentity(sector.players, entity);
+        }
+        if (sector.isEmpty()) {
+            sectors.remove(key);
+        }
+    }
+
+    private static void removeIdentity(ObjectArrayList<? extends Entity> list, Entity entity) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == entity) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+
+    private static long sectorKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xffffffffL);
+    }
+}
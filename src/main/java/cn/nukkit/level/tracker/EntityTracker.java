@@ -0,0 +1,303 @@
+package cn.nukkit.level.tracker;
+
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.level.Level;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.MoveEntityAbsolutePacket;
+import cn.nukkit.network.protocol.MoveEntityDeltaPacket;
+import cn.nukkit.network.protocol.MovePlayerPacket;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+
+import java.util.List;
+
+/**
+ * 按距离分级发送实体移动。观察者距离实体不超过{@code nearDistance}时每刻都会收到更新，在实体的
+ * {@link Entity#getTrackingRange() 追踪范围}内时每{@code farInterval}刻收到一次更新，超出追踪范围时不再收到更新，
+ * 回到范围内时会收到绝对位置。
+ * <p>
+ * 每一级记录自己最后发送的位置，所以跳过的更新不会丢失。实体不动时观察者的级别也会每{@code farInterval}刻重新计算一次，
+ * 这样走近静止实体的观察者也能收到它的位置。每个数据包只广播一次给所有需要它的观察者。
+ * <p>
+ * Sends the entity movement in distance tiers. Viewers closer than {@code nearDistance} receive an update every tick,
+ * viewers within the {@link Entity#getTrackingRange() tracking range} of the entity every {@code farInterval} ticks and
+ * viewers beyond it receive no update until they come back in range, when they get the absolute position.
+ * <p>
+ * Every tier remembers the last position it sent, so skipped updates are never lost. The tiers of the viewers are also
+ * evaluated again every {@code farInterval} ticks while the entity stands still, so a viewer walking up to a resting
+ * entity still gets its position. Every packet is broadcast once to all the viewers needing it.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public class EntityTracker {
+    private static final byte TIER_NEAR = 0;
+    private static final byte TIER_FAR = 1;
+    private static final byte TIER_OUT_OF_RANGE = 2;
+    private static final int FULL = -1;
+
+    private final Level level;
+    private final double nearDistanceSquared;
+    private final int farInterval;
+
+    private final Long2ObjectOpenHashMap<TrackedEntity> tracked = new Long2ObjectOpenHashMap<>();
+    private final Reference2ObjectLinkedOpenHashMap<DataPacket, List<Player>> outbound = new Reference2ObjectLinkedOpenHashMap<>();
+
+    public EntityTracker(Level level, double nearDistance, int farInterval) {
+        this.level = level;
+        this.nearDistanceSquared = nearDistance * nearDistance;
+        this.farInterval = Math.max(1, farInterval);
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * 记录实体的新位置，使用{@link MoveEntityDeltaPacket}发送
+     * <p>
+     * Records the new position of the entity, sent with {@link MoveEntityDeltaPacket}s.
+     */
+    public void addEntityMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        this.update(entity, false, x, y, z, yaw, pitch, headYaw);
+    }
+
+    /**
+     * 记录人形实体的新位置，使用{@link MovePlayerPacket}发送
+     * <p>
+     * Records the new position of a human entity, sent with {@link MovePlayerPacket}s.
+     */
+    public void addPlayerMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        this.update(entity, true, x, y, z, yaw, pitch, headYaw);
+    }
+
+    public void remove(Entity entity) {
+        this.tracked.remove(entity.getId());
+    }
+
+    private void update(Entity entity, boolean player, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        TrackedEntity trackedEntity = this.tracked.get(entity.getId());
+        if (trackedEntity == null || trackedEntity.entity != entity) {
+            trackedEntity = new TrackedEntity(entity);
+            this.tracked.put(entity.getId(), trackedEntity);
+        }
+        trackedEntity.player = player;
+        float[] position = trackedEntity.position;
+        position[0] = (float) x;
+        position[1] = (float) y;
+        position[2] = (float) z;
+        position[3] = (float) pitch;
+        position[4] = (float) yaw;
+        position[5] = (float) headYaw;
+        trackedEntity.dirty = true;
+    }
+
+    /**
+     * 在世界刻结束时发送这一刻的移动
+     * <p>
+     * Sends the movement of this tick, called when the level tick ends.
+     */
+    public void flush(int currentTick) {
+        if (this.tracked.isEmpty()) {
+            return;
+        }
+
+        ObjectIterator<TrackedEntity> iterator = this.tracked.values().iterator();
+        while (iterator.hasNext()) {
+            TrackedEntity trackedEntity = iterator.next();
+            Entity entity = trackedEntity.entity;
+            if (entity.closed || entity.getLevel() != this.level) {
+                iterator.remove();
+                continue;
+            }
+            // 远处的刻即使实体没有移动也重新计算观察者的级别
+            boolean farTick = Math.floorMod(currentTick + entity.getId(), this.farInterval) == 0;
+            if (trackedEntity.dirty || farTick || trackedEntity.onGround != entity.onGround) {
+                trackedEntity.onGround = entity.onGround;
+                trackedEntity.dirty = trackedEntity.flush(farTick);
+            }
+        }
+
+        for (var entry : this.outbound.reference2ObjectEntrySet()) {
+            Server.broadcastPacket(entry.getValue(), entry.getKey());
+        }
+        this.outbound.clear();
+    }
+
+    private void queue(Player viewer, DataPacket packet) {
+        this.outbound.computeIfAbsent(packet, p -> new ObjectArrayList<>()).add(viewer);
+    }
+
+    private final class TrackedEntity {
+        private final Entity entity;
+        private boolean player;
+        /**
+         * x, y, z, pitch, yaw, headYaw
+         */
+        private final float[] position = new float[6];
+        private boolean onGround;
+        /**
+         * 还有没有发送给远处观察者的移动
+         * <p>
+         * There is movement not sent to the far viewers yet
+         */
+        private boolean dirty;
+        private final float[][] sent = new float[2][6];
+        private final boolean[] sentOnGround = new boolean[2];
+        private final boolean[] sentValid = new boolean[2];
+        private final Long2ByteOpenHashMap viewerTiers = new Long2ByteOpenHashMap();
+
+        private TrackedEntity(Entity entity) {
+            this.entity = entity;
+            this.viewerTiers.defaultReturnValue((byte) -1);
+        }
+
+        /**
+         * @return 是否还有没有发送给远处观察者的移动<br>if there is movement not sent to the far viewers yet
+         */
+        private boolean flush(boolean farTick) {
+            double trackingRange = this.entity.getTrackingRange();
+            double trackingRangeSquared = trackingRange * trackingRange;
+            DataPacket full = null;
+            DataPacket near = null;
+            DataPacket far = null;
+            boolean nearBuilt = false;
+            boolean farBuilt = false;
+            boolean fullToNear = false;
+            boolean fullToFar = false;
+            boolean farPending = false;
+
+            var viewers = this.entity.getViewers().values();
+            for (Player viewer : viewers) {
+                double distance = viewer.distanceSquared(this.entity);
+                byte tier = distance <= nearDistanceSquared ? TIER_NEAR : distance <= trackingRangeSquared ? TIER_FAR : TIER_OUT_OF_RANGE;
+                byte previous = this.viewerTiers.put(viewer.getId(), tier);
+                if (tier == TIER_OUT_OF_RANGE) {
+                    continue;
+                }
+                if (previous != tier) {
+                    if (full == null) {
+                        full = this.createPacket(FULL);
+                    }
+                    queue(viewer, full);
+                    fullToNear |= tier == TIER_NEAR;
+                    fullToFar |= tier == TIER_FAR;
+                } else if (tier == TIER_NEAR) {
+                    if (!nearBuilt) {
+                        near = this.createPacket(TIER_NEAR);
+                        nearBuilt = true;
+                    }
+                    if (near != null) {
+                        queue(viewer, near);
+                    }
+                } else if (farTick) {
+                    if (!farBuilt) {
+                        far = this.createPacket(TIER_FAR);
+                        farBuilt = true;
+                    }
+                    if (far != null) {
+                        queue(viewer, far);
+                    }
+                } else {
+                    farPending = true;
+                }
+            }
+
+            // 收到完整位置的观察者和这一级记录的位置不一致，下次这一级需要发送所有的值
+            if (fullToNear && !nearBuilt) {
+                this.sentValid[TIER_NEAR] = false;
+            }
+            if (fullToFar && !farBuilt) {
+                this.sentValid[TIER_FAR] = false;
+            }
+
+            if (this.viewerTiers.size() > viewers.size()) {
+                LongOpenHashSet viewerIds = new LongOpenHashSet(viewers.size());
+                for (Player viewer : viewers) {
+                    viewerIds.add(viewer.getId());
+                }
+                this.viewerTiers.keySet().removeIf(id -> !viewerIds.contains(id));
+            }
+            return farPending;
+        }
+
+        /**
+         * @param tier 要更新的级别，为{@link #FULL}时创建包含所有值的数据包<br>the tier to update, {@link #FULL} creates a packet
+         *             with all the values
+         * @return 数据包，如果这一级已经是最新的则为null<br>the packet, or null if the tier is up to date
+         */
+        private DataPacket createPacket(int tier) {
+            int changed = 0;
+            if (tier == FULL || !this.sentValid[tier]) {
+                changed = 0b111111;
+            } else {
+                float[] last = this.sent[tier];
+                for (int i = 0; i < 6; i++) {
+                    if (last[i] != this.position[i]) {
+                        changed |= 1 << i;
+                    }
+                }
+                if (changed == 0 && this.sentOnGround[tier] == this.onGround) {
+                    return null;
+                }
+            }
+            if (tier != FULL) {
+                System.arraycopy(this.position, 0, this.sent[tier], 0, 6);
+                this.sentOnGround[tier] = this.onGround;
+                this.sentValid[tier] = true;
+            }
+
+            if (this.player) {
+                MovePlayerPacket pk = new MovePlayerPacket();
+                pk.eid = this.entity.getId();
+                pk.x = this.position[0];
+                pk.y = this.position[1];
+                pk.z = this.position[2];
+                pk.pitch = this.position[3];
+                pk.yaw = this.position[4];
+                pk.headYaw = this.position[5];
+                pk.onGround = this.onGround;
+                if (this.entity.riding != null) {
+                    pk.ridingEid = this.entity.riding.getId();
+                    pk.mode = MovePlayerPacket.MODE_PITCH;
+                }
+                return pk;
+            }
+
+            if (tier == FULL) {
+                MoveEntityAbsolutePacket pk = new MoveEntityAbsolutePacket();
+                pk.eid = this.entity.getId();
+                pk.x = this.position[0];
+                pk.y = this.position[1];
+                pk.z = this.position[2];
+                pk.pitch = this.position[3];
+                pk.yaw = this.position[4];
+                pk.headYaw = this.position[5];
+                pk.onGround = this.onGround;
+                return pk;
+            }
+
+            // 标志位的顺序和position数组相同
+            MoveEntityDeltaPacket pk = new MoveEntityDeltaPacket();
+            pk.runtimeEntityId = this.entity.getId();
+            pk.flags = changed;
+            pk.x = this.position[0];
+            pk.y = this.position[1];
+            pk.z = this.position[2];
+            pk.pitch = this.position[3];
+            pk.yaw = this.position[4];
+            pk.headYaw = this.position[5];
+            if (this.onGround) {
+                pk.flags |= MoveEntityDeltaPacket.FLAG_ON_GROUND;
+            }
+            return pk;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * 实体移动的分级追踪和实体的空间索引.
+ * <p>
+ * Distance tiered tracking of entity movement and the spatial index of entities.
+ */
+package cn.nukkit.level.tracker;
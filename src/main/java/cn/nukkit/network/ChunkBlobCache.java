@@ -0,0 +1,53 @@
+package cn.nukkit.network;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.utils.Hash;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * 服务端的客户端缓存数据块LRU缓存，以xxHash64为键。相同内容的子区块只会保存一份。
+ * <p>
+ * Server side LRU of the client cache blobs, keyed by their xxHash64. Identical sub-chunks are only kept once.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public class ChunkBlobCache {
+    private final Long2ObjectLinkedOpenHashMap<byte[]> blobs = new Long2ObjectLinkedOpenHashMap<>();
+    private final long maxBytes;
+    private long size = 0;
+
+    public ChunkBlobCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 计算数据块的哈希并放入缓存
+     * <p>
+     * Hashes the blob and puts it into the cache.
+     *
+     * @return the blob id to send in the {@link cn.nukkit.network.protocol.LevelChunkPacket}
+     */
+    public synchronized long put(byte[] blob) {
+        long hash = Hash.xxHash64(blob);
+        if (this.blobs.getAndMoveToLast(hash) == null) {
+            this.blobs.putAndMoveToLast(hash, blob);
+            this.size += blob.length;
+            while (this.size > this.maxBytes && this.blobs.size() > 1) {
+                this.size -= this.blobs.removeFirst().length;
+            }
+        }
+        return hash;
+    }
+
+    @Nullable
+    public synchronized byte[] get(long hash) {
+        return this.blobs.getAndMoveToLast(hash);
+    }
+
+    public synchronized int size() {
+        return this.blobs.size();
+    }
+}
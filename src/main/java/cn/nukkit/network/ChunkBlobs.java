@@ -0,0 +1,45 @@
+package cn.nukkit.network;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.utils.BinaryStream;
+
+/**
+ * 按客户端缓存格式拆分的区块数据：每个子区块一个数据块，最后一个数据块是生物群系数据，
+ * 其余数据（边界方块和方块实体）直接放在{@link cn.nukkit.network.protocol.LevelChunkPacket}中。
+ * <p>
+ * A chunk split the way the client blob cache expects it: one blob per sub-chunk followed by one blob with the
+ * biome data. Everything else (border blocks and block entities) is sent inline in the
+ * {@link cn.nukkit.network.protocol.LevelChunkPacket}.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public class ChunkBlobs {
+    public final int subChunkCount;
+    public final long[] blobIds;
+    public final byte[][] blobs;
+    public final byte[] extraData;
+
+    public ChunkBlobs(int subChunkCount, long[] blobIds, byte[][] blobs, byte[] extraData) {
+        this.subChunkCount = subChunkCount;
+        this.blobIds = blobIds;
+        this.blobs = blobs;
+        this.extraData = extraData;
+    }
+
+    /**
+     * @return the payload of a regular, uncached {@link cn.nukkit.network.protocol.LevelChunkPacket}
+     */
+    public byte[] toPayload() {
+        int length = this.extraData.length;
+        for (byte[] blob : this.blobs) {
+            length += blob.length;
+        }
+        BinaryStream stream = new BinaryStream(new byte[length]).reset();
+        for (byte[] blob : this.blobs) {
+            stream.put(blob);
+        }
+        stream.put(this.extraData);
+        return stream.getBuffer();
+    }
+}
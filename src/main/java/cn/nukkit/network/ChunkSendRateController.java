@@ -0,0 +1,91 @@
+package cn.nukkit.network;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+
+/**
+ * 根据网络延迟调整每个玩家每刻发送的区块数量。延迟接近玩家的最低延迟时逐渐增加发送数量（进服时翻倍增长），
+ * 延迟明显升高说明连接出现拥塞，此时发送数量减半。只有上一个调整周期内确实用完过发送数量时才会增加，
+ * 没有区块可发时延迟不能说明连接还能承受更多数据。
+ * <p>
+ * Adjusts how many chunks are sent to a player per tick based on the network latency. The budget grows while the
+ * latency stays close to the lowest latency seen for the player (doubling while joining) and is halved when the latency
+ * rises clearly above it, which means the link is congested. The budget only grows if it was used up at least once
+ * during the last adjustment window, since a low latency says nothing about a link that had nothing to send.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public class ChunkSendRateController {
+    /**
+     * 两次调整之间的刻数
+     * <p>
+     * The ticks between two adjustments
+     */
+    private static final int ADJUST_INTERVAL = 10;
+
+    private final int minBudget;
+    private final int maxBudget;
+    private double budget;
+    private long baseLatency = Long.MAX_VALUE;
+    private boolean slowStart = true;
+    private boolean budgetUsed;
+    private int ticks;
+
+    public ChunkSendRateController(int initialBudget, int minBudget, int maxBudget) {
+        this.minBudget = Math.max(1, minBudget);
+        this.maxBudget = Math.max(this.minBudget, maxBudget);
+        this.budget = Math.min(this.maxBudget, Math.max(this.minBudget, initialBudget));
+    }
+
+    /**
+     * 每刻调用一次
+     * <p>
+     * Called once per tick.
+     *
+     * @param latency 当前的往返延迟，单位为毫秒，未知时为负数<br>the current round trip time in milliseconds,
+     *                negative if unknown
+     */
+    public void tick(long latency) {
+        if (++this.ticks < ADJUST_INTERVAL || latency < 0) {
+            return;
+        }
+        this.ticks = 0;
+
+        // 基准延迟缓慢上升，以适应路由的变化
+        this.baseLatency = Math.min(this.baseLatency == Long.MAX_VALUE ? latency : this.baseLatency + 1, latency);
+        long congestedLatency = this.baseLatency + Math.max(50, this.baseLatency / 2);
+        boolean budgetUsed = this.budgetUsed;
+        this.budgetUsed = false;
+        if (latency > congestedLatency) {
+            this.budget = Math.max(this.minBudget, this.budget / 2);
+            this.slowStart = false;
+        } else if (!budgetUsed) {
+            // 发送受限于要发送的区块而不是连接，保持当前的发送数量
+            return;
+        } else if (this.slowStart) {
+            this.budget = Math.min(this.maxBudget, this.budget * 2);
+        } else {
+            this.budget = Math.min(this.maxBudget, this.budget + 1);
+        }
+    }
+
+    /**
+     * 每刻发送区块后调用，记录这一刻使用的发送数量
+     * <p>
+     * Called after the chunks of a tick were sent, records how much of the budget was used.
+     *
+     * @param sent 这一刻发送的区块数量<br>the number of chunks sent this tick
+     */
+    public void onChunksSent(int sent) {
+        if (sent >= this.getBudget()) {
+            this.budgetUsed = true;
+        }
+    }
+
+    /**
+     * @return 这一刻可以发送的区块数量<br>the number of chunks that can be sent this tick
+     */
+    public int getBudget() {
+        return (int) this.budget;
+    }
+}
@@ -3,12 +3,12 @@ package cn.nukkit.network;
 import cn.nukkit.Player;
 import cn.nukkit.Server;
 import cn.nukkit.api.*;
-import cn.nukkit.nbt.stream.FastByteArrayOutputStream;
+import cn.nukkit.network.compression.CompressionProvider;
+import cn.nukkit.network.compression.JdkCompressionProvider;
 import cn.nukkit.network.protocol.*;
 import cn.nukkit.utils.BinaryStream;
-import cn.nukkit.utils.ThreadCache;
 import cn.nukkit.utils.Utils;
-import cn.nukkit.utils.VarInt;
+import com.google.common.base.Preconditions;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
@@ -18,15 +18,16 @@ import org.jetbrains.annotations.Nullable;
 import oshi.SystemInfo;
 import oshi.hardware.NetworkIF;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ProtocolException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
 
 /**
  * @author MagicDroidX (Nukkit Project)
@@ -34,9 +35,7 @@ import java.util.zip.Inflater;
 @Log4j2
 public class Network {
 
-    private static final ThreadLocal<Inflater> INFLATER_RAW = ThreadLocal.withInitial(() -> new Inflater(true));
-    private static final ThreadLocal<Deflater> DEFLATER_RAW = ThreadLocal.withInitial(() -> new Deflater(7, true));
-    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[2 * 1024 * 1024]);
+    private static volatile CompressionProvider compressionProvider = JdkCompressionProvider.INSTANCE;
 
 
     public static final byte CHANNEL_NONE = 0;
@@ -49,7 +48,12 @@ public class Network {
     public static final byte CHANNEL_TEXT = 7; //Chat and other text stuff
     public static final byte CHANNEL_END = 31;
 
-    private Class<? extends DataPacket>[] packetPool = new Class[256];
+    /**
+     * 按数据包ID索引的数据包工厂
+     * <p>
+     * The packet factories indexed by packet id
+     */
+    private Supplier<? extends DataPacket>[] packetPool = new Supplier[256];
 
     private final Server server;
 
@@ -84,75 +88,80 @@ public class Network {
 
     }
 
-    @Since("1.3.0.0-PN")
-    public static byte[] inflateRaw(byte[] data) throws IOException, DataFormatException {
-        Inflater inflater = INFLATER_RAW.get();
-        try {
-            inflater.setInput(data);
-            inflater.finished();
-
-            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
-            bos.reset();
-            byte[] buf = BUFFER.get();
-            while (!inflater.finished()) {
-                int i = inflater.inflate(buf);
-                if (i == 0) {
-                    throw new IOException("Could not decompress the data. Needs input: " + inflater.needsInput() + ", Needs Dictionary: " + inflater.needsDictionary());
+    /**
+     * @return 当前使用的压缩实现<br>the compression implementation in use
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static CompressionProvider getCompressionProvider() {
+        return compressionProvider;
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static void setCompressionProvider(CompressionProvider compressionProvider) {
+        Network.compressionProvider = Preconditions.checkNotNull(compressionProvider, "compressionProvider");
+    }
+
+    /**
+     * 按名称查找压缩实现，先查找内置的实现，再查找通过{@link ServiceLoader}注册的实现。找不到或者不可用时使用
+     * {@link JdkCompressionProvider}。
+     * <p>
+     * Finds a compression implementation by name, the built-in one first and then the ones registered through
+     * {@link ServiceLoader}. Falls back to {@link JdkCompressionProvider} when it is not found or not available.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static CompressionProvider findCompressionProvider(String name) {
+        if (JdkCompressionProvider.INSTANCE.getName().equalsIgnoreCase(name)) {
+            return JdkCompressionProvider.INSTANCE;
+        }
+        for (CompressionProvider provider : ServiceLoader.load(CompressionProvider.class, Network.class.getClassLoader())) {
+            if (provider.getName().equalsIgnoreCase(name)) {
+                if (provider.isAvailable()) {
+                    return provider;
                 }
-                bos.write(buf, 0, i);
+                log.warn("The compression provider {} is not available, falling back to {}", name, JdkCompressionProvider.INSTANCE.getName());
+                return JdkCompressionProvider.INSTANCE;
             }
-            return bos.toByteArray();
-        } finally {
-            inflater.reset();
         }
+        log.warn("Unknown compression provider {}, falling back to {}", name, JdkCompressionProvider.INSTANCE.getName());
+        return JdkCompressionProvider.INSTANCE;
     }
 
     @Since("1.3.0.0-PN")
-    public static byte[] deflateRaw(byte[] data, int level) throws IOException {
-        Deflater deflater = DEFLATER_RAW.get();
-        try {
-            deflater.setLevel(level);
-            deflater.setInput(data);
-            deflater.finish();
-            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
-            bos.reset();
-            byte[] buffer = BUFFER.get();
-            while (!deflater.finished()) {
-                int i = deflater.deflate(buffer);
-                bos.write(buffer, 0, i);
-            }
+    public static byte[] inflateRaw(byte[] data) throws IOException, DataFormatException {
+        return compressionProvider.inflateRaw(data);
+    }
 
-            return bos.toByteArray();
-        } finally {
-            deflater.reset();
-        }
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static byte[] inflateRaw(ByteBuf data) throws IOException, DataFormatException {
+        return compressionProvider.inflateRaw(data);
+    }
+
+    @Since("1.3.0.0-PN")
+    public static byte[] deflateRaw(byte[] data, int level) throws IOException {
+        return compressionProvider.deflateRaw(data, level);
     }
 
     @Since("1.3.0.0-PN")
     public static byte[] deflateRaw(byte[][] datas, int level) throws IOException {
-        Deflater deflater = DEFLATER_RAW.get();
-        try {
-            deflater.setLevel(level);
-            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
-            bos.reset();
-            byte[] buffer = BUFFER.get();
-
-            for (byte[] data : datas) {
-                deflater.setInput(data);
-                while (!deflater.needsInput()) {
-                    int i = deflater.deflate(buffer);
-                    bos.write(buffer, 0, i);
-                }
-            }
-            deflater.finish();
-            while (!deflater.finished()) {
-                int i = deflater.deflate(buffer);
-                bos.write(buffer, 0, i);
-            }
-            return bos.toByteArray();
-        } finally {
-            deflater.reset();
-        }
+        return compressionProvider.deflateRaw(datas, level);
+    }
+
+    /**
+     * 直接在{@link ByteBuf}之间压缩，输入可以是{@link io.netty.buffer.CompositeByteBuf}，输出通常是池化的直接缓冲区，
+     * 因此压缩过程不会产生中间的堆数组。压缩后输入的所有可读字节都会被消耗。
+     * <p>
+     * Deflates directly between {@link ByteBuf}s, the input may be a {@link io.netty.buffer.CompositeByteBuf} and the
+     * output is usually a pooled direct buffer, so no intermediate heap array is created. All the readable bytes of
+     * the input are consumed.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static void deflateRaw(ByteBuf input, ByteBuf output, int level) {
+        compressionProvider.deflateRaw(input, output, level);
     }
 
     @Deprecated(since = "1.6.0.0-PNX")
@@ -240,7 +249,37 @@ public class Network {
     }
 
     public void registerPacket(byte id, Class<? extends DataPacket> clazz) {
-        this.packetPool[id & 0xff] = clazz;
+        this.registerPacket(id, createPacketFactory(clazz));
+    }
+
+    /**
+     * 注册数据包工厂，收到这个ID的数据包时会调用工厂创建实例，不使用反射
+     * <p>
+     * Registers a packet factory, the factory is called to create the instance when a packet with this id is
+     * received, without reflection.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void registerPacket(int id, Supplier<? extends DataPacket> factory) {
+        this.packetPool[id & 0xff] = factory;
+    }
+
+    private static Supplier<? extends DataPacket> createPacketFactory(Class<? extends DataPacket> clazz) {
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup().findConstructor(clazz, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("The packet class " + clazz + " has no public constructor without arguments", e);
+        }
+        return () -> {
+            try {
+                return (DataPacket) constructor.invoke();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
     }
 
     public Server getServer() {
@@ -278,7 +317,31 @@ public class Network {
             log.debug("Exception while inflating batch packet", e);
             return;
         }
+        this.decodeBatch(data, packets);
+    }
 
+    /**
+     * 直接从网络缓冲区解压并解码批次数据包，不需要先复制到数组中。在网络线程上调用，只有解码完成的数据包会交给主线程。
+     * <p>
+     * Inflates and decodes a batch straight from the network buffer without copying it to an array first. It is
+     * called on the network threads so only decoded packets are handed to the main thread.
+     *
+     * @param payload 批次数据包的内容，不包括0xfe头<br>the batch payload, without the 0xfe header
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void processBatch(ByteBuf payload, Collection<DataPacket> packets) throws ProtocolException {
+        byte[] data;
+        try {
+            data = Network.inflateRaw(payload);
+        } catch (Exception e) {
+            log.debug("Exception while inflating batch packet", e);
+            return;
+        }
+        this.decodeBatch(data, packets);
+    }
+
+    private void decodeBatch(byte[] data, Collection<DataPacket> packets) throws ProtocolException {
         BinaryStream stream = new BinaryStream(data);
         try {
             int count = 0;
@@ -287,19 +350,25 @@ public class Network {
                 if (count >= 1000) {
                     throw new ProtocolException("Illegal batch with " + count + " packets");
                 }
-                byte[] buf = stream.getByteArray();
-
-                ByteArrayInputStream bais = new ByteArrayInputStream(buf);
-                int header = (int) VarInt.readUnsignedVarInt(bais);
+                int length = (int) stream.getUnsignedVarInt();
+                int start = stream.getOffset();
+                if (length < 0 || length > data.length - start) {
+                    throw new ProtocolException("Illegal packet length " + length);
+                }
 
                 // | Client ID | Sender ID | Packet ID |
                 // |   2 bits  |   2 bits  |  10 bits  |
+                int header = (int) stream.getUnsignedVarInt();
                 int packetId = header & 0x3ff;
+                int headerLength = stream.getOffset() - start;
+                stream.setOffset(start + length);
 
                 DataPacket pk = this.getPacket(packetId);
 
                 if (pk != null) {
-                    pk.setBuffer(buf, buf.length - bais.available());
+                    // 数据包的解码依赖缓冲区的长度，所以每个数据包需要自己的数组
+                    byte[] buf = Arrays.copyOfRange(data, start, start + length);
+                    pk.setBuffer(buf, headerLength);
                     try {
                         pk.decode();
                     } catch (Exception e) {
@@ -355,10 +424,10 @@ public class Network {
     
     @Since("1.4.0.0-PN")
     public DataPacket getPacket(int id) {
-        Class<? extends DataPacket> clazz = this.packetPool[id];
-        if (clazz != null) {
+        Supplier<? extends DataPacket> factory = this.packetPool[id];
+        if (factory != null) {
             try {
-                return clazz.newInstance();
+                return factory.get();
             } catch (Exception e) {
                 log.error("Error while creating a class for the packet id {}", id, e);
             }
@@ -391,148 +460,152 @@ public class Network {
     }
 
     private void registerPackets() {
-        this.packetPool = new Class[256];
-
-        this.registerPacket(ProtocolInfo.ADD_ENTITY_PACKET, AddEntityPacket.class);
-        this.registerPacket(ProtocolInfo.ADD_ITEM_ENTITY_PACKET, AddItemEntityPacket.class);
-        this.registerPacket(ProtocolInfo.ADD_PAINTING_PACKET, AddPaintingPacket.class);
-        this.registerPacket(ProtocolInfo.ADD_PLAYER_PACKET, AddPlayerPacket.class);
-        this.registerPacket(ProtocolInfo.ADVENTURE_SETTINGS_PACKET, AdventureSettingsPacket.class);
-        this.registerPacket(ProtocolInfo.ANIMATE_PACKET, AnimatePacket.class);
-        this.registerPacket(ProtocolInfo.ANVIL_DAMAGE_PACKET, AnvilDamagePacket.class);
-        this.registerPacket(ProtocolInfo.AVAILABLE_COMMANDS_PACKET, AvailableCommandsPacket.class);
-        this.registerPacket(ProtocolInfo.BATCH_PACKET, BatchPacket.class);
-        this.registerPacket(ProtocolInfo.BLOCK_ENTITY_DATA_PACKET, BlockEntityDataPacket.class);
-        this.registerPacket(ProtocolInfo.BLOCK_EVENT_PACKET, BlockEventPacket.class);
-        this.registerPacket(ProtocolInfo.BLOCK_PICK_REQUEST_PACKET, BlockPickRequestPacket.class);
-        this.registerPacket(ProtocolInfo.BOOK_EDIT_PACKET, BookEditPacket.class);
-        this.registerPacket(ProtocolInfo.BOSS_EVENT_PACKET, BossEventPacket.class);
-        this.registerPacket(ProtocolInfo.CHANGE_DIMENSION_PACKET, ChangeDimensionPacket.class);
-        this.registerPacket(ProtocolInfo.CHUNK_RADIUS_UPDATED_PACKET, ChunkRadiusUpdatedPacket.class);
-        this.registerPacket(ProtocolInfo.CLIENTBOUND_MAP_ITEM_DATA_PACKET, ClientboundMapItemDataPacket.class);
-        this.registerPacket(ProtocolInfo.COMMAND_REQUEST_PACKET, CommandRequestPacket.class);
-        this.registerPacket(ProtocolInfo.CONTAINER_CLOSE_PACKET, ContainerClosePacket.class);
-        this.registerPacket(ProtocolInfo.CONTAINER_OPEN_PACKET, ContainerOpenPacket.class);
-        this.registerPacket(ProtocolInfo.CONTAINER_SET_DATA_PACKET, ContainerSetDataPacket.class);
-        this.registerPacket(ProtocolInfo.CRAFTING_DATA_PACKET, CraftingDataPacket.class);
-        this.registerPacket(ProtocolInfo.CRAFTING_EVENT_PACKET, CraftingEventPacket.class);
-        this.registerPacket(ProtocolInfo.DISCONNECT_PACKET, DisconnectPacket.class);
-        this.registerPacket(ProtocolInfo.ENTITY_EVENT_PACKET, EntityEventPacket.class);
-        this.registerPacket(ProtocolInfo.ENTITY_FALL_PACKET, EntityFallPacket.class);
-        this.registerPacket(ProtocolInfo.FULL_CHUNK_DATA_PACKET, LevelChunkPacket.class);
-        this.registerPacket(ProtocolInfo.GAME_RULES_CHANGED_PACKET, GameRulesChangedPacket.class);
-        this.registerPacket(ProtocolInfo.HURT_ARMOR_PACKET, HurtArmorPacket.class);
-        this.registerPacket(ProtocolInfo.INTERACT_PACKET, InteractPacket.class);
-        this.registerPacket(ProtocolInfo.INVENTORY_CONTENT_PACKET, InventoryContentPacket.class);
-        this.registerPacket(ProtocolInfo.INVENTORY_SLOT_PACKET, InventorySlotPacket.class);
-        this.registerPacket(ProtocolInfo.INVENTORY_TRANSACTION_PACKET, InventoryTransactionPacket.class);
-        this.registerPacket(ProtocolInfo.ITEM_FRAME_DROP_ITEM_PACKET, ItemFrameDropItemPacket.class);
-        this.registerPacket(ProtocolInfo.LEVEL_EVENT_PACKET, LevelEventPacket.class);
-        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V1, LevelSoundEventPacketV1.class);
-        this.registerPacket(ProtocolInfo.LOGIN_PACKET, LoginPacket.class);
-        this.registerPacket(ProtocolInfo.MAP_INFO_REQUEST_PACKET, MapInfoRequestPacket.class);
-        this.registerPacket(ProtocolInfo.MOB_ARMOR_EQUIPMENT_PACKET, MobArmorEquipmentPacket.class);
-        this.registerPacket(ProtocolInfo.MOB_EQUIPMENT_PACKET, MobEquipmentPacket.class);
-        this.registerPacket(ProtocolInfo.MODAL_FORM_REQUEST_PACKET, ModalFormRequestPacket.class);
-        this.registerPacket(ProtocolInfo.MODAL_FORM_RESPONSE_PACKET, ModalFormResponsePacket.class);
-        this.registerPacket(ProtocolInfo.MOVE_ENTITY_ABSOLUTE_PACKET, MoveEntityAbsolutePacket.class);
-        this.registerPacket(ProtocolInfo.MOVE_PLAYER_PACKET, MovePlayerPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_ACTION_PACKET, PlayerActionPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_INPUT_PACKET, PlayerInputPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_LIST_PACKET, PlayerListPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_HOTBAR_PACKET, PlayerHotbarPacket.class);
-        this.registerPacket(ProtocolInfo.PLAY_SOUND_PACKET, PlaySoundPacket.class);
-        this.registerPacket(ProtocolInfo.PLAY_STATUS_PACKET, PlayStatusPacket.class);
-        this.registerPacket(ProtocolInfo.REMOVE_ENTITY_PACKET, RemoveEntityPacket.class);
-        this.registerPacket(ProtocolInfo.REQUEST_CHUNK_RADIUS_PACKET, RequestChunkRadiusPacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACKS_INFO_PACKET, ResourcePacksInfoPacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_STACK_PACKET, ResourcePackStackPacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CLIENT_RESPONSE_PACKET, ResourcePackClientResponsePacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_DATA_INFO_PACKET, ResourcePackDataInfoPacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CHUNK_DATA_PACKET, ResourcePackChunkDataPacket.class);
-        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CHUNK_REQUEST_PACKET, ResourcePackChunkRequestPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_SKIN_PACKET, PlayerSkinPacket.class);
-        this.registerPacket(ProtocolInfo.RESPAWN_PACKET, RespawnPacket.class);
-        this.registerPacket(ProtocolInfo.RIDER_JUMP_PACKET, RiderJumpPacket.class);
-        this.registerPacket(ProtocolInfo.SET_COMMANDS_ENABLED_PACKET, SetCommandsEnabledPacket.class);
-        this.registerPacket(ProtocolInfo.SET_DIFFICULTY_PACKET, SetDifficultyPacket.class);
-        this.registerPacket(ProtocolInfo.SET_ENTITY_DATA_PACKET, SetEntityDataPacket.class);
-        this.registerPacket(ProtocolInfo.SET_ENTITY_LINK_PACKET, SetEntityLinkPacket.class);
-        this.registerPacket(ProtocolInfo.SET_ENTITY_MOTION_PACKET, SetEntityMotionPacket.class);
-        this.registerPacket(ProtocolInfo.SET_HEALTH_PACKET, SetHealthPacket.class);
-        this.registerPacket(ProtocolInfo.SET_PLAYER_GAME_TYPE_PACKET, SetPlayerGameTypePacket.class);
-        this.registerPacket(ProtocolInfo.SET_SPAWN_POSITION_PACKET, SetSpawnPositionPacket.class);
-        this.registerPacket(ProtocolInfo.SET_TITLE_PACKET, SetTitlePacket.class);
-        this.registerPacket(ProtocolInfo.SET_TIME_PACKET, SetTimePacket.class);
-        this.registerPacket(ProtocolInfo.SERVER_SETTINGS_REQUEST_PACKET, ServerSettingsRequestPacket.class);
-        this.registerPacket(ProtocolInfo.SERVER_SETTINGS_RESPONSE_PACKET, ServerSettingsResponsePacket.class);
-        this.registerPacket(ProtocolInfo.SHOW_CREDITS_PACKET, ShowCreditsPacket.class);
-        this.registerPacket(ProtocolInfo.SPAWN_EXPERIENCE_ORB_PACKET, SpawnExperienceOrbPacket.class);
-        this.registerPacket(ProtocolInfo.START_GAME_PACKET, StartGamePacket.class);
-        this.registerPacket(ProtocolInfo.TAKE_ITEM_ENTITY_PACKET, TakeItemEntityPacket.class);
-        this.registerPacket(ProtocolInfo.TEXT_PACKET, TextPacket.class);
-        this.registerPacket(ProtocolInfo.UPDATE_ATTRIBUTES_PACKET, UpdateAttributesPacket.class);
-        this.registerPacket(ProtocolInfo.UPDATE_BLOCK_PACKET, UpdateBlockPacket.class);
-        this.registerPacket(ProtocolInfo.UPDATE_TRADE_PACKET, UpdateTradePacket.class);
-        this.registerPacket(ProtocolInfo.MOVE_ENTITY_DELTA_PACKET, MoveEntityDeltaPacket.class);
-        this.registerPacket(ProtocolInfo.SET_LOCAL_PLAYER_AS_INITIALIZED_PACKET, SetLocalPlayerAsInitializedPacket.class);
-        this.registerPacket(ProtocolInfo.NETWORK_STACK_LATENCY_PACKET, NetworkStackLatencyPacket.class);
-        this.registerPacket(ProtocolInfo.UPDATE_SOFT_ENUM_PACKET, UpdateSoftEnumPacket.class);
-        this.registerPacket(ProtocolInfo.NETWORK_CHUNK_PUBLISHER_UPDATE_PACKET, NetworkChunkPublisherUpdatePacket.class);
-        this.registerPacket(ProtocolInfo.AVAILABLE_ENTITY_IDENTIFIERS_PACKET, AvailableEntityIdentifiersPacket.class);
-        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V2, LevelSoundEventPacket.class);
-        this.registerPacket(ProtocolInfo.SCRIPT_CUSTOM_EVENT_PACKET, ScriptCustomEventPacket.class);
-        this.registerPacket(ProtocolInfo.SPAWN_PARTICLE_EFFECT_PACKET, SpawnParticleEffectPacket.class);
-        this.registerPacket(ProtocolInfo.BIOME_DEFINITION_LIST_PACKET, BiomeDefinitionListPacket.class);
-        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET, LevelSoundEventPacket.class);
-        this.registerPacket(ProtocolInfo.LEVEL_EVENT_GENERIC_PACKET, LevelEventGenericPacket.class);
-        this.registerPacket(ProtocolInfo.LECTERN_UPDATE_PACKET, LecternUpdatePacket.class);
-        this.registerPacket(ProtocolInfo.VIDEO_STREAM_CONNECT_PACKET, VideoStreamConnectPacket.class);
-        this.registerPacket(ProtocolInfo.CLIENT_CACHE_STATUS_PACKET, ClientCacheStatusPacket.class);
-        this.registerPacket(ProtocolInfo.MAP_CREATE_LOCKED_COPY_PACKET, MapCreateLockedCopyPacket.class);
-        this.registerPacket(ProtocolInfo.EMOTE_PACKET, EmotePacket.class);
-        this.registerPacket(ProtocolInfo.ON_SCREEN_TEXTURE_ANIMATION_PACKET, OnScreenTextureAnimationPacket.class);
-        this.registerPacket(ProtocolInfo.COMPLETED_USING_ITEM_PACKET, CompletedUsingItemPacket.class);
-        this.registerPacket(ProtocolInfo.CODE_BUILDER_PACKET, CodeBuilderPacket.class);
-        this.registerPacket(ProtocolInfo.CREATIVE_CONTENT_PACKET, CreativeContentPacket.class);
-        this.registerPacket(ProtocolInfo.DEBUG_INFO_PACKET, DebugInfoPacket.class);
-        this.registerPacket(ProtocolInfo.EMOTE_LIST_PACKET, EmoteListPacket.class);
-        this.registerPacket(ProtocolInfo.ITEM_STACK_REQUEST_PACKET, ItemStackRequestPacket.class);
-        this.registerPacket(ProtocolInfo.ITEM_STACK_RESPONSE_PACKET, ItemStackResponsePacket.class);
-        this.registerPacket(ProtocolInfo.PACKET_VIOLATION_WARNING_PACKET, PacketViolationWarningPacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_ARMOR_DAMAGE_PACKET, PlayerArmorDamagePacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_ENCHANT_OPTIONS_PACKET, PlayerEnchantOptionsPacket.class);
-        this.registerPacket(ProtocolInfo.POS_TRACKING_CLIENT_REQUEST_PACKET, PositionTrackingDBClientRequestPacket.class);
-        this.registerPacket(ProtocolInfo.POS_TRACKING_SERVER_BROADCAST_PACKET, PositionTrackingDBServerBroadcastPacket.class);
-        this.registerPacket(ProtocolInfo.UPDATE_PLAYER_GAME_TYPE_PACKET, UpdatePlayerGameTypePacket.class);
-        this.registerPacket(ProtocolInfo.FILTER_TEXT_PACKET, FilterTextPacket.class);
-        this.registerPacket(ProtocolInfo.TOAST_REQUEST_PACKET, ToastRequestPacket.class);
-        this.registerPacket(ProtocolInfo.ITEM_COMPONENT_PACKET, ItemComponentPacket.class);
-        this.registerPacket(ProtocolInfo.ADD_VOLUME_ENTITY_PACKET, AddVolumeEntityPacket.class);
-        this.registerPacket(ProtocolInfo.REMOVE_VOLUME_ENTITY_PACKET, RemoveVolumeEntityPacket.class);
-        this.registerPacket(ProtocolInfo.SYNC_ENTITY_PROPERTY_PACKET, SyncEntityPropertyPacket.class);
-        this.registerPacket(ProtocolInfo.TICK_SYNC_PACKET, TickSyncPacket.class);
-        this.registerPacket(ProtocolInfo.ANIMATE_ENTITY_PACKET, AnimateEntityPacket.class);
-        this.registerPacket(ProtocolInfo.NPC_DIALOGUE_PACKET, NPCDialoguePacket.class);
-        this.registerPacket(ProtocolInfo.NPC_REQUEST_PACKET, NPCRequestPacket.class);
-        this.registerPacket(ProtocolInfo.SIMULATION_TYPE_PACKET, SimulationTypePacket.class);
-        this.registerPacket(ProtocolInfo.SCRIPT_MESSAGE_PACKET, ScriptMessagePacket.class);
-        this.registerPacket(ProtocolInfo.PLAYER_START_ITEM_COOL_DOWN_PACKET, PlayerStartItemCoolDownPacket.class);
-        this.registerPacket(ProtocolInfo.CODE_BUILDER_SOURCE_PACKET, CodeBuilderSourcePacket.class);
-        this.registerPacket(ProtocolInfo.UPDATE_SUB_CHUNK_BLOCKS_PACKET, UpdateSubChunkBlocksPacket.class);
+        this.packetPool = new Supplier[256];
+
+        this.registerPacket(ProtocolInfo.ADD_ENTITY_PACKET, AddEntityPacket::new);
+        this.registerPacket(ProtocolInfo.ADD_ITEM_ENTITY_PACKET, AddItemEntityPacket::new);
+        this.registerPacket(ProtocolInfo.ADD_PAINTING_PACKET, AddPaintingPacket::new);
+        this.registerPacket(ProtocolInfo.ADD_PLAYER_PACKET, AddPlayerPacket::new);
+        this.registerPacket(ProtocolInfo.ADVENTURE_SETTINGS_PACKET, AdventureSettingsPacket::new);
+        this.registerPacket(ProtocolInfo.ANIMATE_PACKET, AnimatePacket::new);
+        this.registerPacket(ProtocolInfo.ANVIL_DAMAGE_PACKET, AnvilDamagePacket::new);
+        this.registerPacket(ProtocolInfo.AVAILABLE_COMMANDS_PACKET, AvailableCommandsPacket::new);
+        this.registerPacket(ProtocolInfo.BATCH_PACKET, BatchPacket::new);
+        this.registerPacket(ProtocolInfo.BLOCK_ENTITY_DATA_PACKET, BlockEntityDataPacket::new);
+        this.registerPacket(ProtocolInfo.BLOCK_EVENT_PACKET, BlockEventPacket::new);
+        this.registerPacket(ProtocolInfo.BLOCK_PICK_REQUEST_PACKET, BlockPickRequestPacket::new);
+        this.registerPacket(ProtocolInfo.BOOK_EDIT_PACKET, BookEditPacket::new);
+        this.registerPacket(ProtocolInfo.BOSS_EVENT_PACKET, BossEventPacket::new);
+        this.registerPacket(ProtocolInfo.CHANGE_DIMENSION_PACKET, ChangeDimensionPacket::new);
+        this.registerPacket(ProtocolInfo.CHUNK_RADIUS_UPDATED_PACKET, ChunkRadiusUpdatedPacket::new);
+        this.registerPacket(ProtocolInfo.CLIENTBOUND_MAP_ITEM_DATA_PACKET, ClientboundMapItemDataPacket::new);
+        this.registerPacket(ProtocolInfo.COMMAND_REQUEST_PACKET, CommandRequestPacket::new);
+        this.registerPacket(ProtocolInfo.CONTAINER_CLOSE_PACKET, ContainerClosePacket::new);
+        this.registerPacket(ProtocolInfo.CONTAINER_OPEN_PACKET, ContainerOpenPacket::new);
+        this.registerPacket(ProtocolInfo.CONTAINER_SET_DATA_PACKET, ContainerSetDataPacket::new);
+        this.registerPacket(ProtocolInfo.CRAFTING_DATA_PACKET, CraftingDataPacket::new);
+        this.registerPacket(ProtocolInfo.CRAFTING_EVENT_PACKET, CraftingEventPacket::new);
+        this.registerPacket(ProtocolInfo.DISCONNECT_PACKET, DisconnectPacket::new);
+        this.registerPacket(ProtocolInfo.ENTITY_EVENT_PACKET, EntityEventPacket::new);
+        this.registerPacket(ProtocolInfo.ENTITY_FALL_PACKET, EntityFallPacket::new);
+        this.registerPacket(ProtocolInfo.FULL_CHUNK_DATA_PACKET, LevelChunkPacket::new);
+        this.registerPacket(ProtocolInfo.GAME_RULES_CHANGED_PACKET, GameRulesChangedPacket::new);
+        this.registerPacket(ProtocolInfo.HURT_ARMOR_PACKET, HurtArmorPacket::new);
+        this.registerPacket(ProtocolInfo.INTERACT_PACKET, InteractPacket::new);
+        this.registerPacket(ProtocolInfo.INVENTORY_CONTENT_PACKET, InventoryContentPacket::new);
+        this.registerPacket(ProtocolInfo.INVENTORY_SLOT_PACKET, InventorySlotPacket::new);
+        this.registerPacket(ProtocolInfo.INVENTORY_TRANSACTION_PACKET, InventoryTransactionPacket::new);
+        this.registerPacket(ProtocolInfo.ITEM_FRAME_DROP_ITEM_PACKET, ItemFrameDropItemPacket::new);
+        this.registerPacket(ProtocolInfo.LEVEL_EVENT_PACKET, LevelEventPacket::new);
+        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V1, LevelSoundEventPacketV1::new);
+        this.registerPacket(ProtocolInfo.LOGIN_PACKET, LoginPacket::new);
+        this.registerPacket(ProtocolInfo.MAP_INFO_REQUEST_PACKET, MapInfoRequestPacket::new);
+        this.registerPacket(ProtocolInfo.MOB_ARMOR_EQUIPMENT_PACKET, MobArmorEquipmentPacket::new);
+        this.registerPacket(ProtocolInfo.MOB_EQUIPMENT_PACKET, MobEquipmentPacket::new);
+        this.registerPacket(ProtocolInfo.MODAL_FORM_REQUEST_PACKET, ModalFormRequestPacket::new);
+        this.registerPacket(ProtocolInfo.MODAL_FORM_RESPONSE_PACKET, ModalFormResponsePacket::new);
+        this.registerPacket(ProtocolInfo.MOVE_ENTITY_ABSOLUTE_PACKET, MoveEntityAbsolutePacket::new);
+        this.registerPacket(ProtocolInfo.MOVE_PLAYER_PACKET, MovePlayerPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_ACTION_PACKET, PlayerActionPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_INPUT_PACKET, PlayerInputPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_LIST_PACKET, PlayerListPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_HOTBAR_PACKET, PlayerHotbarPacket::new);
+        this.registerPacket(ProtocolInfo.PLAY_SOUND_PACKET, PlaySoundPacket::new);
+        this.registerPacket(ProtocolInfo.PLAY_STATUS_PACKET, PlayStatusPacket::new);
+        this.registerPacket(ProtocolInfo.REMOVE_ENTITY_PACKET, RemoveEntityPacket::new);
+        this.registerPacket(ProtocolInfo.REQUEST_CHUNK_RADIUS_PACKET, RequestChunkRadiusPacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACKS_INFO_PACKET, ResourcePacksInfoPacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_STACK_PACKET, ResourcePackStackPacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CLIENT_RESPONSE_PACKET, ResourcePackClientResponsePacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_DATA_INFO_PACKET, ResourcePackDataInfoPacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CHUNK_DATA_PACKET, ResourcePackChunkDataPacket::new);
+        this.registerPacket(ProtocolInfo.RESOURCE_PACK_CHUNK_REQUEST_PACKET, ResourcePackChunkRequestPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_SKIN_PACKET, PlayerSkinPacket::new);
+        this.registerPacket(ProtocolInfo.RESPAWN_PACKET, RespawnPacket::new);
+        this.registerPacket(ProtocolInfo.RIDER_JUMP_PACKET, RiderJumpPacket::new);
+        this.registerPacket(ProtocolInfo.SET_COMMANDS_ENABLED_PACKET, SetCommandsEnabledPacket::new);
+        this.registerPacket(ProtocolInfo.SET_DIFFICULTY_PACKET, SetDifficultyPacket::new);
+        this.registerPacket(ProtocolInfo.SET_ENTITY_DATA_PACKET, SetEntityDataPacket::new);
+        this.registerPacket(ProtocolInfo.SET_ENTITY_LINK_PACKET, SetEntityLinkPacket::new);
+        this.registerPacket(ProtocolInfo.SET_ENTITY_MOTION_PACKET, SetEntityMotionPacket::new);
+        this.registerPacket(ProtocolInfo.SET_HEALTH_PACKET, SetHealthPacket::new);
+        this.registerPacket(ProtocolInfo.SET_PLAYER_GAME_TYPE_PACKET, SetPlayerGameTypePacket::new);
+        this.registerPacket(ProtocolInfo.SET_SPAWN_POSITION_PACKET, SetSpawnPositionPacket::new);
+        this.registerPacket(ProtocolInfo.SET_TITLE_PACKET, SetTitlePacket::new);
+        this.registerPacket(ProtocolInfo.SET_TIME_PACKET, SetTimePacket::new);
+        this.registerPacket(ProtocolInfo.SERVER_SETTINGS_REQUEST_PACKET, ServerSettingsRequestPacket::new);
+        this.registerPacket(ProtocolInfo.SERVER_SETTINGS_RESPONSE_PACKET, ServerSettingsResponsePacket::new);
+        this.registerPacket(ProtocolInfo.SHOW_CREDITS_PACKET, ShowCreditsPacket::new);
+        this.registerPacket(ProtocolInfo.SPAWN_EXPERIENCE_ORB_PACKET, SpawnExperienceOrbPacket::new);
+        this.registerPacket(ProtocolInfo.START_GAME_PACKET, StartGamePacket::new);
+        this.registerPacket(ProtocolInfo.TAKE_ITEM_ENTITY_PACKET, TakeItemEntityPacket::new);
+        this.registerPacket(ProtocolInfo.TEXT_PACKET, TextPacket::new);
+        this.registerPacket(ProtocolInfo.UPDATE_ATTRIBUTES_PACKET, UpdateAttributesPacket::new);
+        this.registerPacket(ProtocolInfo.UPDATE_BLOCK_PACKET, UpdateBlockPacket::new);
+        this.registerPacket(ProtocolInfo.UPDATE_TRADE_PACKET, UpdateTradePacket::new);
+        this.registerPacket(ProtocolInfo.MOVE_ENTITY_DELTA_PACKET, MoveEntityDeltaPacket::new);
+        this.registerPacket(ProtocolInfo.SET_LOCAL_PLAYER_AS_INITIALIZED_PACKET, SetLocalPlayerAsInitializedPacket::new);
+        this.registerPacket(ProtocolInfo.NETWORK_STACK_LATENCY_PACKET, NetworkStackLatencyPacket::new);
+        this.registerPacket(ProtocolInfo.UPDATE_SOFT_ENUM_PACKET, UpdateSoftEnumPacket::new);
+        this.registerPacket(ProtocolInfo.NETWORK_CHUNK_PUBLISHER_UPDATE_PACKET, NetworkChunkPublisherUpdatePacket::new);
+        this.registerPacket(ProtocolInfo.AVAILABLE_ENTITY_IDENTIFIERS_PACKET, AvailableEntityIdentifiersPacket::new);
+        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V2, LevelSoundEventPacket::new);
+        this.registerPacket(ProtocolInfo.SCRIPT_CUSTOM_EVENT_PACKET, ScriptCustomEventPacket::new);
+        this.registerPacket(ProtocolInfo.SPAWN_PARTICLE_EFFECT_PACKET, SpawnParticleEffectPacket::new);
+        this.registerPacket(ProtocolInfo.BIOME_DEFINITION_LIST_PACKET, BiomeDefinitionListPacket::new);
+        this.registerPacket(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET, LevelSoundEventPacket::new);
+        this.registerPacket(ProtocolInfo.LEVEL_EVENT_GENERIC_PACKET, LevelEventGenericPacket::new);
+        this.registerPacket(ProtocolInfo.LECTERN_UPDATE_PACKET, LecternUpdatePacket::new);
+        this.registerPacket(ProtocolInfo.VIDEO_STREAM_CONNECT_PACKET, VideoStreamConnectPacket::new);
+        this.registerPacket(ProtocolInfo.CLIENT_CACHE_STATUS_PACKET, ClientCacheStatusPacket::new);
+        this.registerPacket(ProtocolInfo.CLIENT_CACHE_BLOB_STATUS_PACKET, ClientCacheBlobStatusPacket::new);
+        this.registerPacket(ProtocolInfo.CLIENT_CACHE_MISS_RESPONSE_PACKET, ClientCacheMissResponsePacket::new);
+        this.registerPacket(ProtocolInfo.MAP_CREATE_LOCKED_COPY_PACKET, MapCreateLockedCopyPacket::new);
+        this.registerPacket(ProtocolInfo.EMOTE_PACKET, EmotePacket::new);
+        this.registerPacket(ProtocolInfo.ON_SCREEN_TEXTURE_ANIMATION_PACKET, OnScreenTextureAnimationPacket::new);
+        this.registerPacket(ProtocolInfo.COMPLETED_USING_ITEM_PACKET, CompletedUsingItemPacket::new);
+        this.registerPacket(ProtocolInfo.CODE_BUILDER_PACKET, CodeBuilderPacket::new);
+        this.registerPacket(ProtocolInfo.CREATIVE_CONTENT_PACKET, CreativeContentPacket::new);
+        this.registerPacket(ProtocolInfo.DEBUG_INFO_PACKET, DebugInfoPacket::new);
+        this.registerPacket(ProtocolInfo.EMOTE_LIST_PACKET, EmoteListPacket::new);
+        this.registerPacket(ProtocolInfo.ITEM_STACK_REQUEST_PACKET, ItemStackRequestPacket::new);
+        this.registerPacket(ProtocolInfo.ITEM_STACK_RESPONSE_PACKET, ItemStackResponsePacket::new);
+        this.registerPacket(ProtocolInfo.PACKET_VIOLATION_WARNING_PACKET, PacketViolationWarningPacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_ARMOR_DAMAGE_PACKET, PlayerArmorDamagePacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_ENCHANT_OPTIONS_PACKET, PlayerEnchantOptionsPacket::new);
+        this.registerPacket(ProtocolInfo.POS_TRACKING_CLIENT_REQUEST_PACKET, PositionTrackingDBClientRequestPacket::new);
+        this.registerPacket(ProtocolInfo.POS_TRACKING_SERVER_BROADCAST_PACKET, PositionTrackingDBServerBroadcastPacket::new);
+        this.registerPacket(ProtocolInfo.UPDATE_PLAYER_GAME_TYPE_PACKET, UpdatePlayerGameTypePacket::new);
+        this.registerPacket(ProtocolInfo.FILTER_TEXT_PACKET, FilterTextPacket::new);
+        this.registerPacket(ProtocolInfo.TOAST_REQUEST_PACKET, ToastRequestPacket::new);
+        this.registerPacket(ProtocolInfo.ITEM_COMPONENT_PACKET, ItemComponentPacket::new);
+        this.registerPacket(ProtocolInfo.ADD_VOLUME_ENTITY_PACKET, AddVolumeEntityPacket::new);
+        this.registerPacket(ProtocolInfo.REMOVE_VOLUME_ENTITY_PACKET, RemoveVolumeEntityPacket::new);
+        this.registerPacket(ProtocolInfo.SYNC_ENTITY_PROPERTY_PACKET, SyncEntityPropertyPacket::new);
+        this.registerPacket(ProtocolInfo.TICK_SYNC_PACKET, TickSyncPacket::new);
+        this.registerPacket(ProtocolInfo.ANIMATE_ENTITY_PACKET, AnimateEntityPacket::new);
+        this.registerPacket(ProtocolInfo.NPC_DIALOGUE_PACKET, NPCDialoguePacket::new);
+        this.registerPacket(ProtocolInfo.NPC_REQUEST_PACKET, NPCRequestPacket::new);
+        this.registerPacket(ProtocolInfo.SIMULATION_TYPE_PACKET, SimulationTypePacket::new);
+        this.registerPacket(ProtocolInfo.SCRIPT_MESSAGE_PACKET, ScriptMessagePacket::new);
+        this.registerPacket(ProtocolInfo.PLAYER_START_ITEM_COOL_DOWN_PACKET, PlayerStartItemCoolDownPacket::new);
+        this.registerPacket(ProtocolInfo.CODE_BUILDER_SOURCE_PACKET, CodeBuilderSourcePacket::new);
+        this.registerPacket(ProtocolInfo.UPDATE_SUB_CHUNK_BLOCKS_PACKET, UpdateSubChunkBlocksPacket::new);
+        this.registerPacket(ProtocolInfo.SUB_CHUNK_PACKET, SubChunkPacket::new);
+        this.registerPacket(ProtocolInfo.SUB_CHUNK_REQUEST_PACKET, SubChunkRequestPacket::new);
         //powernukkitx only
-        this.registerPacket(ProtocolInfo.COMMAND_BLOCK_UPDATE_PACKET, CommandBlockUpdatePacket.class);
-        this.registerPacket(ProtocolInfo.SET_SCORE_PACKET, SetScorePacket.class);
-        this.registerPacket(ProtocolInfo.SET_DISPLAY_OBJECTIVE_PACKET, SetDisplayObjectivePacket.class);
-        this.registerPacket(ProtocolInfo.REMOVE_OBJECTIVE_PACKET, RemoveObjectivePacket.class);
-        this.registerPacket(ProtocolInfo.SET_SCOREBOARD_IDENTITY_PACKET, SetScoreboardIdentityPacket.class);
-        this.registerPacket(ProtocolInfo.CAMERA_SHAKE_PACKET, CameraShakePacket.class);
-        this.registerPacket(ProtocolInfo.DEATH_INFO_PACKET, DeathInfoPacket.class);
+        this.registerPacket(ProtocolInfo.COMMAND_BLOCK_UPDATE_PACKET, CommandBlockUpdatePacket::new);
+        this.registerPacket(ProtocolInfo.SET_SCORE_PACKET, SetScorePacket::new);
+        this.registerPacket(ProtocolInfo.SET_DISPLAY_OBJECTIVE_PACKET, SetDisplayObjectivePacket::new);
+        this.registerPacket(ProtocolInfo.REMOVE_OBJECTIVE_PACKET, RemoveObjectivePacket::new);
+        this.registerPacket(ProtocolInfo.SET_SCOREBOARD_IDENTITY_PACKET, SetScoreboardIdentityPacket::new);
+        this.registerPacket(ProtocolInfo.CAMERA_SHAKE_PACKET, CameraShakePacket::new);
+        this.registerPacket(ProtocolInfo.DEATH_INFO_PACKET, DeathInfoPacket::new);
         //powernukkitx only
 
-        this.registerPacket(ProtocolInfo.AGENT_ACTION_EVENT_PACKET, AgentActionEventPacket.class);
-        this.registerPacket(ProtocolInfo.CHANGE_MOB_PROPERTY_PACKET, ChangeMobPropertyPacket.class);
-        this.registerPacket(ProtocolInfo.DIMENSION_DATA_PACKET, DimensionDataPacket.class);
-        this.registerPacket(ProtocolInfo.TICKING_AREAS_LOAD_STATUS_PACKET, TickingAreasLoadStatusPacket.class);
+        this.registerPacket(ProtocolInfo.AGENT_ACTION_EVENT_PACKET, AgentActionEventPacket::new);
+        this.registerPacket(ProtocolInfo.CHANGE_MOB_PROPERTY_PACKET, ChangeMobPropertyPacket::new);
+        this.registerPacket(ProtocolInfo.DIMENSION_DATA_PACKET, DimensionDataPacket::new);
+        this.registerPacket(ProtocolInfo.TICKING_AREAS_LOAD_STATUS_PACKET, TickingAreasLoadStatusPacket::new);
     }
 }
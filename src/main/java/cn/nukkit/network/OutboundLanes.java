@@ -0,0 +1,99 @@
+package cn.nukkit.network;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 一个会话的两个发送通道：区块通道只包含区块和方块更新，按字节预算发送；主通道包含其他所有数据包，按加入的顺序全部发送。
+ * 两个通道按加入的顺序交替发送，主通道只有不依赖区块的数据包（移动、聊天、实体等）可以越过被预算限制的区块，
+ * 其他数据包会等待之前加入的区块发送完毕，之后的数据包也会在主通道中等待，保持主通道的顺序。
+ * <p>
+ * The two outbound lanes of a session. The chunk lane only holds chunks and block updates and is sent within a byte
+ * budget, the main lane holds every other packet and is sent completely in the order it was queued. Both lanes are sent
+ * interleaved in queue order. Only the main lane packets not depending on chunks (movement, chat, entities...) may
+ * overtake chunks held back by the budget. Any other packet waits until the chunks queued before it are sent, and the
+ * packets after it wait in the main lane so its order is kept.
+ * <p>
+ * 只在网络线程上使用<br>Only used on the network thread
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+final class OutboundLanes {
+    private final ArrayDeque<Object> main = new ArrayDeque<>();
+    private final LongArrayFIFOQueue mainSequences = new LongArrayFIFOQueue();
+    private final ArrayDeque<Object> chunks = new ArrayDeque<>();
+    private final LongArrayFIFOQueue chunkSequences = new LongArrayFIFOQueue();
+    private long nextSequence;
+
+    @FunctionalInterface
+    interface Sender {
+        /**
+         * @param lane 发送使用的{@link Network}频道<br>the {@link Network} channel to send on
+         * @return 发送的字节数<br>the sent bytes
+         */
+        int send(Object entry, int lane);
+    }
+
+    void add(Object entry, boolean chunk) {
+        if (chunk) {
+            this.chunks.add(entry);
+            this.chunkSequences.enqueue(this.nextSequence++);
+        } else {
+            this.main.add(entry);
+            this.mainSequences.enqueue(this.nextSequence++);
+        }
+    }
+
+    /**
+     * 按加入的顺序发送，区块通道超过预算后停止发送区块。每次至少发送一个区块，保证区块通道不会停滞。
+     * <p>
+     * Sends the entries in queue order, the chunk lane stops once the budget is exceeded. At least one chunk is sent
+     * every time so the chunk lane never stalls.
+     *
+     * @param budget           区块通道这次可以发送的字节数<br>the bytes the chunk lane can send this time
+     * @param mustFollowChunks 主通道中不能越过之前的区块的数据包<br>the main lane entries that can not overtake the
+     *                         chunks queued before them
+     */
+    void send(int budget, Predicate<Object> mustFollowChunks, Sender sender) {
+        int sent = 0;
+        while (true) {
+            long mainSequence = this.main.isEmpty() ? Long.MAX_VALUE : this.mainSequences.firstLong();
+            long chunkSequence = this.chunks.isEmpty() ? Long.MAX_VALUE : this.chunkSequences.firstLong();
+            if (chunkSequence < mainSequence) {
+                if (sent < budget) {
+                    this.chunkSequences.dequeueLong();
+                    sent += sender.send(this.chunks.poll(), Network.CHANNEL_WORLD_CHUNKS);
+                    continue;
+                }
+                if (mainSequence == Long.MAX_VALUE || mustFollowChunks.test(this.main.peek())) {
+                    return;
+                }
+            } else if (mainSequence == Long.MAX_VALUE) {
+                return;
+            }
+            this.mainSequences.dequeueLong();
+            sender.send(this.main.poll(), Network.CHANNEL_NONE);
+        }
+    }
+
+    /**
+     * 清空两个通道
+     * <p>
+     * Empties both lanes.
+     *
+     * @param released 每个被丢弃的条目<br>every dropped entry
+     */
+    void clear(Consumer<Object> released) {
+        this.main.forEach(released);
+        this.chunks.forEach(released);
+        this.main.clear();
+        this.chunks.clear();
+        this.mainSequences.clear();
+        this.chunkSequences.clear();
+    }
+}
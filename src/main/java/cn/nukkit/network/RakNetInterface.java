@@ -3,20 +3,22 @@ package cn.nukkit.network;
 import cn.nukkit.Player;
 import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.event.player.PlayerCreationEvent;
 import cn.nukkit.event.server.QueryRegenerateEvent;
 import cn.nukkit.network.protocol.BatchPacket;
 import cn.nukkit.network.protocol.DataPacket;
 import cn.nukkit.network.protocol.ProtocolInfo;
-import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.Utils;
+import cn.nukkit.utils.VarInt;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.nukkitx.network.raknet.*;
 import com.nukkitx.network.util.DisconnectReason;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.util.concurrent.EventExecutor;
@@ -28,14 +30,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.message.FormattedMessage;
 
-import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ProtocolException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -44,6 +48,23 @@ import java.util.concurrent.TimeUnit;
 @Log4j2
 public class RakNetInterface implements RakNetServerListener, AdvancedSourceInterface {
 
+    /**
+     * 每个玩家类的构造器句柄，第一次创建这个类的玩家时查找
+     * <p>
+     * The constructor handle of every player class, looked up when the first player of the class is created
+     */
+    private static final ClassValue<MethodHandle> PLAYER_CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup().findConstructor(type,
+                        MethodType.methodType(void.class, SourceInterface.class, Long.class, InetSocketAddress.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("The player class " + type + " has no usable constructor", e);
+            }
+        }
+    };
+
     private final Server server;
 
     private Network network;
@@ -66,8 +87,30 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
 
     private byte[] advertisement;
 
+    /**
+     * 保护广播组的成员关系和内容
+     * <p>
+     * Guards the membership and the content of the broadcast groups
+     */
+    private final Object broadcastLock = new Object();
+
+    private final boolean broadcastGroups;
+
+    /**
+     * 每个会话每次发送时，区块通道可以发送的字节数，0表示不使用发送通道
+     * <p>
+     * The bytes the chunk lane of a session can send per flush, 0 if the outbound lanes are disabled
+     */
+    private final int outboundLaneBudget;
+
     public RakNetInterface(Server server) {
         this.server = server;
+        Boolean broadcastGroups = server.getConfig("network.broadcast-groups", true);
+        this.broadcastGroups = broadcastGroups == null || broadcastGroups;
+        Boolean outboundLanes = server.getConfig("network.outbound-lanes", false);
+        Integer outboundLaneBudget = server.getConfig("network.outbound-lane-budget", 262144);
+        this.outboundLaneBudget = outboundLanes != null && outboundLanes && outboundLaneBudget != null ?
+                Math.max(1, outboundLaneBudget) : 0;
 
         InetSocketAddress bindAddress = new InetSocketAddress(Strings.isNullOrEmpty(this.server.getIp()) ? "0.0.0.0" : this.server.getIp(), this.server.getPort());
 
@@ -99,12 +142,11 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
             Class<? extends Player> clazz = ev.getPlayerClass();
 
             try {
-                Constructor<? extends Player> constructor = clazz.getConstructor(SourceInterface.class, Long.class, InetSocketAddress.class);
-                Player player = constructor.newInstance(this, ev.getClientId(), ev.getSocketAddress());
+                Player player = (Player) PLAYER_CONSTRUCTORS.get(clazz).invoke(this, ev.getClientId(), ev.getSocketAddress());
                 this.server.addPlayer(address, player);
                 session.player = player;
                 this.sessions.put(address, session);
-            } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            } catch (Throwable e) {
                 log.error("Error while creating the player class {}", clazz, e);
             }
         }
@@ -116,6 +158,7 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
             if (nukkitSession.disconnectReason != null) {
                 player.close(player.getLeaveMessage(), nukkitSession.disconnectReason, false);
                 iterator.remove();
+                nukkitSession.releaseOutbound();
                 continue;
             }
             DataPacket packet;
@@ -220,7 +263,7 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
         if (session != null) {
             packet.tryEncode();
             if (!immediate) {
-                session.outbound.offer(packet.clone());
+                session.offerPacket(packet.clone());
             } else {
                 session.sendPacketImmediately(packet.clone());
             }
@@ -229,6 +272,70 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
         return null;
     }
 
+    /**
+     * 同一批玩家连续收到的广播数据包会被放进同一个广播组，整组只压缩一次，压缩结果在会话之间共享。
+     * 某个会话单独收到数据包或接收者不同时，原来的组不再接受新的数据包。
+     * <p>
+     * The broadcast packets received in a row by the same players are put in the same broadcast group, which is
+     * compressed once and shared between the sessions. The group stops accepting packets as soon as one of its
+     * sessions receives a packet of its own or the recipients change.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    @Override
+    public void putBroadcastPacket(Collection<Player> players, DataPacket packet) {
+        if (!this.broadcastGroups) {
+            AdvancedSourceInterface.super.putBroadcastPacket(players, packet);
+            return;
+        }
+
+        List<NukkitRakNetSession> targets = new ObjectArrayList<>(players.size());
+        for (Player player : players) {
+            NukkitRakNetSession session = this.sessions.get(player.getRawSocketAddress());
+            if (session != null && player.isConnected()) {
+                targets.add(session);
+            }
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        packet.tryEncode();
+        DataPacket copy = packet.clone();
+        if (targets.size() == 1) {
+            targets.get(0).offerPacket(copy);
+            return;
+        }
+
+        synchronized (this.broadcastLock) {
+            // 已经断开的会话不会再清空队列，放进去的组永远不会被释放
+            targets.removeIf(session -> session.closed);
+            if (targets.isEmpty()) {
+                return;
+            }
+            int lane = getOutboundLane(packet);
+            BroadcastGroup group = targets.get(0).broadcastGroup;
+            if (group == null || group.closed || group.lane != lane || !group.hasMembers(targets)) {
+                group = new BroadcastGroup();
+                group.lane = lane;
+                for (NukkitRakNetSession session : targets) {
+                    if (session.broadcastGroup == group) {
+                        continue;
+                    }
+                    if (session.broadcastGroup != null) {
+                        session.broadcastGroup.closed = true;
+                    }
+                    session.broadcastGroup = group;
+                    group.members++;
+                    session.outbound.offer(group);
+                }
+                group.remaining = group.members;
+            }
+            group.packets.add(copy);
+            group.mustFollowChunks |= mustFollowChunks(packet);
+        }
+    }
+
     @Override
     public boolean onConnectionRequest(InetSocketAddress inetSocketAddress) {
         return true;
@@ -275,7 +382,24 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
     private class NukkitRakNetSession implements RakNetSessionListener {
         private final RakNetServerSession raknet;
         private final Queue<DataPacket> inbound = PlatformDependent.newSpscQueue();
-        private final Queue<DataPacket> outbound = PlatformDependent.newMpscQueue();
+        /**
+         * 要发送的{@link DataPacket}和{@link BroadcastGroup}
+         * <p>
+         * The {@link DataPacket}s and {@link BroadcastGroup}s to send
+         */
+        private final Queue<Object> outbound = PlatformDependent.newMpscQueue();
+        private volatile BroadcastGroup broadcastGroup;
+        /**
+         * 会话已经断开，不再接受新的数据包，由{@link #broadcastLock}保护写入
+         * <p>
+         * The session is disconnected and takes no more packets, written under {@link #broadcastLock}
+         */
+        private volatile boolean closed;
+        /**
+         * 没有启用发送通道时为null<br>null if the outbound lanes are disabled
+         */
+        @Nullable
+        private final OutboundLanes lanes = RakNetInterface.this.outboundLaneBudget == 0 ? null : new OutboundLanes();
         private String disconnectReason = null;
         private Player player;
 
@@ -297,11 +421,8 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
             ByteBuf buffer = packet.getBuffer();
             short packetId = buffer.readUnsignedByte();
             if (packetId == 0xfe) {
-                byte[] packetBuffer = new byte[buffer.readableBytes()];
-                buffer.readBytes(packetBuffer);
-
                 try {
-                    RakNetInterface.this.network.processBatch(packetBuffer, this.inbound);
+                    RakNetInterface.this.network.processBatch(buffer, this.inbound);
                 } catch (ProtocolException e) {
                     this.disconnect("Sent malformed packet");
                     log.error("Unable to process batch packet", e);
@@ -319,10 +440,84 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
             RakNetInterface.this.sessionsToTick.get().remove(this);
         }
 
+        private void offerPacket(DataPacket packet) {
+            if (this.closed) {
+                return;
+            }
+            if (this.broadcastGroup != null) {
+                synchronized (RakNetInterface.this.broadcastLock) {
+                    if (this.broadcastGroup != null) {
+                        // 这个会话收到的数据包和组内其他会话不同了
+                        this.broadcastGroup.closed = true;
+                        this.broadcastGroup = null;
+                    }
+                }
+            }
+            this.outbound.offer(packet);
+        }
+
+        /**
+         * 关闭会话并释放还没有发送的广播组。关闭后不会再有数据包放进队列，队列在网络线程上清空，
+         * 和{@link #sendOutbound()}保持同一个消费者。
+         * <p>
+         * Closes the session and releases the broadcast groups not sent yet. Nothing is queued once the session is
+         * closed, and the queue is drained on the network thread so it keeps the single consumer of
+         * {@link #sendOutbound()}.
+         */
+        private void releaseOutbound() {
+            synchronized (RakNetInterface.this.broadcastLock) {
+                this.closed = true;
+                if (this.broadcastGroup != null) {
+                    this.broadcastGroup.closed = true;
+                    this.broadcastGroup = null;
+                }
+            }
+            try {
+                this.raknet.getEventLoop().execute(this::drainOutbound);
+            } catch (RejectedExecutionException e) {
+                // 网络线程已经停止，没有其他消费者了
+                this.drainOutbound();
+            }
+        }
+
+        private void drainOutbound() {
+            Object entry;
+            while ((entry = this.outbound.poll()) != null) {
+                if (entry instanceof BroadcastGroup group) {
+                    group.release();
+                }
+            }
+            if (this.lanes != null) {
+                this.lanes.clear(laneEntry -> {
+                    if (laneEntry instanceof BroadcastGroup group) {
+                        group.release();
+                    }
+                });
+            }
+        }
+
         private void sendOutbound() {
+            if (this.lanes != null) {
+                this.sendOutboundLanes();
+                return;
+            }
             List<DataPacket> toBatch = new ObjectArrayList<>();
-            DataPacket packet;
-            while ((packet = this.outbound.poll()) != null) {
+            Object entry;
+            while ((entry = this.outbound.poll()) != null) {
+                if (entry instanceof BroadcastGroup group) {
+                    if (!toBatch.isEmpty()) {
+                        this.sendPackets(toBatch);
+                        toBatch.clear();
+                    }
+
+                    ByteBuf payload = group.takePayload();
+                    if (payload != null) {
+                        this.raknet.send(payload);
+                    }
+                    continue;
+                }
+
+                DataPacket packet = (DataPacket) entry;
                 if (packet.pid() == ProtocolInfo.BATCH_PACKET) {
                     if (!toBatch.isEmpty()) {
                         this.sendPackets(toBatch);
@@ -340,19 +535,74 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
             }
         }
 
-        private void sendPackets(Collection<DataPacket> packets) {
-            BinaryStream batched = new BinaryStream();
-            for (DataPacket packet : packets) {
-                Preconditions.checkArgument(!(packet instanceof BatchPacket), "Cannot batch BatchPacket");
-                Preconditions.checkState(packet.isEncoded, "Packet should have already been encoded");
-                byte[] buf = packet.getBuffer();
-                batched.putUnsignedVarInt(buf.length);
-                batched.put(buf);
+        /**
+         * 把数据包分到区块通道和主通道后按{@link OutboundLanes}的规则发送。连续发往同一个通道的数据包合并成一个批次，
+         * 每个通道使用自己的RakNet排序频道。
+         * <p>
+         * Splits the packets into the chunk lane and the main lane and sends them following the rules of
+         * {@link OutboundLanes}. Packets sent in a row on the same lane are batched together, and every lane uses its own
+         * RakNet ordering channel.
+         */
+        private void sendOutboundLanes() {
+            Object entry;
+            while ((entry = this.outbound.poll()) != null) {
+                this.lanes.add(entry, getEntryLane(entry) == Network.CHANNEL_WORLD_CHUNKS);
             }
 
+            List<DataPacket> toBatch = new ObjectArrayList<>();
+            int[] batchLane = {Network.CHANNEL_NONE};
+            this.lanes.send(RakNetInterface.this.outboundLaneBudget, RakNetInterface::entryMustFollowChunks, (laneEntry, lane) -> {
+                if (!toBatch.isEmpty() && (batchLane[0] != lane || !(laneEntry instanceof DataPacket) || laneEntry instanceof BatchPacket)) {
+                    this.sendPackets(toBatch, batchLane[0]);
+                    toBatch.clear();
+                }
+                if (laneEntry instanceof BroadcastGroup group) {
+                    ByteBuf payload = group.takePayload();
+                    if (payload == null) {
+                        return 0;
+                    }
+                    int size = payload.readableBytes();
+                    this.sendPayload(payload, lane);
+                    return size;
+                }
+                if (laneEntry instanceof BatchPacket batch) {
+                    ByteBuf byteBuf = ByteBufAllocator.DEFAULT.ioBuffer(1 + batch.payload.length);
+                    byteBuf.writeByte(0xfe);
+                    byteBuf.writeBytes(batch.payload);
+                    this.sendPayload(byteBuf, lane);
+                    return batch.payload.length;
+                }
+                DataPacket packet = (DataPacket) laneEntry;
+                batchLane[0] = lane;
+                toBatch.add(packet);
+                return packet.getCount();
+            });
+            if (!toBatch.isEmpty()) {
+                this.sendPackets(toBatch, batchLane[0]);
+            }
+        }
+
+        private void sendPackets(Collection<DataPacket> packets, int lane) {
+            try {
+                this.sendPayload(RakNetInterface.this.compressPackets(packets), lane);
+            } catch (Exception e) {
+                log.error("Unable to compress batched packets", e);
+            }
+        }
+
+        /**
+         * 两个通道使用相同的优先级，RakNet按发送的顺序处理它们
+         * <p>
+         * Both lanes use the same priority so RakNet handles them in the order they are sent
+         */
+        private void sendPayload(ByteBuf payload, int lane) {
+            this.raknet.send(payload, RakNetPriority.MEDIUM, RakNetReliability.RELIABLE_ORDERED, lane);
+        }
+
+        private void sendPackets(Collection<DataPacket> packets) {
             try {
-                this.sendPacket(Network.deflateRaw(batched.getBuffer(), network.getServer().networkCompressionLevel));
-            } catch (IOException e) {
+                this.raknet.send(RakNetInterface.this.compressPackets(packets));
+            } catch (Exception e) {
                 log.error("Unable to compress batched packets", e);
             }
         }
@@ -365,39 +615,237 @@ public class RakNetInterface implements RakNetServerListener, AdvancedSourceInte
         }
 
         private void sendPacketImmediately(DataPacket packet) {
-            BinaryStream batched = new BinaryStream();
-            Preconditions.checkArgument(!(packet instanceof BatchPacket), "Cannot batch BatchPacket");
-            Preconditions.checkState(packet.isEncoded, "Packet should have already been encoded");
-            byte[] buf = packet.getBuffer();
-            batched.putUnsignedVarInt(buf.length);
-            batched.put(buf);
             try {
-                byte[] payload = Network.deflateRaw(batched.getBuffer(), network.getServer().networkCompressionLevel);
-                ByteBuf byteBuf = ByteBufAllocator.DEFAULT.ioBuffer(1 + payload.length);
-                byteBuf.writeByte(0xfe);
-                byteBuf.writeBytes(payload);
-                this.raknet.send(byteBuf, RakNetPriority.IMMEDIATE);
+                this.raknet.send(RakNetInterface.this.compressPackets(Collections.singletonList(packet)), RakNetPriority.IMMEDIATE);
             } catch (Exception e) {
                 log.error("Error occured while sending a packet immediately", e);
             }
         }
 
         private void sendResourcePacket(DataPacket packet) {
-            BinaryStream batched = new BinaryStream();
-            Preconditions.checkArgument(!(packet instanceof BatchPacket), "Cannot batch BatchPacket");
-            Preconditions.checkState(packet.isEncoded, "Packet should have already been encoded");
-            byte[] buf = packet.getBuffer();
-            batched.putUnsignedVarInt(buf.length);
-            batched.put(buf);
+            if (packet instanceof BatchPacket batch) {
+                // 已经压缩好的资源包区块
+                this.sendPacket(batch.payload);
+                return;
+            }
             try {
-                byte[] payload = Network.deflateRaw(batched.getBuffer(), network.getServer().networkCompressionLevel);
-                ByteBuf byteBuf = ByteBufAllocator.DEFAULT.ioBuffer(1 + payload.length);
-                byteBuf.writeByte(0xfe);
-                byteBuf.writeBytes(payload);
-                this.raknet.send(byteBuf);
+                this.raknet.send(RakNetInterface.this.compressPackets(Collections.singletonList(packet)));
             } catch (Exception e) {
                 log.error("Error occured while sending a packet immediately", e);
             }
         }
     }
+
+    /**
+     * 数据包的发送通道。只有区块和方块更新使用{@link Network#CHANNEL_WORLD_CHUNKS}，方块更新和区块使用同一个通道，
+     * 保证更新不会在区块之前到达客户端。其他数据包都使用{@link Network#CHANNEL_NONE}，实体的生成、移动、元数据和移除等
+     * 数据包因此保持同一个顺序。
+     * <p>
+     * The outbound lane of a packet. Only chunks and block updates use {@link Network#CHANNEL_WORLD_CHUNKS}, block
+     * updates share the lane of the chunks so an update never reaches the client before its chunk. Every other packet
+     * uses {@link Network#CHANNEL_NONE}, so the spawning, movement, metadata and removal of entities keep one order.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    static int getOutboundLane(DataPacket packet) {
+        int channel = packet.getChannel();
+        if (channel == Network.CHANNEL_WORLD_CHUNKS || channel == Network.CHANNEL_BLOCKS) {
+            return Network.CHANNEL_WORLD_CHUNKS;
+        }
+        if (channel != Network.CHANNEL_NONE) {
+            return Network.CHANNEL_NONE;
+        }
+        switch (packet.pid()) {
+            case ProtocolInfo.FULL_CHUNK_DATA_PACKET:
+            case ProtocolInfo.SUB_CHUNK_PACKET:
+            case ProtocolInfo.NETWORK_CHUNK_PUBLISHER_UPDATE_PACKET:
+            case ProtocolInfo.CLIENT_CACHE_MISS_RESPONSE_PACKET:
+            case ProtocolInfo.UPDATE_BLOCK_PACKET:
+            case ProtocolInfo.UPDATE_SUB_CHUNK_BLOCKS_PACKET:
+            case ProtocolInfo.BLOCK_ENTITY_DATA_PACKET:
+            case ProtocolInfo.BLOCK_EVENT_PACKET:
+                return Network.CHANNEL_WORLD_CHUNKS;
+            default:
+                return Network.CHANNEL_NONE;
+        }
+    }
+
+    /**
+     * 主通道的数据包是否必须等待之前加入的区块发送完毕。只有明确不依赖区块的数据包可以越过区块，
+     * 没有设置频道的未知数据包和{@link BatchPacket}都需要等待。
+     * <p>
+     * If a main lane packet has to wait for the chunks queued before it. Only the packets known not to depend on chunks
+     * may overtake them, unknown packets without a channel and {@link BatchPacket}s wait.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    static boolean mustFollowChunks(DataPacket packet) {
+        if (packet.getChannel() != Network.CHANNEL_NONE) {
+            return false;
+        }
+        switch (packet.pid()) {
+            case ProtocolInfo.MOVE_PLAYER_PACKET:
+            case ProtocolInfo.MOVE_ENTITY_ABSOLUTE_PACKET:
+            case ProtocolInfo.MOVE_ENTITY_DELTA_PACKET:
+            case ProtocolInfo.SET_ENTITY_MOTION_PACKET:
+            case ProtocolInfo.CORRECT_PLAYER_MOVE_PREDICTION_PACKET:
+            case ProtocolInfo.SET_ENTITY_DATA_PACKET:
+            case ProtocolInfo.LEVEL_EVENT_PACKET:
+            case ProtocolInfo.ENTITY_EVENT_PACKET:
+            case ProtocolInfo.LEVEL_SOUND_EVENT_PACKET:
+            case ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V2:
+            case ProtocolInfo.ANIMATE_PACKET:
+            case ProtocolInfo.ADD_ENTITY_PACKET:
+            case ProtocolInfo.ADD_PLAYER_PACKET:
+            case ProtocolInfo.ADD_ITEM_ENTITY_PACKET:
+            case ProtocolInfo.REMOVE_ENTITY_PACKET:
+            case ProtocolInfo.TEXT_PACKET:
+            case ProtocolInfo.SET_TITLE_PACKET:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static int getEntryLane(Object entry) {
+        return entry instanceof BroadcastGroup group ? group.lane : getOutboundLane((DataPacket) entry);
+    }
+
+    /**
+     * 广播组在检查前关闭，之后不会再加入数据包
+     * <p>
+     * A broadcast group is closed before it is checked, so no packet is added to it afterwards
+     */
+    private static boolean entryMustFollowChunks(Object entry) {
+        if (entry instanceof BroadcastGroup group) {
+            return group.closeAndCheckMustFollowChunks();
+        }
+        return mustFollowChunks((DataPacket) entry);
+    }
+
+    /**
+     * 把数据包组合成批次并压缩到池化的直接缓冲区中。数据包的缓冲区通过{@link CompositeByteBuf}直接引用，不会被复制。
+     * <p>
+     * Batches the packets and deflates them into a pooled direct buffer. The packet buffers are referenced by a
+     * {@link CompositeByteBuf} instead of being copied.
+     *
+     * @return 以0xfe开头的批次数据包<br>the batch packet starting with 0xfe
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private ByteBuf compressPackets(Collection<DataPacket> packets) {
+        CompositeByteBuf batched = ByteBufAllocator.DEFAULT.compositeBuffer(packets.size() * 2);
+        ByteBuf lengths = ByteBufAllocator.DEFAULT.ioBuffer(packets.size() * 5);
+        try {
+            for (DataPacket packet : packets) {
+                Preconditions.checkArgument(!(packet instanceof BatchPacket), "Cannot batch BatchPacket");
+                Preconditions.checkState(packet.isEncoded, "Packet should have already been encoded");
+                int start = lengths.writerIndex();
+                VarInt.writeUnsignedVarInt(lengths, packet.getCount());
+                batched.addComponent(true, lengths.retainedSlice(start, lengths.writerIndex() - start));
+                batched.addComponent(true, packet.wrapBuffer());
+            }
+
+            ByteBuf payload = ByteBufAllocator.DEFAULT.ioBuffer(1 + batched.readableBytes() / 2);
+            try {
+                payload.writeByte(0xfe);
+                int level = batched.readableBytes() < this.server.getNetworkCompressionThreshold() ?
+                        this.server.getSmallBatchCompressionLevel() : this.server.networkCompressionLevel;
+                Network.deflateRaw(batched, payload, level);
+            } catch (RuntimeException e) {
+                payload.release();
+                throw e;
+            }
+            return payload;
+        } finally {
+            batched.release();
+            lengths.release();
+        }
+    }
+
+    /**
+     * 广播组中的数据包在第一个会话发送时才压缩，之后组会被关闭，压缩结果通过引用计数在所有成员之间共享
+     * <p>
+     * The packets of a broadcast group are compressed when the first session sends them, the group is closed from then
+     * on and the compressed payload is shared between all the members by reference counting.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    final class BroadcastGroup {
+        /**
+         * 由{@link #broadcastLock}保护<br>Guarded by {@link #broadcastLock}
+         */
+        List<DataPacket> packets = new ObjectArrayList<>();
+        boolean closed;
+        int members;
+        int remaining;
+        /**
+         * 组内数据包的发送通道，所有数据包相同
+         * <p>
+         * The outbound lane of the packets in the group, the same for all of them
+         */
+        int lane;
+        boolean mustFollowChunks;
+        private ByteBuf payload;
+
+        private boolean hasMembers(List<NukkitRakNetSession> sessions) {
+            if (sessions.size() != this.members) {
+                return false;
+            }
+            for (NukkitRakNetSession session : sessions) {
+                if (session.broadcastGroup != this) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void close() {
+            synchronized (RakNetInterface.this.broadcastLock) {
+                this.closed = true;
+            }
+        }
+
+        private boolean closeAndCheckMustFollowChunks() {
+            synchronized (RakNetInterface.this.broadcastLock) {
+                this.closed = true;
+                return this.mustFollowChunks;
+            }
+        }
+
+        @Nullable
+        ByteBuf takePayload() {
+            this.close();
+            synchronized (this) {
+                if (this.payload == null && this.packets != null) {
+                    try {
+                        this.payload = compressPackets(this.packets);
+                    } catch (Exception e) {
+                        log.error("Unable to compress broadcast packets", e);
+                    }
+                    this.packets = null;
+                }
+                ByteBuf result = this.payload == null ? null : this.payload.retainedDuplicate();
+                this.releaseReference();
+                return result;
+            }
+        }
+
+        void release() {
+            this.close();
+            synchronized (this) {
+                this.releaseReference();
+            }
+        }
+
+        private void releaseReference() {
+            if (--this.remaining == 0) {
+                if (this.payload != null) {
+                    this.payload.release();
+                    this.payload = null;
+                }
+                this.packets = null;
+            }
+        }
+    }
 }
@@ -2,9 +2,12 @@ package cn.nukkit.network;
 
 import cn.nukkit.Player;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.network.protocol.DataPacket;
 
+import java.util.Collection;
+
 
 /**
  * @author MagicDroidX (Nukkit Project)
@@ -17,6 +20,22 @@ public interface SourceInterface {
 
     Integer putPacket(Player player, DataPacket packet, boolean needACK, boolean immediate);
 
+    /**
+     * 把同一个数据包发送给多个玩家，实现可以只压缩一次并在玩家之间共享结果
+     * <p>
+     * Sends the same packet to several players, implementations may compress it once and share the result between
+     * the players.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    default void putBroadcastPacket(Collection<Player> players, DataPacket packet) {
+        for (Player player : players) {
+            if (player.isConnected()) {
+                this.putPacket(player, packet);
+            }
+        }
+    }
+
     int getNetworkLatency(Player player);
 
     void close(Player player);
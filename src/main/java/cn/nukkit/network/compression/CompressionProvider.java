@@ -0,0 +1,57 @@
+package cn.nukkit.network.compression;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+/**
+ * 网络数据包使用的原始deflate压缩实现。除了内置的{@link JdkCompressionProvider}，其他实现（例如原生的libdeflate绑定）
+ * 可以通过{@link java.util.ServiceLoader}注册，并在nukkit.yml的{@code network.compression-provider}中按名称选择。
+ * <p>
+ * The raw deflate implementation used for network packets. Besides the built-in {@link JdkCompressionProvider}, other
+ * implementations (like a native libdeflate binding) can be registered through {@link java.util.ServiceLoader} and
+ * selected by name with {@code network.compression-provider} in nukkit.yml.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public interface CompressionProvider {
+    /**
+     * @return 在nukkit.yml中使用的名称<br>the name used in nukkit.yml
+     */
+    String getName();
+
+    /**
+     * @return 这个实现能否在当前环境中使用，例如原生库是否加载成功<br>if the implementation can be used in this
+     * environment, like whether its native library could be loaded
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    byte[] deflateRaw(byte[] data, int level) throws IOException;
+
+    byte[] deflateRaw(byte[][] datas, int level) throws IOException;
+
+    /**
+     * 把输入的所有可读字节压缩后写入输出
+     * <p>
+     * Deflates all the readable bytes of the input into the output.
+     */
+    void deflateRaw(ByteBuf input, ByteBuf output, int level);
+
+    byte[] inflateRaw(byte[] data) throws IOException, DataFormatException;
+
+    /**
+     * 解压输入的所有可读字节，默认实现会先把输入复制到数组中
+     * <p>
+     * Inflates all the readable bytes of the input, the default implementation copies the input to an array first.
+     */
+    default byte[] inflateRaw(ByteBuf input) throws IOException, DataFormatException {
+        byte[] data = new byte[input.readableBytes()];
+        input.readBytes(data);
+        return inflateRaw(data);
+    }
+}
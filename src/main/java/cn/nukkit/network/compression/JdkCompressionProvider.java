@@ -0,0 +1,160 @@
+package cn.nukkit.network.compression;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.nbt.stream.FastByteArrayOutputStream;
+import cn.nukkit.utils.ThreadCache;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 使用JDK自带的{@link Deflater}和{@link Inflater}的实现，每个线程复用自己的实例，在任何环境中都可以使用
+ * <p>
+ * The implementation using the {@link Deflater} and {@link Inflater} of the JDK, every thread reuses its own
+ * instances. It is available in every environment.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public final class JdkCompressionProvider implements CompressionProvider {
+    public static final JdkCompressionProvider INSTANCE = new JdkCompressionProvider();
+
+    private static final ThreadLocal<Inflater> INFLATER_RAW = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<Deflater> DEFLATER_RAW = ThreadLocal.withInitial(() -> new Deflater(7, true));
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[2 * 1024 * 1024]);
+
+    @Override
+    public String getName() {
+        return "jdk";
+    }
+
+    @Override
+    public byte[] inflateRaw(byte[] data) throws IOException, DataFormatException {
+        Inflater inflater = INFLATER_RAW.get();
+        try {
+            inflater.setInput(data);
+            inflater.finished();
+
+            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
+            bos.reset();
+            byte[] buf = BUFFER.get();
+            while (!inflater.finished()) {
+                int i = inflater.inflate(buf);
+                if (i == 0) {
+                    throw new IOException("Could not decompress the data. Needs input: " + inflater.needsInput() + ", Needs Dictionary: " + inflater.needsDictionary());
+                }
+                bos.write(buf, 0, i);
+            }
+            return bos.toByteArray();
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    @Override
+    public byte[] inflateRaw(ByteBuf input) throws IOException, DataFormatException {
+        Inflater inflater = INFLATER_RAW.get();
+        try {
+            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
+            bos.reset();
+            byte[] buf = BUFFER.get();
+            for (ByteBuffer nioBuffer : input.nioBuffers()) {
+                inflater.setInput(nioBuffer);
+                while (!inflater.finished() && !inflater.needsInput()) {
+                    int i = inflater.inflate(buf);
+                    if (i == 0 && !inflater.needsInput()) {
+                        throw new IOException("Could not decompress the data. Needs input: " + inflater.needsInput() + ", Needs Dictionary: " + inflater.needsDictionary());
+                    }
+                    bos.write(buf, 0, i);
+                }
+            }
+            if (!inflater.finished()) {
+                throw new IOException("Could not decompress the data, the input ended early");
+            }
+            input.skipBytes(input.readableBytes());
+            return bos.toByteArray();
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    @Override
+    public byte[] deflateRaw(byte[] data, int level) {
+        Deflater deflater = DEFLATER_RAW.get();
+        try {
+            deflater.setLevel(level);
+            deflater.setInput(data);
+            deflater.finish();
+            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
+            bos.reset();
+            byte[] buffer = BUFFER.get();
+            while (!deflater.finished()) {
+                int i = deflater.deflate(buffer);
+                bos.write(buffer, 0, i);
+            }
+
+            return bos.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public byte[] deflateRaw(byte[][] datas, int level) {
+        Deflater deflater = DEFLATER_RAW.get();
+        try {
+            deflater.setLevel(level);
+            FastByteArrayOutputStream bos = ThreadCache.fbaos.get();
+            bos.reset();
+            byte[] buffer = BUFFER.get();
+
+            for (byte[] data : datas) {
+                deflater.setInput(data);
+                while (!deflater.needsInput()) {
+                    int i = deflater.deflate(buffer);
+                    bos.write(buffer, 0, i);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                int i = deflater.deflate(buffer);
+                bos.write(buffer, 0, i);
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public void deflateRaw(ByteBuf input, ByteBuf output, int level) {
+        Deflater deflater = DEFLATER_RAW.get();
+        try {
+            deflater.setLevel(level);
+            for (ByteBuffer nioBuffer : input.nioBuffers()) {
+                deflater.setInput(nioBuffer);
+                while (!deflater.needsInput()) {
+                    deflateInto(deflater, output);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflateInto(deflater, output);
+            }
+            input.skipBytes(input.readableBytes());
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private static void deflateInto(Deflater deflater, ByteBuf output) {
+        output.ensureWritable(8192);
+        int writerIndex = output.writerIndex();
+        int written = deflater.deflate(output.nioBuffer(writerIndex, output.writableBytes()));
+        output.writerIndex(writerIndex + written);
+    }
+}
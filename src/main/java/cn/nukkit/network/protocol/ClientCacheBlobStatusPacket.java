@@ -0,0 +1,55 @@
+package cn.nukkit.network.protocol;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import lombok.ToString;
+
+/**
+ * 客户端告知服务端哪些数据块已经在缓存中，哪些需要重新发送
+ * <p>
+ * Sent by the client to tell which blobs it already has cached and which ones are missing.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@ToString
+public class ClientCacheBlobStatusPacket extends DataPacket {
+    public static final byte NETWORK_ID = ProtocolInfo.CLIENT_CACHE_BLOB_STATUS_PACKET;
+
+    public long[] missHashes;
+    public long[] hitHashes;
+
+    @Override
+    public byte pid() {
+        return NETWORK_ID;
+    }
+
+    @Override
+    public void decode() {
+        int missCount = (int) this.getUnsignedVarInt();
+        int hitCount = (int) this.getUnsignedVarInt();
+        if (missCount < 0 || hitCount < 0 || missCount + hitCount > 4096) {
+            throw new IllegalArgumentException("Too many blob hashes: " + missCount + " + " + hitCount);
+        }
+        this.missHashes = new long[missCount];
+        for (int i = 0; i < missCount; i++) {
+            this.missHashes[i] = this.getLLong();
+        }
+        this.hitHashes = new long[hitCount];
+        for (int i = 0; i < hitCount; i++) {
+            this.hitHashes[i] = this.getLLong();
+        }
+    }
+
+    @Override
+    public void encode() {
+        this.reset();
+        this.putUnsignedVarInt(this.missHashes.length);
+        this.putUnsignedVarInt(this.hitHashes.length);
+        for (long hash : this.missHashes) {
+            this.putLLong(hash);
+        }
+        for (long hash : this.hitHashes) {
+            this.putLLong(hash);
+        }
+    }
+}
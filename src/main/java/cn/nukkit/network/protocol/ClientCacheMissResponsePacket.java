@@ -0,0 +1,45 @@
+package cn.nukkit.network.protocol;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import lombok.ToString;
+
+/**
+ * 服务端发送客户端缓存中缺失的数据块
+ * <p>
+ * Sends the blobs that the client reported as missing from its cache.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@ToString(exclude = "blobs")
+public class ClientCacheMissResponsePacket extends DataPacket {
+    public static final byte NETWORK_ID = ProtocolInfo.CLIENT_CACHE_MISS_RESPONSE_PACKET;
+
+    public final Long2ObjectMap<byte[]> blobs = new Long2ObjectOpenHashMap<>();
+
+    @Override
+    public byte pid() {
+        return NETWORK_ID;
+    }
+
+    @Override
+    public void decode() {
+        int count = (int) this.getUnsignedVarInt();
+        for (int i = 0; i < count; i++) {
+            long hash = this.getLLong();
+            this.blobs.put(hash, this.getByteArray());
+        }
+    }
+
+    @Override
+    public void encode() {
+        this.reset();
+        this.putUnsignedVarInt(this.blobs.size());
+        for (Long2ObjectMap.Entry<byte[]> entry : this.blobs.long2ObjectEntrySet()) {
+            this.putLLong(entry.getLongKey());
+            this.putByteArray(entry.getValue());
+        }
+    }
+}
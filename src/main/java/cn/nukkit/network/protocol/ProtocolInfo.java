@@ -235,6 +235,12 @@ public interface ProtocolInfo {
     @Since("1.6.0.0-PNX")
     @PowerNukkitXOnly
     byte UPDATE_SUB_CHUNK_BLOCKS_PACKET = (byte) 0xac;
+    @Since("1.19.21-r4")
+    @PowerNukkitXOnly
+    byte SUB_CHUNK_PACKET = (byte) 0xae;
+    @Since("1.19.21-r4")
+    @PowerNukkitXOnly
+    byte SUB_CHUNK_REQUEST_PACKET = (byte) 0xaf;
     @Since("1.6.0.0-PNX")
     @PowerNukkitXOnly
     byte PLAYER_START_ITEM_COOL_DOWN_PACKET = (byte) 0xb0;
@@ -0,0 +1,79 @@
+package cn.nukkit.network.protocol;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.math.BlockVector3;
+import cn.nukkit.network.protocol.types.HeightMapDataType;
+import cn.nukkit.network.protocol.types.SubChunkRequestResult;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 服务端对{@link SubChunkRequestPacket}的响应
+ * <p>
+ * The server answer to a {@link SubChunkRequestPacket}.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@ToString(exclude = "entries")
+public class SubChunkPacket extends DataPacket {
+    public static final byte NETWORK_ID = ProtocolInfo.SUB_CHUNK_PACKET;
+
+    public boolean cacheEnabled;
+    public int dimension;
+    public BlockVector3 centerPosition;
+    public final List<Entry> entries = new ObjectArrayList<>();
+
+    @Override
+    public byte pid() {
+        return NETWORK_ID;
+    }
+
+    @Override
+    public void decode() {
+
+    }
+
+    @Override
+    public void encode() {
+        this.reset();
+        this.putBoolean(this.cacheEnabled);
+        this.putVarInt(this.dimension);
+        this.putSignedBlockPosition(this.centerPosition);
+        this.putLInt(this.entries.size());
+        for (Entry entry : this.entries) {
+            this.putByte(entry.offsetX);
+            this.putByte(entry.offsetY);
+            this.putByte(entry.offsetZ);
+            this.putByte((byte) entry.result.ordinal());
+            if (!this.cacheEnabled || entry.result != SubChunkRequestResult.SUCCESS_ALL_AIR) {
+                this.putByteArray(entry.data);
+            }
+            this.putByte((byte) entry.heightMapType.ordinal());
+            if (entry.heightMapType == HeightMapDataType.HAS_DATA) {
+                this.put(entry.heightMap);
+            }
+            if (this.cacheEnabled) {
+                this.putLLong(entry.blobId);
+            }
+        }
+    }
+
+    public static class Entry {
+        public byte offsetX;
+        public byte offsetY;
+        public byte offsetZ;
+        public SubChunkRequestResult result = SubChunkRequestResult.UNDEFINED;
+        public byte[] data = new byte[0];
+        public HeightMapDataType heightMapType = HeightMapDataType.NO_DATA;
+        /**
+         * 256字节，每列最高方块相对子区块底部的高度，-1表示在下方，16表示在上方
+         * <p>
+         * 256 bytes, the highest block of each column relative to the sub-chunk bottom, -1 if below and 16 if above
+         */
+        public byte[] heightMap;
+        public long blobId;
+    }
+}
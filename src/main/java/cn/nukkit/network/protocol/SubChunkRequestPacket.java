@@ -0,0 +1,56 @@
+package cn.nukkit.network.protocol;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.math.BlockVector3;
+import lombok.ToString;
+
+/**
+ * 客户端请求它能看到的子区块，位置由中心子区块加偏移量表示
+ * <p>
+ * Sent by the client to request the sub-chunks it can see, as offsets from a center sub-chunk position.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+@ToString
+public class SubChunkRequestPacket extends DataPacket {
+    public static final byte NETWORK_ID = ProtocolInfo.SUB_CHUNK_REQUEST_PACKET;
+
+    public int dimension;
+    public BlockVector3 subChunkPosition;
+    /**
+     * 每个偏移量占3个字节，依次为x、y、z
+     * <p>
+     * three bytes per offset, x, y and z
+     */
+    public byte[] positionOffsets;
+
+    @Override
+    public byte pid() {
+        return NETWORK_ID;
+    }
+
+    @Override
+    public void decode() {
+        this.dimension = this.getVarInt();
+        this.subChunkPosition = this.getSignedBlockPosition();
+        int count = this.getLInt();
+        if (count < 0 || count > 4096) {
+            throw new IllegalArgumentException("Too many sub-chunks requested: " + count);
+        }
+        this.positionOffsets = this.get(count * 3);
+    }
+
+    @Override
+    public void encode() {
+        this.reset();
+        this.putVarInt(this.dimension);
+        this.putSignedBlockPosition(this.subChunkPosition);
+        this.putLInt(this.positionOffsets.length / 3);
+        this.put(this.positionOffsets);
+    }
+
+    public int getOffsetCount() {
+        return this.positionOffsets.length / 3;
+    }
+}
@@ -5,8 +5,8 @@ import cn.nukkit.api.Since;
 import cn.nukkit.network.protocol.types.BlockChangeEntry;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
-import lombok.Value;
 
 import java.util.List;
 
@@ -14,15 +14,33 @@ import java.util.List;
 @Since("1.6.0.0-PNX")
 @EqualsAndHashCode(doNotUseGetters = true, callSuper = false)
 @ToString(doNotUseGetters = true)
-@Value
+@NoArgsConstructor
 public class UpdateSubChunkBlocksPacket extends DataPacket {
     public int chunkX;
     public int chunkY;
     public int chunkZ;
 
+    /**
+     * 第0层的方块变化
+     * <p>
+     * The block changes of layer 0
+     */
     public List<BlockChangeEntry> standardBlocks = new ObjectArrayList<>();
+    /**
+     * 第1层的方块变化，例如含水方块中的水
+     * <p>
+     * The block changes of layer 1, like the water of waterlogged blocks
+     */
     public List<BlockChangeEntry> extraBlocks = new ObjectArrayList<>();
 
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public UpdateSubChunkBlocksPacket(int chunkX, int chunkY, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.chunkZ = chunkZ;
+    }
+
     @Override
     public byte pid() {
         return ProtocolInfo.UPDATE_SUB_CHUNK_BLOCKS_PACKET;
@@ -35,18 +53,15 @@ public class UpdateSubChunkBlocksPacket extends DataPacket {
 
     @Override
     public void encode() {
-        putVarInt(chunkX);
-        putUnsignedVarInt(chunkY);
-        putVarInt(chunkZ);
-        putVarInt(standardBlocks.size());
-        for(final var each : standardBlocks) {
-            putBlockVector3(each.blockPos());
-            putUnsignedVarInt(each.runtimeID());
-            putUnsignedVarInt(each.updateFlags());
-            putUnsignedVarLong(each.messageEntityID());
-            putUnsignedVarInt(each.messageType().ordinal());
-        }
-        for(final var each : extraBlocks) {
+        this.reset();
+        putBlockVector3(chunkX, chunkY, chunkZ);
+        putBlockChangeEntries(standardBlocks);
+        putBlockChangeEntries(extraBlocks);
+    }
+
+    private void putBlockChangeEntries(List<BlockChangeEntry> entries) {
+        putUnsignedVarInt(entries.size());
+        for (final var each : entries) {
             putBlockVector3(each.blockPos());
             putUnsignedVarInt(each.runtimeID());
             putUnsignedVarInt(each.updateFlags());
@@ -0,0 +1,28 @@
+package cn.nukkit.network.protocol.types;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+
+/**
+ * 子区块高度图提示的类型
+ * <p>
+ * The kind of height map hint sent with a sub-chunk.
+ */
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public enum HeightMapDataType {
+    NO_DATA,
+    HAS_DATA,
+    /**
+     * 所有列的最高方块都在此子区块之上
+     * <p>
+     * the highest block of every column is above this sub-chunk
+     */
+    TOO_HIGH,
+    /**
+     * 所有列的最高方块都在此子区块之下
+     * <p>
+     * the highest block of every column is below this sub-chunk
+     */
+    TOO_LOW
+}
@@ -0,0 +1,16 @@
+package cn.nukkit.network.protocol.types;
+
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+
+@PowerNukkitXOnly
+@Since("1.19.21-r4")
+public enum SubChunkRequestResult {
+    UNDEFINED,
+    SUCCESS,
+    CHUNK_NOT_FOUND,
+    INVALID_DIMENSION,
+    PLAYER_NOT_FOUND,
+    INDEX_OUT_OF_BOUNDS,
+    SUCCESS_ALL_AIR
+}
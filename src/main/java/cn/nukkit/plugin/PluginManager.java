@@ -25,6 +25,7 @@ import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -55,6 +56,15 @@ public class PluginManager {
     @Getter
     protected final Map<String, PluginLoader> fileAssociations = new HashMap<>();
 
+    /**
+     * 事件类到其{@link HandlerList}的缓存，避免每次调用事件时都反射查找{@code getHandlers}方法
+     * <p>
+     * Caches the {@link HandlerList} of each event class so {@code getHandlers} isn't looked up reflectively on every call
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    private final Map<Class<? extends Event>, HandlerList> handlerListCache = new ConcurrentHashMap<>();
+
     public PluginManager(Server server, SimpleCommandMap commandMap) {
         this.server = server;
         this.commandMap = commandMap;
@@ -554,6 +564,7 @@ public class PluginManager {
 
             this.server.getScheduler().cancelTask(plugin);
             HandlerList.unregisterAll(plugin);
+            this.handlerListCache.clear();
             for (Permission permission : plugin.getDescription().getPermissions()) {
                 this.removePermission(permission);
             }
@@ -567,17 +578,19 @@ public class PluginManager {
         this.permissions.clear();
         this.defaultPerms.clear();
         this.defaultPermsOp.clear();
+        this.handlerListCache.clear();
     }
 
     public void callEvent(Event event) {
         //Used for event listeners inside command blocks
-        String eventName = event.getClass().getSimpleName();
-        for (BlockEntityCommandBlock cb : BlockEntityCommandBlock.getListenMap().keySet()) {
-            BlockEntityCommandBlock.getListenMap().get(cb).forEach((k, v) -> {
-                if (eventName.equals(k)) {
+        Map<BlockEntityCommandBlock, Map<String, String>> listenMap = BlockEntityCommandBlock.getListenMap();
+        if (!listenMap.isEmpty()) {
+            String eventName = event.getClass().getSimpleName();
+            for (BlockEntityCommandBlock cb : listenMap.keySet()) {
+                if (listenMap.get(cb).containsKey(eventName)) {
                     cb.execute();
                 }
-            });
+            }
         }
         try {
             for (RegisteredListener registration : getEventListeners(event.getClass()).getRegisteredListeners()) {
@@ -666,7 +679,46 @@ public class PluginManager {
         }
     }
 
+    /**
+     * 检查是否有插件或命令方块监听了指定的事件，热点路径可以在没有监听器时跳过创建事件对象
+     * <p>
+     * Checks if any plugin or command block listens to the given event, hot paths can use it to skip creating the
+     * event object when nobody is listening.
+     *
+     * @param eventClass 事件类<br>the event class
+     * @return 是否有监听器<br>whether the event has listeners
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean hasListeners(Class<? extends Event> eventClass) {
+        Map<BlockEntityCommandBlock, Map<String, String>> listenMap = BlockEntityCommandBlock.getListenMap();
+        if (!listenMap.isEmpty()) {
+            String eventName = eventClass.getSimpleName();
+            for (Map<String, String> events : listenMap.values()) {
+                if (events.containsKey(eventName)) {
+                    return true;
+                }
+            }
+        }
+        try {
+            return getEventListeners(eventClass).getRegisteredListeners().length > 0;
+        } catch (IllegalAccessException e) {
+            // 让callEvent报告错误
+            return true;
+        }
+    }
+
     private HandlerList getEventListeners(Class<? extends Event> type) throws IllegalAccessException {
+        HandlerList handlerList = this.handlerListCache.get(type);
+        if (handlerList != null) {
+            return handlerList;
+        }
+        handlerList = this.lookupEventListeners(type);
+        this.handlerListCache.put(type, handlerList);
+        return handlerList;
+    }
+
+    private HandlerList lookupEventListeners(Class<? extends Event> type) throws IllegalAccessException {
         try {
             Method method = getRegistrationClass(type).getDeclaredMethod("getHandlers");
             method.setAccessible(true);
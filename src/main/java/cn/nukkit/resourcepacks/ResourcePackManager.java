@@ -2,6 +2,7 @@ package cn.nukkit.resourcepacks;
 
 import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import com.google.common.io.Files;
 import lombok.extern.log4j.Log4j2;
@@ -13,6 +14,7 @@ import java.util.*;
 public class ResourcePackManager {
 
     private int maxChunkSize = 102400;
+    private boolean cacheChunkPackets;
     
     private final Map<UUID, ResourcePack> resourcePacksById = new HashMap<>();
     private ResourcePack[] resourcePacks;
@@ -76,4 +78,19 @@ public class ResourcePackManager {
     public void setMaxChunkSize(int size) {
         this.maxChunkSize = size;
     }
+
+    /**
+     * @return 是否缓存压缩后的资源包区块数据包<br>if the compressed resource pack chunk packets are cached
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public boolean isCacheChunkPackets() {
+        return this.cacheChunkPackets;
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public void setCacheChunkPackets(boolean cacheChunkPackets) {
+        this.cacheChunkPackets = cacheChunkPackets;
+    }
 }
@@ -2,16 +2,24 @@ package cn.nukkit.resourcepacks;
 
 import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitDifference;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import cn.nukkit.network.protocol.BatchPacket;
+import cn.nukkit.network.protocol.ResourcePackChunkDataPacket;
 import com.google.gson.JsonParser;
 import lombok.extern.log4j.Log4j2;
+import org.powernukkit.version.Version;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -19,6 +27,9 @@ import java.util.zip.ZipFile;
 public class ZippedResourcePack extends AbstractResourcePack {
     private File file;
     private byte[] sha256 = null;
+    private volatile MappedByteBuffer buffer;
+    private volatile AtomicReferenceArray<BatchPacket> chunkPackets;
+    private int chunkPacketSize;
 
     @PowerNukkitDifference(info = "Accepts resource packs with subfolder structure", since = "1.4.0.0-PN")
     public ZippedResourcePack(File file) {
@@ -68,7 +79,9 @@ public class ZippedResourcePack extends AbstractResourcePack {
     public byte[] getSha256() {
         if (this.sha256 == null) {
             try {
-                this.sha256 = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(this.file.toPath()));
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(this.getBuffer());
+                this.sha256 = digest.digest();
             } catch (Exception e) {
                 log.error("Failed to parse the SHA-256 of the resource pack {}", file, e);
             }
@@ -86,13 +99,88 @@ public class ZippedResourcePack extends AbstractResourcePack {
             chunk = new byte[this.getPackSize() - off];
         }
 
-        try (FileInputStream fis = new FileInputStream(this.file)) {
-            fis.skip(off);
-            fis.read(chunk);
+        try {
+            this.getBuffer().get(off, chunk);
         } catch (Exception e) {
             log.error("An error occurred while processing the resource pack {} at offset:{} and length:{}", file, off, len, e);
         }
 
         return chunk;
     }
+
+    /**
+     * 获取资源包中的一段数据，返回的只读缓冲区直接引用内存映射的文件，不会复制数据
+     * <p>
+     * Gets a part of the resource pack, the returned read only buffer is a view of the memory mapped file and does
+     * not copy the data.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public ByteBuffer getPackChunkBuffer(int off, int len) throws IOException {
+        return this.getBuffer().slice(off, Math.min(len, this.getPackSize() - off));
+    }
+
+    /**
+     * 获取已经压缩好的区块数据包，同一个区块的数据包只编码和压缩一次，之后所有玩家共用
+     * <p>
+     * Gets the compressed chunk data packet, the packet of a chunk is encoded and compressed once and then shared by
+     * all players.
+     *
+     * @param chunkIndex   区块的下标<br>the index of the chunk
+     * @param maxChunkSize 每个区块的最大大小<br>the maximum size of each chunk
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public BatchPacket getCompressedChunkPacket(int chunkIndex, int maxChunkSize) {
+        AtomicReferenceArray<BatchPacket> packets = this.chunkPackets;
+        if (packets == null || this.chunkPacketSize != maxChunkSize) {
+            synchronized (this) {
+                packets = this.chunkPackets;
+                if (packets == null || this.chunkPacketSize != maxChunkSize) {
+                    packets = new AtomicReferenceArray<>((this.getPackSize() + maxChunkSize - 1) / maxChunkSize);
+                    this.chunkPacketSize = maxChunkSize;
+                    this.chunkPackets = packets;
+                }
+            }
+        }
+
+        BatchPacket batch = packets.get(chunkIndex);
+        if (batch == null) {
+            ResourcePackChunkDataPacket dataPacket = new ResourcePackChunkDataPacket();
+            dataPacket.setPackId(this.getPackId());
+            dataPacket.setPackVersion(new Version(this.getPackVersion()));
+            dataPacket.chunkIndex = chunkIndex;
+            dataPacket.data = this.getPackChunk(maxChunkSize * chunkIndex, maxChunkSize);
+            dataPacket.progress = maxChunkSize * (long) chunkIndex;
+            dataPacket.tryEncode();
+            batch = dataPacket.compress();
+            // 并发的请求可能重复压缩，只保留第一个结果
+            if (!packets.compareAndSet(chunkIndex, null, batch)) {
+                batch = packets.get(chunkIndex);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 第一次使用时以只读方式映射资源包文件
+     * <p>
+     * Maps the resource pack file read only on first use
+     */
+    private ByteBuffer getBuffer() throws IOException {
+        MappedByteBuffer mapped = this.buffer;
+        if (mapped == null) {
+            synchronized (this) {
+                mapped = this.buffer;
+                if (mapped == null) {
+                    try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+                        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    }
+                    this.buffer = mapped;
+                }
+            }
+        }
+        // 每次返回新的视图，调用者之间互不影响位置
+        return mapped.duplicate();
+    }
 }
@@ -1,6 +1,7 @@
 package cn.nukkit.utils;
 
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.block.Block;
 import cn.nukkit.blockstate.BlockState;
@@ -26,6 +27,7 @@ import cn.nukkit.network.protocol.types.EntityLink;
 import io.netty.buffer.AbstractByteBufAllocator;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.util.internal.EmptyArrays;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
@@ -102,6 +104,17 @@ public class BinaryStream {
         return count;
     }
 
+    /**
+     * 不复制数据，把已写入的内容包装为{@link ByteBuf}，返回的缓冲区和这个流共享同一个数组
+     * <p>
+     * Wraps the written content as a {@link ByteBuf} without copying it, the returned buffer shares the array of this stream.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public ByteBuf wrapBuffer() {
+        return Unpooled.wrappedBuffer(buffer, 0, count);
+    }
+
     public byte[] get() {
         return this.get(this.count - this.offset);
     }
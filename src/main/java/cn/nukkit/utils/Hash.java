@@ -1,10 +1,17 @@
 package cn.nukkit.utils;
 
 import cn.nukkit.api.PowerNukkitOnly;
+import cn.nukkit.api.PowerNukkitXOnly;
 import cn.nukkit.api.Since;
 import cn.nukkit.math.Vector3;
 
 public class Hash {
+    private static final long XXH64_PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long XXH64_PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long XXH64_PRIME_3 = 0x165667B19E3779F9L;
+    private static final long XXH64_PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long XXH64_PRIME_5 = 0x27D4EB2F165667C5L;
+
     public static long hashBlock(int x, int y, int z) {
         return ((long) y << 52) + (((long) z & 0x3ffffff) << 26) + ((long) x & 0x3ffffff);
         //return y + (((long) x & 0x3FFFFFF) << 8) + (((long) z & 0x3FFFFFF) << 34);
@@ -30,4 +37,86 @@ public class Hash {
     public static long hashBlock(Vector3 blockPos) {
         return hashBlock(blockPos.getFloorX(), blockPos.getFloorY(), blockPos.getFloorZ());
     }
+
+    /**
+     * Computes the xxHash64 of the given bytes with seed 0, as used by the Bedrock client blob cache.
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static long xxHash64(byte[] data) {
+        return xxHash64(data, 0, data.length, 0);
+    }
+
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static long xxHash64(byte[] data, int offset, int length, long seed) {
+        int end = offset + length;
+        int p = offset;
+        long h64;
+        if (length >= 32) {
+            long v1 = seed + XXH64_PRIME_1 + XXH64_PRIME_2;
+            long v2 = seed + XXH64_PRIME_2;
+            long v3 = seed;
+            long v4 = seed - XXH64_PRIME_1;
+            int limit = end - 32;
+            do {
+                v1 = xxHash64Round(v1, readLongLE(data, p));
+                v2 = xxHash64Round(v2, readLongLE(data, p + 8));
+                v3 = xxHash64Round(v3, readLongLE(data, p + 16));
+                v4 = xxHash64Round(v4, readLongLE(data, p + 24));
+                p += 32;
+            } while (p <= limit);
+            h64 = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h64 = xxHash64MergeRound(h64, v1);
+            h64 = xxHash64MergeRound(h64, v2);
+            h64 = xxHash64MergeRound(h64, v3);
+            h64 = xxHash64MergeRound(h64, v4);
+        } else {
+            h64 = seed + XXH64_PRIME_5;
+        }
+
+        h64 += length;
+
+        while (p + 8 <= end) {
+            h64 ^= xxHash64Round(0, readLongLE(data, p));
+            h64 = Long.rotateLeft(h64, 27) * XXH64_PRIME_1 + XXH64_PRIME_4;
+            p += 8;
+        }
+        if (p + 4 <= end) {
+            h64 ^= (readIntLE(data, p) & 0xFFFFFFFFL) * XXH64_PRIME_1;
+            h64 = Long.rotateLeft(h64, 23) * XXH64_PRIME_2 + XXH64_PRIME_3;
+            p += 4;
+        }
+        while (p < end) {
+            h64 ^= (data[p] & 0xFF) * XXH64_PRIME_5;
+            h64 = Long.rotateLeft(h64, 11) * XXH64_PRIME_1;
+            p++;
+        }
+
+        h64 ^= h64 >>> 33;
+        h64 *= XXH64_PRIME_2;
+        h64 ^= h64 >>> 29;
+        h64 *= XXH64_PRIME_3;
+        h64 ^= h64 >>> 32;
+        return h64;
+    }
+
+    private static long readLongLE(byte[] data, int p) {
+        return (readIntLE(data, p) & 0xFFFFFFFFL) | ((long) readIntLE(data, p + 4) << 32);
+    }
+
+    private static int readIntLE(byte[] data, int p) {
+        return (data[p] & 0xFF) | (data[p + 1] & 0xFF) << 8 | (data[p + 2] & 0xFF) << 16 | (data[p + 3] & 0xFF) << 24;
+    }
+
+    private static long xxHash64Round(long acc, long input) {
+        acc += input * XXH64_PRIME_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * XXH64_PRIME_1;
+    }
+
+    private static long xxHash64MergeRound(long acc, long val) {
+        acc ^= xxHash64Round(0, val);
+        return acc * XXH64_PRIME_1 + XXH64_PRIME_4;
+    }
 }
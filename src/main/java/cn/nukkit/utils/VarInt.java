@@ -1,6 +1,9 @@
 package cn.nukkit.utils;
 
 import cn.nukkit.api.API;
+import cn.nukkit.api.PowerNukkitXOnly;
+import cn.nukkit.api.Since;
+import io.netty.buffer.ByteBuf;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -161,6 +164,18 @@ public final class VarInt {
         } while (value != 0);
     }
 
+    private static void write(ByteBuf buf, long value) {
+        do {
+            byte temp = (byte) (value & 0b01111111);
+            // Note: >>> means that the sign bit is shifted with the rest of the number rather than being left alone
+            value >>>= 7;
+            if (value != 0) {
+                temp |= 0b10000000;
+            }
+            buf.writeByte(temp);
+        } while (value != 0);
+    }
+
     private static void write(OutputStream stream, long value) throws IOException {
         do {
             byte temp = (byte) (value & 0b01111111);
@@ -205,6 +220,16 @@ public final class VarInt {
         write(stream, value);
     }
 
+    /**
+     * @param buf   ByteBuf
+     * @param value Unsigned int
+     */
+    @PowerNukkitXOnly
+    @Since("1.19.21-r4")
+    public static void writeUnsignedVarInt(ByteBuf buf, long value) {
+        write(buf, value);
+    }
+
     /**
      * @param stream BinaryStream
      * @param value  Signed long
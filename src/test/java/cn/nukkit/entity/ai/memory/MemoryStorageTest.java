@@ -0,0 +1,52 @@
+package cn.nukkit.entity.ai.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryStorageTest {
+    @Test
+    void slotsAreStablePerType() {
+        int burnTime = MemoryStorage.getSlot(BurnTimeMemory.class);
+        int inLove = MemoryStorage.getSlot(InLoveMemory.class);
+        assertEquals(burnTime, MemoryStorage.getSlot(BurnTimeMemory.class));
+        assertNotEquals(burnTime, inLove);
+    }
+
+    @Test
+    void createsMissingMemoriesOnce() {
+        MemoryStorage storage = new MemoryStorage();
+        BurnTimeMemory memory = storage.get(BurnTimeMemory.class);
+        assertNotNull(memory);
+        assertSame(memory, storage.get(BurnTimeMemory.class));
+        assertTrue(storage.isEmpty(BurnTimeMemory.class));
+
+        storage.setData(BurnTimeMemory.class, 20);
+        assertEquals(Integer.valueOf(20), storage.getData(BurnTimeMemory.class));
+        assertTrue(storage.checkData(BurnTimeMemory.class, 20));
+    }
+
+    @Test
+    void putReplacesMemory() {
+        MemoryStorage storage = new MemoryStorage();
+        storage.get(BurnTimeMemory.class);
+        BurnTimeMemory replacement = new BurnTimeMemory(5);
+        storage.put(replacement);
+        assertSame(replacement, storage.get(BurnTimeMemory.class));
+        assertTrue(storage.notEmpty(BurnTimeMemory.class));
+    }
+
+    @Test
+    void memoryMapListsStoredMemories() {
+        MemoryStorage storage = new MemoryStorage();
+        BurnTimeMemory burnTime = storage.get(BurnTimeMemory.class);
+        InLoveMemory inLove = storage.get(InLoveMemory.class);
+        assertEquals(Map.of(BurnTimeMemory.class, burnTime, InLoveMemory.class, inLove), storage.getMemoryMap());
+    }
+}
@@ -0,0 +1,130 @@
+package cn.nukkit.entity.ai.route;
+
+import cn.nukkit.entity.ai.route.RouteFindingManager.RouteFindingTask;
+import cn.nukkit.entity.ai.route.data.Node;
+import cn.nukkit.math.Vector3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(PowerNukkitExtension.class)
+class RouteFindingManagerTest {
+    private static final Vector3 START = new Vector3(0.5, 64, 0.5);
+    private static final Vector3 TARGET = new Vector3(20.5, 64, 0.5);
+
+    RouteFindingManager manager;
+    ArrayList<Node> route;
+    CountDownLatch finished;
+
+    @BeforeEach
+    void setUp() {
+        manager = new RouteFindingManager();
+        manager.setShareRoutes(true);
+        route = new ArrayList<>(List.of(new Node(START, null, 0, 0), new Node(TARGET, null, 200, 0)));
+        finished = new CountDownLatch(2);
+    }
+
+    @Test
+    void followerJoinsSharedRoute() throws InterruptedException {
+        SimpleFlatAStarRouteFinder leaderFinder = finder(true);
+        SimpleFlatAStarRouteFinder followerFinder = finder(true);
+        RouteFindingTask follower = task(followerFinder);
+        RouteFindingTask leader = task(leaderFinder);
+        // 领头的请求寻路时到达的相同请求成为等待者
+        when(leaderFinder.search()).thenAnswer(invocation -> {
+            manager.execute(follower);
+            return true;
+        });
+
+        manager.execute(leader);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(followerFinder).applySharedRoute(route, true, TARGET);
+        verify(followerFinder, never()).search();
+        assertEquals(2, manager.getCompletedTaskCount());
+        assertEquals(1, manager.getSharedTaskCount());
+    }
+
+    @Test
+    void followerSearchesOnPoolWhenJoinFails() throws InterruptedException {
+        SimpleFlatAStarRouteFinder leaderFinder = finder(true);
+        SimpleFlatAStarRouteFinder followerFinder = finder(false);
+        RouteFindingTask follower = task(followerFinder);
+        RouteFindingTask leader = task(leaderFinder);
+        when(leaderFinder.search()).thenAnswer(invocation -> {
+            manager.execute(follower);
+            return true;
+        });
+        AtomicReference<Thread> searchThread = recordSearchThread(followerFinder, true);
+
+        manager.execute(leader);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(followerFinder).applySharedRoute(route, true, TARGET);
+        assertInstanceOf(RouteFindingManager.RouteFindingThread.class, searchThread.get());
+        assertEquals(2, manager.getCompletedTaskCount());
+        assertEquals(0, manager.getSharedTaskCount());
+    }
+
+    @Test
+    void followersSearchAfterLeaderFails() throws InterruptedException {
+        SimpleFlatAStarRouteFinder leaderFinder = finder(true);
+        SimpleFlatAStarRouteFinder followerFinder = finder(true);
+        RouteFindingTask follower = task(followerFinder);
+        RouteFindingTask leader = task(leaderFinder);
+        when(leaderFinder.search()).thenAnswer(invocation -> {
+            manager.execute(follower);
+            return false;
+        });
+        AtomicReference<Thread> searchThread = recordSearchThread(followerFinder, true);
+
+        manager.execute(leader);
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(followerFinder, never()).applySharedRoute(any(), anyBoolean(), any());
+        assertInstanceOf(RouteFindingManager.RouteFindingThread.class, searchThread.get());
+        assertEquals(0, manager.getSharedTaskCount());
+    }
+
+    private SimpleFlatAStarRouteFinder finder(boolean joins) {
+        SimpleFlatAStarRouteFinder finder = mock(SimpleFlatAStarRouteFinder.class);
+        when(finder.getEvaluatorKey()).thenReturn("walk");
+        when(finder.getRoute()).thenReturn(route);
+        when(finder.isReachable()).thenReturn(true);
+        when(finder.getReachableTarget()).thenReturn(TARGET);
+        when(finder.applySharedRoute(any(), anyBoolean(), any())).thenReturn(joins);
+        return finder;
+    }
+
+    private RouteFindingTask task(SimpleFlatAStarRouteFinder finder) {
+        RouteFindingTask task = new RouteFindingTask(finder, t -> finished.countDown());
+        task.setStart(START).setTarget(TARGET);
+        return task;
+    }
+
+    private static AtomicReference<Thread> recordSearchThread(SimpleFlatAStarRouteFinder finder, boolean found) {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        when(finder.search()).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread());
+            return found;
+        });
+        return thread;
+    }
+}
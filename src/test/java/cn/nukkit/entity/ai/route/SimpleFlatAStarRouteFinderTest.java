@@ -0,0 +1,87 @@
+package cn.nukkit.entity.ai.route;
+
+import cn.nukkit.entity.EntityIntelligent;
+import cn.nukkit.entity.ai.route.data.Node;
+import cn.nukkit.entity.ai.route.posevaluator.IPosEvaluator;
+import cn.nukkit.math.Vector3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+@ExtendWith(PowerNukkitExtension.class)
+class SimpleFlatAStarRouteFinderTest {
+    private static final Vector3 START = new Vector3(0.5, 64, 1.5);
+    private static final Vector3 TARGET = new Vector3(10.5, 64, 0.7);
+
+    SimpleFlatAStarRouteFinder finder;
+    List<Node> shared;
+
+    @BeforeEach
+    void setUp() {
+        finder = spy(new SimpleFlatAStarRouteFinder(mock(IPosEvaluator.class), mock(EntityIntelligent.class)));
+        finder.setStart(START);
+        finder.setTarget(TARGET);
+        shared = new ArrayList<>();
+        Node parent = null;
+        for (int x = 0; x <= 10; x++) {
+            parent = new Node(new Vector3(x + 0.5, 64, 0.5), parent, x * 10, (10 - x) * 10);
+            shared.add(parent);
+        }
+    }
+
+    @Test
+    void joinsFarthestNodeWithoutBarrier() {
+        // 起点只能直接走到x小于4的节点
+        doAnswer(invocation -> invocation.<Vector3>getArgument(1).x > 4)
+                .when(finder).hasBarrier(any(Vector3.class), any(Vector3.class));
+
+        assertTrue(finder.applySharedRoute(shared, true, TARGET));
+
+        List<Node> route = finder.getRoute();
+        assertEquals(9, route.size());
+        assertEquals(START, route.get(0).getVector3());
+        assertEquals(new Vector3(3.5, 64, 0.5), route.get(1).getVector3());
+        assertEquals(route.get(1), route.get(2).getParent());
+        assertEquals(TARGET, route.get(8).getVector3());
+        assertTrue(finder.isReachable());
+        assertTrue(finder.isFinished());
+    }
+
+    @Test
+    void keepsSharedEndWhenUnreachable() {
+        doReturn(false).when(finder).hasBarrier(any(Vector3.class), any(Vector3.class));
+        Vector3 reachableTarget = new Vector3(10.5, 64, 0.5);
+
+        assertTrue(finder.applySharedRoute(shared, false, reachableTarget));
+
+        // 前瞻最多跳过6个节点
+        List<Node> route = finder.getRoute();
+        assertEquals(6, route.size());
+        assertEquals(new Vector3(6.5, 64, 0.5), route.get(1).getVector3());
+        assertEquals(reachableTarget, route.get(5).getVector3());
+        assertFalse(finder.isReachable());
+        assertEquals(reachableTarget, finder.getReachableTarget());
+    }
+
+    @Test
+    void fallsBackWhenEveryNodeIsBlocked() {
+        doReturn(true).when(finder).hasBarrier(any(Vector3.class), any(Vector3.class));
+
+        assertFalse(finder.applySharedRoute(shared, true, TARGET));
+        assertTrue(finder.getRoute().isEmpty());
+        assertFalse(finder.applySharedRoute(shared.subList(0, 1), true, TARGET));
+    }
+}
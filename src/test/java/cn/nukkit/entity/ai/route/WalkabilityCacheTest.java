@@ -0,0 +1,124 @@
+package cn.nukkit.entity.ai.route;
+
+import cn.nukkit.Server;
+import cn.nukkit.level.Level;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(PowerNukkitExtension.class)
+class WalkabilityCacheTest {
+    Server server;
+    Level level;
+    WalkabilityCache cache;
+    AtomicInteger evaluations;
+    WalkabilityCache.StandingEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() {
+        server = Server.getInstance();
+        level = mock(Level.class);
+        when(level.isChunkLoaded(0, 0)).thenReturn(true);
+        when(level.isChunkLoaded(1, 0)).thenReturn(true);
+        cache = new WalkabilityCache(level);
+        evaluations = new AtomicInteger();
+        evaluator = (x, y, z) -> {
+            evaluations.incrementAndGet();
+            return true;
+        };
+        tick(1);
+    }
+
+    @Test
+    void cachedFromTheNextTick() {
+        // 缓存在这一刻创建，这一刻的计算可能读到了旧的方块
+        assertTrue(cache.isStandingBlock(0, 1, 64, 1, evaluator));
+        assertTrue(cache.isStandingBlock(0, 1, 64, 1, evaluator));
+        assertEquals(2, evaluations.get());
+
+        tick(2);
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    void unloadedChunksAreNotCached() {
+        cache.isStandingBlock(0, 40, 64, 1, evaluator);
+        tick(2);
+        cache.isStandingBlock(0, 40, 64, 1, evaluator);
+        cache.isStandingBlock(0, 40, 64, 1, evaluator);
+        assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    void blockChangeDropsChunkAndBorderNeighbour() {
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        cache.isStandingBlock(0, 17, 64, 1, evaluator);
+        tick(2);
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        cache.isStandingBlock(0, 17, 64, 1, evaluator);
+        assertEquals(4, evaluations.get());
+
+        // 区块中间的方块只影响所在区块
+        cache.invalidate(5, 5);
+        assertCached(1, false);
+        assertCached(17, true);
+
+        tick(3);
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        tick(4);
+        assertCached(1, true);
+
+        // 区块边缘的方块同时影响相邻区块
+        cache.invalidate(15, 5);
+        assertCached(1, false);
+        assertCached(17, false);
+    }
+
+    @Test
+    void chunkChangeDropsNeighbours() {
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        cache.isStandingBlock(0, 17, 64, 1, evaluator);
+        tick(2);
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        cache.isStandingBlock(0, 17, 64, 1, evaluator);
+        assertCached(1, true);
+        assertCached(17, true);
+
+        cache.invalidateChunk(1, 0);
+        assertCached(1, false);
+        assertCached(17, false);
+    }
+
+    @Test
+    void removedOnUnload() {
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        tick(2);
+        cache.isStandingBlock(0, 1, 64, 1, evaluator);
+        assertCached(1, true);
+
+        cache.remove(0, 0);
+        when(level.isChunkLoaded(0, 0)).thenReturn(false);
+        assertCached(1, false);
+        assertCached(1, false);
+    }
+
+    private void tick(int tick) {
+        when(server.getTick()).thenReturn(tick);
+    }
+
+    private void assertCached(int x, boolean cached) {
+        int before = evaluations.get();
+        cache.isStandingBlock(0, x, 64, 1, evaluator);
+        assertEquals(cached ? before : before + 1, evaluations.get());
+    }
+}
@@ -0,0 +1,96 @@
+package cn.nukkit.entity.ai.route.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteSearchArenaTest {
+    @Test
+    void pollsLowestCostFirst() {
+        RouteSearchArena arena = new RouteSearchArena();
+        int a = arena.addNode(0.5, 64, 0.5, -1, 30, 10);
+        int b = arena.addNode(1.5, 64, 0.5, -1, 10, 10);
+        int c = arena.addNode(2.5, 64, 0.5, -1, 20, 10);
+        arena.push(a);
+        arena.push(b);
+        arena.push(c);
+
+        assertEquals(b, arena.poll());
+        assertEquals(c, arena.poll());
+        assertEquals(a, arena.poll());
+        assertEquals(-1, arena.poll());
+        assertTrue(arena.isClosed(1.7, 64.2, 0.1));
+    }
+
+    @Test
+    void skipsStaleEntries() {
+        RouteSearchArena arena = new RouteSearchArena();
+        int a = arena.addNode(0.5, 64, 0.5, -1, 50, 0);
+        int b = arena.addNode(1.5, 64, 0.5, -1, 40, 0);
+        arena.push(a);
+        arena.push(b);
+        arena.update(a, b, 5);
+        arena.push(a);
+
+        assertEquals(a, arena.poll());
+        assertEquals(b, arena.getParent(a));
+        assertEquals(b, arena.poll());
+        assertEquals(-1, arena.poll());
+    }
+
+    @Test
+    void peeksWithoutClosing() {
+        RouteSearchArena arena = new RouteSearchArena();
+        int a = arena.addNode(0.5, 64, 0.5, -1, 50, 0);
+        int b = arena.addNode(1.5, 64, 0.5, -1, 40, 0);
+        arena.push(a);
+        arena.push(b);
+        arena.update(a, -1, 5);
+        arena.push(a);
+
+        assertEquals(a, arena.peek());
+        assertFalse(arena.isClosed(a));
+        assertEquals(a, arena.poll());
+        assertEquals(b, arena.peek());
+        assertEquals(b, arena.poll());
+        assertEquals(-1, arena.peek());
+    }
+
+    @Test
+    void keepsClosingOrder() {
+        RouteSearchArena arena = new RouteSearchArena();
+        int a = arena.addNode(0.5, 64, 0.5, -1, 0, 0);
+        int b = arena.addNode(1.5, 64, 0.5, -1, 20, 0);
+        int c = arena.addNode(2.5, 64, 0.5, -1, 10, 0);
+        arena.close(a);
+        arena.push(b);
+        arena.push(c);
+        arena.poll();
+        arena.close(a);
+
+        assertEquals(2, arena.getClosedCount());
+        assertEquals(a, arena.getClosed(0));
+        assertEquals(c, arena.getClosed(1));
+        arena.reset();
+        assertEquals(0, arena.getClosedCount());
+    }
+
+    @Test
+    void growsAndResets() {
+        RouteSearchArena arena = new RouteSearchArena();
+        for (int i = 0; i < 1000; i++) {
+            arena.push(arena.addNode(i, 64, -i, -1, 1000 - i, 0));
+        }
+        assertEquals(999, arena.poll());
+        assertEquals(999, arena.getNode(999.5, 64, -999));
+
+        arena.reset();
+        assertEquals(0, arena.size());
+        assertEquals(-1, arena.getNode(999.5, 64, -999));
+        assertEquals(-1, arena.poll());
+        int node = arena.addNode(0, 64, 0, -1, 0, 0);
+        assertFalse(arena.isClosed(node));
+    }
+}
@@ -0,0 +1,34 @@
+package cn.nukkit.entity.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityMetadataTest {
+    private static final int FLAGS = 0;
+    private static final int NAMETAG = 4;
+    private static final int AIR = 7;
+
+    @Test
+    void pollDirty() {
+        EntityMetadata metadata = new EntityMetadata()
+                .putLong(FLAGS, 1)
+                .putString(NAMETAG, "a")
+                .putShort(AIR, 300);
+        assertNull(metadata.pollDirty());
+
+        metadata.putString(NAMETAG, "b");
+        metadata.markDirty(NAMETAG);
+        metadata.markDirty(NAMETAG);
+        assertTrue(metadata.isDirty());
+
+        EntityMetadata changed = metadata.pollDirty();
+        assertEquals(1, changed.getMap().size());
+        assertEquals("b", changed.getString(NAMETAG));
+        assertFalse(metadata.isDirty());
+        assertNull(metadata.pollDirty());
+    }
+}
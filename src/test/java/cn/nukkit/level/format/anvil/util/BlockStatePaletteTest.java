@@ -0,0 +1,113 @@
+package cn.nukkit.level.format.anvil.util;
+
+import cn.nukkit.block.BlockID;
+import cn.nukkit.blockstate.BlockState;
+import cn.nukkit.level.util.BitArrayVersion;
+import cn.nukkit.utils.BinaryStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static cn.nukkit.blockstate.BlockState.AIR;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(PowerNukkitExtension.class)
+class BlockStatePaletteTest {
+    private static final BlockState STONE = BlockState.of(BlockID.STONE);
+    private static final BlockState DIRT = BlockState.of(BlockID.DIRT);
+
+    @Test
+    void growsAndKeepsStates() {
+        BlockStatePalette palette = new BlockStatePalette();
+        assertEquals(BitArrayVersion.V1, palette.getVersion());
+        for (int i = 0; i < BlockStorage.SECTION_SIZE; i++) {
+            palette.set(i, BlockState.of(BlockID.STONE, i % 7));
+        }
+        for (int i = 0; i < BlockStorage.SECTION_SIZE; i++) {
+            assertEquals(BlockState.of(BlockID.STONE, i % 7), palette.get(i));
+        }
+        assertEquals(BitArrayVersion.V3, palette.getVersion());
+    }
+
+    @Test
+    void reclaimsUnusedEntries() {
+        BlockStatePalette palette = new BlockStatePalette();
+        // 同一个位置不断替换，旧的方块状态不再被使用，调色板满时应当回收它们而不是继续扩大
+        for (int i = 0; i < 4; i++) {
+            palette.set(0, BlockState.of(BlockID.STONE, i));
+        }
+        assertEquals(BitArrayVersion.V2, palette.getVersion());
+        assertEquals(3, palette.getPaletteSize());
+        assertEquals(BlockState.of(BlockID.STONE, 3), palette.get(0));
+        assertEquals(AIR, palette.get(1));
+
+        palette.set(1, DIRT);
+        assertEquals(BitArrayVersion.V2, palette.getVersion());
+        assertEquals(BlockState.of(BlockID.STONE, 3), palette.get(0));
+        assertEquals(DIRT, palette.get(1));
+        assertEquals(AIR, palette.get(2));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        BlockStatePalette palette = new BlockStatePalette();
+        palette.set(10, STONE);
+        BlockStatePalette copy = palette.copy();
+        copy.set(10, DIRT);
+        assertEquals(STONE, palette.get(10));
+        assertEquals(DIRT, copy.get(10));
+    }
+
+    @Test
+    void readsWhileGrowing() throws InterruptedException {
+        BlockStatePalette palette = new BlockStatePalette();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // 其他线程读取时，调色板在回收和扩大，读到的方块都必须有效
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    for (int i = 0; i < BlockStorage.SECTION_SIZE; i++) {
+                        assertNotNull(palette.get(i));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        try {
+            for (int round = 0; round < 8; round++) {
+                for (int i = 0; i < BlockStorage.SECTION_SIZE; i++) {
+                    palette.set(i, BlockState.of(BlockID.WOOL, (i + round) & 0xF));
+                    palette.set((i * 31) & (BlockStorage.SECTION_SIZE - 1), BlockState.of(BlockID.STONE, (i + round) % 7));
+                }
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    void writeTo() {
+        BlockStatePalette palette = new BlockStatePalette();
+        palette.set(0, STONE);
+        BinaryStream stream = new BinaryStream();
+        palette.writeTo(stream);
+
+        assertEquals((BitArrayVersion.V1.getId() << 1) | 1, stream.getByte());
+        int words = BitArrayVersion.V1.getWordsForSize(BlockStorage.SECTION_SIZE);
+        assertEquals(1, stream.getLInt());
+        for (int i = 1; i < words; i++) {
+            assertEquals(0, stream.getLInt());
+        }
+        assertEquals(2, stream.getVarInt());
+        assertEquals(AIR.getRuntimeId(), stream.getVarInt());
+        assertEquals(STONE.getRuntimeId(), stream.getVarInt());
+    }
+}
@@ -0,0 +1,60 @@
+package cn.nukkit.level.format.leveldb;
+
+import cn.nukkit.block.BlockID;
+import cn.nukkit.blockstate.BlockState;
+import cn.nukkit.level.format.anvil.ChunkSection;
+import cn.nukkit.level.format.generic.BaseChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(PowerNukkitExtension.class)
+class LevelDBChunkSerializerTest {
+    @Test
+    void subChunkRoundTrip() throws Exception {
+        ChunkSection section = new ChunkSection(4);
+        section.setBlockState(0, 0, 0, BlockState.of(BlockID.STONE));
+        section.setBlockState(1, 2, 3, BlockState.of(BlockID.DIRT));
+        section.setBlockState(15, 15, 15, BlockState.of(BlockID.WOOL, 5));
+        section.setBlockStateAtLayer(1, 2, 3, 1, BlockState.of(BlockID.STILL_WATER));
+
+        byte[] data = LevelDBChunkSerializer.writeSubChunk(section, 0);
+        assertNotNull(data);
+        assertEquals(LevelDBChunkSerializer.SUB_CHUNK_VERSION, data[0]);
+        assertEquals(2, data[1]);
+
+        ChunkSection read = LevelDBChunkSerializer.readSubChunk(data, 4);
+        assertNotNull(read);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    assertEquals(section.getBlockState(x, y, z, 0), read.getBlockState(x, y, z, 0));
+                    assertEquals(section.getBlockState(x, y, z, 1), read.getBlockState(x, y, z, 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptySubChunk() {
+        assertNull(LevelDBChunkSerializer.writeSubChunk(new ChunkSection(4), 0));
+    }
+
+    @Test
+    void data3DStartingWithCopyLast() {
+        BaseChunk chunk = mock(BaseChunk.class);
+        when(chunk.getSections()).thenReturn(new ChunkSection[24]);
+        byte[] data = new byte[513];
+        data[512] = (byte) 0xff;
+        assertThrows(IOException.class, () -> LevelDBChunkSerializer.readData3D(data, chunk));
+    }
+}
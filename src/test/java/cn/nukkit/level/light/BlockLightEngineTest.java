@@ -0,0 +1,126 @@
+package cn.nukkit.level.light;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockID;
+import cn.nukkit.level.Level;
+import cn.nukkit.math.Vector3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.api.MockLevel;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(PowerNukkitExtension.class)
+class BlockLightEngineTest {
+    private static final int X = 2;
+    private static final int Y = 64;
+    private static final int Z = 2;
+
+    @MockLevel
+    Level level;
+
+    @BeforeEach
+    void setUp() {
+        level.setBlock(new Vector3(X, Y - 1, Z), Block.get(BlockID.STONE), true, false);
+    }
+
+    @Test
+    void spreadsAndRemovesOnLevelThread() {
+        BlockLightEngine engine = new BlockLightEngine(level, null);
+        place(engine, BlockID.GLOWSTONE);
+        engine.processNow();
+        assertSpread();
+
+        place(engine, BlockID.AIR);
+        engine.processNow();
+        assertRemoved();
+    }
+
+    @Test
+    void spreadsAndRemovesFromSnapshot() {
+        BlockLightEngine engine = new BlockLightEngine(level, Runnable::run);
+        place(engine, BlockID.GLOWSTONE);
+        engine.onTickStart();
+        engine.onTickEnd();
+        assertSpread();
+
+        place(engine, BlockID.AIR);
+        engine.onTickStart();
+        engine.onTickEnd();
+        assertRemoved();
+    }
+
+    @Test
+    void stopsAtOpaqueBlocks() {
+        BlockLightEngine engine = new BlockLightEngine(level, null);
+        level.setBlock(new Vector3(X + 1, Y, Z), Block.get(BlockID.STONE), true, false);
+        place(engine, BlockID.GLOWSTONE);
+        engine.processNow();
+
+        // 光照不穿过石头，只能绕过石头到达后面的方块
+        assertEquals(11, level.getBlockLightAt(X + 2, Y, Z));
+    }
+
+    @Test
+    void recalculatesWhenSpreadLeavesSnapshot() {
+        // 移除光照时从残留的光照重新传播，传播到复制范围之外的区块
+        int sync = this.spreadFromStaleLight(new BlockLightEngine(level, null), 0);
+        int async = this.spreadFromStaleLight(new BlockLightEngine(level, Runnable::run), 40);
+        assertEquals(2, sync);
+        assertEquals(sync, async);
+    }
+
+    /**
+     * 在x=15放置并移除光源，x=20残留一个15级的光照
+     * <p>
+     * Places and removes a light source at x=15 with a stale light of 15 left at x=20
+     *
+     * @return x=33处最后的光照<br>the final light at x=33
+     */
+    private int spreadFromStaleLight(BlockLightEngine engine, int z) {
+        for (int x = 15; x <= 40; x += 5) {
+            level.setBlock(new Vector3(x, Y - 8, z), Block.get(BlockID.STONE), true, false);
+        }
+        level.setBlock(new Vector3(15, Y, z), Block.get(BlockID.GLOWSTONE), true, false);
+        engine.addUpdate(15, Y, z);
+        this.process(engine);
+        level.setBlockLightAt(20, Y, z, 15);
+
+        level.setBlock(new Vector3(15, Y, z), Block.get(BlockID.AIR), true, false);
+        engine.addUpdate(15, Y, z);
+        this.process(engine);
+        return level.getBlockLightAt(33, Y, z);
+    }
+
+    private void process(BlockLightEngine engine) {
+        if (engine.isAsync()) {
+            engine.onTickStart();
+            engine.onTickEnd();
+        } else {
+            engine.processNow();
+        }
+    }
+
+    private void place(BlockLightEngine engine, int id) {
+        level.setBlock(new Vector3(X, Y, Z), Block.get(id), true, false);
+        engine.addUpdate(X, Y, Z);
+    }
+
+    private void assertSpread() {
+        assertEquals(15, level.getBlockLightAt(X, Y, Z));
+        assertEquals(14, level.getBlockLightAt(X + 1, Y, Z));
+        assertEquals(14, level.getBlockLightAt(X, Y + 1, Z));
+        assertEquals(10, level.getBlockLightAt(X + 5, Y, Z));
+        assertEquals(8, level.getBlockLightAt(X + 4, Y + 1, Z + 2));
+        assertEquals(2, level.getBlockLightAt(X + 13, Y, Z));
+    }
+
+    private void assertRemoved() {
+        assertEquals(0, level.getBlockLightAt(X, Y, Z));
+        assertEquals(0, level.getBlockLightAt(X + 1, Y, Z));
+        assertEquals(0, level.getBlockLightAt(X + 5, Y, Z));
+        assertEquals(0, level.getBlockLightAt(X + 13, Y, Z));
+    }
+}
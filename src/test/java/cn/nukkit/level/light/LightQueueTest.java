@@ -0,0 +1,32 @@
+package cn.nukkit.level.light;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LightQueueTest {
+    @Test
+    void fifoOrderAcrossGrowth() {
+        LightQueue queue = new LightQueue(16);
+        // 先让头指针移动，再触发扩容，确保环绕部分被正确复制
+        for (int i = 0; i < 10; i++) {
+            queue.add(i, i & 0xF);
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.remove();
+        }
+        for (int i = 0; i < 100; i++) {
+            queue.add(-i * 31L, i & 0xF);
+        }
+        assertEquals(100, queue.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(-i * 31L, queue.peekPosition());
+            assertEquals(i & 0xF, queue.peekLevel());
+            queue.remove();
+        }
+        assertTrue(queue.isEmpty());
+        assertThrows(IllegalStateException.class, queue::remove);
+    }
+}
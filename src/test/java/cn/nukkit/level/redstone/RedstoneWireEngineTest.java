@@ -0,0 +1,240 @@
+package cn.nukkit.level.redstone;
+
+import cn.nukkit.Server;
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockID;
+import cn.nukkit.level.Level;
+import cn.nukkit.math.Vector3;
+import cn.nukkit.utils.RedstoneComponent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.api.MockLevel;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对比图计算引擎和原有逐根计算的结果。每个布局先用原有计算搭建一次，再在z方向偏移后用图计算引擎搭建一次，
+ * 每一步之后所有线的能量都要相同。
+ * <p>
+ * Compares the results of the graph engine with the legacy per-wire calculation. Every layout is built once with the
+ * legacy calculation and once more, shifted along z, with the graph engine, and every wire must have the same power
+ * after each step.
+ */
+@ExtendWith(PowerNukkitExtension.class)
+class RedstoneWireEngineTest {
+    private static final int Y = 64;
+    private static final int GRAPH_OFFSET = 32;
+
+    @MockLevel
+    Level level;
+
+    @BeforeEach
+    void setUp() {
+        Server server = level.getServer();
+        when(server.isRedstoneEnabled()).thenReturn(true);
+        when(level.isChunkLoaded(anyInt(), anyInt())).thenReturn(true);
+    }
+
+    @Test
+    void lineWithStep() {
+        // 一排线，末端爬上一格台阶
+        int[][] wires = new int[14][];
+        for (int x = 0; x < wires.length; x++) {
+            wires[x] = new int[]{x, x < 12 ? Y + 1 : Y + 2, 0};
+        }
+        List<int[]> steps = compare(layout -> {
+            layout.floor(-1, 0, 13, 0);
+            layout.stone(12, Y + 1, 0);
+            layout.stone(13, Y + 1, 0);
+            layout.source(-1, 0, true);
+            layout.wires(wires);
+            List<int[]> power = new ArrayList<>();
+            power.add(layout.power(wires));
+            layout.source(-1, 0, false);
+            power.add(layout.power(wires));
+            return power;
+        });
+
+        assertArrayEquals(new int[]{15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2}, steps.get(0));
+        assertArrayEquals(new int[wires.length], steps.get(1));
+    }
+
+    @Test
+    void branch() {
+        // 一排线在x=4处分出一条支线
+        int[][] wires = new int[16][];
+        for (int x = 0; x < 10; x++) {
+            wires[x] = new int[]{x, Y + 1, 0};
+        }
+        for (int z = 1; z <= 6; z++) {
+            wires[9 + z] = new int[]{4, Y + 1, z};
+        }
+        List<int[]> steps = compare(layout -> {
+            layout.floor(-1, 0, 9, 6);
+            layout.source(-1, 0, true);
+            layout.wires(wires);
+            List<int[]> power = new ArrayList<>();
+            power.add(layout.power(wires));
+            layout.source(-1, 0, false);
+            power.add(layout.power(wires));
+            return power;
+        });
+
+        assertArrayEquals(new int[]{15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 10, 9, 8, 7, 6, 5}, steps.get(0));
+        assertArrayEquals(new int[wires.length], steps.get(1));
+    }
+
+    @Test
+    void loop() {
+        // 5x5的环，能量沿两个方向传播，移除能量源后整个环都要失去能量
+        int[][] wires = {
+                {0, Y + 1, 0}, {1, Y + 1, 0}, {2, Y + 1, 0}, {3, Y + 1, 0}, {4, Y + 1, 0},
+                {4, Y + 1, 1}, {4, Y + 1, 2}, {4, Y + 1, 3}, {4, Y + 1, 4},
+                {3, Y + 1, 4}, {2, Y + 1, 4}, {1, Y + 1, 4}, {0, Y + 1, 4},
+                {0, Y + 1, 3}, {0, Y + 1, 2}, {0, Y + 1, 1}
+        };
+        List<int[]> steps = compare(layout -> {
+            layout.floor(-1, 0, 4, 4);
+            layout.source(-1, 0, true);
+            layout.wires(wires);
+            List<int[]> power = new ArrayList<>();
+            power.add(layout.power(wires));
+            layout.source(-1, 0, false);
+            power.add(layout.power(wires));
+            return power;
+        });
+
+        assertArrayEquals(new int[]{15, 14, 13, 12, 11, 10, 9, 8, 7, 8, 9, 10, 11, 12, 13, 14}, steps.get(0));
+        assertArrayEquals(new int[wires.length], steps.get(1));
+    }
+
+    @Test
+    void twoSourcesDepowerOneByOne() {
+        // 两端各有一个能量源，移除一个后另一个仍然为整排线供能
+        int[][] wires = new int[12][];
+        for (int x = 0; x < wires.length; x++) {
+            wires[x] = new int[]{x, Y + 1, 0};
+        }
+        List<int[]> steps = compare(layout -> {
+            layout.floor(-1, 0, 12, 0);
+            layout.source(-1, 0, true);
+            layout.source(12, 0, true);
+            layout.wires(wires);
+            List<int[]> power = new ArrayList<>();
+            power.add(layout.power(wires));
+            layout.source(-1, 0, false);
+            power.add(layout.power(wires));
+            layout.source(12, 0, false);
+            power.add(layout.power(wires));
+            return power;
+        });
+
+        assertArrayEquals(new int[]{15, 14, 13, 12, 11, 10, 10, 11, 12, 13, 14, 15}, steps.get(0));
+        assertArrayEquals(new int[]{4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15}, steps.get(1));
+        assertArrayEquals(new int[wires.length], steps.get(2));
+    }
+
+    @Test
+    void brokenWireDepowersTheFarSide() {
+        int[][] wires = new int[10][];
+        for (int x = 0; x < wires.length; x++) {
+            wires[x] = new int[]{x, Y + 1, 0};
+        }
+        List<int[]> steps = compare(layout -> {
+            layout.floor(-1, 0, 9, 0);
+            layout.source(-1, 0, true);
+            layout.wires(wires);
+            List<int[]> power = new ArrayList<>();
+            power.add(layout.power(wires));
+            layout.breakWire(wires[4]);
+            power.add(layout.power(wires));
+            return power;
+        });
+
+        assertArrayEquals(new int[]{15, 14, 13, 12, 11, 10, 9, 8, 7, 6}, steps.get(0));
+        assertArrayEquals(new int[]{15, 14, 13, 12, 0, 0, 0, 0, 0, 0}, steps.get(1));
+    }
+
+    /**
+     * 分别用原有计算和图计算引擎运行布局，比较每一步的结果
+     * <p>
+     * Runs the layout with the legacy calculation and with the graph engine and compares every step
+     *
+     * @return 原有计算每一步之后的能量<br>the power after every step of the legacy calculation
+     */
+    private List<int[]> compare(Function<Layout, List<int[]>> scenario) {
+        level.setRedstoneWireEngine(null);
+        List<int[]> legacy = scenario.apply(new Layout(0));
+        level.setRedstoneWireEngine(new RedstoneWireEngine(level));
+        List<int[]> graph = scenario.apply(new Layout(GRAPH_OFFSET));
+
+        assertEquals(legacy.size(), graph.size());
+        for (int i = 0; i < legacy.size(); i++) {
+            assertArrayEquals(legacy.get(i), graph.get(i), "step " + i);
+        }
+        return legacy;
+    }
+
+    /**
+     * 在z方向偏移后搭建布局
+     * <p>
+     * Builds a layout shifted along z
+     */
+    private final class Layout {
+        private final int offset;
+
+        private Layout(int offset) {
+            this.offset = offset;
+        }
+
+        void floor(int minX, int minZ, int maxX, int maxZ) {
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    level.setBlock(new Vector3(x, Y, z + offset), Block.get(BlockID.STONE), true, false);
+                }
+            }
+        }
+
+        void stone(int x, int y, int z) {
+            level.setBlock(new Vector3(x, y, z + offset), Block.get(BlockID.STONE), true, false);
+        }
+
+        /**
+         * 放置或移除一个红石块，和玩家放置、破坏时一样通知周围的方块
+         * <p>
+         * Places or removes a redstone block, notifying the blocks around like placing or breaking it does
+         */
+        void source(int x, int z, boolean powered) {
+            Vector3 pos = new Vector3(x, Y + 1, z + offset);
+            level.setBlock(pos, Block.get(powered ? BlockID.REDSTONE_BLOCK : BlockID.AIR), true, true);
+            RedstoneComponent.updateAroundRedstone(level.getBlock(pos));
+        }
+
+        void wires(int[][] wires) {
+            for (int[] wire : wires) {
+                level.setBlock(new Vector3(wire[0], wire[1], wire[2] + offset), Block.get(BlockID.REDSTONE_WIRE), true, true);
+            }
+        }
+
+        void breakWire(int[] wire) {
+            level.getBlock(new Vector3(wire[0], wire[1], wire[2] + offset)).onBreak(null);
+        }
+
+        int[] power(int[][] wires) {
+            int[] power = new int[wires.length];
+            for (int i = 0; i < wires.length; i++) {
+                power[i] = level.getBlockDataAt(wires[i][0], wires[i][1], wires[i][2] + offset);
+            }
+            return power;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package cn.nukkit.level.tracker;
+
+import cn.nukkit.Player;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.math.SimpleAxisAlignedBB;
+import cn.nukkit.math.Vector3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(PowerNukkitExtension.class)
+class EntitySpatialIndexTest {
+    private static final double Y = 64;
+
+    EntitySpatialIndex index;
+    long nextId;
+
+    @BeforeEach
+    void setUp() {
+        index = new EntitySpatialIndex();
+        nextId = 1;
+    }
+
+    @Test
+    void insertAndQuery() {
+        Entity near = spawn(Entity.class, 1, 1);
+        Entity far = spawn(Entity.class, 40, 40);
+        assertEquals(2, index.size());
+
+        assertEquals(List.of(near), index.getEntities(box(0, 0, 3, 3), null));
+        assertEquals(List.of(far), index.getEntities(box(39, 39, 41, 41), null));
+        assertTrue(index.getEntities(box(0, 0, 3, 3), near).isEmpty());
+        assertTrue(index.getEntities(box(20, 20, 22, 22), null).isEmpty());
+    }
+
+    @Test
+    void moveAcrossSectors() {
+        Entity entity = spawn(Entity.class, 2, 2);
+        moveTo(entity, 5, 5);
+        assertEquals(List.of(entity), index.getEntities(box(4, 4, 6, 6), null));
+
+        moveTo(entity, 30, 2);
+        assertTrue(index.getEntities(box(4, 4, 6, 6), null).isEmpty());
+        assertEquals(List.of(entity), index.getEntities(box(29, 1, 31, 3), null));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void sectorBorders() {
+        // 中心在扇区0的最后一格，碰撞箱伸进扇区1
+        Entity edge = spawn(Entity.class, 7.9, 0.5);
+        assertEquals(List.of(edge), index.getEntities(box(8.1, 0, 9, 1), null));
+
+        // 负坐标向下取整到扇区-1
+        Entity negative = spawn(Entity.class, -0.1, 0.5);
+        assertEquals(List.of(negative), index.getEntities(box(-0.5, 0, -0.15, 1), null));
+        assertEquals(List.of(negative), index.getEntities(box(0.1, 0, 0.5, 1), null));
+
+        moveTo(negative, 0.1, 0.5);
+        assertEquals(List.of(negative), index.getEntities(box(-0.5, 0, -0.15, 1), null));
+        moveTo(negative, -20, 0.5);
+        assertTrue(index.getEntities(box(-0.5, 0, -0.15, 1), null).isEmpty());
+        assertEquals(List.of(negative), index.getEntities(box(-21, 0, -19, 1), null));
+    }
+
+    @Test
+    void remove() {
+        Entity entity = spawn(Entity.class, 1, 1);
+        index.remove(entity);
+        assertEquals(0, index.size());
+        assertTrue(index.getEntities(box(0, 0, 3, 3), null).isEmpty());
+
+        // 不在索引中的实体
+        index.remove(entity);
+        assertEquals(0, index.size());
+
+        index.update(entity);
+        assertEquals(List.of(entity), index.getEntities(box(0, 0, 3, 3), null));
+    }
+
+    @Test
+    void nearestAcrossSectors() {
+        Vector3 origin = new Vector3(0, Y, 0);
+        Entity e1 = spawn(Entity.class, 1, 0);
+        Entity e4 = spawn(Entity.class, 0, -12);
+        Entity e2 = spawn(Entity.class, -6, 0);
+        Entity e3 = spawn(Entity.class, 0, 9);
+        Entity e5 = spawn(Entity.class, 20, 0);
+
+        assertEquals(List.of(e1, e2, e3), index.getNearest(origin, 0, 30, 3, Entity.class, null));
+        assertEquals(List.of(e2, e3, e4), index.getNearest(origin, 2, 30, 3, Entity.class, null));
+        assertEquals(List.of(e1, e2, e3), index.getNearest(origin, 0, 10, 10, Entity.class, null));
+        assertEquals(List.of(e1, e3, e4, e5), index.getNearest(origin, 0, 30, 10, Entity.class, e -> e != e2));
+        assertSame(e1, index.getNearest(origin, 0, 30, Entity.class, null));
+        assertNull(index.getNearest(origin, 0, 0.5, Entity.class, null));
+    }
+
+    @Test
+    void nearestWithoutCount() {
+        Vector3 origin = new Vector3(0, Y, 0);
+        spawn(Entity.class, 1, 0);
+
+        assertTrue(index.getNearest(origin, 0, 30, 0, Entity.class, null).isEmpty());
+        assertTrue(index.getNearest(origin, 0, 30, -1, Entity.class, null).isEmpty());
+    }
+
+    @Test
+    void nearestPlayers() {
+        Vector3 origin = new Vector3(0, Y, 0);
+        spawn(Entity.class, 1, 0);
+        Player player = spawn(Player.class, 3, 3);
+        spawn(Entity.class, 2, 0);
+
+        assertEquals(List.of(player), index.getNearest(origin, 0, 10, 5, Player.class, null));
+        moveTo(player, -15, 0);
+        assertNull(index.getNearest(origin, 0, 10, Player.class, null));
+        assertSame(player, index.getNearest(origin, 0, 16, Player.class, null));
+        index.remove(player);
+        assertNull(index.getNearest(origin, 0, 16, Player.class, null));
+    }
+
+    private <T extends Entity> T spawn(Class<T> type, double x, double z) {
+        T entity = mock(type);
+        long id = nextId++;
+        when(entity.getId()).thenReturn(id);
+        when(entity.distanceSquared(any(Vector3.class))).thenAnswer(invocation -> {
+            Vector3 pos = invocation.getArgument(0);
+            return (entity.x - pos.x) * (entity.x - pos.x) + (entity.y - pos.y) * (entity.y - pos.y)
+                    + (entity.z - pos.z) * (entity.z - pos.z);
+        });
+        moveTo(entity, x, z);
+        return entity;
+    }
+
+    private void moveTo(Entity entity, double x, double z) {
+        entity.x = x;
+        entity.y = Y;
+        entity.z = z;
+        entity.boundingBox = new SimpleAxisAlignedBB(x - 0.3, Y, z - 0.3, x + 0.3, Y + 1.8, z + 0.3);
+        index.update(entity);
+    }
+
+    private static SimpleAxisAlignedBB box(double minX, double minZ, double maxX, double maxZ) {
+        return new SimpleAxisAlignedBB(minX, Y, minZ, maxX, Y + 1, maxZ);
+    }
+}
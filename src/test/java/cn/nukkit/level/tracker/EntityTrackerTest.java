@@ -0,0 +1,167 @@
+package cn.nukkit.level.tracker;
+
+import cn.nukkit.Player;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.level.Level;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.MoveEntityAbsolutePacket;
+import cn.nukkit.network.protocol.MoveEntityDeltaPacket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.powernukkit.tests.api.MockLevel;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(PowerNukkitExtension.class)
+class EntityTrackerTest {
+    private static final int FAR_INTERVAL = 4;
+
+    @MockLevel
+    Level level;
+
+    Entity entity;
+    Player near;
+    Player far;
+    EntityTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        entity = mock(Entity.class);
+        when(entity.getId()).thenReturn(1L);
+        when(entity.getLevel()).thenReturn(level);
+        when(entity.getTrackingRange()).thenReturn(80.0);
+        near = viewer(2, 4 * 4);
+        far = viewer(3, 40 * 40);
+        when(entity.getViewers()).thenReturn(Map.of(2, near, 3, far));
+        tracker = new EntityTracker(level, 8, FAR_INTERVAL);
+    }
+
+    @Test
+    void farViewersOnlyOnFarTicks() {
+        // 实体ID为1，刻数加1是FAR_INTERVAL的倍数时是远处的刻
+        move(0);
+        tracker.flush(0);
+        assertInstanceOf(MoveEntityAbsolutePacket.class, single(near));
+        assertInstanceOf(MoveEntityAbsolutePacket.class, single(far));
+
+        move(1);
+        tracker.flush(1);
+        assertInstanceOf(MoveEntityDeltaPacket.class, single(near));
+        assertTrue(sent(far).isEmpty());
+
+        tracker.flush(2);
+        assertTrue(sent(near).isEmpty());
+        assertTrue(sent(far).isEmpty());
+
+        tracker.flush(3);
+        assertTrue(sent(near).isEmpty());
+        MoveEntityDeltaPacket delta = (MoveEntityDeltaPacket) single(far);
+        assertEquals(1, delta.x);
+    }
+
+    @Test
+    void onGroundChangeIsSent() {
+        move(0);
+        tracker.flush(0);
+        move(1);
+        tracker.flush(1);
+        tracker.flush(3);
+        sent(near);
+        sent(far);
+
+        entity.onGround = true;
+        tracker.flush(4);
+        MoveEntityDeltaPacket delta = (MoveEntityDeltaPacket) single(near);
+        assertEquals(MoveEntityDeltaPacket.FLAG_ON_GROUND, delta.flags);
+        assertTrue(sent(far).isEmpty());
+
+        tracker.flush(7);
+        delta = (MoveEntityDeltaPacket) single(far);
+        assertEquals(MoveEntityDeltaPacket.FLAG_ON_GROUND, delta.flags);
+        assertTrue(sent(near).isEmpty());
+    }
+
+    @Test
+    void viewerEnteringRangeOfRestingEntity() {
+        when(far.distanceSquared(entity)).thenReturn(100.0 * 100.0);
+        move(0);
+        tracker.flush(0);
+        sent(near);
+        assertTrue(sent(far).isEmpty());
+
+        move(5);
+        tracker.flush(3);
+        sent(near);
+        assertTrue(sent(far).isEmpty());
+
+        // 实体不再移动，观察者走进追踪范围
+        when(far.distanceSquared(entity)).thenReturn(40.0 * 40.0);
+        tracker.flush(4);
+        assertTrue(sent(far).isEmpty());
+        tracker.flush(7);
+        MoveEntityAbsolutePacket absolute = (MoveEntityAbsolutePacket) single(far);
+        assertEquals(5, absolute.x);
+        assertTrue(sent(near).isEmpty());
+    }
+
+    @Test
+    void viewerLeavingNearDistance() {
+        move(0);
+        tracker.flush(0);
+        sent(near);
+        sent(far);
+
+        // 改变级别时马上收到绝对位置，之后和其他远处的观察者一起在远处的刻收到更新
+        when(near.distanceSquared(entity)).thenReturn(20.0 * 20.0);
+        move(2);
+        tracker.flush(1);
+        assertInstanceOf(MoveEntityAbsolutePacket.class, single(near));
+        assertTrue(sent(far).isEmpty());
+
+        move(3);
+        tracker.flush(2);
+        assertTrue(sent(near).isEmpty());
+        assertTrue(sent(far).isEmpty());
+        tracker.flush(3);
+        DataPacket packet = single(far);
+        assertEquals(3, ((MoveEntityDeltaPacket) packet).x);
+        assertEquals(packet, single(near));
+    }
+
+    private Player viewer(long id, double distanceSquared) {
+        Player viewer = mock(Player.class);
+        when(viewer.getId()).thenReturn(id);
+        when(viewer.distanceSquared(entity)).thenReturn(distanceSquared);
+        return viewer;
+    }
+
+    private void move(double x) {
+        tracker.addEntityMovement(entity, x, 64, 0, 0, 0, 0);
+    }
+
+    private DataPacket single(Player viewer) {
+        List<DataPacket> packets = sent(viewer);
+        assertEquals(1, packets.size());
+        return packets.get(0);
+    }
+
+    private static List<DataPacket> sent(Player viewer) {
+        ArgumentCaptor<DataPacket> captor = ArgumentCaptor.forClass(DataPacket.class);
+        verify(viewer, atLeast(0)).dataPacket(captor.capture());
+        clearInvocations(viewer);
+        return captor.getAllValues();
+    }
+}
@@ -0,0 +1,73 @@
+package cn.nukkit.network;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkSendRateControllerTest {
+
+    @Test
+    void slowStartDoublesWhileBudgetIsUsed() {
+        ChunkSendRateController controller = new ChunkSendRateController(2, 1, 64);
+        window(controller, 50, true);
+        assertEquals(4, controller.getBudget());
+        window(controller, 50, true);
+        assertEquals(8, controller.getBudget());
+    }
+
+    @Test
+    void applicationLimitedDoesNotGrow() {
+        ChunkSendRateController controller = new ChunkSendRateController(4, 1, 64);
+        window(controller, 50, false);
+        assertEquals(4, controller.getBudget());
+
+        // 只用了一部分发送数量
+        for (int i = 0; i < 10; i++) {
+            controller.tick(50);
+            controller.onChunksSent(controller.getBudget() - 1);
+        }
+        assertEquals(4, controller.getBudget());
+    }
+
+    @Test
+    void congestionHalvesThenGrowsAdditively() {
+        ChunkSendRateController controller = new ChunkSendRateController(2, 1, 64);
+        window(controller, 50, true);
+        assertEquals(4, controller.getBudget());
+
+        window(controller, 200, true);
+        assertEquals(2, controller.getBudget());
+
+        window(controller, 50, true);
+        assertEquals(3, controller.getBudget());
+        window(controller, 50, true);
+        assertEquals(4, controller.getBudget());
+    }
+
+    @Test
+    void congestionHalvesEvenWhenApplicationLimited() {
+        ChunkSendRateController controller = new ChunkSendRateController(8, 1, 64);
+        window(controller, 50, false);
+        window(controller, 200, false);
+        assertEquals(4, controller.getBudget());
+    }
+
+    @Test
+    void budgetStaysWithinBounds() {
+        ChunkSendRateController controller = new ChunkSendRateController(32, 2, 40);
+        window(controller, 50, true);
+        assertEquals(40, controller.getBudget());
+
+        for (int i = 0; i < 10; i++) {
+            window(controller, 1000, true);
+        }
+        assertEquals(2, controller.getBudget());
+    }
+
+    private static void window(ChunkSendRateController controller, long latency, boolean useBudget) {
+        for (int i = 0; i < 10; i++) {
+            controller.tick(latency);
+            controller.onChunksSent(useBudget ? controller.getBudget() : 0);
+        }
+    }
+}
@@ -21,13 +21,26 @@ package cn.nukkit.network;
 import cn.nukkit.Server;
 import cn.nukkit.api.PowerNukkitOnly;
 import cn.nukkit.api.Since;
+import cn.nukkit.network.compression.JdkCompressionProvider;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.HurtArmorPacket;
+import cn.nukkit.utils.BinaryStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * @author joserobjr
@@ -46,4 +59,67 @@ class NetworkTest {
     void setUp() {
         network = new Network(server);
     }
+
+    @Test
+    void deflateRawByteBuf() throws Exception {
+        byte[] first = new byte[20000];
+        byte[] second = new byte[333];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = (byte) (i * 31 % 17);
+        }
+        Arrays.fill(second, (byte) 7);
+
+        CompositeByteBuf input = Unpooled.compositeBuffer();
+        input.addComponent(true, Unpooled.wrappedBuffer(first));
+        input.addComponent(true, Unpooled.directBuffer().writeBytes(second));
+        ByteBuf output = Unpooled.directBuffer(16);
+        try {
+            Network.deflateRaw(input, output, 7);
+            assertEquals(0, input.readableBytes());
+
+            byte[] compressed = new byte[output.readableBytes()];
+            output.readBytes(compressed);
+            byte[] expected = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, expected, first.length, second.length);
+            assertArrayEquals(expected, Network.inflateRaw(compressed));
+        } finally {
+            input.release();
+            output.release();
+        }
+    }
+
+    @Test
+    void processBatchByteBuf() throws Exception {
+        BinaryStream batch = new BinaryStream();
+        for (int i = 1; i <= 2; i++) {
+            HurtArmorPacket packet = new HurtArmorPacket();
+            packet.cause = i;
+            packet.damage = i * 10;
+            packet.armorSlots = i * 100;
+            packet.encode();
+            batch.putByteArray(packet.getBuffer());
+        }
+
+        ByteBuf payload = Unpooled.directBuffer().writeBytes(Network.deflateRaw(batch.getBuffer(), 7));
+        List<DataPacket> packets = new ArrayList<>();
+        try {
+            network.processBatch(payload, packets);
+        } finally {
+            payload.release();
+        }
+
+        assertEquals(2, packets.size());
+        for (int i = 1; i <= 2; i++) {
+            HurtArmorPacket packet = (HurtArmorPacket) packets.get(i - 1);
+            assertEquals(i, packet.cause);
+            assertEquals(i * 10, packet.damage);
+            assertEquals(i * 100, packet.armorSlots);
+        }
+    }
+
+    @Test
+    void findCompressionProvider() {
+        assertSame(JdkCompressionProvider.INSTANCE, Network.findCompressionProvider("jdk"));
+        assertSame(JdkCompressionProvider.INSTANCE, Network.findCompressionProvider("missing"));
+    }
 }
@@ -0,0 +1,101 @@
+package cn.nukkit.network;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 区块以c开头，必须等待区块的数据包以n开头，其他数据包以m开头
+ * <p>
+ * Chunks start with c, packets that must wait for chunks start with n and the other packets with m
+ */
+class OutboundLanesTest {
+    private static final int CHUNK_SIZE = 10;
+
+    OutboundLanes lanes;
+    List<String> sent;
+
+    @BeforeEach
+    void setUp() {
+        lanes = new OutboundLanes();
+        sent = new ArrayList<>();
+    }
+
+    @Test
+    void queueOrderWithinBudget() {
+        add("c1", "m1", "c2", "n1", "c3", "m2");
+        send(100);
+        assertEquals(List.of("c1", "m1", "c2", "n1", "c3", "m2"), sent);
+    }
+
+    @Test
+    void independentPacketsOvertakeThrottledChunks() {
+        add("c1", "c2", "c3", "m1", "m2");
+        send(CHUNK_SIZE);
+        assertEquals(List.of("c1", "m1", "m2"), sent);
+
+        send(CHUNK_SIZE);
+        assertEquals(List.of("c1", "m1", "m2", "c2"), sent);
+        send(CHUNK_SIZE);
+        assertEquals(List.of("c1", "m1", "m2", "c2", "c3"), sent);
+    }
+
+    @Test
+    void dependentPacketsWaitForOlderChunks() {
+        add("c1", "c2", "n1", "m1", "c3");
+        send(CHUNK_SIZE);
+        // m1不能越过n1，主通道保持顺序
+        assertEquals(List.of("c1"), sent);
+
+        send(CHUNK_SIZE);
+        assertEquals(List.of("c1", "c2", "n1", "m1"), sent);
+        send(CHUNK_SIZE);
+        assertEquals(List.of("c1", "c2", "n1", "m1", "c3"), sent);
+    }
+
+    @Test
+    void chunksDoNotOvertakeOlderPackets() {
+        add("n1", "c1", "m1", "c2");
+        send(CHUNK_SIZE);
+        assertEquals(List.of("n1", "c1", "m1"), sent);
+        send(CHUNK_SIZE);
+        assertEquals(List.of("n1", "c1", "m1", "c2"), sent);
+    }
+
+    @Test
+    void sendsChunksLargerThanBudget() {
+        add("c1", "c2");
+        send(1);
+        assertEquals(List.of("c1"), sent);
+    }
+
+    @Test
+    void clearDropsBothLanes() {
+        add("c1", "n1", "m1");
+        List<Object> released = new ArrayList<>();
+        lanes.clear(released::add);
+        assertEquals(3, released.size());
+
+        send(100);
+        assertEquals(List.of(), sent);
+    }
+
+    private void add(String... entries) {
+        for (String entry : entries) {
+            lanes.add(entry, entry.startsWith("c"));
+        }
+    }
+
+    private void send(int budget) {
+        lanes.send(budget, entry -> ((String) entry).startsWith("n"), (entry, lane) -> {
+            String name = (String) entry;
+            assertEquals(name.startsWith("c") ? Network.CHANNEL_WORLD_CHUNKS : Network.CHANNEL_NONE, lane);
+            sent.add(name);
+            return name.startsWith("c") ? CHUNK_SIZE : 1;
+        });
+    }
+}
@@ -2,8 +2,15 @@ package cn.nukkit.network;
 
 import cn.nukkit.Player;
 import cn.nukkit.Server;
+import cn.nukkit.network.protocol.BatchPacket;
 import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.MovePlayerPacket;
+import cn.nukkit.network.protocol.PlayerListPacket;
+import cn.nukkit.network.protocol.RemoveEntityPacket;
 import cn.nukkit.network.protocol.ResourcePackChunkRequestPacket;
+import cn.nukkit.network.protocol.TextPacket;
+import cn.nukkit.network.protocol.UpdateBlockPacket;
+import io.netty.buffer.ByteBuf;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,7 +21,11 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(PowerNukkitExtension.class)
@@ -44,4 +55,83 @@ class RakNetInterfaceTest {
         rakNetInterface.putResourcePacket(player, packet);
         assertFalse(packet.isEncoded);
     }
+
+    @Test
+    void outboundLane() {
+        assertEquals(Network.CHANNEL_NONE, RakNetInterface.getOutboundLane(new MovePlayerPacket()));
+        assertEquals(Network.CHANNEL_WORLD_CHUNKS, RakNetInterface.getOutboundLane(new UpdateBlockPacket()));
+        assertEquals(Network.CHANNEL_NONE, RakNetInterface.getOutboundLane(new TextPacket()));
+        assertEquals(Network.CHANNEL_NONE, RakNetInterface.getOutboundLane(new RemoveEntityPacket()));
+        assertEquals(Network.CHANNEL_NONE, RakNetInterface.getOutboundLane(new ResourcePackChunkRequestPacket()));
+
+        TextPacket priority = new TextPacket();
+        priority.setChannel(Network.CHANNEL_PRIORITY);
+        assertEquals(Network.CHANNEL_NONE, RakNetInterface.getOutboundLane(priority));
+        UpdateBlockPacket blocks = new UpdateBlockPacket();
+        blocks.setChannel(Network.CHANNEL_BLOCKS);
+        assertEquals(Network.CHANNEL_WORLD_CHUNKS, RakNetInterface.getOutboundLane(blocks));
+        BatchPacket chunk = new BatchPacket();
+        chunk.setChannel(Network.CHANNEL_WORLD_CHUNKS);
+        assertEquals(Network.CHANNEL_WORLD_CHUNKS, RakNetInterface.getOutboundLane(chunk));
+    }
+
+    @Test
+    void mustFollowChunks() {
+        assertFalse(RakNetInterface.mustFollowChunks(new MovePlayerPacket()));
+        assertFalse(RakNetInterface.mustFollowChunks(new TextPacket()));
+        assertFalse(RakNetInterface.mustFollowChunks(new RemoveEntityPacket()));
+        assertTrue(RakNetInterface.mustFollowChunks(new PlayerListPacket()));
+        assertTrue(RakNetInterface.mustFollowChunks(new BatchPacket()));
+    }
+
+    @Test
+    void broadcastGroupReleasedByDisconnectedMembers() {
+        RakNetInterface.BroadcastGroup group = createGroup(3);
+        ByteBuf sent = group.takePayload();
+        assertNotNull(sent);
+        assertEquals(2, sent.refCnt());
+
+        // 另外两个成员断开连接，没有发送
+        group.release();
+        assertEquals(2, sent.refCnt());
+        group.release();
+        assertEquals(1, sent.refCnt());
+        assertNull(group.packets);
+
+        sent.release();
+        assertEquals(0, sent.refCnt());
+    }
+
+    @Test
+    void broadcastGroupSentAfterOtherMembersDisconnected() {
+        RakNetInterface.BroadcastGroup group = createGroup(2);
+        group.release();
+        assertNotNull(group.packets);
+
+        ByteBuf sent = group.takePayload();
+        assertNotNull(sent);
+        assertEquals(1, sent.refCnt());
+        sent.release();
+        assertEquals(0, sent.refCnt());
+    }
+
+    @Test
+    void broadcastGroupNeverSent() {
+        RakNetInterface.BroadcastGroup group = createGroup(2);
+        group.release();
+        group.release();
+        assertNull(group.packets);
+        assertEquals(0, group.remaining);
+    }
+
+    private RakNetInterface.BroadcastGroup createGroup(int members) {
+        TextPacket packet = new TextPacket();
+        packet.message = "broadcast";
+        packet.tryEncode();
+        RakNetInterface.BroadcastGroup group = rakNetInterface.new BroadcastGroup();
+        group.members = members;
+        group.remaining = members;
+        group.packets.add(packet);
+        return group;
+    }
 }
@@ -0,0 +1,31 @@
+package cn.nukkit.network.protocol;
+
+import cn.nukkit.math.BlockVector3;
+import cn.nukkit.network.protocol.types.BlockChangeEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UpdateSubChunkBlocksPacketTest {
+    @Test
+    void encode() {
+        UpdateSubChunkBlocksPacket packet = new UpdateSubChunkBlocksPacket(-2, -4, 3);
+        BlockVector3 position = new BlockVector3(-30, -60, 50);
+        packet.standardBlocks.add(new BlockChangeEntry(position, 12, UpdateBlockPacket.FLAG_ALL, 0, BlockChangeEntry.MessageType.NONE));
+        packet.extraBlocks.add(new BlockChangeEntry(position, 34, UpdateBlockPacket.FLAG_ALL, 0, BlockChangeEntry.MessageType.NONE));
+        packet.encode();
+        packet.encode();
+
+        assertEquals(ProtocolInfo.UPDATE_SUB_CHUNK_BLOCKS_PACKET & 0xff, packet.getUnsignedVarInt());
+        assertEquals(new BlockVector3(-2, -4, 3), packet.getBlockVector3());
+        for (int runtimeId : new int[]{12, 34}) {
+            assertEquals(1, packet.getUnsignedVarInt());
+            assertEquals(position, packet.getBlockVector3());
+            assertEquals(runtimeId, packet.getUnsignedVarInt());
+            assertEquals(UpdateBlockPacket.FLAG_ALL, packet.getUnsignedVarInt());
+            assertEquals(0, packet.getUnsignedVarLong());
+            assertEquals(BlockChangeEntry.MessageType.NONE.ordinal(), packet.getUnsignedVarInt());
+        }
+        assertEquals(packet.getCount(), packet.getOffset());
+    }
+}
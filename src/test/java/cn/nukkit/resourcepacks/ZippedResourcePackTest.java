@@ -0,0 +1,63 @@
+package cn.nukkit.resourcepacks;
+
+import org.iq80.leveldb.util.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.powernukkit.tests.junit.jupiter.PowerNukkitExtension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(PowerNukkitExtension.class)
+class ZippedResourcePackTest {
+    Path temp;
+    Path file;
+    ZippedResourcePack pack;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        temp = Files.createTempDirectory("ZippedResourcePackTest_");
+        file = temp.resolve("pack.zip");
+        try (OutputStream out = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("manifest.json"));
+            zip.write(("{\"format_version\":2,\"header\":{\"description\":\"\",\"name\":\"test\"," +
+                    "\"uuid\":\"5d3a5b2c-7d0b-4c7e-9a55-3c52e3f1b6a1\",\"version\":[1,0,0]},\"modules\":[]}")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("data.bin"));
+            byte[] data = new byte[5000];
+            new Random(1).nextBytes(data);
+            zip.write(data);
+        }
+        pack = new ZippedResourcePack(file.toFile());
+    }
+
+    @AfterEach
+    void tearDown() {
+        FileUtils.deleteRecursively(temp.toFile());
+    }
+
+    @Test
+    void getPackChunk() throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals(bytes.length, pack.getPackSize());
+        int chunkSize = 1024;
+        for (int off = 0; off < bytes.length; off += chunkSize) {
+            byte[] expected = Arrays.copyOfRange(bytes, off, Math.min(bytes.length, off + chunkSize));
+            assertArrayEquals(expected, pack.getPackChunk(off, chunkSize));
+            assertEquals(expected.length, pack.getPackChunkBuffer(off, chunkSize).remaining());
+        }
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(bytes), pack.getSha256());
+    }
+}
@@ -0,0 +1,27 @@
+package cn.nukkit.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HashTest {
+    @Test
+    void xxHash64() {
+        assertEquals(0xEF46DB3751D8E999L, Hash.xxHash64(new byte[0]));
+        assertEquals(0x44BC2CF5AD770999L, Hash.xxHash64("abc".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void xxHash64LongInput() {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertEquals(0x6AC1E58032166597L, Hash.xxHash64(data));
+        byte[] padded = new byte[data.length + 3];
+        System.arraycopy(data, 0, padded, 3, data.length);
+        assertEquals(Hash.xxHash64(data), Hash.xxHash64(padded, 3, data.length, 0));
+    }
+}